@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.conversion.ParserToByteCodeConverter;
+import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPByteBufferBitInputStream;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parser made from a prepared parser with byte code generated in run-time
+ * through {@link ParserToByteCodeConverter}, so that data are read by direct
+ * calls of the bit input stream without interpretation of the compiled block.
+ * If a parser is not supported by the converter (for instance it contains var
+ * or custom fields, or external values in expressions) then the compiled
+ * parser just calls the interpreter of the prepared parser. A
+ * Compiled parser is thread-safe if its prepared parser is thread-safe.
+ *
+ * @see JBBPParser#compileToClass()
+ * @since 1.3.0
+ */
+public abstract class JBBPCompiledParser {
+
+    /**
+     * Package for generated classes.
+     */
+    private static final String GENERATED_PACKAGE = "com.igormaznitsa.jbbp.generated.";
+
+    /**
+     * Counter to make unique names of generated classes.
+     */
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    /**
+     * Named fields of the compiled block of the parser, generated code takes
+     * field names from the array by their indexes.
+     */
+    protected final JBBPNamedFieldInfo[] namedFields;
+
+    /**
+     * The Prepared parser.
+     */
+    private final JBBPParser parser;
+
+    /**
+     * Constructor.
+     *
+     * @param parser the prepared parser, must not be null
+     */
+    protected JBBPCompiledParser(final JBBPParser parser) {
+        this.parser = parser;
+        this.namedFields = parser.getCompiledBlock().getNamedFields();
+    }
+
+    /**
+     * Make compiled parser for a prepared parser.
+     *
+     * @param parser the prepared parser, must not be null
+     * @return the compiled parser with generated code or with the interpreter if the parser is not supported by the converter, must not be null
+     */
+    static JBBPCompiledParser make(final JBBPParser parser) {
+        if (!ParserToByteCodeConverter.isSupported(parser.getFlags(), parser.getCompiledBlock())) {
+            return new Interpreted(parser);
+        }
+        final String className = GENERATED_PACKAGE + "JBBPGeneratedParser" + CLASS_COUNTER.incrementAndGet();
+        final ParserToByteCodeConverter converter = new ParserToByteCodeConverter(className, parser);
+        converter.visit();
+        final Class<?> generated = new GeneratedClassLoader(JBBPCompiledParser.class.getClassLoader()).define(className, converter.getResult());
+        try {
+            return (JBBPCompiledParser) generated.getConstructor(JBBPParser.class).newInstance(parser);
+        } catch (NoSuchMethodException ex) {
+            throw new Error("Can't find constructor of generated parser, contact developer!", ex);
+        } catch (InstantiationException ex) {
+            throw new Error("Can't make generated parser, contact developer!", ex);
+        } catch (IllegalAccessException ex) {
+            throw new Error("Can't make generated parser, contact developer!", ex);
+        } catch (InvocationTargetException ex) {
+            throw new Error("Can't make generated parser, contact developer!", ex);
+        }
+    }
+
+    /**
+     * Skip bytes in a stream.
+     *
+     * @param in    the stream, must not be null
+     * @param bytes number of bytes to skip, nothing is skipped for zero or negative value
+     * @throws IOException  it will be thrown for transport errors
+     * @throws EOFException it will be thrown if the stream end is reached
+     */
+    protected static void skip(final JBBPBitInputStream in, final int bytes) throws IOException {
+        if (bytes > 0) {
+            final long skippedBytes = in.skip(bytes);
+            if (skippedBytes != bytes) {
+                throw new EOFException("Can't skip " + bytes + " byte(s), skipped only " + skippedBytes + " byte(s)");
+            }
+        }
+    }
+
+    /**
+     * Check calculated array length.
+     *
+     * @param length the calculated length
+     * @param name   the field name info, can be null
+     * @return the length
+     * @throws JBBPParsingException if the length is negative
+     */
+    protected static int checkArrayLength(final int length, final JBBPNamedFieldInfo name) {
+        if (length < 0) {
+            throw new JBBPParsingException("Detected negative calculated array length for field '" + (name == null ? "<NONAMED>" : name.getFieldPath()) + "\' [" + JBBPUtils.int2msg(length) + ']');
+        }
+        return length;
+    }
+
+    /**
+     * Convert list of structures read till the end of stream into array.
+     *
+     * @param list the list of structures, must not be null
+     * @return the array of structures, must not be null
+     */
+    protected static JBBPFieldStruct[] toStructArray(final List<JBBPFieldStruct> list) {
+        return list.toArray(new JBBPFieldStruct[list.size()]);
+    }
+
+    /**
+     * Read the root structure from a stream.
+     *
+     * @param in                    the bit input stream, must not be null
+     * @param varFieldProcessor     a var field processor, it can be null if the script doesn't have var fields
+     * @param externalValueProvider an external value provider, it can be null if the script doesn't use external values
+     * @return the root structure, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    protected abstract JBBPFieldStruct read(JBBPBitInputStream in, JBBPVarFieldProcessor varFieldProcessor, JBBPExternalValueProvider externalValueProvider) throws IOException;
+
+    /**
+     * Get the prepared parser.
+     *
+     * @return the prepared parser, must not be null
+     */
+    public JBBPParser getParser() {
+        return this.parser;
+    }
+
+    /**
+     * Check that the parser works through generated code.
+     *
+     * @return true if the parser uses generated code, false if it calls the interpreter
+     */
+    public boolean isGenerated() {
+        return true;
+    }
+
+    /**
+     * Parse an input stream.
+     *
+     * @param in an input stream which content should be parsed, it must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPFieldStruct parse(final InputStream in) throws IOException {
+        return this.parse(in, null, null);
+    }
+
+    /**
+     * Parse a byte array content.
+     *
+     * @param array a byte array which content should be parsed, it must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPFieldStruct parse(final byte[] array) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parse(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.parser.getBitOrder()), null, null);
+    }
+
+    /**
+     * Parse am input stream with defined external value provider.
+     *
+     * @param in                    an input stream which content will be parsed, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is not any var field in a script
+     * @param externalValueProvider an external value provider, it can be null but only if the script doesn't have fields desired the provider
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPFieldStruct parse(final InputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(in, "Stream must not be null");
+        final JBBPBitInputStream bitInStream = in instanceof JBBPBitInputStream ? (JBBPBitInputStream) in : new JBBPBitInputStream(in, this.parser.getBitOrder());
+        return this.read(bitInStream, varFieldProcessor, externalValueProvider);
+    }
+
+    /**
+     * Compiled parser which calls the interpreter of the prepared parser.
+     */
+    private static final class Interpreted extends JBBPCompiledParser {
+        private Interpreted(final JBBPParser parser) {
+            super(parser);
+        }
+
+        @Override
+        protected JBBPFieldStruct read(final JBBPBitInputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+            return this.getParser().parseWithResult(in, varFieldProcessor, externalValueProvider).getRoot();
+        }
+
+        @Override
+        public boolean isGenerated() {
+            return false;
+        }
+    }
+
+    /**
+     * Class loader to define a generated class, every generated class gets its
+     * own loader so that it can be collected together with its parser.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(final String name, final byte[] classFile) {
+            return this.defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
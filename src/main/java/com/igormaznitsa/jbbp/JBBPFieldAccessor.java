@@ -0,0 +1,438 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Accessor to read value of a primitive field or a primitive array field
+ * directly from a byte array or a byte buffer at its static offset without
+ * parsing of the whole record. It can be made only for fields which offset
+ * and size don't depend on parsed data. Values are decoded in the same way as
+ * the parser does it, with the field byte order and the parser bit order.
+ * The Accessor is immutable and thread-safe, read methods don't make any
+ * allocation.
+ *
+ * @see JBBPParser#makeFieldAccessor(String)
+ * @since 1.3.0
+ */
+public final class JBBPFieldAccessor {
+
+    private final JBBPNamedFieldInfo fieldInfo;
+    private final int type;
+    private final JBBPByteOrder byteOrder;
+    private final boolean msb0;
+    private final long bitOffset;
+    private final int elementBitSize;
+    private final int length;
+    private final boolean array;
+    private final boolean reversedElements;
+    /**
+     * The Field is not a bit field and it starts on a byte border so that its
+     * values are read by whole bytes.
+     */
+    private final boolean byteAligned;
+    private final boolean bigEndian;
+    private final ByteOrder nioByteOrder;
+    private final int byteOffset;
+    private final int elementByteSize;
+
+    /**
+     * Constructor.
+     *
+     * @param fieldInfo      the field info, must not be null
+     * @param type           the field type, one of primitive or bit compiler codes
+     * @param byteOrder      the byte order of the field, must not be null
+     * @param bitOrder       the bit order of the parser, must not be null
+     * @param bitOffset      the absolute offset of the field in bits
+     * @param elementBitSize size of the field or of an array element in bits
+     * @param arrayLength    number of array elements or -1 if the field is not an array
+     */
+    JBBPFieldAccessor(final JBBPNamedFieldInfo fieldInfo, final int type, final JBBPByteOrder byteOrder, final JBBPBitOrder bitOrder, final long bitOffset, final int elementBitSize, final int arrayLength) {
+        this.fieldInfo = fieldInfo;
+        this.type = type;
+        this.byteOrder = byteOrder;
+        this.msb0 = bitOrder == JBBPBitOrder.MSB0;
+        this.bitOffset = bitOffset;
+        this.elementBitSize = elementBitSize;
+        this.array = arrayLength >= 0;
+        this.length = this.array ? arrayLength : 1;
+        // byte arrays in little endian are read as reversed arrays
+        this.reversedElements = this.array && byteOrder == JBBPByteOrder.LITTLE_ENDIAN && (type == JBBPCompiler.CODE_BYTE || type == JBBPCompiler.CODE_UBYTE);
+        this.byteAligned = type != JBBPCompiler.CODE_BIT && (bitOffset & 7L) == 0L && (bitOffset >>> 3) <= Integer.MAX_VALUE;
+        this.bigEndian = byteOrder == JBBPByteOrder.BIG_ENDIAN;
+        this.nioByteOrder = this.bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.byteOffset = (int) (bitOffset >>> 3);
+        this.elementByteSize = elementBitSize >>> 3;
+    }
+
+    /**
+     * Get info of the field.
+     *
+     * @return the field info, must not be null
+     */
+    public JBBPNamedFieldInfo getFieldInfo() {
+        return this.fieldInfo;
+    }
+
+    /**
+     * Get type of the field.
+     *
+     * @return the compiler code of the field type
+     * @see JBBPCompiler#CODE_INT
+     * @see JBBPCompiler#CODE_BIT
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Get byte order of the field.
+     *
+     * @return the byte order, must not be null
+     */
+    public JBBPByteOrder getByteOrder() {
+        return this.byteOrder;
+    }
+
+    /**
+     * Get offset of the field from the record start.
+     *
+     * @return the offset in bits
+     */
+    public long getBitOffset() {
+        return this.bitOffset;
+    }
+
+    /**
+     * Check that the field is an array.
+     *
+     * @return true if the field is an array, false otherwise
+     */
+    public boolean isArray() {
+        return this.array;
+    }
+
+    /**
+     * Get number of values in the field.
+     *
+     * @return number of array elements or 1 if the field is not an array
+     */
+    public int size() {
+        return this.length;
+    }
+
+    /**
+     * Read the field value (or the first element value of an array).
+     *
+     * @param data         an array contains records, must not be null
+     * @param recordOffset offset of the record start in the array
+     * @return the value as long, booleans are returned as 1 or 0
+     * @throws IndexOutOfBoundsException if the data array is too short
+     */
+    public long getAsLong(final byte[] data, final int recordOffset) {
+        return this.read(data, null, recordOffset, 0);
+    }
+
+    /**
+     * Read the field value (or the first element value of an array).
+     *
+     * @param buffer       a buffer contains records, must not be null
+     * @param recordOffset absolute index of the record start in the buffer, the buffer position is not changed
+     * @return the value as long, booleans are returned as 1 or 0
+     * @throws IndexOutOfBoundsException if the buffer is too short
+     */
+    public long getAsLong(final ByteBuffer buffer, final int recordOffset) {
+        return this.read(null, buffer, recordOffset, 0);
+    }
+
+    /**
+     * Read the field value (or the first element value of an array) as integer.
+     *
+     * @param data         an array contains records, must not be null
+     * @param recordOffset offset of the record start in the array
+     * @return the value as integer, long values are truncated
+     * @throws IndexOutOfBoundsException if the data array is too short
+     */
+    public int getAsInt(final byte[] data, final int recordOffset) {
+        return (int) this.read(data, null, recordOffset, 0);
+    }
+
+    /**
+     * Read the field value (or the first element value of an array) as integer.
+     *
+     * @param buffer       a buffer contains records, must not be null
+     * @param recordOffset absolute index of the record start in the buffer, the buffer position is not changed
+     * @return the value as integer, long values are truncated
+     * @throws IndexOutOfBoundsException if the buffer is too short
+     */
+    public int getAsInt(final ByteBuffer buffer, final int recordOffset) {
+        return (int) this.read(null, buffer, recordOffset, 0);
+    }
+
+    /**
+     * Read the field value (or the first element value of an array) as boolean.
+     *
+     * @param data         an array contains records, must not be null
+     * @param recordOffset offset of the record start in the array
+     * @return true if the value is not zero
+     * @throws IndexOutOfBoundsException if the data array is too short
+     */
+    public boolean getAsBool(final byte[] data, final int recordOffset) {
+        return this.read(data, null, recordOffset, 0) != 0L;
+    }
+
+    /**
+     * Read the field value (or the first element value of an array) as boolean.
+     *
+     * @param buffer       a buffer contains records, must not be null
+     * @param recordOffset absolute index of the record start in the buffer, the buffer position is not changed
+     * @return true if the value is not zero
+     * @throws IndexOutOfBoundsException if the buffer is too short
+     */
+    public boolean getAsBool(final ByteBuffer buffer, final int recordOffset) {
+        return this.read(null, buffer, recordOffset, 0) != 0L;
+    }
+
+    /**
+     * Read an array element value.
+     *
+     * @param data         an array contains records, must not be null
+     * @param recordOffset offset of the record start in the array
+     * @param index        the element index
+     * @return the value as long, booleans are returned as 1 or 0
+     * @throws IndexOutOfBoundsException if the index is wrong or the data array is too short
+     */
+    public long getElementAsLong(final byte[] data, final int recordOffset, final int index) {
+        return this.read(data, null, recordOffset, index);
+    }
+
+    /**
+     * Read an array element value.
+     *
+     * @param buffer       a buffer contains records, must not be null
+     * @param recordOffset absolute index of the record start in the buffer, the buffer position is not changed
+     * @param index        the element index
+     * @return the value as long, booleans are returned as 1 or 0
+     * @throws IndexOutOfBoundsException if the index is wrong or the buffer is too short
+     */
+    public long getElementAsLong(final ByteBuffer buffer, final int recordOffset, final int index) {
+        return this.read(null, buffer, recordOffset, index);
+    }
+
+    /**
+     * Read all values of the field into a caller array.
+     *
+     * @param data         an array contains records, must not be null
+     * @param recordOffset offset of the record start in the array
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @return number of written values
+     * @throws IndexOutOfBoundsException if the data array is too short or the target array doesn't have enough space
+     */
+    public int readAll(final byte[] data, final int recordOffset, final long[] target, final int targetOffset) {
+        JBBPUtils.assertNotNull(data, "Data must not be null");
+        return this.readAll(data, null, recordOffset, target, targetOffset);
+    }
+
+    /**
+     * Read all values of the field into a caller array.
+     *
+     * @param buffer       a buffer contains records, must not be null
+     * @param recordOffset absolute index of the record start in the buffer, the buffer position is not changed
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @return number of written values
+     * @throws IndexOutOfBoundsException if the buffer is too short or the target array doesn't have enough space
+     */
+    public int readAll(final ByteBuffer buffer, final int recordOffset, final long[] target, final int targetOffset) {
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        return this.readAll(null, buffer, recordOffset, target, targetOffset);
+    }
+
+    private int readAll(final byte[] data, final ByteBuffer buffer, final int recordOffset, final long[] target, final int targetOffset) {
+        JBBPUtils.assertNotNull(target, "Target must not be null");
+        if (targetOffset < 0 || targetOffset + this.length > target.length) {
+            throw new IndexOutOfBoundsException("Not enough space in target array [" + targetOffset + ',' + this.length + ']');
+        }
+        for (int i = 0; i < this.length; i++) {
+            target[targetOffset + i] = this.read(data, buffer, recordOffset, i);
+        }
+        return this.length;
+    }
+
+    private long read(final byte[] data, final ByteBuffer buffer, final int recordOffset, final int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Wrong element index " + index + " for " + this.fieldInfo.getFieldPath());
+        }
+        if (recordOffset < 0) {
+            throw new IndexOutOfBoundsException("Negative record offset " + recordOffset);
+        }
+
+        final int elementIndex = this.reversedElements ? this.length - 1 - index : index;
+        if (this.byteAligned) {
+            return this.readAligned(data, buffer, (int) ((long) recordOffset + this.byteOffset + (long) elementIndex * this.elementByteSize));
+        }
+        final long position = ((long) recordOffset << 3) + this.bitOffset + (long) elementIndex * this.elementBitSize;
+
+        switch (this.type) {
+            case JBBPCompiler.CODE_BIT:
+                return this.readBits(data, buffer, position, this.elementBitSize);
+            case JBBPCompiler.CODE_BOOL:
+                return this.readBits(data, buffer, position, 8) == 0 ? 0L : 1L;
+            case JBBPCompiler.CODE_BYTE:
+                return (byte) this.readBits(data, buffer, position, 8);
+            case JBBPCompiler.CODE_UBYTE:
+                return this.readBits(data, buffer, position, 8);
+            case JBBPCompiler.CODE_SHORT:
+                return (short) this.readBytes(data, buffer, position, 2);
+            case JBBPCompiler.CODE_USHORT:
+                return this.readBytes(data, buffer, position, 2);
+            case JBBPCompiler.CODE_INT:
+                return (int) this.readBytes(data, buffer, position, 4);
+            case JBBPCompiler.CODE_LONG:
+                return this.readBytes(data, buffer, position, 8);
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+    }
+
+    /**
+     * Read a value which starts on a byte border by whole bytes.
+     *
+     * @param data   the source array, if null then the buffer is used
+     * @param buffer the source buffer, it is used only if the array is null
+     * @param index  absolute index of the first value byte
+     * @return the value
+     */
+    private long readAligned(final byte[] data, final ByteBuffer buffer, final int index) {
+        switch (this.type) {
+            case JBBPCompiler.CODE_BOOL:
+                return (data == null ? buffer.get(index) : data[index]) == 0 ? 0L : 1L;
+            case JBBPCompiler.CODE_BYTE:
+                return (byte) this.readAlignedBits(data, buffer, index, 1);
+            case JBBPCompiler.CODE_UBYTE:
+                return this.readAlignedBits(data, buffer, index, 1);
+            case JBBPCompiler.CODE_SHORT:
+                return (short) this.readAlignedBits(data, buffer, index, 2);
+            case JBBPCompiler.CODE_USHORT:
+                return this.readAlignedBits(data, buffer, index, 2);
+            case JBBPCompiler.CODE_INT:
+                return (int) this.readAlignedBits(data, buffer, index, 4);
+            case JBBPCompiler.CODE_LONG:
+                return this.readAlignedBits(data, buffer, index, 8);
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+    }
+
+    /**
+     * Read unsigned value of whole bytes, bits are reversed in every byte for MSB0.
+     *
+     * @param data   the source array, if null then the buffer is used
+     * @param buffer the source buffer, it is used only if the array is null
+     * @param index  absolute index of the first value byte
+     * @param bytes  number of bytes, 1, 2, 4 or 8
+     * @return the unsigned value in lower bytes
+     */
+    private long readAlignedBits(final byte[] data, final ByteBuffer buffer, final int index, final int bytes) {
+        final long result = data == null ? this.readAlignedBytes(buffer, index, bytes) : this.readAlignedBytes(data, index, bytes);
+        // reverse of whole long reverses bytes order too so that it is restored by preceding reverse of bytes
+        return this.msb0 ? Long.reverse(Long.reverseBytes(result)) : result;
+    }
+
+    private long readAlignedBytes(final ByteBuffer buffer, final int index, final int bytes) {
+        // the buffer order is not changed, values are just reversed if needed
+        final boolean swap = buffer.order() != this.nioByteOrder;
+        switch (bytes) {
+            case 1:
+                return buffer.get(index) & 0xFFL;
+            case 2: {
+                final short value = buffer.getShort(index);
+                return (swap ? Short.reverseBytes(value) : value) & 0xFFFFL;
+            }
+            case 4: {
+                final int value = buffer.getInt(index);
+                return (swap ? Integer.reverseBytes(value) : value) & 0xFFFFFFFFL;
+            }
+            default: {
+                final long value = buffer.getLong(index);
+                return swap ? Long.reverseBytes(value) : value;
+            }
+        }
+    }
+
+    private long readAlignedBytes(final byte[] data, final int index, final int bytes) {
+        switch (bytes) {
+            case 1:
+                return data[index] & 0xFFL;
+            case 2: {
+                final int value = ((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF);
+                return this.bigEndian ? value : Short.reverseBytes((short) value) & 0xFFFFL;
+            }
+            case 4: {
+                final int value = ((data[index] & 0xFF) << 24) | ((data[index + 1] & 0xFF) << 16) | ((data[index + 2] & 0xFF) << 8) | (data[index + 3] & 0xFF);
+                return (this.bigEndian ? value : Integer.reverseBytes(value)) & 0xFFFFFFFFL;
+            }
+            default: {
+                final long value = ((long) (((data[index] & 0xFF) << 24) | ((data[index + 1] & 0xFF) << 16) | ((data[index + 2] & 0xFF) << 8) | (data[index + 3] & 0xFF)) << 32)
+                        | ((((data[index + 4] & 0xFF) << 24) | ((data[index + 5] & 0xFF) << 16) | ((data[index + 6] & 0xFF) << 8) | (data[index + 7] & 0xFF)) & 0xFFFFFFFFL);
+                return this.bigEndian ? value : Long.reverseBytes(value);
+            }
+        }
+    }
+
+    private long readBytes(final byte[] data, final ByteBuffer buffer, final long position, final int bytes) {
+        long result = 0L;
+        if (this.byteOrder == JBBPByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < bytes; i++) {
+                result = (result << 8) | this.readBits(data, buffer, position + (i << 3), 8);
+            }
+        } else {
+            for (int i = bytes - 1; i >= 0; i--) {
+                result = (result << 8) | this.readBits(data, buffer, position + (i << 3), 8);
+            }
+        }
+        return result;
+    }
+
+    private int readBits(final byte[] data, final ByteBuffer buffer, final long position, final int bits) {
+        final int index = (int) (position >>> 3);
+        final int shift = (int) (position & 7L);
+        int result = this.readRawByte(data, buffer, index) >>> shift;
+        if (shift + bits > 8) {
+            result |= this.readRawByte(data, buffer, index + 1) << (8 - shift);
+        }
+        return result & ((1 << bits) - 1);
+    }
+
+    private int readRawByte(final byte[] data, final ByteBuffer buffer, final int index) {
+        final byte value = data == null ? buffer.get(index) : data[index];
+        return this.msb0 ? JBBPUtils.reverseBitsInByte(value) & 0xFF : value & 0xFF;
+    }
+
+    @Override
+    public String toString() {
+        return "JBBPFieldAccessor[" + this.fieldInfo.getFieldPath() + ",offset=" + this.bitOffset + ']';
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledInstruction;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.conversion.ExpressionEvaluatorVisitor;
+import com.igormaznitsa.jbbp.exceptions.JBBPIOException;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteBufferBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.*;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Sink which builds the field tree. Depending on its mode it can replace
+ * arrays by lazy placeholders or buffer views, parse structure arrays in
+ * parallel and drop or skip fields which are not in a projection.
+ *
+ * @since 1.3.0
+ */
+final class JBBPFieldTreeSink implements JBBPParserSink {
+
+    /**
+     * Arrays are read as usual.
+     */
+    static final int ARRAYS_READ = 0;
+    /**
+     * Arrays with fixed element size are replaced by lazy placeholders.
+     */
+    static final int ARRAYS_LAZY = 1;
+    /**
+     * Primitive arrays are replaced by views of the source buffer.
+     */
+    static final int ARRAYS_VIEW = 2;
+    /**
+     * Empty structure array
+     */
+    private static final JBBPFieldStruct[] EMPTY_STRUCT_ARRAY = new JBBPFieldStruct[0];
+    /**
+     * Min number of structure array elements parsed by one parallel task.
+     */
+    private static final int PARALLEL_MIN_ELEMENTS_PER_TASK = 128;
+    /**
+     * Projection mode of a field which is not requested.
+     */
+    private static final byte PROJECTION_NONE = 0;
+    /**
+     * Projection mode of a requested field, structures are read fully.
+     */
+    private static final byte PROJECTION_FULL = 1;
+    /**
+     * Projection mode of a structure which contains requested fields.
+     */
+    private static final byte PROJECTION_PARTIAL = 2;
+    /**
+     * Mask of projection mode bits.
+     */
+    private static final byte PROJECTION_MODE_MASK = 3;
+    /**
+     * Projection flag shows that the field (or a field inside the structure) is used by expressions.
+     */
+    private static final byte PROJECTION_FLAG_REFERENCED = 4;
+
+    private final JBBPParser parser;
+    private final ExecutorService executor;
+    private final int arrayMode;
+    /**
+     * Frame of the structure which fields are being read.
+     */
+    private Frame frame;
+
+    /**
+     * Constructor.
+     *
+     * @param parser     the parser which walks instructions, must not be null
+     * @param executor   executor to parse fixed size structure arrays in parallel, it can be null
+     * @param arrayMode  mode to process arrays, arrays can be replaced by lazy placeholders or buffer views
+     * @param projection projection table to read only requested fields, null if all fields must be read
+     * @see #ARRAYS_READ
+     * @see #ARRAYS_LAZY
+     * @see #ARRAYS_VIEW
+     * @see #makeProjection(JBBPCompiledBlock, JBBPCompiledInstruction[], Collection)
+     */
+    JBBPFieldTreeSink(final JBBPParser parser, final ExecutorService executor, final int arrayMode, final byte[] projection) {
+        this.parser = parser;
+        this.executor = executor;
+        this.arrayMode = arrayMode;
+        this.frame = new Frame(null, projection);
+    }
+
+    /**
+     * Get fields read on the top level.
+     *
+     * @return list of read fields, must not be null
+     */
+    List<JBBPAbstractField> getFields() {
+        return this.frame.fields;
+    }
+
+    /**
+     * Make a structure from fields read on the top level, the sink can be used
+     * to read the next structure after the call.
+     *
+     * @param name the structure name info, it can be null
+     * @return the structure, must not be null
+     */
+    JBBPFieldStruct makeStruct(final JBBPNamedFieldInfo name) {
+        final JBBPFieldStruct result = new JBBPFieldStruct(name, this.frame.fields);
+        this.frame.fields.clear();
+        return result;
+    }
+
+    /**
+     * Make projection table for a set of field paths, the table contains
+     * projection mode and flags for every instruction. Fields which are used by
+     * expressions are marked as referenced so that they will be read even if
+     * they are not requested, all named fields are marked if the script
+     * contains var fields or external values because their processors can
+     * request any field.
+     *
+     * @param compiledBlock the compiled block, must not be null
+     * @param instructions  the instruction table of the block, must not be null
+     * @param fieldPaths    paths of requested fields, must not be null
+     * @return the projection table, must not be null
+     * @throws JBBPIllegalArgumentException if a path can't be found
+     */
+    static byte[] makeProjection(final JBBPCompiledBlock compiledBlock, final JBBPCompiledInstruction[] instructions, final Collection<String> fieldPaths) {
+        JBBPUtils.assertNotNull(fieldPaths, "Field paths must not be null");
+        final byte[] result = new byte[instructions.length];
+
+        for (final String path : fieldPaths) {
+            JBBPUtils.assertNotNull(path, "Field path must not be null");
+            final JBBPNamedFieldInfo info = compiledBlock.findFieldForPath(JBBPUtils.normalizeFieldNameOrPath(path));
+            if (info == null) {
+                throw new JBBPIllegalArgumentException("Can't find field for path '" + path + '\'');
+            }
+            for (int i = 0; i < instructions.length; i++) {
+                if (info.equals(instructions[i].getFieldInfo())) {
+                    result[i] = PROJECTION_FULL;
+                }
+            }
+        }
+
+        final boolean[] referenced = new boolean[instructions.length];
+        final boolean[] referenceAll = new boolean[]{compiledBlock.hasVarFields()};
+        final List<JBBPNamedFieldInfo> referencedFields = new ArrayList<JBBPNamedFieldInfo>();
+        final ExpressionEvaluatorVisitor visitor = new ExpressionEvaluatorVisitor() {
+            @Override
+            public ExpressionEvaluatorVisitor visitStart() {
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitSpecial(final Special specialField) {
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+                if (nullableNameFieldInfo == null) {
+                    referenceAll[0] = true;
+                } else {
+                    referencedFields.add(nullableNameFieldInfo);
+                }
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitOperator(final Operator operator) {
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitConstant(final int value) {
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitEnd() {
+                return this;
+            }
+        };
+        for (final JBBPCompiledInstruction instruction : instructions) {
+            if (instruction.getArraySizeEvaluator() != null) {
+                instruction.getArraySizeEvaluator().visitItems(compiledBlock, instruction.getEvaluatorOffset(), visitor);
+            }
+            if (instruction.getExtraValueEvaluator() != null) {
+                instruction.getExtraValueEvaluator().visitItems(compiledBlock, instruction.getEvaluatorOffset(), visitor);
+            }
+        }
+        for (int i = 0; i < instructions.length; i++) {
+            final JBBPNamedFieldInfo info = instructions[i].getFieldInfo();
+            referenced[i] = info != null && (referenceAll[0] || referencedFields.contains(info));
+        }
+
+        // mark structures which contain requested or referenced fields
+        final int[] openStructs = new int[instructions.length];
+        int depth = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            final int type = instructions[i].getType();
+            if (type == JBBPCompiler.CODE_STRUCT_END) {
+                depth--;
+                continue;
+            }
+            if (result[i] == PROJECTION_FULL || referenced[i]) {
+                for (int d = 0; d < depth; d++) {
+                    final int struct = openStructs[d];
+                    if (result[i] == PROJECTION_FULL && (result[struct] & PROJECTION_MODE_MASK) == PROJECTION_NONE) {
+                        result[struct] |= PROJECTION_PARTIAL;
+                    }
+                    if (referenced[i]) {
+                        result[struct] |= PROJECTION_FLAG_REFERENCED;
+                    }
+                }
+                if (referenced[i]) {
+                    result[i] |= PROJECTION_FLAG_REFERENCED;
+                }
+            }
+            if (type == JBBPCompiler.CODE_STRUCT_START) {
+                openStructs[depth++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get size in bytes of a primitive field or a structure with fixed size.
+     *
+     * @param parser           the parser, must not be null
+     * @param instructionIndex index of the field instruction
+     * @return the size in bytes or -1 if the size is not fixed
+     */
+    private static int getFixedSize(final JBBPParser parser, final int instructionIndex) {
+        switch (parser.getInstruction(instructionIndex).getType()) {
+            case JBBPCompiler.CODE_BOOL:
+            case JBBPCompiler.CODE_BYTE:
+            case JBBPCompiler.CODE_UBYTE:
+                return 1;
+            case JBBPCompiler.CODE_SHORT:
+            case JBBPCompiler.CODE_USHORT:
+                return 2;
+            case JBBPCompiler.CODE_INT:
+                return 4;
+            case JBBPCompiler.CODE_LONG:
+                return 8;
+            case JBBPCompiler.CODE_STRUCT_START:
+                return parser.getFixedStructSize(instructionIndex);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Read a primitive or bit array field.
+     *
+     * @param inStream  the input stream, must not be null
+     * @param name      the array name info, it can be null
+     * @param type      the array element type
+     * @param length    the array length, negative one means the whole stream
+     * @param byteOrder the byte order, must not be null
+     * @param bitNumber the bit number for bit arrays, null for other arrays
+     * @return the array field, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    private static JBBPAbstractArrayField<?> readArray(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo name, final int type, final int length, final JBBPByteOrder byteOrder, final JBBPBitNumber bitNumber) throws IOException {
+        switch (type) {
+            case JBBPCompiler.CODE_BIT:
+                return new JBBPFieldArrayBit(name, inStream.readBitsArray(length, bitNumber), bitNumber);
+            case JBBPCompiler.CODE_BOOL:
+                return new JBBPFieldArrayBoolean(name, inStream.readBoolArray(length));
+            case JBBPCompiler.CODE_BYTE:
+                return new JBBPFieldArrayByte(name, inStream.readByteArray(length, byteOrder));
+            case JBBPCompiler.CODE_UBYTE:
+                return new JBBPFieldArrayUByte(name, inStream.readByteArray(length, byteOrder));
+            case JBBPCompiler.CODE_SHORT:
+                return new JBBPFieldArrayShort(name, inStream.readShortArray(length, byteOrder));
+            case JBBPCompiler.CODE_USHORT:
+                return new JBBPFieldArrayUShort(name, inStream.readShortArray(length, byteOrder));
+            case JBBPCompiler.CODE_INT:
+                return new JBBPFieldArrayInt(name, inStream.readIntArray(length, byteOrder));
+            case JBBPCompiler.CODE_LONG:
+                return new JBBPFieldArrayLong(name, inStream.readLongArray(length, byteOrder));
+            default:
+                throw new Error("Unexpected array type, contact developer! [" + type + ']');
+        }
+    }
+
+    /**
+     * Calculate number of array elements with fixed size which can be taken
+     * directly from a byte buffer stream, it is possible only if the stream is
+     * on a byte border and contains all elements.
+     *
+     * @param inStream    the input stream, must not be null
+     * @param elementSize the element size in bytes, not positive if it is not fixed
+     * @param arrayLength number of elements, negative for the whole stream
+     * @return number of elements or -1 if elements can't be taken from the buffer
+     */
+    private static int countBufferedElements(final JBBPBitInputStream inStream, final int elementSize, final int arrayLength) {
+        if (elementSize <= 0 || !(inStream instanceof JBBPByteBufferBitInputStream)) {
+            return -1;
+        }
+        final int bufferedBits = inStream.getBufferedBitsNumber();
+        if (bufferedBits != 0 && bufferedBits != 8) {
+            return -1;
+        }
+
+        final int available = ((JBBPByteBufferBitInputStream) inStream).available() + (bufferedBits == 8 ? 1 : 0);
+        if (arrayLength < 0) {
+            return available % elementSize == 0 ? available / elementSize : -1;
+        } else {
+            return (long) arrayLength * elementSize > available ? -1 : arrayLength;
+        }
+    }
+
+    /**
+     * Get the buffer position of the next byte to be read from a byte buffer
+     * stream which is on a byte border, a byte loaded into the bit buffer is
+     * taken into account.
+     *
+     * @param inStream the stream, must not be null
+     * @return the absolute buffer position
+     */
+    private static int bufferedPosition(final JBBPByteBufferBitInputStream inStream) {
+        return inStream.getBufferPosition() - (inStream.getBufferedBitsNumber() == 8 ? 1 : 0);
+    }
+
+    /**
+     * Skip bytes in a stream, a byte loaded into the bit buffer is skipped first.
+     *
+     * @param inStream the stream, must not be null
+     * @param bytes    number of bytes to be skipped
+     * @throws IOException it will be thrown if the bytes can't be skipped
+     */
+    private static void skipBufferedBytes(final JBBPBitInputStream inStream, final long bytes) throws IOException {
+        long toSkip = bytes;
+        if (toSkip > 0L && inStream.getBufferedBitsNumber() == 8) {
+            inStream.skip(1L);
+            toSkip--;
+        }
+        if (inStream.skip(toSkip) != toSkip) {
+            throw new EOFException("Can't skip " + bytes + " byte(s)");
+        }
+    }
+
+    @Override
+    public boolean processField(final JBBPBitInputStream inStream, final int instructionIndex, final int arrayLength, final boolean wholeStreamArray) throws IOException {
+        final Frame current = this.frame;
+        final byte projectionFlags = current.projection == null ? PROJECTION_FULL : current.projection[instructionIndex];
+        final int projectionMode = projectionFlags & PROJECTION_MODE_MASK;
+        current.dropField = projectionMode == PROJECTION_NONE;
+        current.bodyProjection = projectionMode == PROJECTION_FULL ? null : current.projection;
+
+        if (projectionMode == PROJECTION_NONE && !wholeStreamArray && (projectionFlags & PROJECTION_FLAG_REFERENCED) == 0) {
+            // not requested field which is not used by expressions can be just skipped if its size is fixed
+            final int size = getFixedSize(this.parser, instructionIndex);
+            if (size >= 0) {
+                skipBufferedBytes(inStream, arrayLength < 0 ? size : (long) arrayLength * size);
+                return true;
+            }
+        }
+
+        if (arrayLength >= 0) {
+            if (this.arrayMode != ARRAYS_READ) {
+                final JBBPAbstractField array = this.arrayMode == ARRAYS_VIEW ? makeArrayView(inStream, instructionIndex, wholeStreamArray ? -1 : arrayLength) : this.makeLazyArray(inStream, instructionIndex, wholeStreamArray ? -1 : arrayLength);
+                if (array != null) {
+                    current.add(array);
+                    return true;
+                }
+            }
+            if (this.executor != null && arrayLength > 0 && this.parser.getInstruction(instructionIndex).getType() == JBBPCompiler.CODE_STRUCT_START) {
+                final JBBPFieldStruct[] elements = this.parseStructArrayInParallel(inStream, instructionIndex, wholeStreamArray ? -1 : arrayLength);
+                if (elements != null) {
+                    current.add(new JBBPFieldArrayStruct(this.parser.getInstruction(instructionIndex).getFieldInfo(), elements));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onValue(final JBBPNamedFieldInfo name, final int type, final long value, final JBBPBitNumber bitNumber) {
+        this.frame.add((JBBPAbstractField) JBBPNamedNumericFieldMap.makeField(name, type, value, bitNumber));
+    }
+
+    @Override
+    public void onArray(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo name, final int type, final int length, final JBBPByteOrder byteOrder, final JBBPBitNumber bitNumber) throws IOException {
+        this.frame.add(readArray(inStream, name, type, length, byteOrder, bitNumber));
+    }
+
+    @Override
+    public void onField(final JBBPAbstractField field) {
+        this.frame.add(field);
+    }
+
+    @Override
+    public void onStructStart(final JBBPNamedFieldInfo name) {
+        this.frame = new Frame(this.frame, this.frame.bodyProjection);
+    }
+
+    @Override
+    public void onStructEnd(final JBBPNamedFieldInfo name) {
+        final JBBPFieldStruct struct = new JBBPFieldStruct(name, this.frame.fields);
+        this.frame = this.frame.parent;
+        if (this.frame.elements == null) {
+            this.frame.add(struct);
+        } else {
+            this.frame.elements.add(struct);
+        }
+    }
+
+    @Override
+    public void onStructArrayStart(final JBBPNamedFieldInfo name, final int length) {
+        this.frame.elements = length < 0 ? new ArrayList<JBBPFieldStruct>() : new ArrayList<JBBPFieldStruct>(length);
+    }
+
+    @Override
+    public void onStructArrayEnd(final JBBPNamedFieldInfo name) {
+        final List<JBBPFieldStruct> elements = this.frame.elements;
+        this.frame.elements = null;
+        this.frame.add(new JBBPFieldArrayStruct(name, elements.isEmpty() ? EMPTY_STRUCT_ARRAY : elements.toArray(new JBBPFieldStruct[elements.size()])));
+    }
+
+    /**
+     * Parse elements of a structure array with fixed element size in parallel,
+     * it is possible only for a byte buffer stream which contains all elements
+     * and which is on a byte border.
+     *
+     * @param inStream    the input stream, must not be null
+     * @param structIndex index of the structure start instruction
+     * @param arrayLength number of elements, negative for the whole stream
+     * @return parsed elements or null if the array can't be parsed in parallel
+     * @throws IOException it will be thrown for transport errors
+     */
+    private JBBPFieldStruct[] parseStructArrayInParallel(final JBBPBitInputStream inStream, final int structIndex, final int arrayLength) throws IOException {
+        final int elementSize = this.parser.getFixedStructSize(structIndex);
+        final int elements = countBufferedElements(inStream, elementSize, arrayLength);
+        if (elements < 0) {
+            return null;
+        }
+
+        final JBBPByteBufferBitInputStream bufferStream = (JBBPByteBufferBitInputStream) inStream;
+        final int startPosition = bufferedPosition(bufferStream);
+
+        final int tasks = Math.min(elements / PARALLEL_MIN_ELEMENTS_PER_TASK, Runtime.getRuntime().availableProcessors() * 4);
+        if (tasks < 2) {
+            return null;
+        }
+
+        final JBBPCompiledInstruction structStart = this.parser.getInstruction(structIndex);
+        final JBBPNamedFieldInfo name = structStart.getFieldInfo();
+        final int bodyStart = structIndex + 1;
+        final int bodyEnd = structStart.getPairedStructIndex();
+
+        final JBBPFieldStruct[] result = new JBBPFieldStruct[elements];
+        final List<Future<?>> futures = new ArrayList<Future<?>>(tasks);
+        final int elementsPerTask = (elements + tasks - 1) / tasks;
+        for (int first = 0; first < elements; first += elementsPerTask) {
+            final int taskFirst = first;
+            final int taskElements = Math.min(elementsPerTask, elements - first);
+            final JBBPBitInputStream taskStream = bufferStream.makeRegionStream(startPosition + taskFirst * elementSize, taskElements * elementSize);
+            futures.add(this.executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    final JBBPFieldTreeSink sink = new JBBPFieldTreeSink(parser, null, ARRAYS_READ, null);
+                    for (int i = 0; i < taskElements; i++) {
+                        parser.walk(taskStream, bodyStart, bodyEnd, null, null, sink);
+                        result[taskFirst + i] = sink.makeStruct(name);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            for (final Future<?> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during parallel parsing");
+        } catch (ExecutionException ex) {
+            for (final Future<?> f : futures) {
+                f.cancel(true);
+            }
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JBBPParsingException("Error during parallel parsing", cause);
+        }
+
+        skipBufferedBytes(inStream, (long) elements * elementSize);
+        return result;
+    }
+
+    /**
+     * Make a placeholder for a primitive array or a structure array with fixed
+     * element size and skip its data in the stream, the array will be decoded
+     * from the buffer by request. It is possible only for a byte buffer stream
+     * on a byte border which contains all data of the array.
+     *
+     * @param inStream         the input stream, must not be null
+     * @param instructionIndex index of the array instruction
+     * @param arrayLength      number of elements, negative for the whole stream
+     * @return the placeholder or null if the array must be read
+     * @throws IOException it will be thrown for transport errors
+     */
+    private JBBPLazyField makeLazyArray(final JBBPBitInputStream inStream, final int instructionIndex, final int arrayLength) throws IOException {
+        final int elementSize = getFixedSize(this.parser, instructionIndex);
+        final int elements = countBufferedElements(inStream, elementSize, arrayLength);
+        if (elements < 0) {
+            return null;
+        }
+
+        final JBBPByteBufferBitInputStream bufferStream = (JBBPByteBufferBitInputStream) inStream;
+        final LazyArrayField result = new LazyArrayField(this.parser, bufferStream, bufferedPosition(bufferStream), elements * elementSize, instructionIndex, elements);
+        skipBufferedBytes(inStream, (long) elements * elementSize);
+        return result;
+    }
+
+    /**
+     * Make a view of the source buffer for a primitive array and skip its data
+     * in the stream. It is possible only for a byte buffer stream on a byte
+     * border which contains all data of the array.
+     *
+     * @param inStream         the input stream, must not be null
+     * @param instructionIndex index of the array instruction
+     * @param arrayLength      number of elements, negative for the whole stream
+     * @return the view or null if the array must be read
+     * @throws IOException it will be thrown for transport errors
+     */
+    private JBBPFieldArrayView makeArrayView(final JBBPBitInputStream inStream, final int instructionIndex, final int arrayLength) throws IOException {
+        final JBBPCompiledInstruction instruction = this.parser.getInstruction(instructionIndex);
+        final JBBPFieldArrayView.Type type;
+        switch (instruction.getType()) {
+            case JBBPCompiler.CODE_BOOL:
+                type = JBBPFieldArrayView.Type.BOOL;
+                break;
+            case JBBPCompiler.CODE_BYTE:
+                type = JBBPFieldArrayView.Type.BYTE;
+                break;
+            case JBBPCompiler.CODE_UBYTE:
+                type = JBBPFieldArrayView.Type.UBYTE;
+                break;
+            case JBBPCompiler.CODE_SHORT:
+                type = JBBPFieldArrayView.Type.SHORT;
+                break;
+            case JBBPCompiler.CODE_USHORT:
+                type = JBBPFieldArrayView.Type.USHORT;
+                break;
+            case JBBPCompiler.CODE_INT:
+                type = JBBPFieldArrayView.Type.INT;
+                break;
+            case JBBPCompiler.CODE_LONG:
+                type = JBBPFieldArrayView.Type.LONG;
+                break;
+            default:
+                return null;
+        }
+
+        final int elements = countBufferedElements(inStream, type.getSize(), arrayLength);
+        if (elements < 0) {
+            return null;
+        }
+
+        final JBBPByteBufferBitInputStream bufferStream = (JBBPByteBufferBitInputStream) inStream;
+        final JBBPFieldArrayView result = new JBBPFieldArrayView(instruction.getFieldInfo(), bufferStream.getBuffer(), bufferedPosition(bufferStream), elements, type, instruction.getByteOrder(), inStream.getBitOrder());
+        skipBufferedBytes(inStream, (long) elements * type.getSize());
+        return result;
+    }
+
+    /**
+     * Read fields of a structure.
+     */
+    private static final class Frame {
+        private final Frame parent;
+        private final List<JBBPAbstractField> fields = new ArrayList<JBBPAbstractField>();
+        /**
+         * Projection table for fields of the structure, null if all fields must be read.
+         */
+        private final byte[] projection;
+        /**
+         * The Current field is not requested by the projection and must not be added.
+         */
+        private boolean dropField;
+        /**
+         * Projection table for the body of the current structure field.
+         */
+        private byte[] bodyProjection;
+        /**
+         * Elements of the current structure array, null if a structure array is not being read.
+         */
+        private List<JBBPFieldStruct> elements;
+
+        private Frame(final Frame parent, final byte[] projection) {
+            this.parent = parent;
+            this.projection = projection;
+        }
+
+        private void add(final JBBPAbstractField field) {
+            if (!this.dropField) {
+                this.fields.add(field);
+            }
+        }
+    }
+
+    /**
+     * Placeholder of an array which data is in a byte buffer, the array is
+     * decoded by request.
+     */
+    private static final class LazyArrayField extends JBBPLazyField {
+
+        private static final long serialVersionUID = -3829274651730183726L;
+
+        private final JBBPParser parser;
+        private final JBBPByteBufferBitInputStream source;
+        private final int position;
+        private final int byteLength;
+        private final int instructionIndex;
+        private final int arrayLength;
+
+        private LazyArrayField(final JBBPParser parser, final JBBPByteBufferBitInputStream source, final int position, final int byteLength, final int instructionIndex, final int arrayLength) {
+            super(parser.getInstruction(instructionIndex).getFieldInfo());
+            this.parser = parser;
+            this.source = source;
+            this.position = position;
+            this.byteLength = byteLength;
+            this.instructionIndex = instructionIndex;
+            this.arrayLength = arrayLength;
+        }
+
+        @Override
+        protected JBBPAbstractField decode() {
+            final JBBPCompiledInstruction instruction = this.parser.getInstruction(this.instructionIndex);
+            final JBBPNamedFieldInfo name = instruction.getFieldInfo();
+            final JBBPBitInputStream in = this.source.makeRegionStream(this.position, this.byteLength);
+            try {
+                if (instruction.getType() == JBBPCompiler.CODE_STRUCT_START) {
+                    final JBBPFieldTreeSink sink = new JBBPFieldTreeSink(this.parser, null, ARRAYS_READ, null);
+                    final JBBPFieldStruct[] result = new JBBPFieldStruct[this.arrayLength];
+                    for (int i = 0; i < this.arrayLength; i++) {
+                        this.parser.walk(in, this.instructionIndex + 1, instruction.getPairedStructIndex(), null, null, sink);
+                        result[i] = sink.makeStruct(name);
+                    }
+                    return new JBBPFieldArrayStruct(name, result);
+                } else {
+                    return readArray(in, name, instruction.getType(), this.arrayLength, instruction.getByteOrder(), null);
+                }
+            } catch (IOException ex) {
+                throw new JBBPIOException("Can't decode lazy array", ex);
+            }
+        }
+    }
+}
@@ -16,30 +16,84 @@
 package com.igormaznitsa.jbbp;
 
 import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
 import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPEvaluationContext;
 import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
 import com.igormaznitsa.jbbp.exceptions.JBBPEvalException;
 import com.igormaznitsa.jbbp.exceptions.JBBPException;
 import com.igormaznitsa.jbbp.exceptions.JBBPTooManyFieldsFoundException;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
 import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldBit;
+import com.igormaznitsa.jbbp.model.JBBPFieldBoolean;
+import com.igormaznitsa.jbbp.model.JBBPFieldByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldLong;
+import com.igormaznitsa.jbbp.model.JBBPFieldShort;
+import com.igormaznitsa.jbbp.model.JBBPFieldUByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldUShort;
 import com.igormaznitsa.jbbp.model.JBBPNumericField;
 import com.igormaznitsa.jbbp.model.finder.JBBPFieldFinder;
 import com.igormaznitsa.jbbp.utils.JBBPUtils;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Implements a storage to keep named fields. it is not a thread-safe one
+ * Implements a storage to keep named fields. it is not a thread-safe one.
+ * If the map is created for a compiled block then fields of the block are kept
+ * in slots for their indexes in the named field array of the block (with their
+ * values as primitive long values and a presence bitmap), so that put and get
+ * operations don't need any hash lookup and map entries. Fields which don't
+ * belong to the block are kept in an inside hash map. Search operations see
+ * fields of the block in their compiled order before other fields.
  *
  * @since 1.0
  */
-public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
+public final class JBBPNamedNumericFieldMap extends JBBPEvaluationContext implements JBBPFieldFinder {
 
     /**
-     * Inside map to get numeric fields for their name field descriptors.
+     * Inside map to get numeric fields for their name field descriptors, in
+     * slot mode it contains only fields which don't belong to the compiled
+     * block and it is created lazily.
      */
-    private final Map<JBBPNamedFieldInfo, JBBPNumericField> fieldMap;
+    private Map<JBBPNamedFieldInfo, JBBPNumericField> fieldMap;
+    /**
+     * The Compiled block which named fields are kept in slots, null if the map
+     * works without slots.
+     */
+    private final JBBPCompiledBlock slotBlock;
+    /**
+     * Named fields of the slot block.
+     */
+    private final JBBPNamedFieldInfo[] slotNames;
+    /**
+     * Fields placed into slots.
+     */
+    private final JBBPNumericField[] slotFields;
+    /**
+     * Long values of fields placed into slots.
+     */
+    private final long[] slotValues;
+    /**
+     * Field types of slots filled only by values, they are used to make field
+     * objects on demand.
+     */
+    private final byte[] slotTypes;
+    /**
+     * Bit widths of bit field slots filled only by values.
+     */
+    private final byte[] slotBitWidths;
+    /**
+     * Bitmap of filled slots.
+     */
+    private final long[] slotPresence;
+    /**
+     * Number of filled slots.
+     */
+    private int slotCounter;
     /**
      * Defined external value provider, it can be null.
      */
@@ -60,6 +114,219 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
     public JBBPNamedNumericFieldMap(final JBBPExternalValueProvider externalValueProvider) {
         this.fieldMap = new LinkedHashMap<JBBPNamedFieldInfo, JBBPNumericField>();
         this.externalValueProvider = externalValueProvider;
+        this.slotBlock = null;
+        this.slotNames = null;
+        this.slotFields = null;
+        this.slotValues = null;
+        this.slotTypes = null;
+        this.slotBitWidths = null;
+        this.slotPresence = null;
+    }
+
+    /**
+     * A Constructor of a map which keeps named fields of a compiled block in
+     * slots sized by the named field array of the block.
+     *
+     * @param externalValueProvider an external value provider, it can be null
+     * @param compiledBlock         a compiled block which fields will be placed
+     *                              into slots, must not be null
+     * @since 1.3.0
+     */
+    public JBBPNamedNumericFieldMap(final JBBPExternalValueProvider externalValueProvider, final JBBPCompiledBlock compiledBlock) {
+        JBBPUtils.assertNotNull(compiledBlock, "Compiled block must not be null");
+        this.fieldMap = null;
+        this.externalValueProvider = externalValueProvider;
+        this.slotBlock = compiledBlock;
+        this.slotNames = compiledBlock.getNamedFields();
+        this.slotFields = new JBBPNumericField[this.slotNames.length];
+        this.slotValues = new long[this.slotNames.length];
+        this.slotTypes = new byte[this.slotNames.length];
+        this.slotBitWidths = new byte[this.slotNames.length];
+        this.slotPresence = new long[(this.slotNames.length + 63) >>> 6];
+    }
+
+    /**
+     * Find slot index for a field name info.
+     *
+     * @param nameInfo the field name info, must not be null
+     * @return the slot index or -1 if there is not any slot for the info
+     */
+    private int findSlot(final JBBPNamedFieldInfo nameInfo) {
+        if (this.slotBlock == null) {
+            return -1;
+        }
+        final int index = this.slotBlock.findNamedFieldIndexForOffset(nameInfo.getFieldOffsetInCompiledBlock());
+        return index >= 0 && (this.slotNames[index] == nameInfo || this.slotNames[index].equals(nameInfo)) ? index : -1;
+    }
+
+    private boolean isSlotFilled(final int index) {
+        return (this.slotPresence[index >>> 6] & (1L << index)) != 0L;
+    }
+
+    private void markSlotFilled(final int index) {
+        final long mask = 1L << index;
+        final int bitmapIndex = index >>> 6;
+        if ((this.slotPresence[bitmapIndex] & mask) == 0L) {
+            this.slotPresence[bitmapIndex] |= mask;
+            this.slotCounter++;
+        }
+    }
+
+    /**
+     * Get field object of a filled slot, the object is made if the slot
+     * contains only value.
+     *
+     * @param index index of a filled slot
+     * @return the field object, must not be null
+     */
+    private JBBPNumericField getSlotField(final int index) {
+        JBBPNumericField result = this.slotFields[index];
+        if (result == null) {
+            final int type = this.slotTypes[index];
+            final JBBPBitNumber bitNumber = type == JBBPCompiler.CODE_BIT ? JBBPBitNumber.decode(this.slotBitWidths[index]) : null;
+            result = makeField(this.slotNames[index], type, this.slotValues[index], bitNumber);
+            this.slotFields[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Make a field object for a value.
+     *
+     * @param nameInfo  the field name info, must not be null
+     * @param fieldType the field type, one of JBBPCompiler.CODE_BIT, CODE_BOOL, CODE_BYTE, CODE_UBYTE, CODE_SHORT, CODE_USHORT, CODE_INT, CODE_LONG
+     * @param value     the value
+     * @param bitNumber number of bits of a bit field, it is ignored for other types
+     * @return the field object, must not be null
+     */
+    static JBBPNumericField makeField(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long value, final JBBPBitNumber bitNumber) {
+        switch (fieldType) {
+            case JBBPCompiler.CODE_BIT:
+                return new JBBPFieldBit(nameInfo, (int) value, bitNumber);
+            case JBBPCompiler.CODE_BOOL:
+                return new JBBPFieldBoolean(nameInfo, value != 0L);
+            case JBBPCompiler.CODE_BYTE:
+                return new JBBPFieldByte(nameInfo, (byte) value);
+            case JBBPCompiler.CODE_UBYTE:
+                return new JBBPFieldUByte(nameInfo, (byte) value);
+            case JBBPCompiler.CODE_SHORT:
+                return new JBBPFieldShort(nameInfo, (short) value);
+            case JBBPCompiler.CODE_USHORT:
+                return new JBBPFieldUShort(nameInfo, (short) value);
+            case JBBPCompiler.CODE_INT:
+                return new JBBPFieldInt(nameInfo, (int) value);
+            case JBBPCompiler.CODE_LONG:
+                return new JBBPFieldLong(nameInfo, value);
+            default:
+                throw new Error("Unexpected field type, contact developer [" + fieldType + ']');
+        }
+    }
+
+    /**
+     * Put a value of a primitive field. If there is a slot for the field then
+     * only value is saved and the field object will be made on demand.
+     *
+     * @param nameInfo  the field name info, must not be null
+     * @param fieldType the field type, one of JBBPCompiler.CODE_BIT, CODE_BOOL, CODE_BYTE, CODE_UBYTE, CODE_SHORT, CODE_USHORT, CODE_INT, CODE_LONG
+     * @param value     the value of the field
+     * @param bitNumber number of bits of a bit field, it is ignored for other types
+     * @since 1.3.0
+     */
+    void putValue(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long value, final JBBPBitNumber bitNumber) {
+        final int slot = findSlot(nameInfo);
+        if (slot >= 0) {
+            markSlotFilled(slot);
+            this.slotFields[slot] = null;
+            this.slotTypes[slot] = (byte) fieldType;
+            if (fieldType == JBBPCompiler.CODE_BIT) {
+                this.slotBitWidths[slot] = (byte) bitNumber.getBitNumber();
+            }
+            this.slotValues[slot] = value;
+        } else {
+            this.putField(makeField(nameInfo, fieldType, value, bitNumber));
+        }
+    }
+
+    /**
+     * Check that a field type matches search criteria.
+     *
+     * @param field a field to be checked, must not be null
+     * @param type  type of the field, null if any type is allowed
+     * @return true if the field matches the type, false otherwise
+     */
+    private static boolean isTypeMatched(final JBBPNumericField field, final Class<?> type) {
+        return type == null || type.isAssignableFrom(field.getClass());
+    }
+
+    /**
+     * Check that a field name info matches search criteria.
+     *
+     * @param info           the field name info, must not be null
+     * @param normalizedName normalized field name, null if any name is allowed
+     * @param normalizedPath normalized field path, null if any path is allowed
+     * @return true if the info matches the name and the path, false otherwise
+     */
+    private static boolean isNameMatched(final JBBPNamedFieldInfo info, final String normalizedName, final String normalizedPath) {
+        return (normalizedName == null || normalizedName.equals(info.getFieldName())) && (normalizedPath == null || normalizedPath.equals(info.getFieldPath()));
+    }
+
+    /**
+     * Find the first field in the search order which matches criteria. Slots
+     * are checked by their name info before their field objects are made.
+     *
+     * @param normalizedName normalized field name, null if any name is allowed
+     * @param normalizedPath normalized field path, null if any path is allowed
+     * @param type           type of the field, null if any type is allowed
+     * @return found field or null if not found
+     */
+    private JBBPNumericField findFirst(final String normalizedName, final String normalizedPath, final Class<?> type) {
+        if (this.slotBlock != null) {
+            for (int i = 0; i < this.slotFields.length; i++) {
+                if (isSlotFilled(i) && isNameMatched(this.slotNames[i], normalizedName, normalizedPath)) {
+                    final JBBPNumericField field = getSlotField(i);
+                    if (isTypeMatched(field, type)) {
+                        return field;
+                    }
+                }
+            }
+        }
+        if (this.fieldMap != null) {
+            for (final JBBPNumericField field : this.fieldMap.values()) {
+                if (isNameMatched(field.getNameInfo(), normalizedName, normalizedPath) && isTypeMatched(field, type)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that the map keeps fields of a compiled block in slots.
+     *
+     * @param compiledBlock a compiled block to be checked
+     * @return true if fields of the block are placed into slots, false otherwise
+     * @since 1.3.0
+     */
+    public boolean hasSlotsFor(final JBBPCompiledBlock compiledBlock) {
+        return this.slotBlock != null && this.slotBlock == compiledBlock;
+    }
+
+    /**
+     * Get integer value of a named field for its index in the named field array
+     * of a compiled block. If the map has slots for the block then the value is
+     * read directly from the slot.
+     *
+     * @param compiledBlock   the compiled block, must not be null
+     * @param namedFieldIndex index of the field in the named field array of the block
+     * @return the integer value of the field (low 32 bits of its long value)
+     * @throws NullPointerException if there is not any field for the index
+     * @since 1.3.0
+     */
+    public int getIntValue(final JBBPCompiledBlock compiledBlock, final int namedFieldIndex) {
+        if (this.slotBlock != null && compiledBlock == this.slotBlock && isSlotFilled(namedFieldIndex)) {
+            return (int) this.slotValues[namedFieldIndex];
+        }
+        return this.get(compiledBlock.getNamedFields()[namedFieldIndex]).getAsInt();
     }
 
     /**
@@ -78,7 +345,11 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
      * @return the found field or null if it is not found
      */
     public JBBPNumericField get(final JBBPNamedFieldInfo namedField) {
-        return this.fieldMap.get(namedField);
+        final int slot = findSlot(namedField);
+        if (slot >= 0) {
+            return isSlotFilled(slot) ? getSlotField(slot) : null;
+        }
+        return this.fieldMap == null ? null : this.fieldMap.get(namedField);
     }
 
     /**
@@ -93,7 +364,17 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
         JBBPUtils.assertNotNull(field, "Field must not be null");
         final JBBPNamedFieldInfo fieldName = field.getNameInfo();
         JBBPUtils.assertNotNull(fieldName, "Field name info must not be null");
-        this.fieldMap.put(fieldName, field);
+        final int slot = findSlot(fieldName);
+        if (slot >= 0) {
+            markSlotFilled(slot);
+            this.slotFields[slot] = field;
+            this.slotValues[slot] = field.getAsLong();
+        } else {
+            if (this.fieldMap == null) {
+                this.fieldMap = new LinkedHashMap<JBBPNamedFieldInfo, JBBPNumericField>();
+            }
+            this.fieldMap.put(fieldName, field);
+        }
     }
 
     /**
@@ -104,7 +385,18 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
      */
     public JBBPNumericField remove(final JBBPNamedFieldInfo nameInfo) {
         JBBPUtils.assertNotNull(nameInfo, "Name info must not be null");
-        return this.fieldMap.remove(nameInfo);
+        final int slot = findSlot(nameInfo);
+        if (slot >= 0) {
+            JBBPNumericField result = null;
+            if (isSlotFilled(slot)) {
+                result = getSlotField(slot);
+                this.slotPresence[slot >>> 6] &= ~(1L << slot);
+                this.slotFields[slot] = null;
+                this.slotCounter--;
+            }
+            return result;
+        }
+        return this.fieldMap == null ? null : this.fieldMap.remove(nameInfo);
     }
 
     /**
@@ -114,11 +406,19 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
      * @return found field or null if there is not any found for the offset
      */
     public JBBPNumericField findForFieldOffset(final int offset) {
+        if (this.slotBlock != null) {
+            final int slot = this.slotBlock.findNamedFieldIndexForOffset(offset);
+            if (slot >= 0 && isSlotFilled(slot)) {
+                return getSlotField(slot);
+            }
+        }
         JBBPNumericField result = null;
-        for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : fieldMap.entrySet()) {
-            if (f.getKey().getFieldOffsetInCompiledBlock() == offset) {
-                result = f.getValue();
-                break;
+        if (this.fieldMap != null) {
+            for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : this.fieldMap.entrySet()) {
+                if (f.getKey().getFieldOffsetInCompiledBlock() == offset) {
+                    result = f.getValue();
+                    break;
+                }
             }
         }
         return result;
@@ -127,142 +427,103 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
     @Override
     public <T extends JBBPAbstractField> T findFirstFieldForType(final Class<T> fieldType) {
         JBBPUtils.assertNotNull(fieldType, "Type must not be null");
-        T result = null;
-        for (final JBBPNumericField f : fieldMap.values()) {
-            if (fieldType.isAssignableFrom(f.getClass())) {
-                result = fieldType.cast(f);
-                break;
-            }
-        }
-        return result;
+        return fieldType.cast(findFirst(null, null, fieldType));
     }
 
     @Override
     public <T extends JBBPAbstractField> T findLastFieldForType(final Class<T> fieldType) {
         JBBPUtils.assertNotNull(fieldType, "Type must not be null");
-        T result = null;
-        for (final JBBPNumericField f : fieldMap.values()) {
-            if (fieldType == f.getClass()) {
-                result = fieldType.cast(f);
+        JBBPNumericField result = null;
+        if (this.slotBlock != null) {
+            for (int i = 0; i < this.slotFields.length; i++) {
+                if (isSlotFilled(i) && fieldType == getSlotField(i).getClass()) {
+                    result = getSlotField(i);
+                }
             }
         }
-        return result;
+        if (this.fieldMap != null) {
+            for (final JBBPNumericField f : this.fieldMap.values()) {
+                if (fieldType == f.getClass()) {
+                    result = f;
+                }
+            }
+        }
+        return fieldType.cast(result);
     }
 
     @Override
     public <T extends JBBPAbstractField> T findFieldForType(final Class<T> fieldType) {
         JBBPUtils.assertNotNull(fieldType, "Type must not be null");
         int count = 0;
-        T result = null;
-        for (final JBBPNumericField f : fieldMap.values()) {
-            if (fieldType == f.getClass()) {
-                result = fieldType.cast(f);
-                count++;
+        JBBPNumericField result = null;
+        if (this.slotBlock != null) {
+            for (int i = 0; i < this.slotFields.length; i++) {
+                if (isSlotFilled(i) && fieldType == getSlotField(i).getClass()) {
+                    result = getSlotField(i);
+                    count++;
+                }
+            }
+        }
+        if (this.fieldMap != null) {
+            for (final JBBPNumericField f : this.fieldMap.values()) {
+                if (fieldType == f.getClass()) {
+                    result = f;
+                    count++;
+                }
             }
         }
         if (count > 1) {
             throw new JBBPTooManyFieldsFoundException(count, "Too many fields detected", null, fieldType);
         }
-        return result;
+        return fieldType.cast(result);
     }
 
     @Override
     public <T extends JBBPAbstractField> T findFieldForNameAndType(final String fieldName, final Class<T> fieldType) {
         final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(fieldName);
         JBBPUtils.assertNotNull(fieldType, "Field type must not be null");
-
-        T result = null;
-
-        for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : fieldMap.entrySet()) {
-            if (normalizedName.equals(f.getKey().getFieldName()) && fieldType.isAssignableFrom(f.getValue().getClass())) {
-                result = fieldType.cast(f.getValue());
-                break;
-            }
-        }
-        return result;
+        return fieldType.cast(findFirst(normalizedName, null, fieldType));
     }
 
     @Override
     public <T extends JBBPAbstractField> T findFieldForPathAndType(final String fieldPath, final Class<T> fieldType) {
         final String normalizedPath = JBBPUtils.normalizeFieldNameOrPath(fieldPath);
         JBBPUtils.assertNotNull(fieldType, "Field type must not be null");
-
-        T result = null;
-
-        for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : fieldMap.entrySet()) {
-            if (normalizedPath.equals(f.getKey().getFieldPath()) && fieldType.isAssignableFrom(f.getValue().getClass())) {
-                result = fieldType.cast(f.getValue());
-                break;
-            }
-        }
-        return result;
+        return fieldType.cast(findFirst(null, normalizedPath, fieldType));
     }
 
     @Override
     public JBBPAbstractField findFieldForName(final String fieldName) {
-        final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(fieldName);
-
-        JBBPAbstractField result = null;
-
-        for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : fieldMap.entrySet()) {
-            if (normalizedName.equals(f.getKey().getFieldName())) {
-                result = (JBBPAbstractField) f.getValue();
-                break;
-            }
-        }
-        return result;
+        return (JBBPAbstractField) findFirst(JBBPUtils.normalizeFieldNameOrPath(fieldName), null, null);
     }
 
     @Override
     public JBBPAbstractField findFieldForPath(final String fieldPath) {
-        final String normalizedPath = JBBPUtils.normalizeFieldNameOrPath(fieldPath);
-
-        JBBPAbstractField result = null;
-
-        for (final Map.Entry<JBBPNamedFieldInfo, JBBPNumericField> f : fieldMap.entrySet()) {
-            if (normalizedPath.equals(f.getKey().getFieldPath())) {
-                result = (JBBPAbstractField) f.getValue();
-                break;
-            }
-        }
-        return result;
+        return (JBBPAbstractField) findFirst(null, JBBPUtils.normalizeFieldNameOrPath(fieldPath), null);
     }
 
     @Override
     public boolean nameExists(final String fieldName) {
-        final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(fieldName);
-
-        boolean result = false;
-
-        for (final JBBPNamedFieldInfo f : fieldMap.keySet()) {
-            if (normalizedName.equals(f.getFieldName())) {
-                result = true;
-                break;
-            }
-        }
-        return result;
+        return findFirst(JBBPUtils.normalizeFieldNameOrPath(fieldName), null, null) != null;
     }
 
     @Override
     public boolean pathExists(final String fieldPath) {
-        final String normalizedPath = JBBPUtils.normalizeFieldNameOrPath(fieldPath);
-
-        boolean result = false;
-
-        for (final JBBPNamedFieldInfo f : fieldMap.keySet()) {
-            if (normalizedPath.equals(f.getFieldPath())) {
-                result = true;
-                break;
-            }
-        }
-        return result;
+        return findFirst(null, JBBPUtils.normalizeFieldNameOrPath(fieldPath), null) != null;
     }
 
     /**
      * Clear the map.
      */
     public void clear() {
-        this.fieldMap.clear();
+        if (this.fieldMap != null) {
+            this.fieldMap.clear();
+        }
+        if (this.slotBlock != null) {
+            Arrays.fill(this.slotPresence, 0L);
+            Arrays.fill(this.slotFields, null);
+            this.slotCounter = 0;
+        }
     }
 
     /**
@@ -271,7 +532,7 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
      * @return true if the map is empty, false otherwise
      */
     public boolean isEmpty() {
-        return this.fieldMap.isEmpty();
+        return this.size() == 0;
     }
 
     /**
@@ -280,7 +541,7 @@ public final class JBBPNamedNumericFieldMap implements JBBPFieldFinder {
      * @return number of registered fields as integer
      */
     public int size() {
-        return this.fieldMap.size();
+        return this.slotCounter + (this.fieldMap == null ? 0 : this.fieldMap.size());
     }
 
     /**
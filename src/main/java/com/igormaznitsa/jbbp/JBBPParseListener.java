@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+
+/**
+ * Listener to get parsed data as events without building of the field tree,
+ * it is used by {@link JBBPParser#parse(java.io.InputStream, JBBPParseListener)}.
+ * All methods are empty by default, so a listener can override only needed
+ * ones. The Root structure is not reported.
+ * <p>
+ * Primitive values are reported with their field type, it is one of
+ * {@link JBBPCompiler#CODE_BIT}, {@link JBBPCompiler#CODE_BOOL},
+ * {@link JBBPCompiler#CODE_BYTE}, {@link JBBPCompiler#CODE_UBYTE},
+ * {@link JBBPCompiler#CODE_SHORT}, {@link JBBPCompiler#CODE_USHORT},
+ * {@link JBBPCompiler#CODE_INT} or {@link JBBPCompiler#CODE_LONG}. Values
+ * of arrays are reported by parts through buffers which are reused by the
+ * parser, so that a listener must copy data if it wants to keep them.
+ * Boolean values are reported as 1 or 0. Single values are reported as
+ * {@link com.igormaznitsa.jbbp.model.JBBPNumericField#getAsLong()} of the same
+ * field would return them, but array parts contain raw values in the form
+ * they are kept by array fields of the field tree (like signed bytes for ubyte
+ * arrays).
+ *
+ * @since 1.3.0
+ */
+public abstract class JBBPParseListener {
+
+    /**
+     * Called before fields of a structure.
+     *
+     * @param nameInfo the name info of the structure, it can be null for anonymous structure
+     */
+    public void onStructStart(final JBBPNamedFieldInfo nameInfo) {
+    }
+
+    /**
+     * Called after fields of a structure.
+     *
+     * @param nameInfo the name info of the structure, it can be null for anonymous structure
+     */
+    public void onStructEnd(final JBBPNamedFieldInfo nameInfo) {
+    }
+
+    /**
+     * Called before elements of a structure array, every element is reported
+     * as a structure.
+     *
+     * @param nameInfo the name info of the array, it can be null for anonymous array
+     * @param length   the number of elements, -1 if the array reads the whole stream
+     */
+    public void onStructArrayStart(final JBBPNamedFieldInfo nameInfo, final int length) {
+    }
+
+    /**
+     * Called after all elements of a structure array.
+     *
+     * @param nameInfo the name info of the array, it can be null for anonymous array
+     */
+    public void onStructArrayEnd(final JBBPNamedFieldInfo nameInfo) {
+    }
+
+    /**
+     * Called for a read primitive field.
+     *
+     * @param nameInfo  the name info of the field, it can be null for anonymous field
+     * @param fieldType the type of the field
+     * @param value     the value of the field
+     */
+    public void onValue(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long value) {
+    }
+
+    /**
+     * Called before values of a primitive array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     * @param length    the number of elements, -1 if the array reads the whole stream
+     */
+    public void onArrayStart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int length) {
+    }
+
+    /**
+     * Called for a part of a bit, bool, byte or ubyte array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     * @param buffer    the buffer contains values, must not be kept by the listener
+     * @param length    the number of values in the buffer
+     */
+    public void onByteArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final byte[] buffer, final int length) {
+    }
+
+    /**
+     * Called for a part of a short or ushort array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     * @param buffer    the buffer contains values, must not be kept by the listener
+     * @param length    the number of values in the buffer
+     */
+    public void onShortArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final short[] buffer, final int length) {
+    }
+
+    /**
+     * Called for a part of an int array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     * @param buffer    the buffer contains values, must not be kept by the listener
+     * @param length    the number of values in the buffer
+     */
+    public void onIntArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int[] buffer, final int length) {
+    }
+
+    /**
+     * Called for a part of a long array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     * @param buffer    the buffer contains values, must not be kept by the listener
+     * @param length    the number of values in the buffer
+     */
+    public void onLongArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long[] buffer, final int length) {
+    }
+
+    /**
+     * Called after all values of a primitive array.
+     *
+     * @param nameInfo  the name info of the array, it can be null for anonymous array
+     * @param fieldType the type of array elements
+     */
+    public void onArrayEnd(final JBBPNamedFieldInfo nameInfo, final int fieldType) {
+    }
+
+    /**
+     * Called for fields made by var field processors and custom type field
+     * processors, they are reported as they are returned by the processors.
+     *
+     * @param field the read field, must not be null
+     */
+    public void onField(final JBBPAbstractField field) {
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Sink which reports read data to a parse listener without making of field
+ * objects, array values are reported by parts through buffers which are made
+ * on demand once for a parse call.
+ *
+ * @see JBBPParseListener
+ * @since 1.3.0
+ */
+final class JBBPParseListenerSink implements JBBPParserSink {
+
+    /**
+     * Size of buffers to report array parts.
+     */
+    private static final int BUFFER_SIZE = 256;
+
+    private final JBBPParseListener listener;
+
+    private byte[] bytes;
+    private short[] shorts;
+    private int[] ints;
+    private long[] longs;
+
+    /**
+     * Constructor.
+     *
+     * @param listener the listener to get data, must not be null
+     */
+    JBBPParseListenerSink(final JBBPParseListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean processField(final JBBPBitInputStream inStream, final int instructionIndex, final int arrayLength, final boolean wholeStreamArray) {
+        return false;
+    }
+
+    @Override
+    public void onValue(final JBBPNamedFieldInfo name, final int type, final long value, final JBBPBitNumber bitNumber) {
+        this.listener.onValue(name, type, value);
+    }
+
+    @Override
+    public void onArray(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo name, final int type, final int length, final JBBPByteOrder byteOrder, final JBBPBitNumber bitNumber) throws IOException {
+        this.listener.onArrayStart(name, type, length);
+        switch (type) {
+            case JBBPCompiler.CODE_BIT: {
+                this.readByteArray(inStream, name, type, length, bitNumber);
+            }
+            break;
+            case JBBPCompiler.CODE_BOOL:
+            case JBBPCompiler.CODE_BYTE:
+            case JBBPCompiler.CODE_UBYTE: {
+                if (type != JBBPCompiler.CODE_BOOL && byteOrder == JBBPByteOrder.LITTLE_ENDIAN) {
+                    // the whole array is reversed so that it can't be reported by parts
+                    final byte[] array = inStream.readByteArray(length, byteOrder);
+                    this.listener.onByteArrayPart(name, type, array, array.length);
+                } else {
+                    this.readByteArray(inStream, name, type, length, null);
+                }
+            }
+            break;
+            case JBBPCompiler.CODE_SHORT:
+            case JBBPCompiler.CODE_USHORT: {
+                if (this.shorts == null) {
+                    this.shorts = new short[BUFFER_SIZE];
+                }
+                final short[] buffer = this.shorts;
+                int left = length;
+                while (left != 0 && (left > 0 || inStream.hasAvailableData())) {
+                    final int part = left < 0 ? buffer.length : Math.min(left, buffer.length);
+                    int counter = 0;
+                    while (counter < part && (left > 0 || inStream.hasAvailableData())) {
+                        buffer[counter++] = (short) inStream.readUnsignedShort(byteOrder);
+                    }
+                    if (left > 0) {
+                        left -= counter;
+                    }
+                    this.listener.onShortArrayPart(name, type, buffer, counter);
+                }
+            }
+            break;
+            case JBBPCompiler.CODE_INT: {
+                if (this.ints == null) {
+                    this.ints = new int[BUFFER_SIZE];
+                }
+                final int[] buffer = this.ints;
+                int left = length;
+                while (left != 0 && (left > 0 || inStream.hasAvailableData())) {
+                    final int part = left < 0 ? buffer.length : Math.min(left, buffer.length);
+                    int counter = 0;
+                    while (counter < part && (left > 0 || inStream.hasAvailableData())) {
+                        buffer[counter++] = inStream.readInt(byteOrder);
+                    }
+                    if (left > 0) {
+                        left -= counter;
+                    }
+                    this.listener.onIntArrayPart(name, type, buffer, counter);
+                }
+            }
+            break;
+            case JBBPCompiler.CODE_LONG: {
+                if (this.longs == null) {
+                    this.longs = new long[BUFFER_SIZE];
+                }
+                final long[] buffer = this.longs;
+                int left = length;
+                while (left != 0 && (left > 0 || inStream.hasAvailableData())) {
+                    final int part = left < 0 ? buffer.length : Math.min(left, buffer.length);
+                    int counter = 0;
+                    while (counter < part && (left > 0 || inStream.hasAvailableData())) {
+                        buffer[counter++] = inStream.readLong(byteOrder);
+                    }
+                    if (left > 0) {
+                        left -= counter;
+                    }
+                    this.listener.onLongArrayPart(name, type, buffer, counter);
+                }
+            }
+            break;
+            default:
+                throw new Error("Unexpected array type, contact developer! [" + type + ']');
+        }
+        this.listener.onArrayEnd(name, type);
+    }
+
+    /**
+     * Read a bit, bool, byte or ubyte array and report it by parts.
+     *
+     * @param inStream  the input stream, must not be null
+     * @param name      the array name info, it can be null
+     * @param type      the array element type
+     * @param length    the array length, negative one means the whole stream
+     * @param bitNumber the bit number for bit arrays, null for other arrays
+     * @throws IOException it will be thrown for transport errors and EOF
+     */
+    private void readByteArray(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo name, final int type, final int length, final JBBPBitNumber bitNumber) throws IOException {
+        if (this.bytes == null) {
+            this.bytes = new byte[BUFFER_SIZE];
+        }
+        final byte[] buffer = this.bytes;
+        int read = 0;
+        while (length < 0 || read < length) {
+            final int part = length < 0 ? buffer.length : Math.min(length - read, buffer.length);
+            int counter = 0;
+            while (counter < part) {
+                final int next = bitNumber == null ? inStream.read() : inStream.readBits(bitNumber);
+                if (next < 0) {
+                    break;
+                }
+                buffer[counter++] = type == JBBPCompiler.CODE_BOOL ? (byte) (next == 0 ? 0 : 1) : (byte) next;
+            }
+            read += counter;
+            if (counter > 0) {
+                this.listener.onByteArrayPart(name, type, buffer, counter);
+            }
+            if (counter < part) {
+                if (length < 0) {
+                    break;
+                }
+                throw new EOFException("Have read only " + read + " item(s) instead of " + length);
+            }
+        }
+    }
+
+    @Override
+    public void onField(final JBBPAbstractField field) {
+        this.listener.onField(field);
+    }
+
+    @Override
+    public void onStructStart(final JBBPNamedFieldInfo name) {
+        this.listener.onStructStart(name);
+    }
+
+    @Override
+    public void onStructEnd(final JBBPNamedFieldInfo name) {
+        this.listener.onStructEnd(name);
+    }
+
+    @Override
+    public void onStructArrayStart(final JBBPNamedFieldInfo name, final int length) {
+        this.listener.onStructArrayStart(name, length);
+    }
+
+    @Override
+    public void onStructArrayEnd(final JBBPNamedFieldInfo name) {
+        this.listener.onStructArrayEnd(name);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+
+/**
+ * Result of a parsing call. It contains the parsed root structure and the state
+ * of the call which is not kept by the parser instance, so that the same parser
+ * can be used by any number of threads in the same time.
+ *
+ * @see JBBPParser#parseWithResult(java.io.InputStream)
+ * @since 1.3.0
+ */
+public final class JBBPParseResult {
+
+    /**
+     * The Parsed root structure.
+     */
+    private final JBBPFieldStruct root;
+    /**
+     * The Stream byte counter value before parsing.
+     */
+    private final long startStreamByteCounter;
+    /**
+     * The Stream byte counter value after parsing.
+     */
+    private final long finalStreamByteCounter;
+    /**
+     * The Named numeric field map used during parsing, can be null.
+     */
+    private final JBBPNamedNumericFieldMap namedNumericFieldMap;
+
+    /**
+     * Constructor.
+     *
+     * @param root                   the parsed root structure, must not be null
+     * @param startStreamByteCounter the stream byte counter before parsing
+     * @param finalStreamByteCounter the stream byte counter after parsing
+     * @param namedNumericFieldMap   the named numeric field map, can be null
+     */
+    JBBPParseResult(final JBBPFieldStruct root, final long startStreamByteCounter, final long finalStreamByteCounter, final JBBPNamedNumericFieldMap namedNumericFieldMap) {
+        this.root = root;
+        this.startStreamByteCounter = startStreamByteCounter;
+        this.finalStreamByteCounter = finalStreamByteCounter;
+        this.namedNumericFieldMap = namedNumericFieldMap;
+    }
+
+    /**
+     * Get the parsed root structure.
+     *
+     * @return the root structure, must not be null
+     */
+    public JBBPFieldStruct getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Get the stream byte counter value before parsing.
+     *
+     * @return the start byte counter value
+     */
+    public long getStartStreamByteCounter() {
+        return this.startStreamByteCounter;
+    }
+
+    /**
+     * Get the stream byte counter value just after parsing. NB: It is
+     * appropriate one only if the parsing didn't make any counter reset operation.
+     *
+     * @return the final byte counter value
+     */
+    public long getFinalStreamByteCounter() {
+        return this.finalStreamByteCounter;
+    }
+
+    /**
+     * Get number of bytes read during parsing. NB: It is appropriate one only if
+     * the parsing didn't make any counter reset operation.
+     *
+     * @return number of read bytes
+     */
+    public long getReadBytes() {
+        return this.finalStreamByteCounter - this.startStreamByteCounter;
+    }
+
+    /**
+     * Get the named numeric field map filled during parsing.
+     *
+     * @return the map, it is null if the script doesn't contain neither
+     * calculated arrays nor var fields
+     */
+    public JBBPNamedNumericFieldMap getNamedNumericFieldMap() {
+        return this.namedNumericFieldMap;
+    }
+}
@@ -16,30 +16,45 @@
 package com.igormaznitsa.jbbp;
 
 import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlockCache;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledInstruction;
 import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
 import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.conversion.CompiledBlockLayoutAnalyzer;
+import com.igormaznitsa.jbbp.compiler.conversion.ParserToByteCodeConverter;
 import com.igormaznitsa.jbbp.compiler.conversion.ParserToJavaClassConverter;
 import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
 import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
 import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
 import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
 import com.igormaznitsa.jbbp.io.JBBPBitNumber;
 import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteBufferBitInputStream;
 import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.io.JBBPMappedFileBitInputStream;
+import com.igormaznitsa.jbbp.mapper.JBBPMappingBinding;
 import com.igormaznitsa.jbbp.model.*;
-import com.igormaznitsa.jbbp.utils.JBBPIntCounter;
 import com.igormaznitsa.jbbp.utils.JBBPUtils;
 
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * the Main class allows a user to parse a binary stream or block for predefined
- * and precompiled script.
+ * and precompiled script. A Prepared parser can be shared between threads if
+ * its custom field type processor is a thread-safe one, the state of a
+ * parsing call is provided through {@link JBBPParseResult}.
  *
  * @since 1.0
  */
@@ -49,10 +64,6 @@ public final class JBBPParser {
      * Flag shows that if EOF and not whole packet has been read then remaining fields will be just ignored without exception.
      */
     public static final int FLAG_SKIP_REMAINING_FIELDS_IF_EOF = 1;
-    /**
-     * Empty structure array
-     */
-    private static final JBBPFieldStruct[] EMPTY_STRUCT_ARRAY = new JBBPFieldStruct[0];
     /**
      * the Compiled block contains compiled script and extra information.
      */
@@ -70,12 +81,36 @@ public final class JBBPParser {
      */
     private final JBBPCustomFieldTypeProcessor customFieldTypeProcessor;
     /**
-     * The Variable contains the last parsing counter value.
+     * Pre-decoded instruction table of the compiled block.
+     */
+    private final JBBPCompiledInstruction[] instructions;
+    /**
+     * The Variable contains the counter value of the last call of the legacy
+     * parse methods returning the root structure, it is kept only for
+     * compatibility and is written neither by parsing nor by parseWithResult,
+     * listener, lazy, view and projection calls.
+     */
+    private volatile long finalStreamByteCounter;
+    /**
+     * Fixed byte sizes of structure bodies for structure start instruction
+     * indexes, -1 for structures which size is not fixed and other instructions.
+     */
+    private final int[] fixedStructSizes;
+    /**
+     * Static layout of the compiled block.
      */
-    private long finalStreamByteCounter;
+    private final CompiledBlockLayoutAnalyzer layout;
+    /**
+     * Bindings of mapping classes for direct parsing into objects.
+     */
+    private final ConcurrentMap<Class<?>, JBBPMappingBinding> mappingBindings = new ConcurrentHashMap<Class<?>, JBBPMappingBinding>();
+    /**
+     * Parser with generated code, it is made by request.
+     */
+    private volatile JBBPCompiledParser compiledParser;
 
     /**
-     * Constructor.
+     * Constructor, the compiled block is taken from the shared compiled block cache.
      *
      * @param source                   the source script to parse binary blocks and streams, must
      *                                 not be null
@@ -85,13 +120,48 @@ public final class JBBPParser {
      * @see #FLAG_SKIP_REMAINING_FIELDS_IF_EOF
      */
     private JBBPParser(final String source, final JBBPBitOrder bitOrder, final JBBPCustomFieldTypeProcessor customFieldTypeProcessor, final int flags) {
-        JBBPUtils.assertNotNull(source, "Script is null");
+        this(compileScript(source, customFieldTypeProcessor), bitOrder, customFieldTypeProcessor, flags);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param compiledBlock            the compiled block to be used for parsing, must not be null
+     * @param bitOrder                 the bit order for bit reading operations, must not be null
+     * @param customFieldTypeProcessor custom field type processor for the parser instance, it can be null
+     * @param flags                    special flags for parsing process
+     * @see #FLAG_SKIP_REMAINING_FIELDS_IF_EOF
+     */
+    private JBBPParser(final JBBPCompiledBlock compiledBlock, final JBBPBitOrder bitOrder, final JBBPCustomFieldTypeProcessor customFieldTypeProcessor, final int flags) {
+        JBBPUtils.assertNotNull(compiledBlock, "Compiled block is null");
         JBBPUtils.assertNotNull(bitOrder, "Bit order is null");
+        if (compiledBlock.getCustomTypeFields().length > 0) {
+            JBBPUtils.assertNotNull(customFieldTypeProcessor, "The Compiled block contains custom type fields, a custom field type processor must be provided");
+        }
         this.customFieldTypeProcessor = customFieldTypeProcessor;
         this.bitOrder = bitOrder;
         this.flags = flags;
+        this.compiledBlock = compiledBlock;
+        this.instructions = this.compiledBlock.getInstructions();
+        this.layout = CompiledBlockLayoutAnalyzer.analyze(this.compiledBlock);
+        this.fixedStructSizes = new int[this.instructions.length];
+        for (int i = 0; i < this.instructions.length; i++) {
+            final long bitSize = this.instructions[i].getType() == JBBPCompiler.CODE_STRUCT_START ? this.layout.getStructureElementBitSize(this.instructions[i].getOffset()) : CompiledBlockLayoutAnalyzer.UNKNOWN;
+            this.fixedStructSizes[i] = bitSize < 0L || (bitSize & 7L) != 0L || (bitSize >> 3) > Integer.MAX_VALUE ? -1 : (int) (bitSize >> 3);
+        }
+    }
+
+    /**
+     * Compile a script through the shared compiled block cache.
+     *
+     * @param source                   the source script, must not be null
+     * @param customFieldTypeProcessor custom field type processor, it can be null
+     * @return the compiled block, must not be null
+     */
+    private static JBBPCompiledBlock compileScript(final String source, final JBBPCustomFieldTypeProcessor customFieldTypeProcessor) {
+        JBBPUtils.assertNotNull(source, "Script is null");
         try {
-            this.compiledBlock = JBBPCompiler.compile(source, customFieldTypeProcessor);
+            return JBBPCompiledBlockCache.getInstance().compile(source, customFieldTypeProcessor);
         } catch (IOException ex) {
             throw new RuntimeException("Can't compile script for unexpected IOException", ex);
         }
@@ -157,6 +227,36 @@ public final class JBBPParser {
         return new JBBPParser(script, bitOrder, customFieldTypeProcessor, flags);
     }
 
+    /**
+     * Prepare a parser for an already compiled block, for instance loaded from an
+     * exported form, without any script compilation.
+     *
+     * @param compiledBlock            a compiled block, it must not be null
+     * @param bitOrder                 the bit order for reading operations, it must not be null
+     * @param customFieldTypeProcessor custom field type processor, it can be null
+     *                                 only if the block doesn't contain custom type fields
+     * @param flags                    special flags for parsing
+     * @return the prepared parser for the compiled block
+     * @see JBBPCompiledBlock#readFrom(InputStream)
+     * @since 1.3.0
+     */
+    public static JBBPParser prepare(final JBBPCompiledBlock compiledBlock, final JBBPBitOrder bitOrder, final JBBPCustomFieldTypeProcessor customFieldTypeProcessor, final int flags) {
+        return new JBBPParser(compiledBlock, bitOrder, customFieldTypeProcessor, flags);
+    }
+
+    /**
+     * Prepare a parser for an already compiled block with default bit order (LSB0)
+     * use, for instance loaded from an exported form, without any script compilation.
+     *
+     * @param compiledBlock a compiled block, it must not be null
+     * @return the prepared parser for the compiled block
+     * @see JBBPCompiledBlock#readFrom(InputStream)
+     * @since 1.3.0
+     */
+    public static JBBPParser prepare(final JBBPCompiledBlock compiledBlock) {
+        return JBBPParser.prepare(compiledBlock, JBBPBitOrder.LSB0, null, 0);
+    }
+
     /**
      * Prepare a parser for a script with default bit order (LSB0) use.
      *
@@ -198,309 +298,238 @@ public final class JBBPParser {
     }
 
     /**
-     * Inside method to parse a structure.
+     * Get an instruction of the pre-decoded instruction table.
+     *
+     * @param index the instruction index
+     * @return the instruction, must not be null
+     */
+    JBBPCompiledInstruction getInstruction(final int index) {
+        return this.instructions[index];
+    }
+
+    /**
+     * Get fixed byte size of a structure body.
+     *
+     * @param structIndex index of the structure start instruction
+     * @return the size in bytes or -1 if the size is not fixed
+     */
+    int getFixedStructSize(final int structIndex) {
+        return this.fixedStructSizes[structIndex];
+    }
+
+    /**
+     * Make the named numeric field map for a parse call if the script needs it.
+     *
+     * @param varFieldProcessor     a var field processor, it must not be null if the script contains var fields
+     * @param externalValueProvider an external value provider, it can be null
+     * @return the map or null if the script doesn't use field values
+     */
+    private JBBPNamedNumericFieldMap makeFieldMap(final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) {
+        if (this.compiledBlock.hasVarFields()) {
+            JBBPUtils.assertNotNull(varFieldProcessor, "The Script contains VAR fields, a var field processor must be provided");
+        }
+        if (this.compiledBlock.hasEvaluatedSizeArrays() || this.compiledBlock.hasVarFields()) {
+            return new JBBPNamedNumericFieldMap(externalValueProvider, this.compiledBlock);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Read a single primitive value.
      *
-     * @param inStream                      the input stream, must not be null
-     * @param positionAtCompiledBlock       the current position in the compiled script
-     *                                      block
-     * @param varFieldProcessor             a processor to process var fields, it can be null
-     *                                      but it will thrown NPE if a var field is met
-     * @param namedNumericFieldMap          the named numeric field map
-     * @param positionAtNamedFieldList      the current position at the named field
-     *                                      list
-     * @param positionAtVarLengthProcessors the current position at the variable
-     *                                      array length processor list
-     * @param skipStructureFields           the flag shows that content of fields must be
-     *                                      skipped because the structure is skipped
-     * @return list of read fields for the structure
+     * @param inStream  the input stream, must not be null
+     * @param type      the field type
+     * @param byteOrder the byte order, must not be null
+     * @return the value as it is returned by the numeric field
      * @throws IOException it will be thrown for transport errors
      */
-    private List<JBBPAbstractField> parseStruct(final JBBPBitInputStream inStream, final JBBPIntCounter positionAtCompiledBlock, final JBBPVarFieldProcessor varFieldProcessor, final JBBPNamedNumericFieldMap namedNumericFieldMap, final JBBPIntCounter positionAtNamedFieldList, final JBBPIntCounter positionAtVarLengthProcessors, final boolean skipStructureFields) throws IOException {
-        final List<JBBPAbstractField> structureFields = skipStructureFields ? null : new ArrayList<JBBPAbstractField>();
-        final byte[] compiled = this.compiledBlock.getCompiledData();
+    private static long readValue(final JBBPBitInputStream inStream, final int type, final JBBPByteOrder byteOrder) throws IOException {
+        switch (type) {
+            case JBBPCompiler.CODE_BOOL:
+                return inStream.readBoolean() ? 1L : 0L;
+            case JBBPCompiler.CODE_BYTE:
+                return (byte) inStream.readByte();
+            case JBBPCompiler.CODE_UBYTE:
+                return inStream.readByte() & 0xFF;
+            case JBBPCompiler.CODE_SHORT:
+                return (short) inStream.readUnsignedShort(byteOrder);
+            case JBBPCompiler.CODE_USHORT:
+                return inStream.readUnsignedShort(byteOrder);
+            case JBBPCompiler.CODE_INT:
+                return inStream.readInt(byteOrder);
+            case JBBPCompiler.CODE_LONG:
+                return inStream.readLong(byteOrder);
+            default:
+                throw new Error("Unexpected value type, contact developer! [" + type + ']');
+        }
+    }
 
-        boolean endStructureNotMet = true;
+    /**
+     * Walk through a range of instructions, read data and report them to a
+     * sink. It is the only interpreter of the instruction table, the field tree
+     * and parse listener events are made by sinks.
+     *
+     * @param inStream             the input stream, must not be null
+     * @param startInstruction     index of the first instruction of the range
+     * @param endInstruction       index of the instruction after the range
+     * @param varFieldProcessor    a processor to process var fields, it can be null
+     *                             but it will thrown NPE if a var field is met
+     * @param namedNumericFieldMap the named numeric field map, it can be null
+     * @param sink                 the sink to get read data, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    void walk(final JBBPBitInputStream inStream, final int startInstruction, final int endInstruction, final JBBPVarFieldProcessor varFieldProcessor, final JBBPNamedNumericFieldMap namedNumericFieldMap, final JBBPParserSink sink) throws IOException {
+        int index = startInstruction;
 
-        while (endStructureNotMet && positionAtCompiledBlock.get() < compiled.length) {
+        while (index < endInstruction) {
             if (!inStream.hasAvailableData() && (flags & FLAG_SKIP_REMAINING_FIELDS_IF_EOF) != 0) {
                 // Break reading because the ignore flag for EOF has been set
                 break;
             }
 
-            final int c = compiled[positionAtCompiledBlock.getAndIncrement()] & 0xFF;
-            final boolean wideCode = (c & JBBPCompiler.FLAG_WIDE) != 0;
-            final int ec = wideCode ? compiled[positionAtCompiledBlock.getAndIncrement()] & 0xFF : 0;
-            final boolean extraFieldNumAsExpr = (ec & JBBPCompiler.EXT_FLAG_EXTRA_AS_EXPRESSION) != 0;
-            final int code = (ec << 8) | c;
+            final int instructionIndex = index++;
+            final JBBPCompiledInstruction instruction = this.instructions[instructionIndex];
+            final int type = instruction.getType();
+            if (type == JBBPCompiler.CODE_STRUCT_START) {
+                // continue after the structure end
+                index = instruction.getPairedStructIndex() + 1;
+            }
 
-            final JBBPNamedFieldInfo name = (code & JBBPCompiler.FLAG_NAMED) == 0 ? null : compiledBlock.getNamedFields()[positionAtNamedFieldList.getAndIncrement()];
-            final JBBPByteOrder byteOrder = (code & JBBPCompiler.FLAG_LITTLE_ENDIAN) == 0 ? JBBPByteOrder.BIG_ENDIAN : JBBPByteOrder.LITTLE_ENDIAN;
+            final JBBPNamedFieldInfo name = instruction.getFieldInfo();
+            final JBBPByteOrder byteOrder = instruction.getByteOrder();
 
-            final boolean resultNotIgnored = !skipStructureFields;
+            final JBBPIntegerValueEvaluator extraValueEvaluator = instruction.getExtraValueEvaluator();
+            final int extraFieldNum = extraValueEvaluator == null ? instruction.getExtraValue() : extraValueEvaluator.eval(inStream, instruction.getEvaluatorOffset(), this.compiledBlock, namedNumericFieldMap);
 
-            final int extraFieldNumExprResult;
-            if (extraFieldNumAsExpr) {
-                final JBBPIntegerValueEvaluator evaluator = this.compiledBlock.getArraySizeEvaluators()[positionAtVarLengthProcessors.getAndIncrement()];
-                extraFieldNumExprResult = resultNotIgnored ? evaluator.eval(inStream, positionAtCompiledBlock.get(), this.compiledBlock, namedNumericFieldMap) : 0;
+            final boolean wholeStreamArray = instruction.isWholeStreamArray();
+            final int arrayLength;
+            final JBBPIntegerValueEvaluator arraySizeEvaluator = instruction.getArraySizeEvaluator();
+            if (arraySizeEvaluator == null) {
+                arrayLength = instruction.getArraySize();
             } else {
-                extraFieldNumExprResult = 0;
+                arrayLength = arraySizeEvaluator.eval(inStream, instruction.getEvaluatorOffset(), this.compiledBlock, namedNumericFieldMap);
+                assertArrayLength(arrayLength, name);
             }
 
-            final boolean wholeStreamArray;
-            final int arrayLength;
-            final int packedArraySizeOffset;
-            switch (code & (JBBPCompiler.FLAG_ARRAY | (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8))) {
-                case JBBPCompiler.FLAG_ARRAY: {
-                    final int pos = positionAtCompiledBlock.get();
-                    arrayLength = JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                    packedArraySizeOffset = positionAtCompiledBlock.get() - pos;
-                    wholeStreamArray = false;
-                }
-                break;
-                case (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8): {
-                    wholeStreamArray = resultNotIgnored;
-                    packedArraySizeOffset = 0;
-                    arrayLength = 0;
-                }
-                break;
-                case JBBPCompiler.FLAG_ARRAY | (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8): {
-                    final JBBPIntegerValueEvaluator evaluator = this.compiledBlock.getArraySizeEvaluators()[positionAtVarLengthProcessors.getAndIncrement()];
-                    arrayLength = resultNotIgnored ? evaluator.eval(inStream, positionAtCompiledBlock.get(), this.compiledBlock, namedNumericFieldMap) : 0;
-                    packedArraySizeOffset = 0;
-                    assertArrayLength(arrayLength, name);
-                    wholeStreamArray = false;
-                }
-                break;
-                default: {
-                    // it is not an array, just a single field
-                    packedArraySizeOffset = 0;
-                    wholeStreamArray = false;
-                    arrayLength = -1;
+            try {
+                if (sink.processField(inStream, instructionIndex, arrayLength, wholeStreamArray)) {
+                    continue;
                 }
-                break;
-            }
 
-            JBBPAbstractField singleAtomicField = null;
-            try {
-                switch (code & 0xF) {
+                switch (type) {
                     case JBBPCompiler.CODE_RESET_COUNTER: {
-                        if (resultNotIgnored) {
-                            inStream.resetCounter();
-                        }
+                        inStream.resetCounter();
                     }
                     break;
                     case JBBPCompiler.CODE_ALIGN: {
-                        final int alignValue = extraFieldNumAsExpr ? extraFieldNumExprResult : JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                        if (resultNotIgnored) {
-                            inStream.align(alignValue);
-                        }
+                        inStream.align(extraFieldNum);
                     }
                     break;
                     case JBBPCompiler.CODE_SKIP: {
-                        final int skipByteNumber = extraFieldNumAsExpr ? extraFieldNumExprResult : JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                        if (resultNotIgnored && skipByteNumber > 0) {
-                            final long skippedBytes = inStream.skip(skipByteNumber);
-                            if (skippedBytes != skipByteNumber) {
-                                throw new EOFException("Can't skip " + skipByteNumber + " byte(s), skipped only " + skippedBytes + " byte(s)");
+                        if (extraFieldNum > 0) {
+                            final long skippedBytes = inStream.skip(extraFieldNum);
+                            if (skippedBytes != extraFieldNum) {
+                                throw new EOFException("Can't skip " + extraFieldNum + " byte(s), skipped only " + skippedBytes + " byte(s)");
                             }
                         }
                     }
                     break;
                     case JBBPCompiler.CODE_BIT: {
-                        final int numberOfBits = extraFieldNumAsExpr ? extraFieldNumExprResult : JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                        if (resultNotIgnored) {
-                            final JBBPBitNumber bitNumber = JBBPBitNumber.decode(numberOfBits);
-                            if (arrayLength < 0) {
-                                final int read = inStream.readBitField(bitNumber);
-                                singleAtomicField = new JBBPFieldBit(name, read & 0xFF, bitNumber);
-                            } else {
-                                structureFields.add(new JBBPFieldArrayBit(name, inStream.readBitsArray(wholeStreamArray ? -1 : arrayLength, bitNumber), bitNumber));
+                        final JBBPBitNumber bitNumber = instruction.getBitNumber() == null ? JBBPBitNumber.decode(extraFieldNum) : instruction.getBitNumber();
+                        if (arrayLength < 0) {
+                            final int value = inStream.readBitField(bitNumber) & 0xFF;
+                            if (namedNumericFieldMap != null && name != null) {
+                                namedNumericFieldMap.putValue(name, type, value, bitNumber);
                             }
+                            sink.onValue(name, type, value, bitNumber);
+                        } else {
+                            sink.onArray(inStream, name, type, wholeStreamArray ? -1 : arrayLength, byteOrder, bitNumber);
                         }
                     }
                     break;
                     case JBBPCompiler.CODE_VAR: {
-                        final int extraField = extraFieldNumAsExpr ? extraFieldNumExprResult : JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                singleAtomicField = varFieldProcessor.readVarField(inStream, name, extraField, byteOrder, namedNumericFieldMap);
-                                JBBPUtils.assertNotNull(singleAtomicField, "A Var processor must not return null as a result of a field reading");
-                                if (singleAtomicField instanceof JBBPAbstractArrayField) {
-                                    throw new JBBPParsingException("A Var field processor has returned an array value instead of a field value [" + name + ':' + extraField + ']');
-                                }
-                                if (singleAtomicField.getNameInfo() != name) {
-                                    throw new JBBPParsingException("Detected wrong name for a read field , must be " + name + " but detected " + singleAtomicField.getNameInfo() + ']');
-                                }
-                            } else {
-                                final JBBPAbstractArrayField<? extends JBBPAbstractField> array = varFieldProcessor.readVarArray(inStream, wholeStreamArray ? -1 : arrayLength, name, extraField, byteOrder, namedNumericFieldMap);
-                                JBBPUtils.assertNotNull(array, "A Var processor must not return null as a result of an array field reading [" + name + ':' + extraField + ']');
-                                if (array.getNameInfo() != name) {
-                                    throw new JBBPParsingException("Detected wrong name for a read field array, must be " + name + " but detected " + array.getNameInfo() + ']');
-                                }
-                                structureFields.add(array);
+                        final JBBPAbstractField field;
+                        if (arrayLength < 0) {
+                            field = varFieldProcessor.readVarField(inStream, name, extraFieldNum, byteOrder, namedNumericFieldMap);
+                            JBBPUtils.assertNotNull(field, "A Var processor must not return null as a result of a field reading");
+                            if (field instanceof JBBPAbstractArrayField) {
+                                throw new JBBPParsingException("A Var field processor has returned an array value instead of a field value [" + name + ':' + extraFieldNum + ']');
                             }
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_CUSTOMTYPE: {
-                        final int extraData = extraFieldNumAsExpr ? extraFieldNumExprResult : JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                        if (resultNotIgnored) {
-                            final JBBPFieldTypeParameterContainer fieldTypeInfo = this.compiledBlock.getCustomTypeFields()[JBBPUtils.unpackInt(compiled, positionAtCompiledBlock)];
-                            final JBBPAbstractField field = this.customFieldTypeProcessor.readCustomFieldType(inStream, this.bitOrder, this.flags, fieldTypeInfo, name, extraData, wholeStreamArray, arrayLength);
-                            JBBPUtils.assertNotNull(field, "Must not return null as read result");
-                            structureFields.add(field);
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_BOOL: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                singleAtomicField = new JBBPFieldBoolean(name, inStream.readBoolean());
-                            } else {
-                                structureFields.add(new JBBPFieldArrayBoolean(name, inStream.readBoolArray(wholeStreamArray ? -1 : arrayLength)));
+                            if (field.getNameInfo() != name) {
+                                throw new JBBPParsingException("Detected wrong name for a read field , must be " + name + " but detected " + field.getNameInfo() + ']');
                             }
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_BYTE: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                singleAtomicField = new JBBPFieldByte(name, (byte) inStream.readByte());
-                            } else {
-                                structureFields.add(new JBBPFieldArrayByte(name, inStream.readByteArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
+                            if (namedNumericFieldMap != null && field instanceof JBBPNumericField && name != null) {
+                                namedNumericFieldMap.putField((JBBPNumericField) field);
                             }
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_UBYTE: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                singleAtomicField = new JBBPFieldUByte(name, (byte) inStream.readByte());
-                            } else {
-                                structureFields.add(new JBBPFieldArrayUByte(name, inStream.readByteArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
+                        } else {
+                            field = varFieldProcessor.readVarArray(inStream, wholeStreamArray ? -1 : arrayLength, name, extraFieldNum, byteOrder, namedNumericFieldMap);
+                            JBBPUtils.assertNotNull(field, "A Var processor must not return null as a result of an array field reading [" + name + ':' + extraFieldNum + ']');
+                            if (field.getNameInfo() != name) {
+                                throw new JBBPParsingException("Detected wrong name for a read field array, must be " + name + " but detected " + field.getNameInfo() + ']');
                             }
                         }
+                        sink.onField(field);
                     }
                     break;
-                    case JBBPCompiler.CODE_INT: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                final int value = inStream.readInt(byteOrder);
-                                singleAtomicField = new JBBPFieldInt(name, value);
-                            } else {
-                                structureFields.add(new JBBPFieldArrayInt(name, inStream.readIntArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
-                            }
-                        }
+                    case JBBPCompiler.CODE_CUSTOMTYPE: {
+                        final JBBPAbstractField field = this.customFieldTypeProcessor.readCustomFieldType(inStream, this.bitOrder, this.flags, instruction.getCustomTypeField(), name, extraFieldNum, wholeStreamArray, arrayLength);
+                        JBBPUtils.assertNotNull(field, "Must not return null as read result");
+                        sink.onField(field);
                     }
                     break;
+                    case JBBPCompiler.CODE_BOOL:
+                    case JBBPCompiler.CODE_BYTE:
+                    case JBBPCompiler.CODE_UBYTE:
+                    case JBBPCompiler.CODE_SHORT:
+                    case JBBPCompiler.CODE_USHORT:
+                    case JBBPCompiler.CODE_INT:
                     case JBBPCompiler.CODE_LONG: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                final long value = inStream.readLong(byteOrder);
-                                singleAtomicField = new JBBPFieldLong(name, value);
-                            } else {
-                                structureFields.add(new JBBPFieldArrayLong(name, inStream.readLongArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
-                            }
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_SHORT: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                final int value = inStream.readUnsignedShort(byteOrder);
-                                singleAtomicField = new JBBPFieldShort(name, (short) value);
-                            } else {
-                                structureFields.add(new JBBPFieldArrayShort(name, inStream.readShortArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
-                            }
-                        }
-                    }
-                    break;
-                    case JBBPCompiler.CODE_USHORT: {
-                        if (resultNotIgnored) {
-                            if (arrayLength < 0) {
-                                final int value = inStream.readUnsignedShort(byteOrder);
-                                singleAtomicField = new JBBPFieldUShort(name, (short) value);
-                            } else {
-                                structureFields.add(new JBBPFieldArrayUShort(name, inStream.readShortArray(wholeStreamArray ? -1 : arrayLength, byteOrder)));
+                        if (arrayLength < 0) {
+                            final long value = readValue(inStream, type, byteOrder);
+                            if (namedNumericFieldMap != null && name != null) {
+                                namedNumericFieldMap.putValue(name, type, value, null);
                             }
+                            sink.onValue(name, type, value, null);
+                        } else {
+                            sink.onArray(inStream, name, type, wholeStreamArray ? -1 : arrayLength, byteOrder, null);
                         }
                     }
                     break;
                     case JBBPCompiler.CODE_STRUCT_START: {
+                        final int bodyStart = instructionIndex + 1;
+                        final int bodyEnd = instruction.getPairedStructIndex();
+
                         if (arrayLength < 0) {
-                            final List<JBBPAbstractField> structFields = parseStruct(inStream, positionAtCompiledBlock, varFieldProcessor, namedNumericFieldMap, positionAtNamedFieldList, positionAtVarLengthProcessors, skipStructureFields);
-                            // skip offset
-                            JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                            if (resultNotIgnored) {
-                                structureFields.add(new JBBPFieldStruct(name, structFields.toArray(new JBBPAbstractField[structFields.size()])));
-                            }
+                            sink.onStructStart(name);
+                            walk(inStream, bodyStart, bodyEnd, varFieldProcessor, namedNumericFieldMap, sink);
+                            sink.onStructEnd(name);
                         } else {
-                            final int nameFieldCurrent = positionAtNamedFieldList.get();
-                            final int varLenProcCurrent = positionAtVarLengthProcessors.get();
-
-                            final JBBPFieldStruct[] result;
-                            if (resultNotIgnored) {
-                                if (wholeStreamArray) {
-                                    // read till the stream end
-                                    final List<JBBPFieldStruct> list = new ArrayList<JBBPFieldStruct>();
-                                    while (inStream.hasAvailableData()) {
-                                        positionAtNamedFieldList.set(nameFieldCurrent);
-                                        positionAtVarLengthProcessors.set(varLenProcCurrent);
-
-                                        final List<JBBPAbstractField> fieldsForStruct = parseStruct(inStream, positionAtCompiledBlock, varFieldProcessor, namedNumericFieldMap, positionAtNamedFieldList, positionAtVarLengthProcessors, skipStructureFields);
-                                        list.add(new JBBPFieldStruct(name, fieldsForStruct));
-
-                                        final int structStart = JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-
-                                        if (inStream.hasAvailableData()) {
-                                            positionAtCompiledBlock.set(structStart + (wideCode ? 2 : 1));
-                                        }
-                                    }
-
-                                    result = list.isEmpty() ? EMPTY_STRUCT_ARRAY : list.toArray(new JBBPFieldStruct[list.size()]);
-                                } else {
-                                    // read number of items
-                                    if (arrayLength == 0) {
-                                        // skip the structure
-                                        result = EMPTY_STRUCT_ARRAY;
-                                        parseStruct(inStream, positionAtCompiledBlock, varFieldProcessor, namedNumericFieldMap, positionAtNamedFieldList, positionAtVarLengthProcessors, true);
-                                        JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-                                    } else {
-                                        result = new JBBPFieldStruct[arrayLength];
-                                        for (int i = 0; i < arrayLength; i++) {
-
-                                            final List<JBBPAbstractField> fieldsForStruct = parseStruct(inStream, positionAtCompiledBlock, varFieldProcessor, namedNumericFieldMap, positionAtNamedFieldList, positionAtVarLengthProcessors, skipStructureFields);
-                                            final int structBodyStart = JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
-
-                                            result[i] = new JBBPFieldStruct(name, fieldsForStruct);
-
-                                            if (i < arrayLength - 1) {
-                                                // not the last
-                                                positionAtNamedFieldList.set(nameFieldCurrent);
-                                                positionAtVarLengthProcessors.set(varLenProcCurrent);
-                                                positionAtCompiledBlock.set(structBodyStart + packedArraySizeOffset + (wideCode ? 2 : 1));
-                                            }
-                                        }
-                                    }
-                                }
-
-                                if (result != null) {
-                                    structureFields.add(new JBBPFieldArrayStruct(name, result));
+                            sink.onStructArrayStart(name, wholeStreamArray ? -1 : arrayLength);
+                            if (wholeStreamArray) {
+                                // read till the stream end
+                                while (inStream.hasAvailableData()) {
+                                    sink.onStructStart(name);
+                                    walk(inStream, bodyStart, bodyEnd, varFieldProcessor, namedNumericFieldMap, sink);
+                                    sink.onStructEnd(name);
                                 }
                             } else {
-                                parseStruct(inStream, positionAtCompiledBlock, varFieldProcessor, namedNumericFieldMap, positionAtNamedFieldList, positionAtVarLengthProcessors, skipStructureFields);
-                                JBBPUtils.unpackInt(compiled, positionAtCompiledBlock);
+                                for (int i = 0; i < arrayLength; i++) {
+                                    sink.onStructStart(name);
+                                    walk(inStream, bodyStart, bodyEnd, varFieldProcessor, namedNumericFieldMap, sink);
+                                    sink.onStructEnd(name);
+                                }
                             }
+                            sink.onStructArrayEnd(name);
                         }
                     }
                     break;
                     case JBBPCompiler.CODE_STRUCT_END: {
-                        // we just left the method and the caller must process the structure offset start address for the structure
-                        endStructureNotMet = false;
+                        // structure bodies are processed by ranges so that the end is met only for broken tables
+                        throw new Error("Detected unexpected structure end! Contact developer! [" + instruction + ']');
                     }
-                    break;
                     default:
-                        throw new Error("Detected unexpected field type! Contact developer! [" + code + ']');
+                        throw new Error("Detected unexpected field type! Contact developer! [" + instruction.getCode() + ']');
                 }
             } catch (IOException ex) {
                 if (name == null) {
@@ -509,17 +538,7 @@ public final class JBBPParser {
                     throw new JBBPParsingException("Can't parse field '" + name.getFieldPath() + "' for IOException", ex);
                 }
             }
-
-            if (singleAtomicField != null) {
-                structureFields.add(singleAtomicField);
-                if (namedNumericFieldMap != null && singleAtomicField instanceof JBBPNumericField && name != null) {
-                    namedNumericFieldMap.putField((JBBPNumericField) singleAtomicField);
-                }
-            }
-
         }
-
-        return structureFields;
     }
 
     /**
@@ -547,23 +566,492 @@ public final class JBBPParser {
      */
     public JBBPFieldStruct parse(final InputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
         final JBBPBitInputStream bitInStream = in instanceof JBBPBitInputStream ? (JBBPBitInputStream) in : new JBBPBitInputStream(in, bitOrder);
-        this.finalStreamByteCounter = bitInStream.getCounter();
+        try {
+            return this.parseWithResult(bitInStream, varFieldProcessor, externalValueProvider).getRoot();
+        } finally {
+            this.finalStreamByteCounter = bitInStream.getCounter();
+        }
+    }
 
-        final JBBPNamedNumericFieldMap fieldMap;
-        if (this.compiledBlock.hasEvaluatedSizeArrays() || this.compiledBlock.hasVarFields()) {
-            fieldMap = new JBBPNamedNumericFieldMap(externalValueProvider);
-        } else {
-            fieldMap = null;
+    /**
+     * Parse an input stream and return the result with the state of the call.
+     *
+     * @param in an input stream which content should be parsed, it must not be
+     *           null
+     * @return the parsing result, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    public JBBPParseResult parseWithResult(final InputStream in) throws IOException {
+        return this.parseWithResult(in, null, null);
+    }
+
+    /**
+     * Parse a byte array content and return the result with the state of the call.
+     *
+     * @param array a byte array which content should be parsed, it must not be
+     *              null
+     * @return the parsing result, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    public JBBPParseResult parseWithResult(final byte[] array) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseWithResult(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), null, null);
+    }
+
+    /**
+     * Parse an input stream and return the result with the state of the call.
+     * The Method doesn't use any shared state, so that the parser can be used
+     * by many threads in the same time and the result contains the final
+     * stream counter of exactly this call.
+     *
+     * @param in                    an input stream which content will be parsed, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsing result, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    public JBBPParseResult parseWithResult(final InputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        return this.parseWithResult(in, varFieldProcessor, externalValueProvider, new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_READ, null));
+    }
+
+    /**
+     * Parse a byte buffer content, structure arrays which elements have
+     * fixed byte size are split into parts parsed in parallel by the executor
+     * and their elements are assembled in the stream order. Other fields are
+     * parsed in the calling thread. Fields of parallel parsed elements are not
+     * placed into the named numeric field map, they can't be used by expressions
+     * in any case.
+     *
+     * @param buffer                a byte buffer which content will be parsed from its position till its limit, must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @param executor              an executor to parse structure arrays, must not be null
+     * @return the parsing result, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    public JBBPParseResult parseWithResult(final ByteBuffer buffer, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider, final ExecutorService executor) throws IOException {
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        JBBPUtils.assertNotNull(executor, "Executor must not be null");
+        return this.parseWithResult(new JBBPByteBufferBitInputStream(buffer, this.bitOrder), varFieldProcessor, externalValueProvider, new JBBPFieldTreeSink(this, executor, JBBPFieldTreeSink.ARRAYS_READ, null));
+    }
+
+    /**
+     * Parse a byte array content, structure arrays which elements have fixed
+     * byte size are parsed in parallel by the executor.
+     *
+     * @param array    a byte array which content will be parsed, must not be null
+     * @param executor an executor to parse structure arrays, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseWithResult(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider, ExecutorService)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final byte[] array, final ExecutorService executor) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseWithResult(ByteBuffer.wrap(array), null, null, executor).getRoot();
+    }
+
+    /**
+     * Parse a byte buffer content, structure arrays which elements have fixed
+     * byte size are parsed in parallel by the executor.
+     *
+     * @param buffer   a byte buffer which content will be parsed, must not be null
+     * @param executor an executor to parse structure arrays, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseWithResult(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider, ExecutorService)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final ByteBuffer buffer, final ExecutorService executor) throws IOException {
+        return this.parseWithResult(buffer, null, null, executor).getRoot();
+    }
+
+    /**
+     * Parse a byte array content lazily. The Array is not copied, not decoded
+     * lazy fields read it directly so that it must not be changed or reused
+     * while the result is in use.
+     *
+     * @param array a byte array which content will be parsed, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseLazy(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseLazy(final byte[] array) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseLazy(ByteBuffer.wrap(array), null, null);
+    }
+
+    /**
+     * Parse a byte buffer content lazily. The Buffer is not copied, not decoded
+     * lazy fields read it directly so that its content must not be changed
+     * while the result is in use.
+     *
+     * @param buffer a byte buffer which content will be parsed from its position till its limit, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseLazy(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseLazy(final ByteBuffer buffer) throws IOException {
+        return this.parseLazy(buffer, null, null);
+    }
+
+    /**
+     * Parse a byte buffer content lazily. Single fields and structures are
+     * read as usual but primitive arrays and structure arrays with fixed element
+     * size are only skipped during parsing, structures keep placeholders for
+     * them and they are decoded from the buffer only during the first access
+     * through the structure. So that data of not requested arrays is never
+     * copied. Placeholders keep a reference to the source buffer, it is not
+     * copied, so that if the buffer content is changed or the buffer is reused
+     * for other data then not decoded fields become invalid and return wrong
+     * values. The Buffer must be kept unchanged while the result is in use or
+     * all needed fields must be requested before the buffer reuse. Arrays which
+     * are not on a byte border or which don't have enough data in the buffer
+     * are read as usual.
+     *
+     * @param buffer                a byte buffer which content will be parsed from its position till its limit, must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPLazyField
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseLazy(final ByteBuffer buffer, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        return this.parseWithResult(new JBBPByteBufferBitInputStream(buffer, this.bitOrder), varFieldProcessor, externalValueProvider, new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_LAZY, null)).getRoot();
+    }
+
+    /**
+     * Parse a byte array content, primitive arrays are not copied but
+     * represented by views of the array.
+     *
+     * @param array a byte array which content will be parsed, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseWithArrayViews(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseWithArrayViews(final byte[] array) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseWithArrayViews(ByteBuffer.wrap(array), null, null);
+    }
+
+    /**
+     * Parse a byte buffer content, primitive arrays are not copied but
+     * represented by views of the buffer.
+     *
+     * @param buffer a byte buffer which content will be parsed from its position till its limit, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseWithArrayViews(ByteBuffer, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseWithArrayViews(final ByteBuffer buffer) throws IOException {
+        return this.parseWithArrayViews(buffer, null, null);
+    }
+
+    /**
+     * Parse a byte buffer content, primitive arrays (except bit arrays) are
+     * not read but represented by {@link JBBPFieldArrayView} fields which
+     * reference the buffer and decode elements by request, so that big arrays
+     * are never copied. The Content of the buffer must not be changed while
+     * the views are in use. Arrays which are not on a byte border or which
+     * don't have enough data in the buffer are read as usual.
+     *
+     * @param buffer                a byte buffer which content will be parsed from its position till its limit, must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPFieldArrayView
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseWithArrayViews(final ByteBuffer buffer, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        return this.parseWithResult(new JBBPByteBufferBitInputStream(buffer, this.bitOrder), varFieldProcessor, externalValueProvider, new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_VIEW, null)).getRoot();
+    }
+
+    /**
+     * Parse a byte array content with projection.
+     *
+     * @param array      a byte array which content will be parsed, must not be null
+     * @param fieldPaths paths of fields to be placed into the result, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseProjectionWithResult(InputStream, Collection, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseProjection(final byte[] array, final Collection<String> fieldPaths) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseProjectionWithResult(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), fieldPaths, null, null).getRoot();
+    }
+
+    /**
+     * Parse an input stream with projection.
+     *
+     * @param in         an input stream which content will be parsed, must not be null
+     * @param fieldPaths paths of fields to be placed into the result, must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parseProjectionWithResult(InputStream, Collection, JBBPVarFieldProcessor, JBBPExternalValueProvider)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parseProjection(final InputStream in, final Collection<String> fieldPaths) throws IOException {
+        return this.parseProjectionWithResult(in, fieldPaths, null, null).getRoot();
+    }
+
+    /**
+     * Parse an input stream with projection, the result structure contains
+     * only requested fields and structures which contain them, a requested
+     * structure is placed with all its fields. Not requested primitive fields,
+     * primitive arrays and structures with fixed size are skipped in the stream
+     * without decoding and allocation if they are not used by expressions of
+     * the script, other not requested fields are read and dropped. Fields used
+     * by expressions are still read and placed into the named field map of the
+     * result.
+     *
+     * @param in                    an input stream which content will be parsed, must not be null
+     * @param fieldPaths            paths of fields to be placed into the result, must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsing result, must not be null
+     * @throws IOException                  it will be thrown for transport errors
+     * @throws JBBPIllegalArgumentException if a field path can't be found in the script
+     * @since 1.3.0
+     */
+    public JBBPParseResult parseProjectionWithResult(final InputStream in, final Collection<String> fieldPaths, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(in, "Input stream must not be null");
+        return this.parseWithResult(in, varFieldProcessor, externalValueProvider, new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_READ, JBBPFieldTreeSink.makeProjection(this.compiledBlock, this.instructions, fieldPaths)));
+    }
+
+    private JBBPParseResult parseWithResult(final InputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider, final JBBPFieldTreeSink sink) throws IOException {
+        final JBBPBitInputStream bitInStream = in instanceof JBBPBitInputStream ? (JBBPBitInputStream) in : new JBBPBitInputStream(in, bitOrder);
+        final long startCounter = bitInStream.getCounter();
+        final JBBPNamedNumericFieldMap fieldMap = this.makeFieldMap(varFieldProcessor, externalValueProvider);
+        this.walk(bitInStream, 0, this.instructions.length, varFieldProcessor, fieldMap, sink);
+        final JBBPFieldStruct root = sink.makeStruct(new JBBPNamedFieldInfo("", "", -1));
+        return new JBBPParseResult(root, startCounter, bitInStream.getCounter(), fieldMap);
+    }
+
+    /**
+     * Parse an input stream and report read data to a listener without building
+     * of the field tree.
+     *
+     * @param in       an input stream which content will be parsed, it must not be null
+     * @param listener a listener to get parsed data, it must not be null
+     * @return number of bytes read during the call
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPParseListener
+     * @since 1.3.0
+     */
+    public long parse(final InputStream in, final JBBPParseListener listener) throws IOException {
+        return this.parse(in, listener, null, null);
+    }
+
+    /**
+     * Parse a byte array content and report read data to a listener without
+     * building of the field tree.
+     *
+     * @param array    a byte array which content will be parsed, it must not be null
+     * @param listener a listener to get parsed data, it must not be null
+     * @return number of bytes read during the call
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPParseListener
+     * @since 1.3.0
+     */
+    public long parse(final byte[] array, final JBBPParseListener listener) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parse(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), listener, null, null);
+    }
+
+    /**
+     * Parse an input stream and report read data to a listener without building
+     * of the field tree. Values of named fields are saved only as primitive
+     * values if they are needed for expressions.
+     *
+     * @param in                    an input stream which content will be parsed, it must not be null
+     * @param listener              a listener to get parsed data, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return number of bytes read during the call
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPParseListener
+     * @since 1.3.0
+     */
+    public long parse(final InputStream in, final JBBPParseListener listener, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(listener, "Listener must not be null");
+        final JBBPBitInputStream bitInStream = in instanceof JBBPBitInputStream ? (JBBPBitInputStream) in : new JBBPBitInputStream(in, bitOrder);
+        final long startCounter = bitInStream.getCounter();
+        final JBBPNamedNumericFieldMap fieldMap = this.makeFieldMap(varFieldProcessor, externalValueProvider);
+        this.walk(bitInStream, 0, this.instructions.length, varFieldProcessor, fieldMap, new JBBPParseListenerSink(listener));
+        return bitInStream.getCounter() - startCounter;
+    }
+
+    /**
+     * Parse an input stream directly into a new instance of a mapping class
+     * without building of the field tree. Fields of the class are bound to the
+     * script fields in the same way as {@link com.igormaznitsa.jbbp.mapper.JBBPMapper}
+     * does, the binding is made once for a class and kept by the parser.
+     *
+     * @param <T>          the mapping class type
+     * @param in           an input stream which content will be parsed, it must not be null
+     * @param mappingClass a mapping class, it must not be null
+     * @return the filled instance of the mapping class, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @throws com.igormaznitsa.jbbp.exceptions.JBBPMapperException for mapping errors
+     * @see JBBPMappingBinding
+     * @since 1.3.0
+     */
+    public <T> T parseToObject(final InputStream in, final Class<T> mappingClass) throws IOException {
+        return this.parseToObject(in, mappingClass, null, null, null);
+    }
+
+    /**
+     * Parse a byte array content directly into a new instance of a mapping class
+     * without building of the field tree.
+     *
+     * @param <T>          the mapping class type
+     * @param array        a byte array which content will be parsed, it must not be null
+     * @param mappingClass a mapping class, it must not be null
+     * @return the filled instance of the mapping class, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @throws com.igormaznitsa.jbbp.exceptions.JBBPMapperException for mapping errors
+     * @see #parseToObject(InputStream, Class)
+     * @since 1.3.0
+     */
+    public <T> T parseToObject(final byte[] array, final Class<T> mappingClass) throws IOException {
+        JBBPUtils.assertNotNull(array, "Array must not be null");
+        return this.parseToObject(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), mappingClass, null, null, null);
+    }
+
+    /**
+     * Parse an input stream directly into an instance of a mapping class without
+     * building of the field tree.
+     *
+     * @param <T>                   the mapping class type
+     * @param in                    an input stream which content will be parsed, it must not be null
+     * @param mappingClass          a mapping class, it must not be null
+     * @param instance              an instance to be filled, if null then new instance will be made
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the filled instance of the mapping class, must not be null
+     * @throws IOException it will be thrown for transport errors
+     * @throws com.igormaznitsa.jbbp.exceptions.JBBPMapperException for mapping errors
+     * @see #parseToObject(InputStream, Class)
+     * @since 1.3.0
+     */
+    public <T> T parseToObject(final InputStream in, final Class<T> mappingClass, final T instance, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(mappingClass, "Mapping class must not be null");
+
+        JBBPMappingBinding binding = this.mappingBindings.get(mappingClass);
+        if (binding == null) {
+            binding = JBBPMappingBinding.make(this.compiledBlock, mappingClass);
+            final JBBPMappingBinding alreadyMade = this.mappingBindings.putIfAbsent(mappingClass, binding);
+            if (alreadyMade != null) {
+                binding = alreadyMade;
+            }
         }
 
-        if (this.compiledBlock.hasVarFields()) {
-            JBBPUtils.assertNotNull(varFieldProcessor, "The Script contains VAR fields, a var field processor must be provided");
+        final Object result = instance == null ? binding.makeInstance() : instance;
+        this.parse(in, binding.makeListener(result), varFieldProcessor, externalValueProvider);
+        return mappingClass.cast(result);
+    }
+
+    /**
+     * Make an iterator over records of the top level structure array which
+     * reads the whole stream, records are read one by one by request.
+     *
+     * @param in an input stream which content will be parsed, it must not be null
+     * @return the record iterator, must not be null
+     * @throws IOException it will be thrown for transport errors during reading of fields placed before the records
+     * @throws JBBPIllegalArgumentException if the script doesn't have such structure array on the top level
+     * @see JBBPRecordIterator
+     * @since 1.3.0
+     */
+    public JBBPRecordIterator iterateRecords(final InputStream in) throws IOException {
+        return this.iterateRecords(in, null, null);
+    }
+
+    /**
+     * Make an iterator over records of the top level structure array which
+     * reads the whole stream, records are read one by one by request.
+     *
+     * @param in                    an input stream which content will be parsed, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the record iterator, must not be null
+     * @throws IOException it will be thrown for transport errors during reading of fields placed before the records
+     * @throws JBBPIllegalArgumentException if the script doesn't have such structure array on the top level
+     * @see JBBPRecordIterator
+     * @since 1.3.0
+     */
+    public JBBPRecordIterator iterateRecords(final InputStream in, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        int structIndex = -1;
+        int index = 0;
+        while (index < this.instructions.length) {
+            final JBBPCompiledInstruction instruction = this.instructions[index];
+            if (instruction.getType() == JBBPCompiler.CODE_STRUCT_START) {
+                if (instruction.isWholeStreamArray()) {
+                    structIndex = index;
+                    break;
+                }
+                index = instruction.getPairedStructIndex() + 1;
+            } else {
+                index++;
+            }
         }
-        try {
-            return new JBBPFieldStruct(new JBBPNamedFieldInfo("", "", -1), parseStruct(bitInStream, new JBBPIntCounter(), varFieldProcessor, fieldMap, new JBBPIntCounter(), new JBBPIntCounter(), false));
-        } finally {
-            this.finalStreamByteCounter = bitInStream.getCounter();
+        if (structIndex < 0) {
+            throw new JBBPIllegalArgumentException("Script doesn't have top level structure array for whole stream");
         }
+
+        final JBBPBitInputStream bitInStream = in instanceof JBBPBitInputStream ? (JBBPBitInputStream) in : new JBBPBitInputStream(in, bitOrder);
+        final JBBPNamedNumericFieldMap fieldMap = this.makeFieldMap(varFieldProcessor, externalValueProvider);
+
+        final JBBPCompiledInstruction records = this.instructions[structIndex];
+        final JBBPFieldTreeSink sink = new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_READ, null);
+        this.walk(bitInStream, 0, structIndex, varFieldProcessor, fieldMap, sink);
+        final JBBPFieldStruct header = sink.makeStruct(new JBBPNamedFieldInfo("", "", -1));
+        return new JBBPRecordIterator(this, bitInStream, varFieldProcessor, fieldMap, records.getFieldInfo(), structIndex + 1, records.getPairedStructIndex(), header);
+    }
+
+    /**
+     * Parse a range of instructions, it is used by record iterators.
+     *
+     * @param inStream             the input stream, must not be null
+     * @param startInstruction     index of the first instruction
+     * @param endInstruction       index of the instruction after the range
+     * @param varFieldProcessor    a processor to process var fields, it can be null
+     * @param namedNumericFieldMap the named numeric field map, it can be null
+     * @return list of read fields, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    List<JBBPAbstractField> parseInstructions(final JBBPBitInputStream inStream, final int startInstruction, final int endInstruction, final JBBPVarFieldProcessor varFieldProcessor, final JBBPNamedNumericFieldMap namedNumericFieldMap) throws IOException {
+        final JBBPFieldTreeSink sink = new JBBPFieldTreeSink(this, null, JBBPFieldTreeSink.ARRAYS_READ, null);
+        this.walk(inStream, startInstruction, endInstruction, varFieldProcessor, namedNumericFieldMap, sink);
+        return sink.getFields();
     }
 
     /**
@@ -586,7 +1074,7 @@ public final class JBBPParser {
      */
     public JBBPFieldStruct parse(final byte[] array) throws IOException {
         JBBPUtils.assertNotNull(array, "Array must not be null");
-        return this.parse(new ByteArrayInputStream(array), null, null);
+        return this.parse(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), null, null);
     }
 
     /**
@@ -603,14 +1091,106 @@ public final class JBBPParser {
      */
     public JBBPFieldStruct parse(final byte[] array, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
         JBBPUtils.assertNotNull(array, "Array must not be null");
-        return this.parse(new ByteArrayInputStream(array), varFieldProcessor, externalValueProvider);
+        return this.parse(new JBBPByteBufferBitInputStream(ByteBuffer.wrap(array), this.bitOrder), varFieldProcessor, externalValueProvider);
+    }
+
+    /**
+     * Parse content of a byte buffer (heap or direct one) from its position till its limit. The Data are read directly from the buffer, the buffer position is not changed.
+     *
+     * @param buffer a byte buffer which content should be parsed, it must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #getFinalStreamByteCounter()
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final ByteBuffer buffer) throws IOException {
+        return this.parse(buffer, null, null);
+    }
+
+    /**
+     * Parse content of a byte buffer (heap or direct one) from its position till its limit. The Data are read directly from the buffer, the buffer position is not changed.
+     *
+     * @param buffer                a byte buffer which content should be parsed, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #getFinalStreamByteCounter()
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final ByteBuffer buffer, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        return this.parse(new JBBPByteBufferBitInputStream(buffer, this.bitOrder), varFieldProcessor, externalValueProvider);
+    }
+
+    /**
+     * Parse content of a file channel from its current position through memory mapped windows, so that the page cache is used directly and files bigger than 2 GB are supported. The Channel position is not changed and the channel is not closed.
+     *
+     * @param channel a file channel which content should be parsed, it must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPMappedFileBitInputStream
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final FileChannel channel) throws IOException {
+        return this.parse(channel, null, null);
+    }
+
+    /**
+     * Parse content of a file channel from its current position through memory mapped windows, so that the page cache is used directly and files bigger than 2 GB are supported. The Channel position is not changed and the channel is not closed.
+     *
+     * @param channel               a file channel which content should be parsed, it must not be null
+     * @param varFieldProcessor     a var field processor, it may be null if there is
+     *                              not any var field in a script, otherwise NPE will be thrown during parsing
+     * @param externalValueProvider an external value provider, it can be null but
+     *                              only if the script doesn't have fields desired the provider
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see JBBPMappedFileBitInputStream
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final FileChannel channel, final JBBPVarFieldProcessor varFieldProcessor, final JBBPExternalValueProvider externalValueProvider) throws IOException {
+        JBBPUtils.assertNotNull(channel, "Channel must not be null");
+        final JBBPMappedFileBitInputStream in = new JBBPMappedFileBitInputStream(channel, this.bitOrder);
+        try {
+            return this.parse(in, varFieldProcessor, externalValueProvider);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse content of a file through memory mapped windows, the file is opened only for the parsing.
+     *
+     * @param file a file which content should be parsed, it must not be null
+     * @return the parsed content as the root structure
+     * @throws IOException it will be thrown for transport errors
+     * @see #parse(FileChannel)
+     * @since 1.3.0
+     */
+    public JBBPFieldStruct parse(final File file) throws IOException {
+        JBBPUtils.assertNotNull(file, "File must not be null");
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return this.parse(randomAccessFile.getChannel(), null, null);
+        } finally {
+            JBBPUtils.closeQuietly(randomAccessFile);
+        }
     }
 
     /**
      * Get the final input stream byte counter value for the last parsing
      * operation. It is loaded just after exception or parsing completion. NB: It
      * is appropriate one only if the parsing didn't make any counter reset
-     * operation.
+     * operation. It is the only state of the parser kept between calls, the
+     * Value is updated only by parse methods returning the root structure and
+     * if the parser is shared between threads then it can belong to a call made
+     * by another thread, use
+     * {@link JBBPParseResult#getFinalStreamByteCounter()} of a result returned by
+     * {@link #parseWithResult(InputStream, JBBPVarFieldProcessor, JBBPExternalValueProvider)}
+     * in the case.
      *
      * @return the last parsing byte counter value
      */
@@ -618,6 +1198,15 @@ public final class JBBPParser {
         return this.finalStreamByteCounter;
     }
 
+    /**
+     * Get the bit order of the parser.
+     *
+     * @return the bit order, must not be null
+     */
+    JBBPBitOrder getBitOrder() {
+        return this.bitOrder;
+    }
+
     /**
      * Get compiled block containing compiled information for the parser.
      *
@@ -628,6 +1217,74 @@ public final class JBBPParser {
         return this.compiledBlock;
     }
 
+    /**
+     * Make an accessor to read a primitive field or a primitive array field
+     * directly from a byte array or a buffer at its static offset.
+     *
+     * @param fieldPath path of the field, must not be null
+     * @return the accessor for the field, must not be null
+     * @throws JBBPIllegalArgumentException if there is not such field or the field offset or size is not fixed, or the field is not primitive
+     * @see JBBPFieldAccessor
+     * @since 1.3.0
+     */
+    public JBBPFieldAccessor makeFieldAccessor(final String fieldPath) {
+        JBBPUtils.assertNotNull(fieldPath, "Field path must not be null");
+        final JBBPNamedFieldInfo fieldInfo = this.compiledBlock.findFieldForPath(fieldPath);
+        if (fieldInfo == null) {
+            throw new JBBPIllegalArgumentException("Can't find field '" + fieldPath + '\'');
+        }
+
+        JBBPCompiledInstruction instruction = null;
+        for (final JBBPCompiledInstruction i : this.instructions) {
+            if (i.getFieldInfo() == fieldInfo) {
+                instruction = i;
+                break;
+            }
+        }
+
+        switch (instruction == null ? -1 : instruction.getType()) {
+            case JBBPCompiler.CODE_BIT:
+            case JBBPCompiler.CODE_BOOL:
+            case JBBPCompiler.CODE_BYTE:
+            case JBBPCompiler.CODE_UBYTE:
+            case JBBPCompiler.CODE_SHORT:
+            case JBBPCompiler.CODE_USHORT:
+            case JBBPCompiler.CODE_INT:
+            case JBBPCompiler.CODE_LONG:
+                break;
+            default:
+                throw new JBBPIllegalArgumentException("Field '" + fieldPath + "' is not primitive one");
+        }
+
+        final CompiledBlockLayoutAnalyzer.FieldLayout fieldLayout = this.layout.findFieldForInfo(fieldInfo);
+        if (fieldLayout.isInsideStructArray() || fieldLayout.getBitOffset() < 0L || fieldLayout.getBitSize() < 0L) {
+            throw new JBBPIllegalArgumentException("Field '" + fieldPath + "' doesn't have fixed offset and size");
+        }
+
+        return new JBBPFieldAccessor(fieldInfo, instruction.getType(), instruction.getByteOrder(), this.bitOrder, fieldLayout.getBitOffset(), (int) fieldLayout.getElementBitSize(), instruction.isArray() ? (int) (fieldLayout.getBitSize() / fieldLayout.getElementBitSize()) : -1);
+    }
+
+    /**
+     * Get parser with byte code generated and loaded in run-time for the
+     * script, it doesn't need any java compiler. If the script can't be
+     * converted (it contains var or custom fields, external values in
+     * expressions or the parser has FLAG_SKIP_REMAINING_FIELDS_IF_EOF) then the
+     * returned parser calls the interpreter. The Result is made once and cached.
+     *
+     * @return the compiled parser, must not be null
+     * @see JBBPCompiledParser#isGenerated()
+     * @see ParserToByteCodeConverter
+     * @since 1.3.0
+     */
+    public JBBPCompiledParser compileToClass() {
+        JBBPCompiledParser result = this.compiledParser;
+        if (result == null) {
+            result = JBBPCompiledParser.make(this);
+            this.compiledParser = result;
+        }
+        return result;
+    }
+
     /**
      * Generate java class sources for the parser.
      *
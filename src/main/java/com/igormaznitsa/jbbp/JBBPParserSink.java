@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+
+import java.io.IOException;
+
+/**
+ * Receiver of data read by the instruction walker of {@link JBBPParser}. The
+ * Walker decodes instructions, calculates expressions and reads single values,
+ * a sink decides what to do with them. It is implemented by the field tree
+ * builder and by the adapter of {@link JBBPParseListener}.
+ *
+ * @since 1.3.0
+ */
+interface JBBPParserSink {
+
+    /**
+     * Called for every instruction before its data are read, the sink can
+     * process data of the field itself, for instance skip them or make a
+     * placeholder.
+     *
+     * @param inStream         the input stream, must not be null
+     * @param instructionIndex index of the instruction
+     * @param arrayLength      calculated array length, negative if the field is not an array
+     * @param wholeStreamArray true if the array takes the whole stream
+     * @return true if the field has been processed by the sink and the walker must not read it
+     * @throws IOException it will be thrown for transport errors
+     */
+    boolean processField(JBBPBitInputStream inStream, int instructionIndex, int arrayLength, boolean wholeStreamArray) throws IOException;
+
+    /**
+     * Called for a read primitive or bit value.
+     *
+     * @param name      the field name info, it can be null
+     * @param type      the field type
+     * @param value     the field value
+     * @param bitNumber the bit number for bit fields, null for other fields
+     */
+    void onValue(JBBPNamedFieldInfo name, int type, long value, JBBPBitNumber bitNumber);
+
+    /**
+     * Called for a primitive or bit array, the sink reads array data itself
+     * because it can read the whole array or its parts.
+     *
+     * @param inStream  the input stream, must not be null
+     * @param name      the array name info, it can be null
+     * @param type      the array element type
+     * @param length    the array length, negative one means the whole stream
+     * @param byteOrder the byte order of the array, must not be null
+     * @param bitNumber the bit number for bit arrays, null for other arrays
+     * @throws IOException it will be thrown for transport errors
+     */
+    void onArray(JBBPBitInputStream inStream, JBBPNamedFieldInfo name, int type, int length, JBBPByteOrder byteOrder, JBBPBitNumber bitNumber) throws IOException;
+
+    /**
+     * Called for a field made by a var field processor or a custom type field processor.
+     *
+     * @param field the field, must not be null
+     */
+    void onField(JBBPAbstractField field);
+
+    /**
+     * Called before fields of a structure.
+     *
+     * @param name the structure name info, it can be null
+     */
+    void onStructStart(JBBPNamedFieldInfo name);
+
+    /**
+     * Called after fields of a structure.
+     *
+     * @param name the structure name info, it can be null
+     */
+    void onStructEnd(JBBPNamedFieldInfo name);
+
+    /**
+     * Called before elements of a structure array.
+     *
+     * @param name   the array name info, it can be null
+     * @param length number of elements, -1 if the array reads the whole stream
+     */
+    void onStructArrayStart(JBBPNamedFieldInfo name, int length);
+
+    /**
+     * Called after elements of a structure array.
+     *
+     * @param name the array name info, it can be null
+     */
+    void onStructArrayEnd(JBBPNamedFieldInfo name);
+}
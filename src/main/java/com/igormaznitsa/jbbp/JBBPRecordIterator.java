@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.exceptions.JBBPIOException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over records of the top level structure array which reads the
+ * whole stream, like {@code record [_] {...}}. Records are read from the stream
+ * only by request, one by one, so that memory used by the iterator doesn't
+ * depend on the stream size. Fields placed before the structure array are
+ * read during creation of the iterator and they are provided as the header.
+ * The Iterator is not thread-safe, transport errors are thrown as
+ * {@link JBBPIOException}.
+ *
+ * @see JBBPParser#iterateRecords(java.io.InputStream)
+ * @since 1.3.0
+ */
+public final class JBBPRecordIterator implements Iterator<JBBPFieldStruct> {
+
+    private final JBBPParser parser;
+    private final JBBPBitInputStream inStream;
+    private final JBBPVarFieldProcessor varFieldProcessor;
+    private final JBBPNamedNumericFieldMap fieldMap;
+    private final JBBPNamedFieldInfo recordName;
+    private final int bodyStart;
+    private final int bodyEnd;
+    private final JBBPFieldStruct header;
+
+    private long recordCounter;
+    private long lastRecordOffset = -1L;
+
+    /**
+     * Constructor.
+     *
+     * @param parser            the parser which makes the iterator, must not be null
+     * @param inStream          the input stream, must not be null
+     * @param varFieldProcessor the var field processor, it can be null
+     * @param fieldMap          the named numeric field map for the session, it can be null
+     * @param recordName        the name info of the structure array, it can be null
+     * @param bodyStart         index of the first instruction of the structure body
+     * @param bodyEnd           index of the structure end instruction
+     * @param header            the parsed fields placed before the structure array, must not be null
+     */
+    JBBPRecordIterator(final JBBPParser parser, final JBBPBitInputStream inStream, final JBBPVarFieldProcessor varFieldProcessor, final JBBPNamedNumericFieldMap fieldMap, final JBBPNamedFieldInfo recordName, final int bodyStart, final int bodyEnd, final JBBPFieldStruct header) {
+        this.parser = parser;
+        this.inStream = inStream;
+        this.varFieldProcessor = varFieldProcessor;
+        this.fieldMap = fieldMap;
+        this.recordName = recordName;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+        this.header = header;
+    }
+
+    /**
+     * Get the fields placed before the structure array.
+     *
+     * @return the header structure, must not be null
+     */
+    public JBBPFieldStruct getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Get number of records read by the iterator.
+     *
+     * @return number of returned records
+     */
+    public long getRecordCounter() {
+        return this.recordCounter;
+    }
+
+    /**
+     * Get the stream byte offset of the last returned record.
+     *
+     * @return the byte offset of the start of the last record or -1 if there
+     * was not any returned record
+     */
+    public long getLastRecordOffset() {
+        return this.lastRecordOffset;
+    }
+
+    /**
+     * Get the current byte counter of the stream.
+     *
+     * @return the stream byte counter
+     */
+    public long getStreamCounter() {
+        return this.inStream.getCounter();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return this.inStream.hasAvailableData();
+        } catch (IOException ex) {
+            throw new JBBPIOException("Can't check stream for data", ex);
+        }
+    }
+
+    @Override
+    public JBBPFieldStruct next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There is not any record in the stream");
+        }
+        final long offset = this.inStream.getCounter();
+        final List<JBBPAbstractField> fields;
+        try {
+            fields = this.parser.parseInstructions(this.inStream, this.bodyStart, this.bodyEnd, this.varFieldProcessor, this.fieldMap);
+        } catch (IOException ex) {
+            throw new JBBPIOException("Can't read record at " + offset, ex);
+        }
+        this.lastRecordOffset = offset;
+        this.recordCounter++;
+        return new JBBPFieldStruct(this.recordName, fields);
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException in any case
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Remove is not supported");
+    }
+}
@@ -16,12 +16,23 @@
 package com.igormaznitsa.jbbp.compiler;
 
 import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPEvaluatorCodec;
 import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
 import com.igormaznitsa.jbbp.exceptions.JBBPException;
 import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
 import com.igormaznitsa.jbbp.utils.JBBPUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -32,6 +43,22 @@ import java.util.List;
  */
 public final class JBBPCompiledBlock {
 
+    /**
+     * Magic number of the exported compiled block format, it is "JBBP" in ASCII.
+     *
+     * @since 1.3.0
+     */
+    public static final int EXPORT_MAGIC = 0x4A424250;
+    /**
+     * Version of the exported compiled block format. The Format is written
+     * field by field without java serialization, the version must be changed
+     * for any change of the format. Since version 3 the payload is written with
+     * its length.
+     *
+     * @since 1.3.0
+     */
+    public static final int EXPORT_FORMAT_VERSION = 3;
+
     /**
      * The Array of named field info items.
      */
@@ -60,6 +87,16 @@ public final class JBBPCompiledBlock {
      */
     private final boolean hasVarFields;
 
+    /**
+     * Lazily decoded instruction table of the compiled data.
+     */
+    private volatile JBBPCompiledInstruction[] instructions;
+
+    /**
+     * Lazily built table of named field indexes for offsets in the compiled data.
+     */
+    private volatile int[] namedFieldIndexes;
+
     /**
      * The Class
      *
@@ -87,6 +124,134 @@ public final class JBBPCompiledBlock {
         return new Builder();
     }
 
+    /**
+     * Read a compiled block which has been exported by {@link #writeTo(OutputStream)}.
+     * Neither tokenization nor compilation is made, so that the method can be
+     * used to load blocks prepared during build. The Stream is not closed.
+     *
+     * @param in a stream contains an exported block, must not be null
+     * @return the compiled block, must not be null
+     * @throws IOException it will be thrown for transport errors, wrong format
+     *                     or unsupported format version, lengths in the payload
+     *                     are checked against the declared payload size
+     * @since 1.3.0
+     */
+    public static JBBPCompiledBlock readFrom(final InputStream in) throws IOException {
+        JBBPUtils.assertNotNull(in, "Stream must not be null");
+        final DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != EXPORT_MAGIC) {
+            throw new IOException("Stream doesn't contain exported compiled block");
+        }
+        final int version = dataIn.readInt();
+        if (version != EXPORT_FORMAT_VERSION) {
+            throw new IOException("Unsupported compiled block format version [" + version + ']');
+        }
+
+        final ByteBuffer payload = ByteBuffer.wrap(JBBPEvaluatorCodec.readPayload(dataIn, dataIn.readInt()));
+        try {
+            final String source = JBBPEvaluatorCodec.readString(payload);
+            if (source == null) {
+                throw new IOException("Exported compiled block doesn't contain source");
+            }
+            final byte[] compiledData = JBBPEvaluatorCodec.readBytes(payload);
+            final boolean hasVarFields = payload.get() != 0;
+
+            final List<JBBPNamedFieldInfo> namedFields = new ArrayList<JBBPNamedFieldInfo>();
+            for (int i = JBBPEvaluatorCodec.readCounter(payload); i > 0; i--) {
+                final String path = JBBPEvaluatorCodec.readString(payload);
+                final String name = JBBPEvaluatorCodec.readString(payload);
+                if (path == null || name == null) {
+                    throw new IOException("Exported compiled block contains named field without name");
+                }
+                namedFields.add(new JBBPNamedFieldInfo(path, name, payload.getInt()));
+            }
+
+            List<JBBPIntegerValueEvaluator> evaluators = null;
+            if (payload.get() != 0) {
+                evaluators = new ArrayList<JBBPIntegerValueEvaluator>();
+                for (int i = JBBPEvaluatorCodec.readCounter(payload); i > 0; i--) {
+                    evaluators.add(JBBPEvaluatorCodec.read(payload));
+                }
+            }
+
+            final List<JBBPFieldTypeParameterContainer> customTypeFields = new ArrayList<JBBPFieldTypeParameterContainer>();
+            for (int i = JBBPEvaluatorCodec.readCounter(payload); i > 0; i--) {
+                final JBBPByteOrder byteOrder = payload.get() != 0 ? JBBPByteOrder.LITTLE_ENDIAN : JBBPByteOrder.BIG_ENDIAN;
+                final String typeName = JBBPEvaluatorCodec.readString(payload);
+                if (typeName == null) {
+                    throw new IOException("Exported compiled block contains custom field without type");
+                }
+                customTypeFields.add(new JBBPFieldTypeParameterContainer(byteOrder, typeName, JBBPEvaluatorCodec.readString(payload)));
+            }
+
+            if (payload.hasRemaining()) {
+                throw new IOException("Detected unexpected data in exported compiled block");
+            }
+
+            return prepare()
+                    .setSource(source)
+                    .setCompiledData(compiledData)
+                    .setHasVarFields(hasVarFields)
+                    .setNamedFieldData(namedFields)
+                    .setArraySizeEvaluators(evaluators)
+                    .setCustomTypeFields(customTypeFields)
+                    .build();
+        } catch (BufferUnderflowException ex) {
+            throw JBBPEvaluatorCodec.makeIOException("Unexpected end of exported compiled block", ex);
+        }
+    }
+
+    /**
+     * Export the compiled block in binary form which can be loaded by
+     * {@link #readFrom(InputStream)}. The Form contains the format version and
+     * the payload length, the payload contains the source, the compiled data, the named field table, evaluators and
+     * custom type field info, all items are written explicitly field by field.
+     * The Stream is flushed but not closed.
+     *
+     * @param out a stream to write the block, must not be null
+     * @throws IOException it will be thrown for transport errors or if the block
+     *                     contains evaluators which can't be exported
+     * @since 1.3.0
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        JBBPUtils.assertNotNull(out, "Stream must not be null");
+        final ByteArrayOutputStream payloadBuffer = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(payloadBuffer);
+        JBBPEvaluatorCodec.writeString(payload, this.source);
+        JBBPEvaluatorCodec.writeBytes(payload, this.compiledArray);
+        payload.writeBoolean(this.hasVarFields);
+
+        payload.writeInt(this.namedFieldData.length);
+        for (final JBBPNamedFieldInfo info : this.namedFieldData) {
+            JBBPEvaluatorCodec.writeString(payload, info.getFieldPath());
+            JBBPEvaluatorCodec.writeString(payload, info.getFieldName());
+            payload.writeInt(info.getFieldOffsetInCompiledBlock());
+        }
+
+        payload.writeBoolean(this.arraySizeEvaluators != null);
+        if (this.arraySizeEvaluators != null) {
+            payload.writeInt(this.arraySizeEvaluators.length);
+            for (final JBBPIntegerValueEvaluator evaluator : this.arraySizeEvaluators) {
+                JBBPEvaluatorCodec.write(payload, evaluator);
+            }
+        }
+
+        payload.writeInt(this.customTypeFields.length);
+        for (final JBBPFieldTypeParameterContainer field : this.customTypeFields) {
+            payload.writeBoolean(field.getByteOrder() == JBBPByteOrder.LITTLE_ENDIAN);
+            JBBPEvaluatorCodec.writeString(payload, field.getTypeName());
+            JBBPEvaluatorCodec.writeString(payload, field.getExtraData());
+        }
+        payload.flush();
+
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(EXPORT_MAGIC);
+        dataOut.writeInt(EXPORT_FORMAT_VERSION);
+        dataOut.writeInt(payloadBuffer.size());
+        payloadBuffer.writeTo(dataOut);
+        dataOut.flush();
+    }
+
     /**
      * Get the source which was used for compilation
      *
@@ -124,6 +289,49 @@ public final class JBBPCompiledBlock {
         return this.compiledArray;
     }
 
+    /**
+     * Get the pre-decoded instruction table of the compiled data. The Table is
+     * decoded once during the first call, every call returns a copy of the
+     * table so that it should be requested once and kept by its user.
+     *
+     * @return array of decoded instructions in the compiled block order
+     * @since 1.3.0
+     */
+    public JBBPCompiledInstruction[] getInstructions() {
+        JBBPCompiledInstruction[] result = this.instructions;
+        if (result == null) {
+            result = JBBPCompiledInstruction.decode(this);
+            this.instructions = result;
+        }
+        return result.clone();
+    }
+
+    /**
+     * Find index of a named field in the named field array for the field offset
+     * in the compiled data. The Lookup table is built once during the first call.
+     *
+     * @param offset the offset of a named field in the compiled data
+     * @return the index in the named field array or -1 if there is not any
+     * named field for the offset
+     * @see #getNamedFields()
+     * @since 1.3.0
+     */
+    public int findNamedFieldIndexForOffset(final int offset) {
+        int[] table = this.namedFieldIndexes;
+        if (table == null) {
+            table = new int[this.compiledArray.length];
+            Arrays.fill(table, -1);
+            for (int i = 0; i < this.namedFieldData.length; i++) {
+                final int fieldOffset = this.namedFieldData[i].getFieldOffsetInCompiledBlock();
+                if (fieldOffset >= 0 && fieldOffset < table.length && table[fieldOffset] < 0) {
+                    table[fieldOffset] = i;
+                }
+            }
+            this.namedFieldIndexes = table;
+        }
+        return offset < 0 || offset >= table.length ? -1 : table[offset];
+    }
+
     /**
      * Get array contains the named field array
      *
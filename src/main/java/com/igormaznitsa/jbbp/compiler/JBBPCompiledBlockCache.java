@@ -0,0 +1,378 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler;
+
+import com.igormaznitsa.jbbp.JBBPCustomFieldTypeProcessor;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.utils.JBBPSystemProperty;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe bounded cache of compiled blocks, the least recently used block
+ * is removed if the cache is full. Blocks are cached for script text and
+ * custom field type processor instance with its custom type set, so that the
+ * same compiled block is shared by all parsers prepared for the same script.
+ * The Bit order and parser flags don't affect compilation and they are not a
+ * part of the key.
+ * <p>
+ * Found blocks are served without locks. Custom field type processors are
+ * referenced weakly, a block compiled for a processor is removed from the
+ * cache after the processor is collected, so that the cache doesn't keep
+ * processors and their class loaders. Use {@link #clear()} to remove all
+ * blocks at once, for instance when a module which prepared parsers for
+ * the shared cache is unloaded.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPCompiledBlockCache {
+
+    /**
+     * Default max number of blocks in the shared cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = JBBPSystemProperty.PROPERTY_COMPILED_BLOCK_CACHE_SIZE.getAsInteger(256);
+
+    /**
+     * The Shared cache instance.
+     */
+    private static final JBBPCompiledBlockCache INSTANCE = new JBBPCompiledBlockCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * Max number of cached blocks.
+     */
+    private final int maxSize;
+    /**
+     * Cached blocks.
+     */
+    private final ConcurrentMap<Key, Entry> cache = new ConcurrentHashMap<Key, Entry>();
+    /**
+     * Queue of references to collected custom field type processors.
+     */
+    private final ReferenceQueue<JBBPCustomFieldTypeProcessor> collectedProcessors = new ReferenceQueue<JBBPCustomFieldTypeProcessor>();
+    /**
+     * Source of access stamps, the entry with the smallest stamp is the least
+     * recently used one.
+     */
+    private final AtomicLong accessClock = new AtomicLong();
+    /**
+     * Lock for removal of the least recently used entries.
+     */
+    private final Object evictionLock = new Object();
+    /**
+     * Counter of found blocks.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Counter of compiled blocks.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize max number of blocks kept in the cache, zero means that
+     *                blocks will not be cached
+     * @throws JBBPIllegalArgumentException if the size is negative
+     */
+    public JBBPCompiledBlockCache(final int maxSize) {
+        if (maxSize < 0) {
+            throw new JBBPIllegalArgumentException("Cache size must not be negative [" + maxSize + ']');
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the shared cache instance, its size can be defined through system property.
+     *
+     * @return the shared cache, must not be null
+     * @see JBBPSystemProperty#PROPERTY_COMPILED_BLOCK_CACHE_SIZE
+     */
+    public static JBBPCompiledBlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get compiled block for a script from the cache or compile it and place
+     * into the cache.
+     *
+     * @param script                   a script to be compiled, must not be null
+     * @param customTypeFieldProcessor custom type field processor, it can be null
+     * @return compiled block for the script, must not be null
+     * @throws IOException it will be thrown for inside IO errors
+     * @see JBBPCompiler#compile(String, JBBPCustomFieldTypeProcessor)
+     */
+    public JBBPCompiledBlock compile(final String script, final JBBPCustomFieldTypeProcessor customTypeFieldProcessor) throws IOException {
+        JBBPUtils.assertNotNull(script, "Script must not be null");
+        if (this.maxSize == 0) {
+            this.misses.incrementAndGet();
+            return JBBPCompiler.compile(script, customTypeFieldProcessor);
+        }
+
+        this.removeCollected();
+
+        final Key probe = new Key(script, customTypeFieldProcessor);
+        final Entry found = this.cache.get(probe);
+        if (found != null) {
+            this.hits.incrementAndGet();
+            found.lastAccess = this.accessClock.incrementAndGet();
+            return found.block;
+        }
+
+        this.misses.incrementAndGet();
+        final Entry compiled = new Entry(JBBPCompiler.compile(script, customTypeFieldProcessor), this.accessClock.incrementAndGet());
+        final Entry existing = this.cache.putIfAbsent(new Key(probe, this.collectedProcessors), compiled);
+        if (existing != null) {
+            return existing.block;
+        }
+        if (this.cache.size() > this.maxSize) {
+            this.removeLeastRecentlyUsed();
+        }
+        return compiled.block;
+    }
+
+    /**
+     * Remove entries until the cache size is not greater than the max size.
+     */
+    private void removeLeastRecentlyUsed() {
+        synchronized (this.evictionLock) {
+            while (this.cache.size() > this.maxSize) {
+                Map.Entry<Key, Entry> eldest = null;
+                for (final Map.Entry<Key, Entry> e : this.cache.entrySet()) {
+                    if (eldest == null || e.getValue().lastAccess < eldest.getValue().lastAccess) {
+                        eldest = e;
+                    }
+                }
+                if (eldest == null) {
+                    break;
+                }
+                this.cache.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Remove entries which custom field type processors have been collected.
+     */
+    private void removeCollected() {
+        Reference<? extends JBBPCustomFieldTypeProcessor> ref;
+        while ((ref = this.collectedProcessors.poll()) != null) {
+            this.cache.remove(((ProcessorReference) ref).key);
+        }
+    }
+
+    /**
+     * Get max number of cached blocks.
+     *
+     * @return the max size of the cache
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Get current number of cached blocks.
+     *
+     * @return the number of cached blocks
+     */
+    public int size() {
+        this.removeCollected();
+        return this.cache.size();
+    }
+
+    /**
+     * Get number of requests which have been served by cached blocks.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Get number of requests which have required compilation.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Remove all cached blocks and reset counters.
+     */
+    public void clear() {
+        this.cache.clear();
+        this.removeCollected();
+        this.hits.set(0L);
+        this.misses.set(0L);
+    }
+
+    /**
+     * Cached block with its last access stamp.
+     */
+    private static final class Entry {
+
+        private final JBBPCompiledBlock block;
+        private volatile long lastAccess;
+
+        private Entry(final JBBPCompiledBlock block, final long lastAccess) {
+            this.block = block;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Weak reference to a custom field type processor of a key.
+     */
+    private static final class ProcessorReference extends WeakReference<JBBPCustomFieldTypeProcessor> {
+
+        private final Key key;
+
+        private ProcessorReference(final JBBPCustomFieldTypeProcessor processor, final ReferenceQueue<JBBPCustomFieldTypeProcessor> queue, final Key key) {
+            super(processor, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Key of a cached block, a custom field type processor is compared by
+     * identity and its custom types are compared as a set. Lookups are made
+     * with a probe key which keeps the processor strongly and doesn't copy its
+     * custom types, the weakly referenced key with sorted copy of the types is
+     * made only to be placed into the cache. A Key which processor has been
+     * collected is equal only to itself.
+     */
+    private static final class Key {
+
+        private final String script;
+        private final JBBPCustomFieldTypeProcessor probeProcessor;
+        private final ProcessorReference processorReference;
+        private final String[] customTypes;
+        private final int hash;
+
+        /**
+         * Make a probe key for lookup.
+         *
+         * @param script    the script, must not be null
+         * @param processor custom field type processor, it can be null
+         */
+        private Key(final String script, final JBBPCustomFieldTypeProcessor processor) {
+            this.script = script;
+            this.probeProcessor = processor;
+            this.processorReference = null;
+            this.customTypes = processor == null ? null : processor.getCustomFieldTypes();
+            this.hash = 31 * script.hashCode() + (processor == null ? 0 : System.identityHashCode(processor));
+        }
+
+        /**
+         * Make a key to be placed into the cache.
+         *
+         * @param probe the probe key used for lookup, must not be null
+         * @param queue queue for references to collected processors, must not be null
+         */
+        private Key(final Key probe, final ReferenceQueue<JBBPCustomFieldTypeProcessor> queue) {
+            this.script = probe.script;
+            this.probeProcessor = null;
+            this.hash = probe.hash;
+            if (probe.probeProcessor == null) {
+                this.processorReference = null;
+                this.customTypes = null;
+            } else {
+                this.processorReference = new ProcessorReference(probe.probeProcessor, queue, this);
+                this.customTypes = probe.customTypes == null ? null : probe.customTypes.clone();
+                if (this.customTypes != null) {
+                    Arrays.sort(this.customTypes);
+                }
+            }
+        }
+
+        private boolean hasProcessor() {
+            return this.processorReference != null || this.probeProcessor != null;
+        }
+
+        private JBBPCustomFieldTypeProcessor getProcessor() {
+            return this.processorReference == null ? this.probeProcessor : this.processorReference.get();
+        }
+
+        /**
+         * Check that custom types contain the same elements as sorted custom types.
+         *
+         * @param types       custom types, can be null
+         * @param sortedTypes sorted custom types, can be null
+         * @return true if both arrays are null or contain the same elements
+         */
+        private static boolean isSameTypeSet(final String[] types, final String[] sortedTypes) {
+            if (types == null || sortedTypes == null) {
+                return types == sortedTypes;
+            }
+            if (types.length != sortedTypes.length) {
+                return false;
+            }
+            for (final String type : types) {
+                if (Arrays.binarySearch(sortedTypes, type) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasSameTypes(final Key that) {
+            if (that.processorReference != null) {
+                return isSameTypeSet(this.customTypes, that.customTypes);
+            }
+            if (this.processorReference != null) {
+                return isSameTypeSet(that.customTypes, this.customTypes);
+            }
+            return Arrays.equals(this.customTypes, that.customTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                final Key that = (Key) obj;
+                if (this.hash != that.hash || !this.script.equals(that.script)) {
+                    return false;
+                }
+                final boolean sameProcessor;
+                if (this.hasProcessor()) {
+                    final JBBPCustomFieldTypeProcessor thisProcessor = this.getProcessor();
+                    sameProcessor = thisProcessor != null && thisProcessor == that.getProcessor();
+                } else {
+                    sameProcessor = !that.hasProcessor();
+                }
+                return sameProcessor && this.hasSameTypes(that);
+            }
+            return false;
+        }
+    }
+}
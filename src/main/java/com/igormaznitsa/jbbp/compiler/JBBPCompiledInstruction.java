@@ -0,0 +1,428 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler;
+
+import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
+import com.igormaznitsa.jbbp.exceptions.JBBPCompilationException;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.utils.JBBPIntCounter;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-decoded instruction of a compiled block. All data packed in the compiled
+ * byte array (wide code, array size, extra value, custom type index, named field
+ * index and evaluator indexes) are resolved once, so that an interpreter can
+ * process instructions without decoding the byte code. The Class is immutable.
+ *
+ * @see JBBPCompiledBlock#getInstructions()
+ * @since 1.3.0
+ */
+public final class JBBPCompiledInstruction {
+
+    /**
+     * Offset of the instruction in the compiled block.
+     */
+    private final int offset;
+    /**
+     * Offset in the compiled block just after the instruction code bytes, the
+     * value is provided to evaluators.
+     */
+    private final int evaluatorOffset;
+    /**
+     * Full instruction code, the extended code byte is in the high byte.
+     */
+    private final int code;
+    /**
+     * Name info of the field, can be null for anonymous fields.
+     */
+    private final JBBPNamedFieldInfo fieldInfo;
+    /**
+     * Byte order of the field.
+     */
+    private final JBBPByteOrder byteOrder;
+    /**
+     * Fixed array size, -1 if the field is not an array.
+     */
+    private final int arraySize;
+    /**
+     * Flag shows that the array must be read till the end of stream.
+     */
+    private final boolean wholeStreamArray;
+    /**
+     * Evaluator of calculated array size, can be null.
+     */
+    private final JBBPIntegerValueEvaluator arraySizeEvaluator;
+    /**
+     * Constant extra value of the field.
+     */
+    private final int extraValue;
+    /**
+     * Evaluator of calculated extra value, can be null.
+     */
+    private final JBBPIntegerValueEvaluator extraValueEvaluator;
+    /**
+     * Decoded bit number for bit fields with constant width, can be null.
+     */
+    private final JBBPBitNumber bitNumber;
+    /**
+     * Custom type field info, can be null.
+     */
+    private final JBBPFieldTypeParameterContainer customTypeField;
+    /**
+     * Index of the paired structure instruction, -1 if not structure one.
+     */
+    private final int pairedStructIndex;
+
+    private JBBPCompiledInstruction(
+            final int offset,
+            final int evaluatorOffset,
+            final int code,
+            final JBBPNamedFieldInfo fieldInfo,
+            final int arraySize,
+            final boolean wholeStreamArray,
+            final JBBPIntegerValueEvaluator arraySizeEvaluator,
+            final int extraValue,
+            final JBBPIntegerValueEvaluator extraValueEvaluator,
+            final JBBPFieldTypeParameterContainer customTypeField,
+            final int pairedStructIndex
+    ) {
+        this.offset = offset;
+        this.evaluatorOffset = evaluatorOffset;
+        this.code = code;
+        this.fieldInfo = fieldInfo;
+        this.byteOrder = (code & JBBPCompiler.FLAG_LITTLE_ENDIAN) == 0 ? JBBPByteOrder.BIG_ENDIAN : JBBPByteOrder.LITTLE_ENDIAN;
+        this.arraySize = arraySize;
+        this.wholeStreamArray = wholeStreamArray;
+        this.arraySizeEvaluator = arraySizeEvaluator;
+        this.extraValue = extraValue;
+        this.extraValueEvaluator = extraValueEvaluator;
+        this.bitNumber = (code & 0xF) == JBBPCompiler.CODE_BIT && extraValueEvaluator == null ? JBBPBitNumber.decode(extraValue) : null;
+        this.customTypeField = customTypeField;
+        this.pairedStructIndex = pairedStructIndex;
+    }
+
+    /**
+     * Decode compiled data of a block into a flat instruction table.
+     *
+     * @param block a compiled block, must not be null
+     * @return array of decoded instructions in their order in the compiled block
+     * @throws JBBPCompilationException if the compiled data contains unbalanced
+     *                                  structures
+     */
+    static JBBPCompiledInstruction[] decode(final JBBPCompiledBlock block) {
+        final byte[] compiled = block.getCompiledData();
+        final JBBPNamedFieldInfo[] namedFields = block.getNamedFields();
+        final JBBPIntegerValueEvaluator[] evaluators = block.getArraySizeEvaluators();
+        final JBBPFieldTypeParameterContainer[] customTypeFields = block.getCustomTypeFields();
+
+        final List<Draft> result = new ArrayList<Draft>();
+        final List<Integer> structStack = new ArrayList<Integer>();
+
+        final JBBPIntCounter position = new JBBPIntCounter();
+        int namedFieldIndex = 0;
+        int evaluatorIndex = 0;
+
+        while (position.get() < compiled.length) {
+            final int offset = position.get();
+            final int c = compiled[position.getAndIncrement()] & 0xFF;
+            final int ec = (c & JBBPCompiler.FLAG_WIDE) == 0 ? 0 : compiled[position.getAndIncrement()] & 0xFF;
+            final int code = (ec << 8) | c;
+            final int evaluatorOffset = position.get();
+
+            final JBBPNamedFieldInfo name = (code & JBBPCompiler.FLAG_NAMED) == 0 ? null : namedFields[namedFieldIndex++];
+            final JBBPIntegerValueEvaluator extraValueEvaluator = (ec & JBBPCompiler.EXT_FLAG_EXTRA_AS_EXPRESSION) == 0 ? null : evaluators[evaluatorIndex++];
+
+            int arraySize = -1;
+            boolean wholeStream = false;
+            JBBPIntegerValueEvaluator arraySizeEvaluator = null;
+
+            switch (code & (JBBPCompiler.FLAG_ARRAY | (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8))) {
+                case JBBPCompiler.FLAG_ARRAY: {
+                    arraySize = JBBPUtils.unpackInt(compiled, position);
+                }
+                break;
+                case (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8): {
+                    arraySize = 0;
+                    wholeStream = true;
+                }
+                break;
+                case JBBPCompiler.FLAG_ARRAY | (JBBPCompiler.EXT_FLAG_EXPRESSION_OR_WHOLESTREAM << 8): {
+                    arraySize = 0;
+                    arraySizeEvaluator = evaluators[evaluatorIndex++];
+                }
+                break;
+                default: {
+                    // not an array
+                }
+                break;
+            }
+
+            int extraValue = 0;
+            JBBPFieldTypeParameterContainer customTypeField = null;
+
+            switch (code & 0xF) {
+                case JBBPCompiler.CODE_ALIGN:
+                case JBBPCompiler.CODE_SKIP:
+                case JBBPCompiler.CODE_BIT:
+                case JBBPCompiler.CODE_VAR: {
+                    if (extraValueEvaluator == null) {
+                        extraValue = JBBPUtils.unpackInt(compiled, position);
+                    }
+                }
+                break;
+                case JBBPCompiler.CODE_CUSTOMTYPE: {
+                    if (extraValueEvaluator == null) {
+                        extraValue = JBBPUtils.unpackInt(compiled, position);
+                    }
+                    customTypeField = customTypeFields[JBBPUtils.unpackInt(compiled, position)];
+                }
+                break;
+                case JBBPCompiler.CODE_STRUCT_END: {
+                    // offset of the structure start
+                    extraValue = JBBPUtils.unpackInt(compiled, position);
+                }
+                break;
+                case JBBPCompiler.CODE_RESET_COUNTER:
+                case JBBPCompiler.CODE_BOOL:
+                case JBBPCompiler.CODE_UBYTE:
+                case JBBPCompiler.CODE_BYTE:
+                case JBBPCompiler.CODE_USHORT:
+                case JBBPCompiler.CODE_SHORT:
+                case JBBPCompiler.CODE_INT:
+                case JBBPCompiler.CODE_LONG:
+                case JBBPCompiler.CODE_STRUCT_START: {
+                    // no extra data
+                }
+                break;
+                default:
+                    throw new JBBPCompilationException("Detected unexpected instruction code [" + code + "] at " + offset);
+            }
+
+            final Draft instruction = new Draft(offset, evaluatorOffset, code, name, arraySize, wholeStream, arraySizeEvaluator, extraValue, extraValueEvaluator, customTypeField);
+
+            if ((code & 0xF) == JBBPCompiler.CODE_STRUCT_START) {
+                structStack.add(result.size());
+            } else if ((code & 0xF) == JBBPCompiler.CODE_STRUCT_END) {
+                if (structStack.isEmpty()) {
+                    throw new JBBPCompilationException("Detected structure end without start at " + offset);
+                }
+                final int startIndex = structStack.remove(structStack.size() - 1);
+                result.get(startIndex).pairedStructIndex = result.size();
+                instruction.pairedStructIndex = startIndex;
+            }
+
+            result.add(instruction);
+        }
+
+        if (!structStack.isEmpty()) {
+            throw new JBBPCompilationException("Detected non-closed structure at " + result.get(structStack.get(structStack.size() - 1)).offset);
+        }
+
+        final JBBPCompiledInstruction[] instructions = new JBBPCompiledInstruction[result.size()];
+        for (int i = 0; i < instructions.length; i++) {
+            instructions[i] = result.get(i).make();
+        }
+        return instructions;
+    }
+
+    /**
+     * Get the offset of the instruction in the compiled block.
+     *
+     * @return the offset of the first instruction byte
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Get the offset in the compiled block just after the instruction code, it
+     * is the value to be provided to evaluators of the instruction.
+     *
+     * @return the offset to be provided to evaluators
+     */
+    public int getEvaluatorOffset() {
+        return this.evaluatorOffset;
+    }
+
+    /**
+     * Get the full instruction code including flags, the extended code byte is
+     * placed in the high byte.
+     *
+     * @return the full instruction code
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Get the type of the instruction.
+     *
+     * @return the instruction type
+     * @see JBBPCompiler#CODE_BIT
+     * @see JBBPCompiler#CODE_STRUCT_START
+     */
+    public int getType() {
+        return this.code & 0xF;
+    }
+
+    /**
+     * Get the name info of the field.
+     *
+     * @return the name info, null for anonymous fields
+     */
+    public JBBPNamedFieldInfo getFieldInfo() {
+        return this.fieldInfo;
+    }
+
+    /**
+     * Get the byte order of the field.
+     *
+     * @return the byte order, must not be null
+     */
+    public JBBPByteOrder getByteOrder() {
+        return this.byteOrder;
+    }
+
+    /**
+     * Check that the instruction describes an array.
+     *
+     * @return true if the field is an array, false otherwise
+     */
+    public boolean isArray() {
+        return this.arraySize >= 0;
+    }
+
+    /**
+     * Get the array size.
+     *
+     * @return -1 if the field is not an array, 0 for arrays with calculated size
+     * and whole stream arrays, the array size for fixed size arrays
+     */
+    public int getArraySize() {
+        return this.arraySize;
+    }
+
+    /**
+     * Check that the array must be read till the end of stream.
+     *
+     * @return true if the array is a whole stream one, false otherwise
+     */
+    public boolean isWholeStreamArray() {
+        return this.wholeStreamArray;
+    }
+
+    /**
+     * Get evaluator of the array size.
+     *
+     * @return the evaluator for calculated size arrays, null otherwise
+     */
+    public JBBPIntegerValueEvaluator getArraySizeEvaluator() {
+        return this.arraySizeEvaluator;
+    }
+
+    /**
+     * Get the constant extra value of the field (bit number, skip and align
+     * values, var and custom field extra data). For structure end it contains
+     * the offset of the structure start.
+     *
+     * @return the constant extra value, 0 if it is not provided or calculated
+     */
+    public int getExtraValue() {
+        return this.extraValue;
+    }
+
+    /**
+     * Get evaluator of the extra value.
+     *
+     * @return the evaluator if the extra value is an expression, null otherwise
+     */
+    public JBBPIntegerValueEvaluator getExtraValueEvaluator() {
+        return this.extraValueEvaluator;
+    }
+
+    /**
+     * Get decoded bit number of a bit field.
+     *
+     * @return the bit number for bit fields with constant width, null otherwise
+     */
+    public JBBPBitNumber getBitNumber() {
+        return this.bitNumber;
+    }
+
+    /**
+     * Get info of a custom type field.
+     *
+     * @return the custom type field info, null if the instruction is not a custom type one
+     */
+    public JBBPFieldTypeParameterContainer getCustomTypeField() {
+        return this.customTypeField;
+    }
+
+    /**
+     * Get index of the paired structure instruction in the instruction table.
+     * For structure start it is the index of its end, for structure end it is
+     * the index of its start.
+     *
+     * @return the index of the paired instruction, -1 for non-structure instructions
+     */
+    public int getPairedStructIndex() {
+        return this.pairedStructIndex;
+    }
+
+    /**
+     * Decoded instruction data collected before structure pairs are resolved.
+     */
+    private static final class Draft {
+        private final int offset;
+        private final int evaluatorOffset;
+        private final int code;
+        private final JBBPNamedFieldInfo fieldInfo;
+        private final int arraySize;
+        private final boolean wholeStreamArray;
+        private final JBBPIntegerValueEvaluator arraySizeEvaluator;
+        private final int extraValue;
+        private final JBBPIntegerValueEvaluator extraValueEvaluator;
+        private final JBBPFieldTypeParameterContainer customTypeField;
+        private int pairedStructIndex = -1;
+
+        private Draft(final int offset, final int evaluatorOffset, final int code, final JBBPNamedFieldInfo fieldInfo, final int arraySize, final boolean wholeStreamArray, final JBBPIntegerValueEvaluator arraySizeEvaluator, final int extraValue, final JBBPIntegerValueEvaluator extraValueEvaluator, final JBBPFieldTypeParameterContainer customTypeField) {
+            this.offset = offset;
+            this.evaluatorOffset = evaluatorOffset;
+            this.code = code;
+            this.fieldInfo = fieldInfo;
+            this.arraySize = arraySize;
+            this.wholeStreamArray = wholeStreamArray;
+            this.arraySizeEvaluator = arraySizeEvaluator;
+            this.extraValue = extraValue;
+            this.extraValueEvaluator = extraValueEvaluator;
+            this.customTypeField = customTypeField;
+        }
+
+        private JBBPCompiledInstruction make() {
+            return new JBBPCompiledInstruction(this.offset, this.evaluatorOffset, this.code, this.fieldInfo, this.arraySize, this.wholeStreamArray, this.arraySizeEvaluator, this.extraValue, this.extraValueEvaluator, this.customTypeField, this.pairedStructIndex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Instruction(offset=" + this.offset + ", code=" + this.code + ", name=" + this.fieldInfo + ')';
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.conversion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Auxiliary buffer to make a class file with its constant pool and methods.
+ * Class files are made in the format version 49 which doesn't need stack map
+ * frames, so that code is written as a plain instruction sequence with
+ * forward and backward jumps to labels.
+ *
+ * @since 1.3.0
+ */
+final class ByteCodeBuffer {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_M1 = 0x02;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3A;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int DUP_X1 = 0x5A;
+    static final int DUP2 = 0x5C;
+    static final int SWAP = 0x5F;
+    static final int IADD = 0x60;
+    static final int ISUB = 0x64;
+    static final int IMUL = 0x68;
+    static final int IDIV = 0x6C;
+    static final int IREM = 0x70;
+    static final int INEG = 0x74;
+    static final int ISHL = 0x78;
+    static final int ISHR = 0x7A;
+    static final int IUSHR = 0x7C;
+    static final int IAND = 0x7E;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int IINC = 0x84;
+    static final int I2L = 0x85;
+    static final int L2I = 0x88;
+    static final int I2B = 0x91;
+    static final int I2S = 0x93;
+    static final int IFEQ = 0x99;
+    static final int IF_ICMPGE = 0xA2;
+    static final int GOTO = 0xA7;
+    static final int ARETURN = 0xB0;
+    static final int RETURN = 0xB1;
+    static final int GETSTATIC = 0xB2;
+    static final int GETFIELD = 0xB4;
+    static final int INVOKEVIRTUAL = 0xB6;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKESTATIC = 0xB8;
+    static final int NEW = 0xBB;
+    static final int ANEWARRAY = 0xBD;
+    static final int ATHROW = 0xBF;
+    static final int WIDE = 0xC4;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int CLASS_FORMAT_MAJOR_VERSION = 49;
+
+    private final ByteArrayOutputStream poolBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(this.poolBuffer);
+    private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+    private int poolCounter = 1;
+
+    private final List<byte[]> methods = new ArrayList<byte[]>();
+
+    /**
+     * Get or add a constant pool item.
+     *
+     * @param key  unique key of the item
+     * @param tag  the item tag
+     * @param data the item data without tag
+     * @return index of the item in the pool
+     */
+    private int item(final String key, final int tag, final byte[] data) {
+        final Integer found = this.poolIndexes.get(key);
+        if (found != null) {
+            return found;
+        }
+        try {
+            this.pool.writeByte(tag);
+            this.pool.write(data);
+        } catch (IOException ex) {
+            throw new Error("Unexpected exception", ex);
+        }
+        final int result = this.poolCounter++;
+        if (result > 0xFFFF) {
+            throw new IllegalStateException("Too many constants for generated class");
+        }
+        this.poolIndexes.put(key, result);
+        return result;
+    }
+
+    private static byte[] u2(final int... values) {
+        final byte[] result = new byte[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            result[i * 2] = (byte) (values[i] >>> 8);
+            result[i * 2 + 1] = (byte) values[i];
+        }
+        return result;
+    }
+
+    int utf8(final String text) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(buffer).writeUTF(text);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can't write constant [" + ex.getMessage() + ']');
+        }
+        return item("U" + text, CONSTANT_UTF8, buffer.toByteArray());
+    }
+
+    int classRef(final String internalName) {
+        return item("C" + internalName, CONSTANT_CLASS, u2(utf8(internalName)));
+    }
+
+    int stringRef(final String text) {
+        return item("S" + text, CONSTANT_STRING, u2(utf8(text)));
+    }
+
+    int intRef(final int value) {
+        return item("I" + value, CONSTANT_INTEGER, new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private int nameAndType(final String name, final String descriptor) {
+        return item("N" + name + ' ' + descriptor, CONSTANT_NAME_AND_TYPE, u2(utf8(name), utf8(descriptor)));
+    }
+
+    int fieldRef(final String owner, final String name, final String descriptor) {
+        return item("F" + owner + '.' + name + ' ' + descriptor, CONSTANT_FIELDREF, u2(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    int methodRef(final String owner, final String name, final String descriptor) {
+        return item("M" + owner + '.' + name + ' ' + descriptor, CONSTANT_METHODREF, u2(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    /**
+     * Add a method with code.
+     *
+     * @param access     access flags
+     * @param name       the method name, must not be null
+     * @param descriptor the method descriptor, must not be null
+     * @param code       the method code, must not be null
+     */
+    void addMethod(final int access, final String name, final String descriptor, final Code code) {
+        final byte[] codeBytes = code.toByteArray();
+        if (codeBytes.length > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too big generated method [" + codeBytes.length + ']');
+        }
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + codeBytes.length + code.handlers.size() * 8);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(codeBytes.length);
+            out.write(codeBytes);
+            out.writeShort(code.handlers.size());
+            for (final int[] handler : code.handlers) {
+                out.writeShort(handler[0]);
+                out.writeShort(handler[1]);
+                out.writeShort(code.labels.get(handler[2]));
+                out.writeShort(handler[3]);
+            }
+            out.writeShort(0);
+        } catch (IOException ex) {
+            throw new Error("Unexpected exception", ex);
+        }
+        this.methods.add(buffer.toByteArray());
+    }
+
+    /**
+     * Make the class file.
+     *
+     * @param access     class access flags
+     * @param className  internal name of the class, must not be null
+     * @param superClass internal name of the super class, must not be null
+     * @return the class file content, must not be null
+     */
+    byte[] toClassFile(final int access, final String className, final String superClass) {
+        final int thisIndex = classRef(className);
+        final int superIndex = classRef(superClass);
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FORMAT_MAJOR_VERSION);
+            out.writeShort(this.poolCounter);
+            this.pool.flush();
+            out.write(this.poolBuffer.toByteArray());
+            out.writeShort(access);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(this.methods.size());
+            for (final byte[] m : this.methods) {
+                out.write(m);
+            }
+            out.writeShort(0);
+        } catch (IOException ex) {
+            throw new Error("Unexpected exception", ex);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Code of a method. The Operand stack depth is tracked by every written
+     * instruction, a label gets the stack depth of the first jump to it.
+     */
+    final class Code {
+
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Integer> labels = new ArrayList<Integer>();
+        private final List<Integer> labelStacks = new ArrayList<Integer>();
+        private final List<int[]> jumps = new ArrayList<int[]>();
+        private final List<int[]> handlers = new ArrayList<int[]>();
+        private final List<int[]> shortPatches = new ArrayList<int[]>();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        /**
+         * Constructor.
+         *
+         * @param argumentSlots number of local slots occupied by arguments including this
+         */
+        Code(final int argumentSlots) {
+            this.maxLocals = argumentSlots;
+        }
+
+        int position() {
+            return this.code.size();
+        }
+
+        /**
+         * Allocate a new local slot for an int or reference value.
+         *
+         * @return the slot index
+         */
+        int newLocal() {
+            return this.maxLocals++;
+        }
+
+        private void stack(final int delta) {
+            this.stack += delta;
+            if (this.stack < 0) {
+                throw new Error("Negative stack depth in generated code, contact developer!");
+            }
+            this.maxStack = Math.max(this.maxStack, this.stack);
+        }
+
+        private void u1(final int value) {
+            this.code.write(value);
+        }
+
+        private void u2(final int value) {
+            this.code.write(value >>> 8);
+            this.code.write(value);
+        }
+
+        Code op(final int opcode, final int stackDelta) {
+            u1(opcode);
+            stack(stackDelta);
+            return this;
+        }
+
+        Code pushInt(final int value) {
+            if (value >= -1 && value <= 5) {
+                return op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                u1(LDC_W);
+                u2(intRef(value));
+            }
+            stack(1);
+            return this;
+        }
+
+        /**
+         * Write short push of zero which will be replaced later.
+         *
+         * @return position of the value to be patched
+         * @see #patchShortPush(int, int)
+         */
+        int shortPushPlaceholder() {
+            u1(SIPUSH);
+            final int result = position();
+            u2(0);
+            stack(1);
+            return result;
+        }
+
+        void patchShortPush(final int position, final int value) {
+            if (value > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many fields in generated structure [" + value + ']');
+            }
+            this.shortPatches.add(new int[]{position, value});
+        }
+
+        Code pushString(final String value) {
+            final int index = stringRef(value);
+            if (index <= 0xFF) {
+                u1(LDC);
+                u1(index);
+            } else {
+                u1(LDC_W);
+                u2(index);
+            }
+            stack(1);
+            return this;
+        }
+
+        private Code local(final int opcode, final int slot, final int stackDelta) {
+            if (slot > 0xFF) {
+                u1(WIDE);
+                u1(opcode);
+                u2(slot);
+            } else {
+                u1(opcode);
+                u1(slot);
+            }
+            stack(stackDelta);
+            return this;
+        }
+
+        Code aload(final int slot) {
+            return local(ALOAD, slot, 1);
+        }
+
+        Code astore(final int slot) {
+            return local(ASTORE, slot, -1);
+        }
+
+        Code iload(final int slot) {
+            return local(ILOAD, slot, 1);
+        }
+
+        Code istore(final int slot) {
+            return local(ISTORE, slot, -1);
+        }
+
+        Code iinc(final int slot, final int value) {
+            if (slot > 0xFF) {
+                u1(WIDE);
+                u1(IINC);
+                u2(slot);
+                u2(value);
+            } else {
+                u1(IINC);
+                u1(slot);
+                u1(value);
+            }
+            return this;
+        }
+
+        Code typeOp(final int opcode, final String internalName, final int stackDelta) {
+            u1(opcode);
+            u2(classRef(internalName));
+            stack(stackDelta);
+            return this;
+        }
+
+        Code getStatic(final String owner, final String name, final String descriptor) {
+            u1(GETSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            stack(1);
+            return this;
+        }
+
+        Code getField(final String owner, final String name, final String descriptor) {
+            u1(GETFIELD);
+            u2(fieldRef(owner, name, descriptor));
+            return this;
+        }
+
+        /**
+         * Write a method call, the stack depth is calculated from the descriptor.
+         * Only int, boolean, byte, short, char, long, void and reference types are supported.
+         *
+         * @param opcode     one of INVOKEVIRTUAL, INVOKESPECIAL and INVOKESTATIC
+         * @param owner      internal name of the method owner
+         * @param name       the method name
+         * @param descriptor the method descriptor
+         * @return the code
+         */
+        Code invoke(final int opcode, final String owner, final String name, final String descriptor) {
+            u1(opcode);
+            u2(methodRef(owner, name, descriptor));
+            int delta = opcode == INVOKESTATIC ? 0 : -1;
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                final char c = descriptor.charAt(i);
+                if (c == 'J' || c == 'D') {
+                    delta -= 2;
+                    i++;
+                } else {
+                    delta--;
+                    while (descriptor.charAt(i) == '[') {
+                        i++;
+                    }
+                    i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+                }
+            }
+            final char ret = descriptor.charAt(i + 1);
+            delta += ret == 'V' ? 0 : ret == 'J' || ret == 'D' ? 2 : 1;
+            stack(delta);
+            return this;
+        }
+
+        int newLabel() {
+            this.labels.add(-1);
+            this.labelStacks.add(-1);
+            return this.labels.size() - 1;
+        }
+
+        /**
+         * Place a label at the current position. If there was a jump to the label
+         * then the stack depth is restored to the depth of the jump.
+         *
+         * @param label the label
+         * @return the code
+         */
+        Code mark(final int label) {
+            this.labels.set(label, position());
+            final int labelStack = this.labelStacks.get(label);
+            if (labelStack >= 0) {
+                this.stack = labelStack;
+            }
+            return this;
+        }
+
+        /**
+         * Mark a label of an exception handler, the stack contains only the exception.
+         *
+         * @param label the label
+         * @return the code
+         */
+        Code markHandler(final int label) {
+            this.labels.set(label, position());
+            this.stack = 0;
+            stack(1);
+            return this;
+        }
+
+        Code jump(final int opcode, final int label) {
+            final int start = position();
+            u1(opcode);
+            u2(0);
+            stack(opcode == GOTO ? 0 : opcode == IFEQ ? -1 : -2);
+            if (this.labelStacks.get(label) < 0) {
+                this.labelStacks.set(label, this.stack);
+            }
+            this.jumps.add(new int[]{start, label});
+            return this;
+        }
+
+        /**
+         * Add an exception handler for a code range.
+         *
+         * @param start          the first position of the range
+         * @param end            the position after the range
+         * @param handlerLabel   label of the handler code
+         * @param exceptionClass internal name of the caught exception class
+         */
+        void addHandler(final int start, final int end, final int handlerLabel, final String exceptionClass) {
+            this.handlers.add(new int[]{start, end, handlerLabel, classRef(exceptionClass)});
+        }
+
+        private byte[] toByteArray() {
+            final byte[] result = this.code.toByteArray();
+            for (final int[] p : this.shortPatches) {
+                result[p[0]] = (byte) (p[1] >>> 8);
+                result[p[0] + 1] = (byte) p[1];
+            }
+            for (final int[] j : this.jumps) {
+                final int target = this.labels.get(j[1]);
+                if (target < 0) {
+                    throw new Error("Jump to not placed label, contact developer!");
+                }
+                final int offset = target - j[0];
+                result[j[0] + 1] = (byte) (offset >>> 8);
+                result[j[0] + 2] = (byte) offset;
+            }
+            return result;
+        }
+    }
+}
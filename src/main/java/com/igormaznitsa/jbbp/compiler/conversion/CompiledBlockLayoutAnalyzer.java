@@ -0,0 +1,517 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.conversion;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPConstantEvaluator;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static layout analyzer of a compiled block. It calculates sizes and absolute
+ * offsets of fields which don't depend on parsed data, the analysis supposes
+ * that parsing is started from the beginning of a stream. A Size or an offset
+ * is unknown (-1) if it depends on parsed values, a var or a custom type field,
+ * a till-the-end array or on an alignment which position is unknown, so that
+ * all offsets after such a field are unknown ("variable from here") but sizes
+ * of structures placed after it still can be fixed.
+ * Offsets of fields inside structure arrays are calculated for the first
+ * element of an array.
+ *
+ * @since 1.3.0
+ */
+public final class CompiledBlockLayoutAnalyzer extends CompiledBlockVisitor {
+
+    /**
+     * Value for unknown size or offset.
+     */
+    public static final long UNKNOWN = -1L;
+
+    /**
+     * Layouts of named fields in their order.
+     */
+    private final List<FieldLayout> fields = new ArrayList<FieldLayout>();
+    /**
+     * Layouts of named fields for their paths.
+     */
+    private final Map<String, FieldLayout> fieldsForPath = new HashMap<String, FieldLayout>();
+    /**
+     * Position independent element sizes in bits of structures for offsets of their starts in the compiled block.
+     */
+    private final Map<Integer, Long> structureElementBitSizes = new HashMap<Integer, Long>();
+    /**
+     * Stack of opened structures.
+     */
+    private final List<Frame> frames = new ArrayList<Frame>();
+    /**
+     * Absolute bit position of the last counter reset, unknown if negative.
+     */
+    private long counterBase;
+    /**
+     * Size of the whole block in bits.
+     */
+    private long bitSize;
+    /**
+     * Size in bits of the fixed part in the beginning of the block.
+     */
+    private long fixedPrefixBitSize;
+
+    /**
+     * The Constructor.
+     *
+     * @param compiledBlock compiled block to be analyzed, must not be null
+     */
+    public CompiledBlockLayoutAnalyzer(final JBBPCompiledBlock compiledBlock) {
+        super(0, compiledBlock);
+        JBBPUtils.assertNotNull(compiledBlock, "Compiled block must not be null");
+    }
+
+    /**
+     * Analyze a compiled block.
+     *
+     * @param compiledBlock compiled block to be analyzed, must not be null
+     * @return the analyzer contains results, must not be null
+     */
+    public static CompiledBlockLayoutAnalyzer analyze(final JBBPCompiledBlock compiledBlock) {
+        return (CompiledBlockLayoutAnalyzer) new CompiledBlockLayoutAnalyzer(compiledBlock).visit();
+    }
+
+    private static long constantOf(final JBBPIntegerValueEvaluator evaluator) {
+        if (evaluator instanceof IntConstValueEvaluator) {
+            return evaluator.eval(null, 0, null, null);
+        } else if (evaluator instanceof JBBPConstantEvaluator) {
+            return ((JBBPConstantEvaluator) evaluator).getValue();
+        }
+        return UNKNOWN;
+    }
+
+    private static long multiply(final long count, final long size) {
+        if (count == 0L) {
+            return 0L;
+        }
+        return count < 0L || size < 0L ? UNKNOWN : count * size;
+    }
+
+    private static long add(final long a, final long b) {
+        return a < 0L || b < 0L ? UNKNOWN : a + b;
+    }
+
+    private static long toByteBorder(final long bits) {
+        return (bits + 7L) & ~7L;
+    }
+
+    private Frame frame() {
+        return this.frames.get(this.frames.size() - 1);
+    }
+
+    private long position() {
+        final Frame frame = this.frame();
+        return add(frame.start, frame.offset);
+    }
+
+    private void addItem(final JBBPNamedFieldInfo name, final int type, final long itemBitSize, final long count, final boolean array) {
+        final long size = array ? multiply(count, itemBitSize) : itemBitSize;
+        if (name != null) {
+            this.registerField(new FieldLayout(name, type, this.position(), size, array ? itemBitSize : size));
+        }
+        this.advance(size);
+    }
+
+    private void registerField(final FieldLayout field) {
+        for (int i = 1; i < this.frames.size(); i++) {
+            if (this.frames.get(i).count != -2L) {
+                field.insideStructArray = true;
+                break;
+            }
+        }
+        this.fields.add(field);
+        this.fieldsForPath.put(field.getFieldInfo().getFieldPath(), field);
+    }
+
+    private void advance(final long bits) {
+        final Frame frame = this.frame();
+        frame.offset = add(frame.offset, bits);
+        if (this.frames.size() == 1 && frame.offset >= 0L) {
+            this.fixedPrefixBitSize = frame.offset;
+        }
+    }
+
+    @Override
+    public void visitStart() {
+        this.fields.clear();
+        this.fieldsForPath.clear();
+        this.structureElementBitSizes.clear();
+        this.frames.clear();
+        this.frames.add(new Frame(-1, 0L, 1L, null));
+        this.counterBase = 0L;
+        this.bitSize = UNKNOWN;
+        this.fixedPrefixBitSize = 0L;
+    }
+
+    @Override
+    public void visitEnd() {
+        this.bitSize = this.frame().offset;
+        this.frames.clear();
+    }
+
+    @Override
+    public void visitActionItem(final int offsetInCompiledBlock, final int actionType, final JBBPIntegerValueEvaluator nullableArgument) {
+        final Frame frame = this.frame();
+        switch (actionType & 0xF) {
+            case JBBPCompiler.CODE_SKIP: {
+                this.advance(multiply(constantOf(nullableArgument), 8L));
+            }
+            break;
+            case JBBPCompiler.CODE_ALIGN: {
+                frame.positionDependent = true;
+                final long position = this.position();
+                final long align = constantOf(nullableArgument);
+                if (position < 0L || align < 0L || (align > 1L && this.counterBase < 0L)) {
+                    frame.offset = UNKNOWN;
+                } else {
+                    final long aligned = toByteBorder(position);
+                    final long padding = align > 1L ? (align - ((aligned - this.counterBase) / 8L) % align) % align : 0L;
+                    this.advance(aligned - position + padding * 8L);
+                }
+            }
+            break;
+            case JBBPCompiler.CODE_RESET_COUNTER: {
+                frame.positionDependent = true;
+                final long position = this.position();
+                if (position < 0L) {
+                    frame.offset = UNKNOWN;
+                    this.counterBase = UNKNOWN;
+                } else {
+                    this.counterBase = toByteBorder(position);
+                    this.advance(this.counterBase - position);
+                }
+            }
+            break;
+            default:
+                throw new Error("Unexpected action, contact developer!");
+        }
+    }
+
+    @Override
+    public void visitPrimitiveField(final int offsetInCompiledBlock, final int primitiveType, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStreamAsArray, final JBBPIntegerValueEvaluator nullableArraySize) {
+        final long itemSize;
+        switch (primitiveType) {
+            case JBBPCompiler.CODE_BOOL:
+            case JBBPCompiler.CODE_BYTE:
+            case JBBPCompiler.CODE_UBYTE:
+                itemSize = 8L;
+                break;
+            case JBBPCompiler.CODE_SHORT:
+            case JBBPCompiler.CODE_USHORT:
+                itemSize = 16L;
+                break;
+            case JBBPCompiler.CODE_INT:
+                itemSize = 32L;
+                break;
+            case JBBPCompiler.CODE_LONG:
+                itemSize = 64L;
+                break;
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+        this.addItem(nullableNameFieldInfo, primitiveType, itemSize, readWholeStreamAsArray ? UNKNOWN : constantOf(nullableArraySize), readWholeStreamAsArray || nullableArraySize != null);
+    }
+
+    @Override
+    public void visitBitField(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPIntegerValueEvaluator notNullFieldSize, final JBBPIntegerValueEvaluator nullableArraySize) {
+        this.addItem(nullableNameFieldInfo, JBBPCompiler.CODE_BIT, constantOf(notNullFieldSize), constantOf(nullableArraySize), nullableArraySize != null);
+    }
+
+    @Override
+    public void visitVarField(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStreamIntoArray, final JBBPIntegerValueEvaluator nullableArraySize, final JBBPIntegerValueEvaluator extraDataValueEvaluator) {
+        this.addItem(nullableNameFieldInfo, JBBPCompiler.CODE_VAR, UNKNOWN, UNKNOWN, readWholeStreamIntoArray || nullableArraySize != null);
+    }
+
+    @Override
+    public void visitCustomField(final int offsetInCompiledBlock, final JBBPFieldTypeParameterContainer notNullfieldType, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStream, final JBBPIntegerValueEvaluator nullableArraySizeEvaluator, final JBBPIntegerValueEvaluator extraDataValueEvaluator) {
+        this.addItem(nullableNameFieldInfo, JBBPCompiler.CODE_CUSTOMTYPE, UNKNOWN, UNKNOWN, readWholeStream || nullableArraySizeEvaluator != null);
+    }
+
+    @Override
+    public void visitStructureStart(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPIntegerValueEvaluator nullableArraySize) {
+        final long count = nullableArraySize == null ? 1L : constantOf(nullableArraySize);
+        FieldLayout layout = null;
+        if (nullableNameFieldInfo != null) {
+            layout = new FieldLayout(nullableNameFieldInfo, JBBPCompiler.CODE_STRUCT_START, this.position(), UNKNOWN, UNKNOWN);
+            this.registerField(layout);
+        }
+        this.frames.add(new Frame(offsetInCompiledBlock, this.position(), nullableArraySize == null ? -2L : count, layout));
+    }
+
+    @Override
+    public void visitStructureEnd(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo) {
+        final Frame frame = this.frames.remove(this.frames.size() - 1);
+        final boolean array = frame.count != -2L;
+        final long count = array ? frame.count : 1L;
+
+        final long elementSize = frame.offset;
+        final long size = frame.positionDependent && count > 1L ? UNKNOWN : multiply(count, elementSize);
+
+        if (frame.layout != null) {
+            frame.layout.bitSize = size;
+            frame.layout.elementBitSize = elementSize;
+        }
+        this.structureElementBitSizes.put(frame.offsetInCompiledBlock, frame.positionDependent ? UNKNOWN : elementSize);
+
+        if (count > 1L && frame.positionDependent) {
+            this.counterBase = UNKNOWN;
+        }
+        this.frame().positionDependent |= frame.positionDependent;
+        this.advance(size);
+    }
+
+    /**
+     * Get size of the whole block in bits.
+     *
+     * @return the size in bits or {@link #UNKNOWN} if it is not fixed
+     */
+    public long getBitSize() {
+        return this.bitSize;
+    }
+
+    /**
+     * Get size of the whole block in bytes.
+     *
+     * @return the size in bytes or {@link #UNKNOWN} if it is not fixed or not byte aligned
+     */
+    public long getByteSize() {
+        return this.bitSize < 0L || (this.bitSize & 7L) != 0L ? UNKNOWN : this.bitSize >> 3;
+    }
+
+    /**
+     * Check that the whole block has fixed size.
+     *
+     * @return true if size of the block doesn't depend on data
+     */
+    public boolean isFixedSize() {
+        return this.bitSize >= 0L;
+    }
+
+    /**
+     * Get number of bits in the beginning of the block which layout is fixed,
+     * offsets of all fields placed after are unknown.
+     *
+     * @return the size of the fixed part in bits
+     */
+    public long getFixedPrefixBitSize() {
+        return this.fixedPrefixBitSize;
+    }
+
+    /**
+     * Get size of one element of a structure (or of the structure if it is not
+     * an array), the size is known only if it doesn't depend on parsed data
+     * and on the position of the element, so that every element can be read
+     * from any place of a stream.
+     *
+     * @param offsetInCompiledBlock offset of the structure start in the compiled block
+     * @return the size in bits or {@link #UNKNOWN} if it is not fixed or there is no structure start at the offset
+     */
+    public long getStructureElementBitSize(final int offsetInCompiledBlock) {
+        final Long result = this.structureElementBitSizes.get(offsetInCompiledBlock);
+        return result == null ? UNKNOWN : result;
+    }
+
+    /**
+     * Get layouts of all named fields in their order in the compiled block.
+     *
+     * @return unmodifiable list of field layouts, must not be null
+     */
+    public List<FieldLayout> getFields() {
+        return Collections.unmodifiableList(this.fields);
+    }
+
+    /**
+     * Find layout for a named field.
+     *
+     * @param fieldPath field path, must not be null
+     * @return found layout or null if there is not such field
+     */
+    public FieldLayout findFieldForPath(final String fieldPath) {
+        return this.fieldsForPath.get(JBBPUtils.normalizeFieldNameOrPath(fieldPath));
+    }
+
+    /**
+     * Find layout for a named field info.
+     *
+     * @param fieldInfo named field info, must not be null
+     * @return found layout or null if there is not such field
+     */
+    public FieldLayout findFieldForInfo(final JBBPNamedFieldInfo fieldInfo) {
+        return this.fieldsForPath.get(fieldInfo.getFieldPath());
+    }
+
+    /**
+     * Opened structure during analysis.
+     */
+    private static final class Frame {
+
+        /**
+         * Offset of the structure start in the compiled block, negative for the root.
+         */
+        private final int offsetInCompiledBlock;
+        /**
+         * Absolute start position of the structure in bits.
+         */
+        private final long start;
+        /**
+         * Number of structure elements, -2 if it is not an array.
+         */
+        private final long count;
+        /**
+         * Layout of the structure if it is named one.
+         */
+        private final FieldLayout layout;
+        /**
+         * Current offset in the structure in bits.
+         */
+        private long offset;
+        /**
+         * Flag shows that the structure contains position dependent items like align.
+         */
+        private boolean positionDependent;
+
+        private Frame(final int offsetInCompiledBlock, final long start, final long count, final FieldLayout layout) {
+            this.offsetInCompiledBlock = offsetInCompiledBlock;
+            this.start = start;
+            this.count = count;
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * Layout of a named field.
+     */
+    public static final class FieldLayout {
+
+        private final JBBPNamedFieldInfo fieldInfo;
+        private final int type;
+        private final long bitOffset;
+        private long bitSize;
+        private long elementBitSize;
+        private boolean insideStructArray;
+
+        private FieldLayout(final JBBPNamedFieldInfo fieldInfo, final int type, final long bitOffset, final long bitSize, final long elementBitSize) {
+            this.fieldInfo = fieldInfo;
+            this.type = type;
+            this.bitOffset = bitOffset;
+            this.bitSize = bitSize;
+            this.elementBitSize = elementBitSize;
+        }
+
+        /**
+         * Get the field info.
+         *
+         * @return the field info, must not be null
+         */
+        public JBBPNamedFieldInfo getFieldInfo() {
+            return this.fieldInfo;
+        }
+
+        /**
+         * Get the field type.
+         *
+         * @return the field type as compiler code
+         * @see JBBPCompiler#CODE_STRUCT_START
+         * @see JBBPCompiler#CODE_INT
+         */
+        public int getType() {
+            return this.type;
+        }
+
+        /**
+         * Get absolute offset of the field.
+         *
+         * @return the offset in bits or {@link #UNKNOWN}
+         */
+        public long getBitOffset() {
+            return this.bitOffset;
+        }
+
+        /**
+         * Get absolute offset of the field in bytes.
+         *
+         * @return the offset in bytes or {@link #UNKNOWN} if it is unknown or not byte aligned
+         */
+        public long getByteOffset() {
+            return this.bitOffset < 0L || (this.bitOffset & 7L) != 0L ? UNKNOWN : this.bitOffset >> 3;
+        }
+
+        /**
+         * Get whole size of the field, for arrays it is size of all elements.
+         *
+         * @return the size in bits or {@link #UNKNOWN}
+         */
+        public long getBitSize() {
+            return this.bitSize;
+        }
+
+        /**
+         * Get size of an array element, for non-array fields it is the field size.
+         *
+         * @return the size in bits or {@link #UNKNOWN}
+         */
+        public long getElementBitSize() {
+            return this.elementBitSize;
+        }
+
+        /**
+         * Check that the field is placed inside a structure array, in the case
+         * its offset is calculated for the first array element.
+         *
+         * @return true if any structure containing the field is an array
+         */
+        public boolean isInsideStructArray() {
+            return this.insideStructArray;
+        }
+
+        /**
+         * Get byte alignment of the field start.
+         *
+         * @return the greatest power of two (up to 8) which divides the byte offset, 0 if the offset is unknown or not byte aligned
+         */
+        public int getByteAlignment() {
+            final long offset = this.getByteOffset();
+            if (offset < 0L) {
+                return 0;
+            }
+            int result = 1;
+            while (result < 8 && offset % (result << 1) == 0L) {
+                result <<= 1;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return this.fieldInfo.getFieldPath() + "[offset=" + this.bitOffset + ",size=" + this.bitSize + ']';
+        }
+    }
+}
@@ -0,0 +1,859 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.conversion;
+
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.compiler.varlen.JBBPIntegerValueEvaluator;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.igormaznitsa.jbbp.compiler.conversion.ByteCodeBuffer.*;
+
+/**
+ * Implementation of converter to convert a compiled JBBPParser into byte code of
+ * a successor of {@link com.igormaznitsa.jbbp.JBBPCompiledParser}, so that the class
+ * can be loaded and used without any java compiler. The Generated read method
+ * makes direct calls of the bit input stream and calculates expressions inline.
+ * Parsers with variable fields, custom fields, external values in expressions or
+ * with the flag to skip remaining fields on EOF are not supported and
+ * UnsupportedOperationException is thrown for them during visiting, use
+ * {@link #isSupported(int, JBBPCompiledBlock)} to check a parser before conversion.
+ *
+ * @since 1.3.0
+ */
+public class ParserToByteCodeConverter extends CompiledBlockVisitor {
+
+    private static final String COMPILED_PARSER = "com/igormaznitsa/jbbp/JBBPCompiledParser";
+    private static final String PARSER = "com/igormaznitsa/jbbp/JBBPParser";
+    private static final String BIT_INPUT_STREAM = "com/igormaznitsa/jbbp/io/JBBPBitInputStream";
+    private static final String BIT_NUMBER = "com/igormaznitsa/jbbp/io/JBBPBitNumber";
+    private static final String BYTE_ORDER = "com/igormaznitsa/jbbp/io/JBBPByteOrder";
+    private static final String NAMED_FIELD_INFO = "com/igormaznitsa/jbbp/compiler/JBBPNamedFieldInfo";
+    private static final String PARSING_EXCEPTION = "com/igormaznitsa/jbbp/exceptions/JBBPParsingException";
+    private static final String MODEL = "com/igormaznitsa/jbbp/model/";
+    private static final String ABSTRACT_FIELD = MODEL + "JBBPAbstractField";
+    private static final String STRUCT = MODEL + "JBBPFieldStruct";
+    private static final String ARRAY_STRUCT = MODEL + "JBBPFieldArrayStruct";
+
+    private static final String DESC_NAME = 'L' + NAMED_FIELD_INFO + ';';
+    private static final String DESC_BIT_NUMBER = 'L' + BIT_NUMBER + ';';
+    private static final String DESC_BYTE_ORDER = 'L' + BYTE_ORDER + ';';
+    private static final String DESC_READ = "(L" + BIT_INPUT_STREAM + ";Lcom/igormaznitsa/jbbp/JBBPVarFieldProcessor;Lcom/igormaznitsa/jbbp/JBBPExternalValueProvider;)L" + STRUCT + ';';
+
+    private static final int LOCAL_IN = 1;
+
+    /**
+     * Max size of method code, jump offsets are signed shorts.
+     */
+    private static final int MAX_METHOD_CODE = Short.MAX_VALUE;
+    /**
+     * Max size of code generated for an instruction including its exception handler.
+     */
+    private static final int MAX_INSTRUCTION_CODE = 128;
+    /**
+     * Max size of code generated for an expression item.
+     */
+    private static final int MAX_EXPRESSION_ITEM_CODE = 8;
+
+    /**
+     * Binary name of the target class.
+     */
+    private final String className;
+
+    /**
+     * Indexes of named fields in the compiled block.
+     */
+    private final Map<JBBPNamedFieldInfo, Integer> namedFieldIndexes = new IdentityHashMap<JBBPNamedFieldInfo, Integer>();
+
+    /**
+     * Local variables to keep values of fields used in expressions.
+     */
+    private final Map<JBBPNamedFieldInfo, Integer> valueLocals = new IdentityHashMap<JBBPNamedFieldInfo, Integer>();
+
+    /**
+     * Structure frames where fields used in expressions have been read.
+     */
+    private final Map<JBBPNamedFieldInfo, Frame> readValues = new IdentityHashMap<JBBPNamedFieldInfo, Frame>();
+
+    /**
+     * Handlers to be written after the method body, every item contains label and field path.
+     */
+    private final List<Object[]> handlers = new ArrayList<Object[]>();
+
+    private ByteCodeBuffer buffer;
+    private ByteCodeBuffer.Code code;
+    private int localNamedFields;
+    private Frame frame;
+
+    /**
+     * The Field contains conversion result after process end.
+     */
+    private byte[] result;
+
+    /**
+     * Constructor.
+     *
+     * @param className     binary name of the target class, must not be null
+     * @param notNullParser the parser to be converted, must not be null
+     */
+    public ParserToByteCodeConverter(final String className, final JBBPParser notNullParser) {
+        this(className, notNullParser.getFlags(), notNullParser.getCompiledBlock());
+    }
+
+    /**
+     * The Main constructor.
+     *
+     * @param className            binary name of the target class, must not be null
+     * @param parserFlags          the parser flags to be used for conversion
+     * @param notNullCompiledBlock the compiled parser data block, must not be null
+     */
+    public ParserToByteCodeConverter(final String className, final int parserFlags, final JBBPCompiledBlock notNullCompiledBlock) {
+        super(parserFlags, notNullCompiledBlock);
+        this.className = className.replace('.', '/');
+    }
+
+    /**
+     * Check that a parser can be converted. It must not contain var and custom
+     * fields, external values in expressions and the flag to skip remaining
+     * fields on EOF, also generated code must fit into limits of a class file.
+     *
+     * @param parserFlags   the parser flags
+     * @param compiledBlock the compiled parser data block, must not be null
+     * @return true if the parser can be converted, false otherwise
+     */
+    public static boolean isSupported(final int parserFlags, final JBBPCompiledBlock compiledBlock) {
+        if ((parserFlags & JBBPParser.FLAG_SKIP_REMAINING_FIELDS_IF_EOF) != 0
+                || compiledBlock.hasVarFields()
+                || compiledBlock.getCustomTypeFields().length != 0) {
+            return false;
+        }
+
+        for (final JBBPNamedFieldInfo field : compiledBlock.getNamedFields()) {
+            if (field.getFieldPath().length() * 3 > MAX_METHOD_CODE) {
+                return false;
+            }
+        }
+
+        final int[] expressionItems = new int[1];
+        final boolean[] externalValues = new boolean[1];
+        if (compiledBlock.getArraySizeEvaluators() != null) {
+            final ExpressionEvaluatorVisitor counter = new ExpressionVisitorAdapter() {
+                @Override
+                public ExpressionEvaluatorVisitor visitSpecial(final Special specialField) {
+                    expressionItems[0]++;
+                    return this;
+                }
+
+                @Override
+                public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+                    externalValues[0] |= nullableNameFieldInfo == null;
+                    expressionItems[0]++;
+                    return this;
+                }
+
+                @Override
+                public ExpressionEvaluatorVisitor visitOperator(final Operator operator) {
+                    expressionItems[0]++;
+                    return this;
+                }
+
+                @Override
+                public ExpressionEvaluatorVisitor visitConstant(final int value) {
+                    expressionItems[0]++;
+                    return this;
+                }
+            };
+            for (final JBBPIntegerValueEvaluator e : compiledBlock.getArraySizeEvaluators()) {
+                e.visitItems(compiledBlock, 0, counter);
+            }
+        }
+
+        return !externalValues[0]
+                && (long) compiledBlock.getInstructions().length * MAX_INSTRUCTION_CODE + (long) expressionItems[0] * MAX_EXPRESSION_ITEM_CODE <= MAX_METHOD_CODE;
+    }
+
+    /**
+     * Get result of the conversion process.
+     *
+     * @return the class file content, it will not be null if the process completed without errors.
+     */
+    public byte[] getResult() {
+        return this.result;
+    }
+
+    @Override
+    public void visitStart() {
+        if (this.isFlagSkipRemainingFieldsIfEOF()) {
+            throw new UnsupportedOperationException("Flag to skip remaining fields on EOF is not supported");
+        }
+
+        this.buffer = new ByteCodeBuffer();
+        this.code = this.buffer.new Code(4);
+        this.namedFieldIndexes.clear();
+        this.valueLocals.clear();
+        this.readValues.clear();
+        this.handlers.clear();
+        this.result = null;
+
+        final JBBPNamedFieldInfo[] namedFields = this.compiledBlock.getNamedFields();
+        for (int i = 0; i < namedFields.length; i++) {
+            this.namedFieldIndexes.put(namedFields[i], i);
+        }
+
+        this.localNamedFields = this.code.newLocal();
+        this.code.aload(0).getField(COMPILED_PARSER, "namedFields", '[' + DESC_NAME).astore(this.localNamedFields);
+
+        final ExpressionEvaluatorVisitor collector = new ExpressionVisitorAdapter() {
+            @Override
+            public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+                if (nullableNameFieldInfo == null) {
+                    throw new UnsupportedOperationException("External values are not supported [" + nullableExternalFieldName + ']');
+                }
+                if (!valueLocals.containsKey(nullableNameFieldInfo)) {
+                    final int local = code.newLocal();
+                    code.pushInt(0).istore(local);
+                    valueLocals.put(nullableNameFieldInfo, local);
+                }
+                return this;
+            }
+        };
+        if (this.compiledBlock.getArraySizeEvaluators() != null) {
+            for (final JBBPIntegerValueEvaluator e : this.compiledBlock.getArraySizeEvaluators()) {
+                e.visitItems(this.compiledBlock, 0, collector);
+            }
+        }
+
+        this.frame = newFrame(null, null, false);
+    }
+
+    @Override
+    public void visitEnd() {
+        this.code.typeOp(NEW, STRUCT, 1).op(DUP, 1)
+                .typeOp(NEW, NAMED_FIELD_INFO, 1).op(DUP, 1).pushString("").pushString("").pushInt(-1)
+                .invoke(INVOKESPECIAL, NAMED_FIELD_INFO, "<init>", "(Ljava/lang/String;Ljava/lang/String;I)V")
+                .aload(this.frame.fieldsLocal)
+                .invoke(INVOKESPECIAL, STRUCT, "<init>", '(' + DESC_NAME + '[' + 'L' + ABSTRACT_FIELD + ";)V")
+                .op(ARETURN, -1);
+        closeFrame(this.frame);
+
+        for (final Object[] h : this.handlers) {
+            this.code.markHandler((Integer) h[0])
+                    .typeOp(NEW, PARSING_EXCEPTION, 1)
+                    .op(DUP_X1, 1)
+                    .op(SWAP, 0)
+                    .pushString("Can't parse field '" + h[1] + "' for IOException")
+                    .op(SWAP, 0)
+                    .invoke(INVOKESPECIAL, PARSING_EXCEPTION, "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V")
+                    .op(ATHROW, -1);
+        }
+
+        this.buffer.addMethod(ACC_PROTECTED, "read", DESC_READ, this.code);
+
+        final ByteCodeBuffer.Code constructor = this.buffer.new Code(2);
+        constructor.aload(0).aload(1)
+                .invoke(INVOKESPECIAL, COMPILED_PARSER, "<init>", "(L" + PARSER + ";)V")
+                .op(RETURN, 0);
+        this.buffer.addMethod(ACC_PUBLIC, "<init>", "(L" + PARSER + ";)V", constructor);
+
+        this.result = this.buffer.toClassFile(ACC_PUBLIC | ACC_FINAL | ACC_SUPER, this.className, COMPILED_PARSER);
+        this.buffer = null;
+        this.code = null;
+    }
+
+    @Override
+    public void visitActionItem(final int offsetInCompiledBlock, final int actionType, final JBBPIntegerValueEvaluator nullableArgument) {
+        switch (actionType) {
+            case JBBPCompiler.CODE_RESET_COUNTER: {
+                this.code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "resetCounter", "()V");
+            }
+            break;
+            case JBBPCompiler.CODE_ALIGN: {
+                this.code.aload(LOCAL_IN);
+                pushValue(nullableArgument, offsetInCompiledBlock);
+                this.code.op(I2L, 1).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "align", "(J)V");
+            }
+            break;
+            case JBBPCompiler.CODE_SKIP: {
+                this.code.aload(LOCAL_IN);
+                pushValue(nullableArgument, offsetInCompiledBlock);
+                this.code.invoke(INVOKESTATIC, COMPILED_PARSER, "skip", "(L" + BIT_INPUT_STREAM + ";I)V");
+            }
+            break;
+            default:
+                throw new Error("Unexpected action, contact developer! [" + actionType + ']');
+        }
+    }
+
+    @Override
+    public void visitPrimitiveField(final int offsetInCompiledBlock, final int primitiveType, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStreamAsArray, final JBBPIntegerValueEvaluator nullableArraySize) {
+        final int lengthLocal = prepareArrayLength(nullableArraySize, offsetInCompiledBlock, nullableNameFieldInfo);
+        final int slot = this.frame.fieldCounter++;
+        final int start = this.code.position();
+
+        this.code.aload(this.frame.fieldsLocal).pushInt(slot);
+
+        if (nullableArraySize == null) {
+            final Integer valueLocal = this.valueLocals.get(nullableNameFieldInfo);
+            final String type;
+            final String desc;
+            switch (primitiveType) {
+                case JBBPCompiler.CODE_BOOL: {
+                    type = "JBBPFieldBoolean";
+                    desc = "Z";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readBoolean", "()Z");
+                    storeValue(valueLocal, false);
+                }
+                break;
+                case JBBPCompiler.CODE_BYTE: {
+                    type = "JBBPFieldByte";
+                    desc = "B";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readByte", "()I").op(I2B, 0);
+                    storeValue(valueLocal, false);
+                }
+                break;
+                case JBBPCompiler.CODE_UBYTE: {
+                    type = "JBBPFieldUByte";
+                    desc = "B";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readByte", "()I");
+                    if (valueLocal != null) {
+                        this.code.op(DUP, 1).pushInt(0xFF).op(IAND, -1).istore(valueLocal);
+                    }
+                    this.code.op(I2B, 0);
+                }
+                break;
+                case JBBPCompiler.CODE_SHORT: {
+                    type = "JBBPFieldShort";
+                    desc = "S";
+                    newField(type, nullableNameFieldInfo);
+                    readOrdered("readUnsignedShort", "I", byteOrder);
+                    this.code.op(I2S, 0);
+                    storeValue(valueLocal, false);
+                }
+                break;
+                case JBBPCompiler.CODE_USHORT: {
+                    type = "JBBPFieldUShort";
+                    desc = "S";
+                    newField(type, nullableNameFieldInfo);
+                    readOrdered("readUnsignedShort", "I", byteOrder);
+                    storeValue(valueLocal, false);
+                    this.code.op(I2S, 0);
+                }
+                break;
+                case JBBPCompiler.CODE_INT: {
+                    type = "JBBPFieldInt";
+                    desc = "I";
+                    newField(type, nullableNameFieldInfo);
+                    readOrdered("readInt", "I", byteOrder);
+                    storeValue(valueLocal, false);
+                }
+                break;
+                case JBBPCompiler.CODE_LONG: {
+                    type = "JBBPFieldLong";
+                    desc = "J";
+                    newField(type, nullableNameFieldInfo);
+                    readOrdered("readLong", "J", byteOrder);
+                    storeValue(valueLocal, true);
+                }
+                break;
+                default:
+                    throw new Error("Unexpected primitive type, contact developer! [" + primitiveType + ']');
+            }
+            this.code.invoke(INVOKESPECIAL, MODEL + type, "<init>", '(' + DESC_NAME + desc + ")V");
+        } else {
+            final String type;
+            final String desc;
+            switch (primitiveType) {
+                case JBBPCompiler.CODE_BOOL: {
+                    type = "JBBPFieldArrayBoolean";
+                    desc = "[Z";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN);
+                    pushArrayLength(nullableArraySize, lengthLocal);
+                    this.code.invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readBoolArray", "(I)[Z");
+                }
+                break;
+                case JBBPCompiler.CODE_BYTE:
+                case JBBPCompiler.CODE_UBYTE: {
+                    type = primitiveType == JBBPCompiler.CODE_BYTE ? "JBBPFieldArrayByte" : "JBBPFieldArrayUByte";
+                    desc = "[B";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN);
+                    pushArrayLength(nullableArraySize, lengthLocal);
+                    readOrderedArray("readByteArray", desc, byteOrder);
+                }
+                break;
+                case JBBPCompiler.CODE_SHORT:
+                case JBBPCompiler.CODE_USHORT: {
+                    type = primitiveType == JBBPCompiler.CODE_SHORT ? "JBBPFieldArrayShort" : "JBBPFieldArrayUShort";
+                    desc = "[S";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN);
+                    pushArrayLength(nullableArraySize, lengthLocal);
+                    readOrderedArray("readShortArray", desc, byteOrder);
+                }
+                break;
+                case JBBPCompiler.CODE_INT: {
+                    type = "JBBPFieldArrayInt";
+                    desc = "[I";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN);
+                    pushArrayLength(nullableArraySize, lengthLocal);
+                    readOrderedArray("readIntArray", desc, byteOrder);
+                }
+                break;
+                case JBBPCompiler.CODE_LONG: {
+                    type = "JBBPFieldArrayLong";
+                    desc = "[J";
+                    newField(type, nullableNameFieldInfo);
+                    this.code.aload(LOCAL_IN);
+                    pushArrayLength(nullableArraySize, lengthLocal);
+                    readOrderedArray("readLongArray", desc, byteOrder);
+                }
+                break;
+                default:
+                    throw new Error("Unexpected primitive type, contact developer! [" + primitiveType + ']');
+            }
+            this.code.invoke(INVOKESPECIAL, MODEL + type, "<init>", '(' + DESC_NAME + desc + ")V");
+        }
+
+        this.code.op(AASTORE, -3);
+        registerHandler(start, nullableNameFieldInfo);
+        markRead(nullableNameFieldInfo);
+    }
+
+    @Override
+    public void visitBitField(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPIntegerValueEvaluator notNullFieldSize, final JBBPIntegerValueEvaluator nullableArraySize) {
+        final JBBPBitNumber constBitNumber;
+        final int bitNumberLocal;
+        if (notNullFieldSize instanceof IntConstValueEvaluator) {
+            constBitNumber = JBBPBitNumber.decode(notNullFieldSize.eval(null, offsetInCompiledBlock, this.compiledBlock, null));
+            bitNumberLocal = -1;
+        } else {
+            constBitNumber = null;
+            bitNumberLocal = this.code.newLocal();
+            pushValue(notNullFieldSize, offsetInCompiledBlock);
+            this.code.invoke(INVOKESTATIC, BIT_NUMBER, "decode", "(I)" + DESC_BIT_NUMBER).astore(bitNumberLocal);
+        }
+
+        final int lengthLocal = prepareArrayLength(nullableArraySize, offsetInCompiledBlock, nullableNameFieldInfo);
+        final int slot = this.frame.fieldCounter++;
+        final int start = this.code.position();
+
+        this.code.aload(this.frame.fieldsLocal).pushInt(slot);
+        if (nullableArraySize == null) {
+            newField("JBBPFieldBit", nullableNameFieldInfo);
+            this.code.aload(LOCAL_IN);
+            pushBitNumber(constBitNumber, bitNumberLocal);
+            this.code.invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readBitField", '(' + DESC_BIT_NUMBER + ")B").pushInt(0xFF).op(IAND, -1);
+            storeValue(this.valueLocals.get(nullableNameFieldInfo), false);
+            pushBitNumber(constBitNumber, bitNumberLocal);
+            this.code.invoke(INVOKESPECIAL, MODEL + "JBBPFieldBit", "<init>", '(' + DESC_NAME + 'I' + DESC_BIT_NUMBER + ")V");
+        } else {
+            newField("JBBPFieldArrayBit", nullableNameFieldInfo);
+            this.code.aload(LOCAL_IN);
+            pushArrayLength(nullableArraySize, lengthLocal);
+            pushBitNumber(constBitNumber, bitNumberLocal);
+            this.code.invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "readBitsArray", "(I" + DESC_BIT_NUMBER + ")[B");
+            pushBitNumber(constBitNumber, bitNumberLocal);
+            this.code.invoke(INVOKESPECIAL, MODEL + "JBBPFieldArrayBit", "<init>", '(' + DESC_NAME + "[B" + DESC_BIT_NUMBER + ")V");
+        }
+        this.code.op(AASTORE, -3);
+        registerHandler(start, nullableNameFieldInfo);
+        markRead(nullableNameFieldInfo);
+    }
+
+    @Override
+    public void visitStructureStart(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPIntegerValueEvaluator nullableArraySize) {
+        final Frame parent = this.frame;
+        final int slot = parent.fieldCounter++;
+
+        if (nullableArraySize == null) {
+            final int start = this.code.position();
+            this.frame = newFrame(parent, nullableNameFieldInfo, false);
+            this.frame.slot = slot;
+            this.frame.start = start;
+        } else {
+            final boolean wholeStream = nullableArraySize instanceof IntConstValueEvaluator && nullableArraySize.eval(null, offsetInCompiledBlock, this.compiledBlock, null) < 0;
+            final int lengthLocal = wholeStream ? -1 : prepareArrayLength(nullableArraySize, offsetInCompiledBlock, nullableNameFieldInfo);
+
+            final int start = this.code.position();
+            final int elementsLocal = this.code.newLocal();
+            final int indexLocal;
+            if (wholeStream) {
+                indexLocal = -1;
+                this.code.typeOp(NEW, "java/util/ArrayList", 1).op(DUP, 1)
+                        .invoke(INVOKESPECIAL, "java/util/ArrayList", "<init>", "()V")
+                        .astore(elementsLocal);
+            } else {
+                indexLocal = this.code.newLocal();
+                pushArrayLength(nullableArraySize, lengthLocal);
+                this.code.typeOp(ANEWARRAY, STRUCT, 0).astore(elementsLocal)
+                        .pushInt(0).istore(indexLocal);
+            }
+
+            final int loopLabel = this.code.newLabel();
+            final int endLabel = this.code.newLabel();
+            this.code.mark(loopLabel);
+            if (wholeStream) {
+                this.code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "hasAvailableData", "()Z").jump(IFEQ, endLabel);
+            } else {
+                this.code.iload(indexLocal);
+                pushArrayLength(nullableArraySize, lengthLocal);
+                this.code.jump(IF_ICMPGE, endLabel);
+            }
+
+            this.frame = newFrame(parent, nullableNameFieldInfo, true);
+            this.frame.slot = slot;
+            this.frame.start = start;
+            this.frame.elementsLocal = elementsLocal;
+            this.frame.indexLocal = indexLocal;
+            this.frame.loopLabel = loopLabel;
+            this.frame.endLabel = endLabel;
+        }
+    }
+
+    @Override
+    public void visitStructureEnd(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo) {
+        final Frame current = this.frame;
+        final Frame parent = current.parent;
+        closeFrame(current);
+
+        if (current.array) {
+            if (current.indexLocal < 0) {
+                this.code.aload(current.elementsLocal);
+                makeStruct(current);
+                this.code.invoke(INVOKEVIRTUAL, "java/util/ArrayList", "add", "(Ljava/lang/Object;)Z").op(POP, -1);
+            } else {
+                this.code.aload(current.elementsLocal).iload(current.indexLocal);
+                makeStruct(current);
+                this.code.op(AASTORE, -3).iinc(current.indexLocal, 1);
+            }
+            this.code.jump(GOTO, current.loopLabel).mark(current.endLabel);
+
+            this.code.aload(parent.fieldsLocal).pushInt(current.slot).typeOp(NEW, ARRAY_STRUCT, 1).op(DUP, 1);
+            loadName(current.name);
+            this.code.aload(current.elementsLocal);
+            if (current.indexLocal < 0) {
+                this.code.invoke(INVOKESTATIC, COMPILED_PARSER, "toStructArray", "(Ljava/util/List;)[L" + STRUCT + ';');
+            }
+            this.code.invoke(INVOKESPECIAL, ARRAY_STRUCT, "<init>", '(' + DESC_NAME + "[L" + STRUCT + ";)V").op(AASTORE, -3);
+        } else {
+            this.code.aload(parent.fieldsLocal).pushInt(current.slot);
+            makeStruct(current);
+            this.code.op(AASTORE, -3);
+        }
+
+        this.frame = parent;
+        registerHandler(current.start, current.name);
+    }
+
+    @Override
+    public void visitVarField(final int offsetInCompiledBlock, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStreamIntoArray, final JBBPIntegerValueEvaluator nullableArraySize, final JBBPIntegerValueEvaluator extraDataValueEvaluator) {
+        throw new UnsupportedOperationException("Var fields are not supported");
+    }
+
+    @Override
+    public void visitCustomField(final int offsetInCompiledBlock, final JBBPFieldTypeParameterContainer notNullfieldType, final JBBPNamedFieldInfo nullableNameFieldInfo, final JBBPByteOrder byteOrder, final boolean readWholeStream, final JBBPIntegerValueEvaluator nullableArraySizeEvaluator, final JBBPIntegerValueEvaluator extraDataValueEvaluator) {
+        throw new UnsupportedOperationException("Custom fields are not supported");
+    }
+
+    /**
+     * Start a new structure frame, it allocates array for structure fields which
+     * size will be defined when the frame is closed.
+     */
+    private Frame newFrame(final Frame parent, final JBBPNamedFieldInfo name, final boolean array) {
+        final int sizePosition = this.code.shortPushPlaceholder();
+        final int local = this.code.newLocal();
+        this.code.typeOp(ANEWARRAY, ABSTRACT_FIELD, 0).astore(local);
+        return new Frame(parent, name, array, local, sizePosition);
+    }
+
+    private void closeFrame(final Frame frame) {
+        this.code.patchShortPush(frame.sizePosition, frame.fieldCounter);
+    }
+
+    private void makeStruct(final Frame frame) {
+        this.code.typeOp(NEW, STRUCT, 1).op(DUP, 1);
+        loadName(frame.name);
+        this.code.aload(frame.fieldsLocal)
+                .invoke(INVOKESPECIAL, STRUCT, "<init>", '(' + DESC_NAME + "[L" + ABSTRACT_FIELD + ";)V");
+    }
+
+    private void newField(final String type, final JBBPNamedFieldInfo name) {
+        this.code.typeOp(NEW, MODEL + type, 1).op(DUP, 1);
+        loadName(name);
+    }
+
+    private void loadName(final JBBPNamedFieldInfo name) {
+        if (name == null) {
+            this.code.op(ACONST_NULL, 1);
+        } else {
+            this.code.aload(this.localNamedFields).pushInt(this.namedFieldIndexes.get(name)).op(AALOAD, -1);
+        }
+    }
+
+    private void readOrdered(final String method, final String resultDesc, final JBBPByteOrder byteOrder) {
+        this.code.aload(LOCAL_IN).getStatic(BYTE_ORDER, byteOrder.name(), DESC_BYTE_ORDER)
+                .invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, method, '(' + DESC_BYTE_ORDER + ')' + resultDesc);
+    }
+
+    private void readOrderedArray(final String method, final String resultDesc, final JBBPByteOrder byteOrder) {
+        this.code.getStatic(BYTE_ORDER, byteOrder.name(), DESC_BYTE_ORDER)
+                .invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, method, "(I" + DESC_BYTE_ORDER + ')' + resultDesc);
+    }
+
+    private void pushBitNumber(final JBBPBitNumber constBitNumber, final int local) {
+        if (constBitNumber == null) {
+            this.code.aload(local);
+        } else {
+            this.code.getStatic(BIT_NUMBER, constBitNumber.name(), DESC_BIT_NUMBER);
+        }
+    }
+
+    /**
+     * Keep a copy of the int value on the stack top in the value local if the
+     * field is used by expressions.
+     */
+    private void storeValue(final Integer valueLocal, final boolean longValue) {
+        if (valueLocal != null) {
+            if (longValue) {
+                this.code.op(DUP2, 2).op(L2I, -1).istore(valueLocal);
+            } else {
+                this.code.op(DUP, 1).istore(valueLocal);
+            }
+        }
+    }
+
+    private void markRead(final JBBPNamedFieldInfo name) {
+        if (name != null && this.valueLocals.containsKey(name)) {
+            this.readValues.put(name, this.frame);
+        }
+    }
+
+    private void registerHandler(final int start, final JBBPNamedFieldInfo name) {
+        if (name != null) {
+            final int label = this.code.newLabel();
+            this.code.addHandler(start, this.code.position(), label, "java/io/IOException");
+            this.handlers.add(new Object[]{label, name.getFieldPath()});
+        }
+    }
+
+    /**
+     * Calculate array length into a local if it is calculated by an expression.
+     *
+     * @return the local or -1 if the length is constant one or the field is not array
+     */
+    private int prepareArrayLength(final JBBPIntegerValueEvaluator arraySize, final int offset, final JBBPNamedFieldInfo name) {
+        if (arraySize == null || arraySize instanceof IntConstValueEvaluator) {
+            return -1;
+        }
+        final int local = this.code.newLocal();
+        pushValue(arraySize, offset);
+        loadName(name);
+        this.code.invoke(INVOKESTATIC, COMPILED_PARSER, "checkArrayLength", "(I" + DESC_NAME + ")I").istore(local);
+        return local;
+    }
+
+    private void pushArrayLength(final JBBPIntegerValueEvaluator arraySize, final int local) {
+        if (local < 0) {
+            this.code.pushInt(arraySize.eval(null, 0, this.compiledBlock, null));
+        } else {
+            this.code.iload(local);
+        }
+    }
+
+    /**
+     * Write code to calculate an evaluator value on the stack.
+     */
+    private void pushValue(final JBBPIntegerValueEvaluator evaluator, final int offset) {
+        if (evaluator instanceof IntConstValueEvaluator) {
+            this.code.pushInt(evaluator.eval(null, offset, this.compiledBlock, null));
+            return;
+        }
+        evaluator.visitItems(this.compiledBlock, offset, new ExpressionVisitorAdapter() {
+            @Override
+            public ExpressionEvaluatorVisitor visitSpecial(final Special specialField) {
+                code.aload(LOCAL_IN).invoke(INVOKEVIRTUAL, BIT_INPUT_STREAM, "getCounter", "()J").op(L2I, -1);
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+                if (!isDefinitelyRead(nullableNameFieldInfo)) {
+                    throw new Error("Detected field used before reading, contact developer! [" + nullableNameFieldInfo.getFieldPath() + ']');
+                }
+                code.iload(valueLocals.get(nullableNameFieldInfo));
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitOperator(final Operator operator) {
+                switch (operator) {
+                    case ADD:
+                        code.op(IADD, -1);
+                        break;
+                    case SUB:
+                        code.op(ISUB, -1);
+                        break;
+                    case MUL:
+                        code.op(IMUL, -1);
+                        break;
+                    case DIV:
+                        code.op(IDIV, -1);
+                        break;
+                    case MOD:
+                        code.op(IREM, -1);
+                        break;
+                    case AND:
+                        code.op(IAND, -1);
+                        break;
+                    case OR:
+                        code.op(IOR, -1);
+                        break;
+                    case XOR:
+                        code.op(IXOR, -1);
+                        break;
+                    case LSHIFT:
+                        code.op(ISHL, -1);
+                        break;
+                    case RSHIFT:
+                        code.op(ISHR, -1);
+                        break;
+                    case URSHIFT:
+                        code.op(IUSHR, -1);
+                        break;
+                    case NOT:
+                        code.pushInt(-1).op(IXOR, -1);
+                        break;
+                    case UNARY_MINUS:
+                        code.op(INEG, 0);
+                        break;
+                    case UNARY_PLUS:
+                        break;
+                    default:
+                        throw new Error("Unexpected operator, contact developer! [" + operator + ']');
+                }
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitConstant(final int value) {
+                code.pushInt(value);
+                return this;
+            }
+        });
+    }
+
+    /**
+     * Check that a field value has been read before the current position for
+     * sure. It is so if the field has been read and all structure arrays
+     * containing the field are still open.
+     */
+    private boolean isDefinitelyRead(final JBBPNamedFieldInfo name) {
+        final Frame readFrame = this.readValues.get(name);
+        if (readFrame == null) {
+            return false;
+        }
+        for (Frame f = readFrame; f != null; f = f.parent) {
+            if (f.array) {
+                boolean open = false;
+                for (Frame c = this.frame; c != null; c = c.parent) {
+                    if (c == f) {
+                        open = true;
+                        break;
+                    }
+                }
+                if (!open) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Structure being generated.
+     */
+    private static final class Frame {
+        private final Frame parent;
+        private final JBBPNamedFieldInfo name;
+        private final boolean array;
+        private final int fieldsLocal;
+        private final int sizePosition;
+        private int fieldCounter;
+        private int slot;
+        private int start;
+        private int elementsLocal;
+        private int indexLocal;
+        private int loopLabel;
+        private int endLabel;
+
+        private Frame(final Frame parent, final JBBPNamedFieldInfo name, final boolean array, final int fieldsLocal, final int sizePosition) {
+            this.parent = parent;
+            this.name = name;
+            this.array = array;
+            this.fieldsLocal = fieldsLocal;
+            this.sizePosition = sizePosition;
+        }
+    }
+
+    /**
+     * Expression visitor doing nothing by default.
+     */
+    private static class ExpressionVisitorAdapter implements ExpressionEvaluatorVisitor {
+        @Override
+        public ExpressionEvaluatorVisitor visitStart() {
+            return this;
+        }
+
+        @Override
+        public ExpressionEvaluatorVisitor visitSpecial(final Special specialField) {
+            return this;
+        }
+
+        @Override
+        public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+            return this;
+        }
+
+        @Override
+        public ExpressionEvaluatorVisitor visitOperator(final Operator operator) {
+            return this;
+        }
+
+        @Override
+        public ExpressionEvaluatorVisitor visitConstant(final int value) {
+            return this;
+        }
+
+        @Override
+        public ExpressionEvaluatorVisitor visitEnd() {
+            return this;
+        }
+    }
+}
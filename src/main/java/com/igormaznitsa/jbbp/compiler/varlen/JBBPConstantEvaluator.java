@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.varlen;
+
+import com.igormaznitsa.jbbp.JBBPNamedNumericFieldMap;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.conversion.ExpressionEvaluatorVisitor;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+
+/**
+ * Class implements an evaluator which returns a constant, it is made for
+ * expressions which contain only constants.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPConstantEvaluator implements JBBPIntegerValueEvaluator {
+    private static final long serialVersionUID = 4301539163420974219L;
+
+    /**
+     * The Value returned by the evaluator.
+     */
+    private final int value;
+
+    /**
+     * The Constructor.
+     *
+     * @param value the value to be returned by the evaluator
+     */
+    public JBBPConstantEvaluator(final int value) {
+        this.value = value;
+    }
+
+    /**
+     * Get the value returned by the evaluator.
+     *
+     * @return the constant value
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    @Override
+    public int eval(final JBBPBitInputStream inStream, final int currentCompiledBlockOffset, final JBBPCompiledBlock block, final JBBPNamedNumericFieldMap fieldMap) {
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(this.value);
+    }
+
+    @Override
+    public void visitItems(final JBBPCompiledBlock block, final int currentCompiledBlockOffset, final ExpressionEvaluatorVisitor visitor) {
+        visitor.visitStart();
+        visitor.visitConstant(this.value);
+        visitor.visitEnd();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.varlen;
+
+/**
+ * Base class of objects living for one parsing call which keeps inside buffers
+ * of expression evaluators. Its methods are package-private, so that the
+ * buffers are visible only for evaluators and they are not a part of API of
+ * successors.
+ *
+ * @since 1.3.0
+ */
+public abstract class JBBPEvaluationContext {
+
+    /**
+     * Buffer to be used as expression evaluation stack, it is reused by all
+     * evaluations of the parsing call.
+     */
+    private int[] evaluationStack;
+
+    /**
+     * Constructor.
+     */
+    protected JBBPEvaluationContext() {
+    }
+
+    /**
+     * Take a buffer to be used as an expression evaluation stack. A new buffer
+     * is made only if the kept one is taken by another evaluation or it is too
+     * short. The Taken buffer should be returned through
+     * {@link #releaseEvaluationStack(int[])}.
+     *
+     * @param minSize min size of the needed stack
+     * @return a buffer which length is not less than the min size
+     */
+    int[] takeEvaluationStack(final int minSize) {
+        final int[] result = this.evaluationStack;
+        if (result == null || result.length < minSize) {
+            return new int[Math.max(minSize, 16)];
+        }
+        this.evaluationStack = null;
+        return result;
+    }
+
+    /**
+     * Return an evaluation stack buffer to be reused by next evaluations.
+     *
+     * @param stack the buffer taken through {@link #takeEvaluationStack(int)}, must not be null
+     */
+    void releaseEvaluationStack(final int[] stack) {
+        if (this.evaluationStack == null || this.evaluationStack.length < stack.length) {
+            this.evaluationStack = stack;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.varlen;
+
+import com.igormaznitsa.jbbp.compiler.conversion.ExpressionEvaluatorVisitor;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Codec to write and read evaluators of compiled blocks in the explicit binary
+ * format of exported blocks. Every evaluator is written as a type tag followed
+ * by its fields, so that changes of evaluator classes don't change the format.
+ * Only evaluators made by {@link JBBPEvaluatorFactory} are supported. The
+ * Codec also provides helpers to write and read strings, counters and byte
+ * arrays of the format, lengths read from a payload are checked against its
+ * remaining bytes.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPEvaluatorCodec {
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_ONLY_FIELD = 1;
+    private static final int TAG_CONSTANT = 2;
+    private static final int TAG_FIELD_CONSTANT = 3;
+    private static final int TAG_EXPRESSION = 4;
+
+    /**
+     * Max size of a chunk allocated during reading of a byte array from a stream.
+     */
+    private static final int MAX_CHUNK_SIZE = 0x10000;
+
+    private JBBPEvaluatorCodec() {
+    }
+
+    /**
+     * Make an IOException with a cause.
+     *
+     * @param message the message of the exception
+     * @param cause   the cause, can be null
+     * @return the made exception, must not be null
+     */
+    public static IOException makeIOException(final String message, final Throwable cause) {
+        final IOException result = new IOException(message);
+        result.initCause(cause);
+        return result;
+    }
+
+    /**
+     * Write an evaluator.
+     *
+     * @param out       the output, must not be null
+     * @param evaluator the evaluator to be written, can be null
+     * @throws IOException it will be thrown for transport errors or if the evaluator type is not supported
+     */
+    public static void write(final DataOutput out, final JBBPIntegerValueEvaluator evaluator) throws IOException {
+        JBBPUtils.assertNotNull(out, "Output must not be null");
+        if (evaluator == null) {
+            out.writeByte(TAG_NULL);
+        } else if (evaluator instanceof JBBPOnlyFieldEvaluator) {
+            final JBBPOnlyFieldEvaluator field = (JBBPOnlyFieldEvaluator) evaluator;
+            out.writeByte(TAG_ONLY_FIELD);
+            writeString(out, field.getExternalFieldName());
+            out.writeInt(field.getNamedFieldIndex());
+        } else if (evaluator instanceof JBBPConstantEvaluator) {
+            out.writeByte(TAG_CONSTANT);
+            out.writeInt(((JBBPConstantEvaluator) evaluator).getValue());
+        } else if (evaluator instanceof JBBPFieldConstantEvaluator) {
+            final JBBPFieldConstantEvaluator fieldConstant = (JBBPFieldConstantEvaluator) evaluator;
+            out.writeByte(TAG_FIELD_CONSTANT);
+            writeString(out, fieldConstant.getExternalFieldName());
+            out.writeInt(fieldConstant.getNamedFieldIndex());
+            writeString(out, fieldConstant.getOperator().name());
+            out.writeInt(fieldConstant.getConstant());
+            out.writeBoolean(fieldConstant.isConstantLeft());
+        } else if (evaluator instanceof JBBPExpressionEvaluator) {
+            final JBBPExpressionEvaluator expression = (JBBPExpressionEvaluator) evaluator;
+            out.writeByte(TAG_EXPRESSION);
+            writeString(out, expression.getExpressionSource());
+            writeBytes(out, expression.getCompiledExpression());
+            final String[] externalNames = expression.getExternalValueNames();
+            out.writeInt(externalNames == null ? -1 : externalNames.length);
+            if (externalNames != null) {
+                for (final String name : externalNames) {
+                    writeString(out, name);
+                }
+            }
+        } else {
+            throw new IOException("Unsupported evaluator type can't be exported [" + evaluator.getClass().getName() + ']');
+        }
+    }
+
+    /**
+     * Read an evaluator written by {@link #write(DataOutput, JBBPIntegerValueEvaluator)}.
+     *
+     * @param in the payload, must not be null
+     * @return the read evaluator, can be null
+     * @throws IOException                       it will be thrown for wrong data
+     * @throws java.nio.BufferUnderflowException it will be thrown if the payload is ended
+     */
+    public static JBBPIntegerValueEvaluator read(final ByteBuffer in) throws IOException {
+        JBBPUtils.assertNotNull(in, "Input must not be null");
+        final int tag = in.get() & 0xFF;
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_ONLY_FIELD: {
+                final String externalName = readString(in);
+                return new JBBPOnlyFieldEvaluator(externalName, in.getInt());
+            }
+            case TAG_CONSTANT:
+                return new JBBPConstantEvaluator(in.getInt());
+            case TAG_FIELD_CONSTANT: {
+                final String externalName = readString(in);
+                final int index = in.getInt();
+                final String operatorName = readString(in);
+                final ExpressionEvaluatorVisitor.Operator operator;
+                try {
+                    operator = ExpressionEvaluatorVisitor.Operator.valueOf(String.valueOf(operatorName));
+                } catch (IllegalArgumentException ex) {
+                    throw makeIOException("Unknown operator [" + operatorName + ']', ex);
+                }
+                final int constant = in.getInt();
+                final boolean constantIsLeft = in.get() != 0;
+                try {
+                    return new JBBPFieldConstantEvaluator(externalName, index, operator, constant, constantIsLeft);
+                } catch (IllegalArgumentException ex) {
+                    throw makeIOException("Wrong field constant evaluator data", ex);
+                }
+            }
+            case TAG_EXPRESSION: {
+                final String source = readString(in);
+                if (source == null) {
+                    throw new IOException("Wrong expression evaluator data");
+                }
+                final byte[] compiled = readBytes(in);
+                final int externalNumber = in.getInt();
+                String[] externalNames = null;
+                if (externalNumber != -1) {
+                    externalNames = new String[checkCounter(in, externalNumber)];
+                    for (int i = 0; i < externalNumber; i++) {
+                        externalNames[i] = readString(in);
+                    }
+                }
+                return new JBBPExpressionEvaluator(compiled, source, externalNames);
+            }
+            default:
+                throw new IOException("Unknown evaluator tag [" + tag + ']');
+        }
+    }
+
+    /**
+     * Write a string which can be null.
+     *
+     * @param out   the output, must not be null
+     * @param value the string, can be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    public static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeBytes(out, value.getBytes("UTF-8"));
+        }
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in the payload, must not be null
+     * @return the string, can be null
+     * @throws IOException                       it will be thrown if the length is wrong or greater than the remaining payload
+     * @throws java.nio.BufferUnderflowException it will be thrown if the payload is ended
+     */
+    public static String readString(final ByteBuffer in) throws IOException {
+        final int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        final byte[] bytes = new byte[checkCounter(in, length)];
+        in.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Write a byte array with its length.
+     *
+     * @param out  the output, must not be null
+     * @param data the array, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    public static void writeBytes(final DataOutput out, final byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Read a byte array written by {@link #writeBytes(DataOutput, byte[])}.
+     *
+     * @param in the payload, must not be null
+     * @return the array, must not be null
+     * @throws IOException                       it will be thrown if the length is wrong or greater than the remaining payload
+     * @throws java.nio.BufferUnderflowException it will be thrown if the payload is ended
+     */
+    public static byte[] readBytes(final ByteBuffer in) throws IOException {
+        final byte[] result = new byte[readCounter(in)];
+        in.get(result);
+        return result;
+    }
+
+    /**
+     * Read a counter of items or bytes. Every counted item takes at least one
+     * byte, so that the counter can't be greater than the remaining payload.
+     *
+     * @param in the payload, must not be null
+     * @return the counter value, zero or positive one
+     * @throws IOException                       it will be thrown if the counter is negative or greater than the remaining payload
+     * @throws java.nio.BufferUnderflowException it will be thrown if the payload is ended
+     */
+    public static int readCounter(final ByteBuffer in) throws IOException {
+        return checkCounter(in, in.getInt());
+    }
+
+    /**
+     * Read a payload of defined length from a stream. Memory is allocated by
+     * chunks while data are read, so that a wrong length can't allocate more
+     * memory than the stream really contains.
+     *
+     * @param in     the stream, must not be null
+     * @param length the payload length
+     * @return the read payload, must not be null
+     * @throws IOException it will be thrown for transport errors, negative length or if the stream is ended
+     */
+    public static byte[] readPayload(final DataInput in, final int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Wrong payload length [" + length + ']');
+        }
+        byte[] result = new byte[Math.min(length, MAX_CHUNK_SIZE)];
+        int read = 0;
+        while (true) {
+            in.readFully(result, read, result.length - read);
+            read = result.length;
+            if (read == length) {
+                break;
+            }
+            result = Arrays.copyOf(result, (int) Math.min(length, read * 2L));
+        }
+        return result;
+    }
+
+    /**
+     * Check a counter value against the remaining payload.
+     *
+     * @param in      the payload, must not be null
+     * @param counter the counter value to check
+     * @return the counter value
+     * @throws IOException it will be thrown if the counter is negative or greater than the remaining payload
+     */
+    private static int checkCounter(final ByteBuffer in, final int counter) throws IOException {
+        if (counter < 0 || counter > in.remaining()) {
+            throw new IOException("Wrong counter value in exported data [" + counter + ']');
+        }
+        return counter;
+    }
+}
@@ -43,7 +43,11 @@ public final class JBBPEvaluatorFactory {
     }
 
     /**
-     * Make an appropriate evaluator for an expression text.
+     * Make an appropriate evaluator for an expression text. Constant parts of
+     * expressions are calculated during compilation and simple expressions get
+     * specialized evaluators (a constant, a field or an operation between a
+     * field and a constant), other expressions are evaluated through the
+     * universal expression evaluator.
      *
      * @param expression     an expression text, must not be null
      * @param namedFields    a named field list
@@ -51,13 +55,15 @@ public final class JBBPEvaluatorFactory {
      * @return a generated evaluator, it will not be null in any case
      * @see JBBPExpressionEvaluator
      * @see JBBPOnlyFieldEvaluator
+     * @see JBBPConstantEvaluator
+     * @see JBBPFieldConstantEvaluator
      */
     public JBBPIntegerValueEvaluator make(final String expression, final List<JBBPNamedFieldInfo> namedFields, final byte[] compiledScript) {
         final JBBPIntegerValueEvaluator result;
 
         if (JBBPExpressionEvaluator.hasExpressionOperators(expression)) {
             // expression
-            result = new JBBPExpressionEvaluator(expression, namedFields, compiledScript);
+            result = new JBBPExpressionEvaluator(expression, namedFields, compiledScript).specialize();
         } else {
             // only field
             final String externalFieldName;
@@ -74,7 +80,7 @@ public final class JBBPEvaluatorFactory {
                     }
                 }
                 if (index < 0) {
-                    result = new JBBPExpressionEvaluator(expression, namedFields, compiledScript);
+                    result = new JBBPExpressionEvaluator(expression, namedFields, compiledScript).specialize();
                 } else {
                     JBBPCompilerUtils.assertFieldIsNotArrayOrInArray(namedFields.get(index), namedFields, compiledScript);
                     result = new JBBPOnlyFieldEvaluator(externalFieldName, index);
@@ -28,6 +28,7 @@ import com.igormaznitsa.jbbp.utils.JBBPUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -114,6 +115,10 @@ public final class JBBPExpressionEvaluator implements JBBPIntegerValueEvaluator
      * Code for right sign shift '>>>' operator.
      */
     private static final int CODE_RSIGNSHIFT = 17;
+    /**
+     * Code of the stream counter, it is used only in the pre-decoded program.
+     */
+    private static final int CODE_STREAM_COUNTER = 18;
 
     /**
      * Array of operator priorities for their codes.
@@ -149,6 +154,19 @@ public final class JBBPExpressionEvaluator implements JBBPIntegerValueEvaluator
      * @since 1.2.1
      */
     private final int maxStackDepth;
+    /**
+     * Pre-decoded operation codes of the expression.
+     *
+     * @since 1.3.0
+     */
+    private transient int[] programCodes;
+    /**
+     * Pre-decoded operands of operations, a constant value or index of a
+     * named field or an external value name.
+     *
+     * @since 1.3.0
+     */
+    private transient int[] programOperands;
 
     /**
      * The Constructor. It makes compilation an expression into internal representation.
@@ -400,6 +418,283 @@ public final class JBBPExpressionEvaluator implements JBBPIntegerValueEvaluator
         this.externalValueNames = externalValueNameList.isEmpty() ? null : externalValueNameList.toArray(new String[externalValueNameList.size()]);
 
         this.maxStackDepth = calculateMaxStackDepth();
+        this.decodeProgram();
+    }
+
+    /**
+     * Constructor to restore an already compiled expression.
+     *
+     * @param compiledExpression the compiled expression, must not be null
+     * @param expression         the source expression, must not be null
+     * @param externalValueNames names of external values, can be null
+     * @since 1.3.0
+     */
+    JBBPExpressionEvaluator(final byte[] compiledExpression, final String expression, final String[] externalValueNames) {
+        this.expressionSource = expression;
+        this.compiledExpression = compiledExpression;
+        this.externalValueNames = externalValueNames;
+        this.maxStackDepth = calculateMaxStackDepth();
+        this.decodeProgram();
+    }
+
+    /**
+     * Get the source expression.
+     *
+     * @return the source expression, must not be null
+     * @since 1.3.0
+     */
+    String getExpressionSource() {
+        return this.expressionSource;
+    }
+
+    /**
+     * Get the compiled expression.
+     *
+     * @return the compiled expression, must not be changed
+     * @since 1.3.0
+     */
+    byte[] getCompiledExpression() {
+        return this.compiledExpression;
+    }
+
+    /**
+     * Get names of external values.
+     *
+     * @return names of external values, null if there are not any
+     * @since 1.3.0
+     */
+    String[] getExternalValueNames() {
+        return this.externalValueNames;
+    }
+
+    /**
+     * Decode the compiled expression into arrays of operation codes and
+     * operands, so that evaluation doesn't need to unpack values.
+     */
+    private void decodeProgram() {
+        final List<Integer> codes = new ArrayList<Integer>();
+        final List<Integer> operands = new ArrayList<Integer>();
+
+        final JBBPIntCounter counter = new JBBPIntCounter();
+        while (counter.get() < this.compiledExpression.length) {
+            final int code = this.compiledExpression[counter.getAndIncrement()];
+            int operand = 0;
+            int decodedCode = code;
+            switch (code) {
+                case CODE_EXTVAR: {
+                    operand = JBBPUtils.unpackInt(this.compiledExpression, counter);
+                    if ("$".equals(this.externalValueNames[operand])) {
+                        decodedCode = CODE_STREAM_COUNTER;
+                    }
+                }
+                break;
+                case CODE_VAR:
+                case CODE_CONST: {
+                    operand = JBBPUtils.unpackInt(this.compiledExpression, counter);
+                }
+                break;
+                default: {
+                    // operation without operand
+                }
+                break;
+            }
+            if (!foldConstants(decodedCode, codes, operands)) {
+                codes.add(decodedCode);
+                operands.add(operand);
+            }
+        }
+
+        this.programCodes = new int[codes.size()];
+        this.programOperands = new int[operands.size()];
+        for (int i = 0; i < this.programCodes.length; i++) {
+            this.programCodes[i] = codes.get(i);
+            this.programOperands[i] = operands.get(i);
+        }
+    }
+
+    /**
+     * Try to calculate an operation over constants placed on the top of the
+     * decoded program, the result replaces the constants.
+     *
+     * @param code     the code of the operation
+     * @param codes    the list of already decoded codes, must not be null
+     * @param operands the list of already decoded operands, must not be null
+     * @return true if the operation has been calculated and must not be added, false otherwise
+     */
+    private static boolean foldConstants(final int code, final List<Integer> codes, final List<Integer> operands) {
+        final int size = codes.size();
+        switch (code) {
+            case CODE_UNARYPLUS: {
+                return true;
+            }
+            case CODE_UNARYMINUS:
+            case CODE_NOT: {
+                if (size > 0 && codes.get(size - 1) == CODE_CONST) {
+                    final int value = operands.get(size - 1);
+                    operands.set(size - 1, code == CODE_NOT ? ~value : -value);
+                    return true;
+                }
+                return false;
+            }
+            case CODE_ADD:
+            case CODE_MINUS:
+            case CODE_MUL:
+            case CODE_DIV:
+            case CODE_MOD:
+            case CODE_OR:
+            case CODE_XOR:
+            case CODE_AND:
+            case CODE_LSHIFT:
+            case CODE_RSHIFT:
+            case CODE_RSIGNSHIFT: {
+                if (size > 1 && codes.get(size - 1) == CODE_CONST && codes.get(size - 2) == CODE_CONST) {
+                    final int right = operands.get(size - 1);
+                    if (right == 0 && (code == CODE_DIV || code == CODE_MOD)) {
+                        // keep the error for evaluation time
+                        return false;
+                    }
+                    codes.remove(size - 1);
+                    operands.remove(size - 1);
+                    operands.set(size - 2, calculate(code, operands.get(size - 2), right));
+                    return true;
+                }
+                return false;
+            }
+            default: {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Calculate a binary operation.
+     *
+     * @param code  the code of the operation
+     * @param left  the left operand
+     * @param right the right operand
+     * @return the result of the operation
+     */
+    private static int calculate(final int code, final int left, final int right) {
+        switch (code) {
+            case CODE_ADD:
+                return left + right;
+            case CODE_MINUS:
+                return left - right;
+            case CODE_MUL:
+                return left * right;
+            case CODE_DIV:
+                return left / right;
+            case CODE_MOD:
+                return left % right;
+            case CODE_OR:
+                return left | right;
+            case CODE_XOR:
+                return left ^ right;
+            case CODE_AND:
+                return left & right;
+            case CODE_LSHIFT:
+                return left << right;
+            case CODE_RSHIFT:
+                return left >> right;
+            case CODE_RSIGNSHIFT:
+                return left >>> right;
+            default:
+                throw new Error("Detected unsupported operation, contact developer");
+        }
+    }
+
+    /**
+     * Make an evaluator specialized for the expression if the expression (after
+     * constant folding) is a constant, a single field or an operation between
+     * a field and a constant.
+     *
+     * @return a specialized evaluator or the evaluator itself if there is no
+     * specialized one for the expression
+     * @see JBBPConstantEvaluator
+     * @see JBBPOnlyFieldEvaluator
+     * @see JBBPFieldConstantEvaluator
+     * @since 1.3.0
+     */
+    JBBPIntegerValueEvaluator specialize() {
+        final int[] codes = this.programCodes;
+        final int[] operands = this.programOperands;
+
+        JBBPIntegerValueEvaluator result = this;
+        if (codes.length == 1) {
+            if (codes[0] == CODE_CONST) {
+                result = new JBBPConstantEvaluator(operands[0]);
+            } else if (isField(codes[0])) {
+                result = new JBBPOnlyFieldEvaluator(externalFieldName(codes[0], operands[0]), fieldIndex(codes[0], operands[0]));
+            }
+        } else if (codes.length == 3) {
+            final ExpressionEvaluatorVisitor.Operator operator = code2visitorOperator(codes[2]);
+            if (operator != null && operator.getArgsNumber() == 2) {
+                if (isField(codes[0]) && codes[1] == CODE_CONST) {
+                    result = new JBBPFieldConstantEvaluator(externalFieldName(codes[0], operands[0]), fieldIndex(codes[0], operands[0]), operator, operands[1], false);
+                } else if (codes[0] == CODE_CONST && isField(codes[1])) {
+                    result = new JBBPFieldConstantEvaluator(externalFieldName(codes[1], operands[1]), fieldIndex(codes[1], operands[1]), operator, operands[0], true);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isField(final int code) {
+        return code == CODE_VAR || code == CODE_EXTVAR || code == CODE_STREAM_COUNTER;
+    }
+
+    private String externalFieldName(final int code, final int operand) {
+        return code == CODE_VAR ? null : this.externalValueNames[operand];
+    }
+
+    private static int fieldIndex(final int code, final int operand) {
+        return code == CODE_VAR ? operand : -1;
+    }
+
+    /**
+     * Get visitor operator for an operation code.
+     *
+     * @param code the operation code
+     * @return the visitor operator or null if the code is not an operator
+     */
+    private static ExpressionEvaluatorVisitor.Operator code2visitorOperator(final int code) {
+        switch (code) {
+            case CODE_ADD:
+                return ExpressionEvaluatorVisitor.Operator.ADD;
+            case CODE_AND:
+                return ExpressionEvaluatorVisitor.Operator.AND;
+            case CODE_OR:
+                return ExpressionEvaluatorVisitor.Operator.OR;
+            case CODE_XOR:
+                return ExpressionEvaluatorVisitor.Operator.XOR;
+            case CODE_MINUS:
+                return ExpressionEvaluatorVisitor.Operator.SUB;
+            case CODE_UNARYMINUS:
+                return ExpressionEvaluatorVisitor.Operator.UNARY_MINUS;
+            case CODE_UNARYPLUS:
+                return ExpressionEvaluatorVisitor.Operator.UNARY_PLUS;
+            case CODE_NOT:
+                return ExpressionEvaluatorVisitor.Operator.NOT;
+            case CODE_DIV:
+                return ExpressionEvaluatorVisitor.Operator.DIV;
+            case CODE_MUL:
+                return ExpressionEvaluatorVisitor.Operator.MUL;
+            case CODE_MOD:
+                return ExpressionEvaluatorVisitor.Operator.MOD;
+            case CODE_LSHIFT:
+                return ExpressionEvaluatorVisitor.Operator.LSHIFT;
+            case CODE_RSHIFT:
+                return ExpressionEvaluatorVisitor.Operator.RSHIFT;
+            case CODE_RSIGNSHIFT:
+                return ExpressionEvaluatorVisitor.Operator.URSHIFT;
+            default:
+                return null;
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.decodeProgram();
     }
 
     /**
@@ -578,101 +873,110 @@ public final class JBBPExpressionEvaluator implements JBBPIntegerValueEvaluator
      */
     @Override
     public int eval(final JBBPBitInputStream inStream, final int currentCompiledBlockOffset, final JBBPCompiledBlock compiledBlockData, final JBBPNamedNumericFieldMap fieldMap) {
-        final int[] stack = new int[this.maxStackDepth];
-
-        int stackDepth = 0;
+        final JBBPEvaluationContext context = fieldMap;
+        final int[] stack = context == null ? new int[this.maxStackDepth] : context.takeEvaluationStack(this.maxStackDepth);
+        try {
+            final int[] codes = this.programCodes;
+            final int[] operands = this.programOperands;
 
-        final JBBPIntCounter counter = new JBBPIntCounter();
-
-        while (counter.get() < this.compiledExpression.length) {
-            final int code = this.compiledExpression[counter.getAndIncrement()];
-            switch (code) {
-                case CODE_EXTVAR:
-                case CODE_VAR: {
-                    final int index = JBBPUtils.unpackInt(this.compiledExpression, counter);
+            int stackDepth = 0;
 
-                    stack[stackDepth++] = code == CODE_EXTVAR
-                            ? "$".equals(this.externalValueNames[index]) ? (int) inStream.getCounter() : fieldMap.getExternalFieldValue(this.externalValueNames[index], compiledBlockData, this)
-                            : fieldMap.get(compiledBlockData.getNamedFields()[index]).getAsInt();
-                }
-                break;
-                case CODE_CONST: {
-                    stack[stackDepth++] = JBBPUtils.unpackInt(this.compiledExpression, counter);
-                }
-                break;
-                case CODE_ADD: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] += top;
-                }
-                break;
-                case CODE_AND: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] &= top;
-                }
-                break;
-                case CODE_OR: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] |= top;
-                }
-                break;
-                case CODE_XOR: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] ^= top;
-                }
-                break;
-                case CODE_MINUS: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] -= top;
-                }
-                break;
-                case CODE_UNARYMINUS: {
-                    stack[stackDepth - 1] = -stack[stackDepth - 1];
-                }
-                break;
-                case CODE_UNARYPLUS: {
-                    // do nothing
-                }
-                break;
-                case CODE_NOT: {
-                    stack[stackDepth - 1] = ~stack[stackDepth - 1];
-                }
-                break;
-                case CODE_DIV: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] /= top;
-                }
-                break;
-                case CODE_MUL: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] *= top;
-                }
-                break;
-                case CODE_MOD: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] %= top;
-                }
-                break;
-                case CODE_LSHIFT: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] <<= top;
-                }
-                break;
-                case CODE_RSHIFT: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] >>= top;
-                }
-                break;
-                case CODE_RSIGNSHIFT: {
-                    final int top = stack[--stackDepth];
-                    stack[stackDepth - 1] >>>= top;
+            for (int i = 0; i < codes.length; i++) {
+                switch (codes[i]) {
+                    case CODE_STREAM_COUNTER: {
+                        stack[stackDepth++] = (int) inStream.getCounter();
+                    }
+                    break;
+                    case CODE_EXTVAR: {
+                        stack[stackDepth++] = fieldMap.getExternalFieldValue(this.externalValueNames[operands[i]], compiledBlockData, this);
+                    }
+                    break;
+                    case CODE_VAR: {
+                        stack[stackDepth++] = fieldMap.getIntValue(compiledBlockData, operands[i]);
+                    }
+                    break;
+                    case CODE_CONST: {
+                        stack[stackDepth++] = operands[i];
+                    }
+                    break;
+                    case CODE_ADD: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] += top;
+                    }
+                    break;
+                    case CODE_AND: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] &= top;
+                    }
+                    break;
+                    case CODE_OR: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] |= top;
+                    }
+                    break;
+                    case CODE_XOR: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] ^= top;
+                    }
+                    break;
+                    case CODE_MINUS: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] -= top;
+                    }
+                    break;
+                    case CODE_UNARYMINUS: {
+                        stack[stackDepth - 1] = -stack[stackDepth - 1];
+                    }
+                    break;
+                    case CODE_UNARYPLUS: {
+                        // do nothing
+                    }
+                    break;
+                    case CODE_NOT: {
+                        stack[stackDepth - 1] = ~stack[stackDepth - 1];
+                    }
+                    break;
+                    case CODE_DIV: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] /= top;
+                    }
+                    break;
+                    case CODE_MUL: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] *= top;
+                    }
+                    break;
+                    case CODE_MOD: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] %= top;
+                    }
+                    break;
+                    case CODE_LSHIFT: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] <<= top;
+                    }
+                    break;
+                    case CODE_RSHIFT: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] >>= top;
+                    }
+                    break;
+                    case CODE_RSIGNSHIFT: {
+                        final int top = stack[--stackDepth];
+                        stack[stackDepth - 1] >>>= top;
+                    }
+                    break;
+                    default:
+                        throw new Error("Detected unsupported operation, contact developer");
                 }
-                break;
-                default:
-                    throw new Error("Detected unsupported operation, contact developer");
             }
-        }
 
-        return stack[0];
+            return stack[0];
+        } finally {
+            if (context != null) {
+                context.releaseEvaluationStack(stack);
+            }
+        }
     }
 
     @Override
@@ -702,50 +1006,14 @@ public final class JBBPExpressionEvaluator implements JBBPIntegerValueEvaluator
                 case CODE_CONST:
                     visitor.visitConstant(JBBPUtils.unpackInt(this.compiledExpression, counter));
                     break;
-                case CODE_ADD:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.ADD);
-                    break;
-                case CODE_AND:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.AND);
-                    break;
-                case CODE_OR:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.OR);
-                    break;
-                case CODE_XOR:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.XOR);
-                    break;
-                case CODE_MINUS:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.SUB);
-                    break;
-                case CODE_UNARYMINUS:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.UNARY_MINUS);
-                    break;
-                case CODE_UNARYPLUS:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.UNARY_PLUS);
-                    break;
-                case CODE_NOT:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.NOT);
-                    break;
-                case CODE_DIV:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.DIV);
-                    break;
-                case CODE_MUL:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.MUL);
-                    break;
-                case CODE_MOD:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.MOD);
-                    break;
-                case CODE_LSHIFT:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.LSHIFT);
-                    break;
-                case CODE_RSHIFT:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.RSHIFT);
-                    break;
-                case CODE_RSIGNSHIFT:
-                    visitor.visitOperator(ExpressionEvaluatorVisitor.Operator.URSHIFT);
-                    break;
-                default:
-                    throw new Error("Detected unsupported operation, contact developer");
+                default: {
+                    final ExpressionEvaluatorVisitor.Operator operator = code2visitorOperator(code);
+                    if (operator == null) {
+                        throw new Error("Detected unsupported operation, contact developer");
+                    }
+                    visitor.visitOperator(operator);
+                }
+                break;
             }
         }
         visitor.visitEnd();
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.varlen;
+
+import com.igormaznitsa.jbbp.JBBPNamedNumericFieldMap;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.conversion.ExpressionEvaluatorVisitor;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+/**
+ * Class implements an evaluator which makes a binary operation between a
+ * field and a constant, like {@code a+1}, {@code a*4} or {@code 1<<a}. The
+ * Field can be a named field, an external field or the stream counter.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPFieldConstantEvaluator implements JBBPIntegerValueEvaluator {
+    private static final long serialVersionUID = -6532079127385618232L;
+
+    /**
+     * The Index in named field area for the field which is used by the evaluator.
+     */
+    private final int namedFieldIndex;
+    /**
+     * An External field name which value will be requested by the evaluator. It
+     * can be null.
+     */
+    private final String externalFieldName;
+    /**
+     * The Binary operator.
+     */
+    private final ExpressionEvaluatorVisitor.Operator operator;
+    /**
+     * The Constant operand.
+     */
+    private final int constant;
+    /**
+     * Flag shows that the constant is the left operand.
+     */
+    private final boolean constantIsLeft;
+
+    /**
+     * The Constructor.
+     *
+     * @param externalFieldName the external field name, it can be null.
+     * @param namedFieldIndex   the index of a named field in named field area.
+     * @param operator          binary operator, must not be null
+     * @param constant          the constant operand
+     * @param constantIsLeft    true if the constant is the left operand, false if it is the right one
+     * @throws IllegalArgumentException if the operator is not binary one
+     */
+    public JBBPFieldConstantEvaluator(final String externalFieldName, final int namedFieldIndex, final ExpressionEvaluatorVisitor.Operator operator, final int constant, final boolean constantIsLeft) {
+        JBBPUtils.assertNotNull(operator, "Operator must not be null");
+        if (operator.getArgsNumber() != 2) {
+            throw new IllegalArgumentException("Operator must be binary [" + operator + ']');
+        }
+        this.externalFieldName = externalFieldName;
+        this.namedFieldIndex = namedFieldIndex;
+        this.operator = operator;
+        this.constant = constant;
+        this.constantIsLeft = constantIsLeft;
+    }
+
+    /**
+     * Get the operator of the evaluator.
+     *
+     * @return the binary operator, must not be null
+     */
+    public ExpressionEvaluatorVisitor.Operator getOperator() {
+        return this.operator;
+    }
+
+    /**
+     * Get the constant operand.
+     *
+     * @return the constant
+     */
+    public int getConstant() {
+        return this.constant;
+    }
+
+    /**
+     * Check that the constant is the left operand.
+     *
+     * @return true if the constant is the left operand
+     */
+    public boolean isConstantLeft() {
+        return this.constantIsLeft;
+    }
+
+    /**
+     * Get index of the named field used by the evaluator.
+     *
+     * @return the index in named field area, it is meaningless for external fields
+     * @since 1.3.0
+     */
+    int getNamedFieldIndex() {
+        return this.namedFieldIndex;
+    }
+
+    /**
+     * Get name of the external field used by the evaluator.
+     *
+     * @return the external field name, null if a named field is used
+     * @since 1.3.0
+     */
+    String getExternalFieldName() {
+        return this.externalFieldName;
+    }
+
+    @Override
+    public int eval(final JBBPBitInputStream inStream, final int currentCompiledBlockOffset, final JBBPCompiledBlock block, final JBBPNamedNumericFieldMap fieldMap) {
+        final int fieldValue = externalFieldName == null
+                ? fieldMap.getIntValue(block, this.namedFieldIndex)
+                : this.externalFieldName.equals("$")
+                ? (int) inStream.getCounter()
+                : fieldMap.getExternalFieldValue(this.externalFieldName, block, this);
+
+        final int left;
+        final int right;
+        if (this.constantIsLeft) {
+            left = this.constant;
+            right = fieldValue;
+        } else {
+            left = fieldValue;
+            right = this.constant;
+        }
+
+        switch (this.operator) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case DIV:
+                return left / right;
+            case MOD:
+                return left % right;
+            case OR:
+                return left | right;
+            case XOR:
+                return left ^ right;
+            case AND:
+                return left & right;
+            case LSHIFT:
+                return left << right;
+            case RSHIFT:
+                return left >> right;
+            case URSHIFT:
+                return left >>> right;
+            default:
+                throw new Error("Detected unsupported operation, contact developer");
+        }
+    }
+
+    @Override
+    public String toString() {
+        final String field = this.externalFieldName == null ? "NamedFieldIndex=" + this.namedFieldIndex : this.externalFieldName;
+        return this.constantIsLeft ? this.constant + this.operator.getText() + field : field + this.operator.getText() + this.constant;
+    }
+
+    @Override
+    public void visitItems(final JBBPCompiledBlock block, final int currentCompiledBlockOffset, final ExpressionEvaluatorVisitor visitor) {
+        visitor.visitStart();
+
+        if (this.constantIsLeft) {
+            visitor.visitConstant(this.constant);
+        }
+
+        if (this.externalFieldName == null) {
+            visitor.visitField(block.getNamedFields()[this.namedFieldIndex], null);
+        } else {
+            if (this.externalFieldName.equals("$")) {
+                visitor.visitSpecial(ExpressionEvaluatorVisitor.Special.STREAM_COUNTER);
+            } else {
+                visitor.visitField(null, this.externalFieldName);
+            }
+        }
+
+        if (!this.constantIsLeft) {
+            visitor.visitConstant(this.constant);
+        }
+
+        visitor.visitOperator(this.operator);
+        visitor.visitEnd();
+    }
+}
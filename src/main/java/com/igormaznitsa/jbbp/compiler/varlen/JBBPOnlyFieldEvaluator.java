@@ -49,10 +49,30 @@ public final class JBBPOnlyFieldEvaluator implements JBBPIntegerValueEvaluator {
         this.namedFieldIndex = namedFieldIndex;
     }
 
+    /**
+     * Get index of the named field used by the evaluator.
+     *
+     * @return the index in named field area, it is meaningless for external fields
+     * @since 1.3.0
+     */
+    int getNamedFieldIndex() {
+        return this.namedFieldIndex;
+    }
+
+    /**
+     * Get name of the external field used by the evaluator.
+     *
+     * @return the external field name, null if a named field is used
+     * @since 1.3.0
+     */
+    String getExternalFieldName() {
+        return this.externalFieldName;
+    }
+
     @Override
     public int eval(final JBBPBitInputStream inStream, final int currentCompiledBlockOffset, final JBBPCompiledBlock block, final JBBPNamedNumericFieldMap fieldMap) {
         final int result = externalFieldName == null
-                ? fieldMap.get(block.getNamedFields()[this.namedFieldIndex]).getAsInt()
+                ? fieldMap.getIntValue(block, this.namedFieldIndex)
                 : this.externalFieldName.equals("$")
                 ? (int) inStream.getCounter()
                 : fieldMap.getExternalFieldValue(this.externalFieldName, block, this);
@@ -27,7 +27,11 @@ import com.igormaznitsa.jbbp.utils.JBBPUtils;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Abstract class to collect, order and process all fields in a mapped class.
@@ -36,10 +40,9 @@ import java.util.*;
 public abstract class AbstractMappedClassFieldObserver {
 
     /**
-     * Inside cache to keep outOrder of fields for classes for data output. It is
-     * lazy initialized field.
+     * Inside cache to keep resolved write plans of classes for data output.
      */
-    private static volatile Map<Class<?>, Field[]> cachedClasses;
+    private static final ConcurrentMap<Class<?>, ClassPlan> cachedClasses = new ConcurrentHashMap<Class<?>, ClassPlan>();
 
     /**
      * Inside auxiliary method to read object field value.
@@ -71,34 +74,20 @@ public abstract class AbstractMappedClassFieldObserver {
     }
 
     /**
-     * Process an object.
+     * Find cached write plan for a class or make and cache new one.
      *
-     * @param obj                  an object which is an instance of a mapped class, must not be null
-     * @param field                a field where the object has been found, it can be null for first call
-     * @param customFieldProcessor a processor for custom fields, it can be null
+     * @param klazz a mapped class, must not be null
+     * @return the write plan for the class, must not be null
+     * @throws JBBPIllegalArgumentException if a field doesn't have any Bin annotation
      */
-    protected void processObject(final Object obj, final Field field, final Object customFieldProcessor) {
-        JBBPUtils.assertNotNull(obj, "Object must not be null");
-
-        Field[] orderedFields = null;
-
-        final Map<Class<?>, Field[]> fieldz;
-        if (cachedClasses == null) {
-            fieldz = new HashMap<Class<?>, Field[]>();
-            cachedClasses = fieldz;
-        } else {
-            fieldz = cachedClasses;
-            synchronized (fieldz) {
-                orderedFields = fieldz.get(obj.getClass());
-            }
-        }
-
-        if (orderedFields == null) {
+    private static ClassPlan findClassPlan(final Class<?> klazz) {
+        ClassPlan result = cachedClasses.get(klazz);
+        if (result == null) {
             // find out the outOrder of fields and fields which should be serialized
             final List<Class<?>> listOfClassHierarchy = new ArrayList<Class<?>>();
             final List<OrderedField> fields = new ArrayList<OrderedField>();
 
-            Class<?> current = obj.getClass();
+            Class<?> current = klazz;
             while (current != java.lang.Object.class) {
                 listOfClassHierarchy.add(current);
                 current = current.getSuperclass();
@@ -126,39 +115,64 @@ public abstract class AbstractMappedClassFieldObserver {
 
             Collections.sort(fields);
 
-            orderedFields = new Field[fields.size()];
+            final FieldPlan[] orderedFields = new FieldPlan[fields.size()];
             for (int i = 0; i < fields.size(); i++) {
-                orderedFields[i] = fields.get(i).field;
+                final Field f = fields.get(i).field;
+                Bin binAnno = f.getAnnotation(Bin.class);
+                if (binAnno == null) {
+                    binAnno = f.getDeclaringClass().getAnnotation(Bin.class);
+                    if (binAnno == null) {
+                        throw new JBBPIllegalArgumentException("Can't find any Bin annotation to use for " + f + " field");
+                    }
+                }
+                orderedFields[i] = new FieldPlan(f, binAnno);
             }
 
-            synchronized (fieldz) {
-                fieldz.put(obj.getClass(), orderedFields);
+            result = new ClassPlan(klazz.getAnnotation(Bin.class), orderedFields);
+            final ClassPlan alreadyMade = cachedClasses.putIfAbsent(klazz, result);
+            if (alreadyMade != null) {
+                result = alreadyMade;
             }
         }
+        return result;
+    }
 
+    /**
+     * Process an object.
+     *
+     * @param obj                  an object which is an instance of a mapped class, must not be null
+     * @param field                a field where the object has been found, it can be null for first call
+     * @param customFieldProcessor a processor for custom fields, it can be null
+     */
+    protected void processObject(final Object obj, final Field field, final Object customFieldProcessor) {
         if (field != null && !field.isAccessible()) {
             JBBPUtils.makeAccessible(field);
         }
+        this.processObject(obj, field, field == null ? null : field.getAnnotation(Bin.class), customFieldProcessor);
+    }
+
+    /**
+     * Process an object with its cached write plan.
+     *
+     * @param obj                  an object which is an instance of a mapped class, must not be null
+     * @param field                a field where the object has been found, it can be null for first call
+     * @param fieldAnno            the Bin annotation of the field, it can be null
+     * @param customFieldProcessor a processor for custom fields, it can be null
+     */
+    private void processObject(final Object obj, final Field field, final Bin fieldAnno, final Object customFieldProcessor) {
+        JBBPUtils.assertNotNull(obj, "Object must not be null");
 
-        final Bin clazzAnno = obj.getClass().getAnnotation(Bin.class);
-        final Bin fieldAnno = field == null ? null : field.getAnnotation(Bin.class);
+        final ClassPlan classPlan = findClassPlan(obj.getClass());
+        final Bin clazzAnno = classPlan.annotation;
 
         this.onStructStart(obj, field, clazzAnno == null ? fieldAnno : clazzAnno);
 
-        for (final Field f : orderedFields) {
-            Bin binAnno = f.getAnnotation(Bin.class);
-            if (binAnno == null) {
-                binAnno = f.getDeclaringClass().getAnnotation(Bin.class);
-                if (binAnno == null) {
-                    throw new JBBPIllegalArgumentException("Can't find any Bin annotation to use for " + f + " field");
-                }
-            }
-
-            if (binAnno.custom() && customFieldProcessor == null) {
-                throw new JBBPIllegalArgumentException("The Class '" + obj.getClass().getName() + "' contains the field '" + f.getName() + "\' which is a custom one, you must provide a JBBPCustomFieldWriter instance to save the field.");
+        for (final FieldPlan f : classPlan.fields) {
+            if (f.annotation.custom() && customFieldProcessor == null) {
+                throw new JBBPIllegalArgumentException("The Class '" + obj.getClass().getName() + "' contains the field '" + f.field.getName() + "\' which is a custom one, you must provide a JBBPCustomFieldWriter instance to save the field.");
             }
 
-            processObjectField(obj, f, binAnno, customFieldProcessor);
+            this.processObjectField(obj, f, customFieldProcessor);
         }
 
         this.onStructEnd(obj, field, clazzAnno == null ? fieldAnno : clazzAnno);
@@ -175,23 +189,30 @@ public abstract class AbstractMappedClassFieldObserver {
      *                             of custom fields, must not be null if object contains custom fields
      */
     protected void processObjectField(final Object obj, final Field field, final Bin annotation, final Object customFieldProcessor) {
-        if (annotation.custom()) {
+        this.processObjectField(obj, new FieldPlan(field, annotation), customFieldProcessor);
+    }
+
+    /**
+     * Inside auxiliary method to process a field of an object with its resolved write plan.
+     *
+     * @param obj                  the object which field under processing, must not be null
+     * @param plan                 the resolved write plan of the field, must not be null
+     * @param customFieldProcessor an object which will be provided for processing
+     *                             of custom fields, must not be null if object contains custom fields
+     */
+    private void processObjectField(final Object obj, final FieldPlan plan, final Object customFieldProcessor) {
+        final Field field = plan.field;
+        final Bin annotation = plan.annotation;
+        if (plan.custom) {
             this.onFieldCustom(obj, field, annotation, customFieldProcessor, readFieldValue(obj, field));
         } else {
-            final Class<?> fieldType = field.getType();
-
-            final BinType type;
-            if (annotation.type() == BinType.UNDEFINED) {
-                type = BinType.findCompatible(fieldType);
-            } else {
-                type = annotation.type();
-            }
-
-            final boolean reverseBits = annotation.bitOrder() == JBBPBitOrder.MSB0;
+            final Class<?> fieldType = plan.fieldType;
+            final BinType type = plan.type;
+            final boolean reverseBits = plan.reverseBits;
 
             switch (type) {
                 case BIT: {
-                    final JBBPBitNumber bitNumber = annotation.outBitNumber();
+                    final JBBPBitNumber bitNumber = plan.bitNumber;
                     if (fieldType == boolean.class) {
                         this.onFieldBits(obj, field, annotation, bitNumber, ((Boolean) readFieldValue(obj, field)) ? 0xFF : 0x00);
                     } else {
@@ -264,7 +285,7 @@ public abstract class AbstractMappedClassFieldObserver {
                 }
                 break;
                 case STRUCT: {
-                    processObject(readFieldValue(obj, field), field, customFieldProcessor);
+                    processObject(readFieldValue(obj, field), field, plan.fieldAnnotation, customFieldProcessor);
                 }
                 break;
                 default: {
@@ -276,7 +297,7 @@ public abstract class AbstractMappedClassFieldObserver {
                             final int len = Array.getLength(array);
                             this.onArrayStart(obj, field, annotation, len);
 
-                            final JBBPBitNumber bitNumber = annotation.outBitNumber();
+                            final JBBPBitNumber bitNumber = plan.bitNumber;
 
                             if (fieldType.getComponentType() == boolean.class) {
                                 for (int i = 0; i < len; i++) {
@@ -444,7 +465,7 @@ public abstract class AbstractMappedClassFieldObserver {
                             final int len = Array.getLength(array);
                             this.onArrayStart(obj, field, annotation, len);
                             for (int i = 0; i < len; i++) {
-                                this.processObject(Array.get(array, i), field, customFieldProcessor);
+                                this.processObject(Array.get(array, i), field, plan.fieldAnnotation, customFieldProcessor);
                             }
                             this.onArrayEnd(obj, field, annotation);
                         }
@@ -597,11 +618,67 @@ public abstract class AbstractMappedClassFieldObserver {
      * the method allows to reset the inside cache.
      */
     public void resetInsideClassCache() {
-        final Map<Class<?>, Field[]> fieldz = cachedClasses;
-        if (fieldz != null) {
-            synchronized (fieldz) {
-                fieldz.clear();
+        cachedClasses.clear();
+    }
+
+    /**
+     * Resolved write plan of a mapped class. The Object is immutable.
+     */
+    private static final class ClassPlan {
+
+        /**
+         * The Bin annotation of the class, can be null.
+         */
+        final Bin annotation;
+        /**
+         * Plans of fields to be written, in the output order.
+         */
+        final FieldPlan[] fields;
+
+        ClassPlan(final Bin annotation, final FieldPlan[] fields) {
+            this.annotation = annotation;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Resolved write plan of a mapped field, it keeps all values which would be
+     * calculated from the field and its annotation for every written object.
+     * The Object is immutable.
+     */
+    private static final class FieldPlan {
+
+        final Field field;
+        final Class<?> fieldType;
+        /**
+         * The Annotation to be used for the field, it can be the class annotation.
+         */
+        final Bin annotation;
+        /**
+         * The Own annotation of the field, can be null.
+         */
+        final Bin fieldAnnotation;
+        final boolean custom;
+        /**
+         * The Type of the field, null for custom fields.
+         */
+        final BinType type;
+        final JBBPBitNumber bitNumber;
+        final boolean reverseBits;
+
+        FieldPlan(final Field field, final Bin annotation) {
+            this.field = field;
+            this.fieldType = field.getType();
+            this.annotation = annotation;
+            this.fieldAnnotation = field.getAnnotation(Bin.class);
+            this.custom = annotation.custom();
+            if (this.custom) {
+                this.type = null;
+            } else {
+                this.type = annotation.type() == BinType.UNDEFINED ? BinType.findCompatible(this.fieldType) : annotation.type();
             }
+            this.bitNumber = annotation.outBitNumber();
+            this.reverseBits = annotation.bitOrder() == JBBPBitOrder.MSB0;
         }
     }
 
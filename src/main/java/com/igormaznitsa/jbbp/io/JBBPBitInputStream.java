@@ -619,7 +619,7 @@ public class JBBPBitInputStream extends FilterInputStream implements JBBPCountab
 
     @Override
     public synchronized void reset() throws IOException {
-        in.reset();
+        this.resetRawSource();
         this.bitBuffer = this.markedBitBuffer;
         this.byteCounter = this.markedByteCounter;
         this.bitsInBuffer = this.markedBitsInBuffer;
@@ -627,7 +627,7 @@ public class JBBPBitInputStream extends FilterInputStream implements JBBPCountab
 
     @Override
     public synchronized void mark(final int readlimit) {
-        in.mark(readlimit);
+        this.markRawSource(readlimit);
         this.markedBitBuffer = this.bitBuffer;
         this.markedByteCounter = this.byteCounter;
         this.markedBitsInBuffer = this.bitsInBuffer;
@@ -662,8 +662,8 @@ public class JBBPBitInputStream extends FilterInputStream implements JBBPCountab
     @Override
     public long skip(final long numOfBytes) throws IOException {
         if (this.bitsInBuffer == 0) {
-            final long r = in.skip(numOfBytes);
-            this.byteCounter += (int) r;
+            final long r = this.skipRawBytes(numOfBytes);
+            this.byteCounter += r;
             return r;
         } else {
             long i = numOfBytes;
@@ -687,13 +687,78 @@ public class JBBPBitInputStream extends FilterInputStream implements JBBPCountab
      * @throws IOException it will be thrown for transport errors
      */
     private int readByteFromStream() throws IOException {
-        int result = this.in.read();
+        int result = this.readRawByte();
         if (result >= 0 && this.msb0) {
             result = JBBPUtils.reverseBitsInByte((byte) result) & 0xFF;
         }
         return result;
     }
 
+    /**
+     * Read the next raw byte from the data source. It is the single point to get
+     * bytes from the source so that successors can provide another source
+     * instead of the wrapped input stream.
+     *
+     * @return the read byte value as 0..255 or -1 if the end of the source has
+     * been reached
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    protected int readRawByte() throws IOException {
+        return this.in.read();
+    }
+
+    /**
+     * Read raw bytes from the data source into an array, bit order and counter
+     * are not processed.
+     *
+     * @param array  the destination array, must not be null
+     * @param offset the start offset in the destination array
+     * @param length the max number of bytes to be read
+     * @return number of read bytes or -1 if the end of the source has been
+     * reached
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    protected int readRawBytes(final byte[] array, final int offset, final int length) throws IOException {
+        return this.in.read(array, offset, length);
+    }
+
+    /**
+     * Skip raw bytes in the data source, bit buffer and counter are not
+     * processed.
+     *
+     * @param numOfBytes number of bytes to be skipped
+     * @return number of really skipped bytes
+     * @throws IOException it will be thrown for transport errors
+     * @since 1.3.0
+     */
+    protected long skipRawBytes(final long numOfBytes) throws IOException {
+        return this.in.skip(numOfBytes);
+    }
+
+    /**
+     * Mark the current position in the data source.
+     *
+     * @param readlimit the max limit of bytes which can be read before the mark
+     *                  position becomes invalid
+     * @since 1.3.0
+     */
+    protected void markRawSource(final int readlimit) {
+        this.in.mark(readlimit);
+    }
+
+    /**
+     * Reset the data source to the marked position.
+     *
+     * @throws IOException it will be thrown for transport errors or if the
+     *                     source doesn't support the operation
+     * @since 1.3.0
+     */
+    protected void resetRawSource() throws IOException {
+        this.in.reset();
+    }
+
     /**
      * Read the next stream byte into bit buffer.
      *
@@ -745,7 +810,7 @@ public class JBBPBitInputStream extends FilterInputStream implements JBBPCountab
             int tmpoffset = offset;
             int tmplen = length;
             while (tmplen > 0) {
-                int read = this.in.read(array, tmpoffset, tmplen);
+                int read = this.readRawBytes(array, tmpoffset, tmplen);
                 if (read < 0) {
                     readBytes = readBytes == 0 ? read : readBytes;
                     break;
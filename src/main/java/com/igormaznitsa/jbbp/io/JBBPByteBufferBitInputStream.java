@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.io;
+
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Bit input stream which reads data directly from a NIO byte buffer (both heap
+ * and direct ones) through absolute get operations, without any intermediate
+ * input stream. Data are read from the buffer position till its limit, the
+ * position of the provided buffer is not changed. The Class is not a thread-safe one.
+ *
+ * @since 1.3.0
+ */
+public class JBBPByteBufferBitInputStream extends JBBPBitInputStream {
+
+    /**
+     * Private view of the source buffer, its position is used only for bulk reading.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The Limit of the buffer.
+     */
+    private final int limit;
+    /**
+     * The Current read position in the buffer.
+     */
+    private int position;
+    /**
+     * Marked position in the buffer.
+     */
+    private int markedPosition;
+
+    /**
+     * A Constructor, the LSB0 bit order will be used by default.
+     *
+     * @param buffer a byte buffer to be read, must not be null
+     */
+    public JBBPByteBufferBitInputStream(final ByteBuffer buffer) {
+        this(buffer, JBBPBitOrder.LSB0);
+    }
+
+    /**
+     * A Constructor.
+     *
+     * @param buffer a byte buffer to be read, must not be null
+     * @param order  a bit order mode for the stream
+     * @see JBBPBitOrder#LSB0
+     * @see JBBPBitOrder#MSB0
+     */
+    public JBBPByteBufferBitInputStream(final ByteBuffer buffer, final JBBPBitOrder order) {
+        super(null, order);
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        this.buffer = buffer.duplicate();
+        this.position = buffer.position();
+        this.markedPosition = this.position;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Get the current read position in the buffer.
+     *
+     * @return the absolute position of the next byte to be read from the buffer
+     */
+    public int getBufferPosition() {
+        return this.position;
+    }
+
+    /**
+     * Get read-only view of the source buffer, it has the same indexes and limit.
+     *
+     * @return a new read-only view of the source buffer, must not be null
+     * @since 1.3.0
+     */
+    public ByteBuffer getBuffer() {
+        final ByteBuffer result = this.buffer.asReadOnlyBuffer();
+        result.limit(this.limit);
+        return result;
+    }
+
+    /**
+     * Make a new independent stream over a region of the same buffer with the
+     * same bit order. The Region is defined by absolute positions in the buffer.
+     *
+     * @param position the absolute start position of the region
+     * @param length   the length of the region in bytes
+     * @return a new stream to read the region, must not be null
+     * @throws IllegalArgumentException if the region is out of the buffer limit
+     * @since 1.3.0
+     */
+    public JBBPByteBufferBitInputStream makeRegionStream(final int position, final int length) {
+        if (position < 0 || length < 0 || position + length > this.limit) {
+            throw new IllegalArgumentException("Wrong region [" + position + ',' + length + ']');
+        }
+        final ByteBuffer region = this.buffer.duplicate();
+        region.limit(position + length);
+        region.position(position);
+        return new JBBPByteBufferBitInputStream(region, this.getBitOrder());
+    }
+
+    @Override
+    protected int readRawByte() {
+        if (this.position < this.limit) {
+            return this.buffer.get(this.position++) & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    protected int readRawBytes(final byte[] array, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        final int remaining = this.limit - this.position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        final int toRead = Math.min(remaining, length);
+        if (this.buffer.hasArray()) {
+            System.arraycopy(this.buffer.array(), this.buffer.arrayOffset() + this.position, array, offset, toRead);
+        } else {
+            this.buffer.position(this.position);
+            this.buffer.get(array, offset, toRead);
+        }
+        this.position += toRead;
+        return toRead;
+    }
+
+    @Override
+    protected long skipRawBytes(final long numOfBytes) {
+        if (numOfBytes <= 0L) {
+            return 0L;
+        }
+        final int skipped = (int) Math.min((long) (this.limit - this.position), numOfBytes);
+        this.position += skipped;
+        return skipped;
+    }
+
+    @Override
+    protected void markRawSource(final int readlimit) {
+        this.markedPosition = this.position;
+    }
+
+    @Override
+    protected void resetRawSource() {
+        this.position = this.markedPosition;
+    }
+
+    @Override
+    public int available() {
+        return this.limit - this.position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
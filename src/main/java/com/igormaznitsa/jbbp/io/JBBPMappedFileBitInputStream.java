@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.io;
+
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.utils.JBBPSystemProperty;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A Bit input stream which reads data of a file channel through read-only memory
+ * mapped windows. Only one window is mapped at a time and it is remapped when the
+ * read position leaves it, so that files which are bigger than 2 GB can be
+ * processed and heap consumption doesn't depend on the file size. The Stream
+ * reads the channel from the start position till the channel size detected
+ * during construction, the channel position is not changed and the channel is
+ * not closed by the stream. The Class is not a thread-safe one.
+ *
+ * @since 1.3.0
+ */
+public class JBBPMappedFileBitInputStream extends JBBPBitInputStream {
+
+    /**
+     * Default size of a mapped window in bytes.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = JBBPSystemProperty.PROPERTY_INPUT_MAPPED_WINDOW_SIZE.getAsInteger(64 * 1024 * 1024);
+
+    /**
+     * The Channel to be mapped.
+     */
+    private final FileChannel channel;
+    /**
+     * The Position of the channel end.
+     */
+    private final long endPosition;
+    /**
+     * The Max size of a mapped window.
+     */
+    private final int windowSize;
+    /**
+     * The Current mapped window, it can be null if not mapped yet.
+     */
+    private MappedByteBuffer window;
+    /**
+     * The Channel position of the window start.
+     */
+    private long windowStart;
+    /**
+     * Number of bytes in the current window.
+     */
+    private int windowLimit;
+    /**
+     * The Read position inside the current window.
+     */
+    private int windowPosition;
+    /**
+     * Marked channel position.
+     */
+    private long markedPosition;
+
+    /**
+     * A Constructor, the stream starts from the current channel position and uses
+     * the LSB0 bit order and the default window size.
+     *
+     * @param channel a file channel to be read, must not be null
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPMappedFileBitInputStream(final FileChannel channel) throws IOException {
+        this(channel, JBBPBitOrder.LSB0);
+    }
+
+    /**
+     * A Constructor, the stream starts from the current channel position and uses
+     * the default window size.
+     *
+     * @param channel a file channel to be read, must not be null
+     * @param order   a bit order mode for the stream
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPMappedFileBitInputStream(final FileChannel channel, final JBBPBitOrder order) throws IOException {
+        this(channel, channel.position(), order, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * A Constructor.
+     *
+     * @param channel       a file channel to be read, must not be null
+     * @param startPosition the channel position to start reading
+     * @param order         a bit order mode for the stream
+     * @param windowSize    the max size of a mapped window in bytes, must be
+     *                      greater than zero
+     * @throws IOException it will be thrown for transport errors
+     */
+    public JBBPMappedFileBitInputStream(final FileChannel channel, final long startPosition, final JBBPBitOrder order, final int windowSize) throws IOException {
+        super(null, order);
+        JBBPUtils.assertNotNull(channel, "Channel must not be null");
+        if (windowSize <= 0) {
+            throw new JBBPIllegalArgumentException("Window size must be greater than zero [" + windowSize + ']');
+        }
+        if (startPosition < 0L) {
+            throw new JBBPIllegalArgumentException("Start position must not be negative [" + startPosition + ']');
+        }
+        this.channel = channel;
+        this.endPosition = channel.size();
+        this.windowSize = windowSize;
+        this.windowStart = startPosition;
+        this.markedPosition = startPosition;
+    }
+
+    /**
+     * Get the current read position in the channel.
+     *
+     * @return the channel position of the next byte to be read
+     */
+    public long getChannelPosition() {
+        return this.windowStart + this.windowPosition;
+    }
+
+    /**
+     * Set the read position in the channel, the window will be remapped lazily
+     * if the position is outside of the current one.
+     *
+     * @param position the new channel position
+     */
+    private void setChannelPosition(final long position) {
+        final long offset = position - this.windowStart;
+        if (this.window != null && offset >= 0L && offset <= this.windowLimit) {
+            this.windowPosition = (int) offset;
+        } else {
+            this.releaseWindow(position);
+        }
+    }
+
+    /**
+     * Release the current window and move the read position.
+     *
+     * @param position the new channel position
+     */
+    private void releaseWindow(final long position) {
+        this.window = null;
+        this.windowStart = position;
+        this.windowLimit = 0;
+        this.windowPosition = 0;
+    }
+
+    /**
+     * Map the window which starts from the current channel position.
+     *
+     * @return true if the window has been mapped, false if the end of the
+     * channel has been reached
+     * @throws IOException it will be thrown for mapping errors
+     */
+    private boolean mapNextWindow() throws IOException {
+        final long start = this.getChannelPosition();
+        if (start >= this.endPosition) {
+            return false;
+        }
+        final int size = (int) Math.min((long) this.windowSize, this.endPosition - start);
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        this.windowStart = start;
+        this.windowLimit = size;
+        this.windowPosition = 0;
+        return true;
+    }
+
+    @Override
+    protected int readRawByte() throws IOException {
+        if (this.windowPosition >= this.windowLimit && !this.mapNextWindow()) {
+            return -1;
+        }
+        return this.window.get(this.windowPosition++) & 0xFF;
+    }
+
+    @Override
+    protected int readRawBytes(final byte[] array, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int read = 0;
+        while (read < length) {
+            if (this.windowPosition >= this.windowLimit && !this.mapNextWindow()) {
+                break;
+            }
+            final int portion = Math.min(length - read, this.windowLimit - this.windowPosition);
+            this.window.position(this.windowPosition);
+            this.window.get(array, offset + read, portion);
+            this.windowPosition += portion;
+            read += portion;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    protected long skipRawBytes(final long numOfBytes) {
+        if (numOfBytes <= 0L) {
+            return 0L;
+        }
+        final long current = this.getChannelPosition();
+        final long skipped = Math.min(Math.max(0L, this.endPosition - current), numOfBytes);
+        this.setChannelPosition(current + skipped);
+        return skipped;
+    }
+
+    @Override
+    protected void markRawSource(final int readlimit) {
+        this.markedPosition = this.getChannelPosition();
+    }
+
+    @Override
+    protected void resetRawSource() {
+        this.setChannelPosition(this.markedPosition);
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min((long) Integer.MAX_VALUE, Math.max(0L, this.endPosition - this.getChannelPosition()));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Release the current mapped window, the channel is not closed because it is
+     * owned by the caller.
+     */
+    @Override
+    public void close() {
+        this.releaseWindow(this.getChannelPosition());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper;
+
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe object pool which keeps limited number of free instances for
+ * every class, extra released instances are just dropped.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPConcurrentObjectPool implements JBBPMapperObjectPool {
+
+    /**
+     * Default max number of free instances kept for a class.
+     */
+    public static final int DEFAULT_MAX_INSTANCES_PER_CLASS = 64;
+
+    private final ConcurrentMap<Class<?>, Bucket> buckets = new ConcurrentHashMap<Class<?>, Bucket>();
+    private final int maxInstancesPerClass;
+
+    /**
+     * Constructor with default max number of free instances per class.
+     *
+     * @see #DEFAULT_MAX_INSTANCES_PER_CLASS
+     */
+    public JBBPConcurrentObjectPool() {
+        this(DEFAULT_MAX_INSTANCES_PER_CLASS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxInstancesPerClass max number of free instances kept for a class, must not be negative
+     */
+    public JBBPConcurrentObjectPool(final int maxInstancesPerClass) {
+        if (maxInstancesPerClass < 0) {
+            throw new IllegalArgumentException("Max number of instances must not be negative [" + maxInstancesPerClass + ']');
+        }
+        this.maxInstancesPerClass = maxInstancesPerClass;
+    }
+
+    @Override
+    public <T> T take(final Class<T> klazz) {
+        JBBPUtils.assertNotNull(klazz, "Class must not be null");
+        final Bucket bucket = this.buckets.get(klazz);
+        if (bucket == null) {
+            return null;
+        }
+        final Object result = bucket.instances.poll();
+        if (result == null) {
+            return null;
+        }
+        bucket.size.decrementAndGet();
+        return klazz.cast(result);
+    }
+
+    @Override
+    public void release(final Object instance) {
+        JBBPUtils.assertNotNull(instance, "Instance must not be null");
+        final Class<?> klazz = instance.getClass();
+        Bucket bucket = this.buckets.get(klazz);
+        if (bucket == null) {
+            bucket = new Bucket();
+            final Bucket alreadyMade = this.buckets.putIfAbsent(klazz, bucket);
+            if (alreadyMade != null) {
+                bucket = alreadyMade;
+            }
+        }
+        if (bucket.size.incrementAndGet() > this.maxInstancesPerClass) {
+            bucket.size.decrementAndGet();
+        } else {
+            bucket.instances.offer(instance);
+        }
+    }
+
+    /**
+     * Get number of free instances of a class in the pool.
+     *
+     * @param klazz a class, must not be null
+     * @return number of free instances
+     */
+    public int size(final Class<?> klazz) {
+        JBBPUtils.assertNotNull(klazz, "Class must not be null");
+        final Bucket bucket = this.buckets.get(klazz);
+        return bucket == null ? 0 : Math.max(0, bucket.size.get());
+    }
+
+    /**
+     * Remove all free instances from the pool.
+     */
+    public void clear() {
+        this.buckets.clear();
+    }
+
+    private static final class Bucket {
+        private final Queue<Object> instances = new ConcurrentLinkedQueue<Object>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+}
@@ -18,6 +18,9 @@ package com.igormaznitsa.jbbp.mapper;
 import com.igormaznitsa.jbbp.exceptions.JBBPMapperException;
 import com.igormaznitsa.jbbp.io.JBBPBitNumber;
 import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.mapper.accessors.JBBPMappingAccessorProvider;
+import com.igormaznitsa.jbbp.mapper.accessors.JBBPMappingAccessorProviderFactory;
+import com.igormaznitsa.jbbp.mapper.accessors.JBBPMappingFieldAccessor;
 import com.igormaznitsa.jbbp.mapper.instantiators.JBBPClassInstantiator;
 import com.igormaznitsa.jbbp.mapper.instantiators.JBBPClassInstantiatorFactory;
 import com.igormaznitsa.jbbp.model.*;
@@ -28,6 +31,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The Class processes mapping of a parsed binary data to class fields. The
@@ -46,11 +51,37 @@ public final class JBBPMapper {
      */
     public static final int FLAG_IGNORE_MISSING_VALUES = 1;
 
+    /**
+     * Flag to write values of primitive arrays into arrays already kept by
+     * mapping fields if they have the same type and length, instead of setting
+     * of new arrays. The Flag is applied to nested structures too.
+     *
+     * @since 1.3.0
+     */
+    public static final int FLAG_REUSE_ARRAYS = 2;
+
+    /**
+     * Inside flag shows that the mapping class instance is made for mapping
+     * with an object pool or kept by such instance, so that it can contain
+     * values of previous mapping.
+     */
+    private static final int FLAG_POOLED_INSTANCE = 0x10000;
+
     /**
      * The Special auxiliary object to generate class instances.
      */
     private static final JBBPClassInstantiator CLASS_INSTANTIATOR = JBBPClassInstantiatorFactory.getInstance().make();
 
+    /**
+     * The Provider of accessors to write values into fields of mapping classes.
+     */
+    private static final JBBPMappingAccessorProvider ACCESSOR_PROVIDER = JBBPMappingAccessorProviderFactory.getInstance().make();
+
+    /**
+     * Cache of mapping plans for mapping classes.
+     */
+    private static final ConcurrentMap<Class<?>, MappedField[]> MAPPING_PLANS = new ConcurrentHashMap<Class<?>, MappedField[]>();
+
     /**
      * Create a class instance, map binary data of a structure for its path to its
      * fields and return the instance.
@@ -216,6 +247,30 @@ public final class JBBPMapper {
         return mappingClass.cast(map(root, allocateMemoryForClass(root, mappingClass), customFieldProcessor, flags));
     }
 
+    /**
+     * Map a structure to a class instance which is taken from an object pool or
+     * created if the pool doesn't have free instances. Nested mapping class
+     * instances are taken from the pool too if mapping fields don't have them.
+     *
+     * @param <T>                  the mapping class type
+     * @param root                 a parsed structure to be mapped to the class instance, must not
+     *                             be null
+     * @param mappingClass         the class to be instantiated and mapped, must not be
+     *                             null
+     * @param customFieldProcessor a custom field processor to provide custom
+     *                             values, it can be null if there is not any mapping field desires the
+     *                             processor
+     * @param flags                special flags to tune mapping process
+     * @param pool                 an object pool, it can be null
+     * @return the mapped instance of the class
+     * @throws JBBPMapperException for any error
+     * @see #FLAG_REUSE_ARRAYS
+     * @since 1.3.0
+     */
+    public static <T> T map(final JBBPFieldStruct root, final Class<T> mappingClass, final JBBPMapperCustomFieldProcessor customFieldProcessor, final int flags, final JBBPMapperObjectPool pool) {
+        return mappingClass.cast(mapInstance(root, makeInstance(root, mappingClass, pool), customFieldProcessor, pool == null ? flags : flags | FLAG_POOLED_INSTANCE, pool));
+    }
+
     /**
      * Map a structure to a class instance.
      *
@@ -250,146 +305,238 @@ public final class JBBPMapper {
      * @since 1.1
      */
     public static Object map(final JBBPFieldStruct rootStructure, final Object mappingClassInstance, final JBBPMapperCustomFieldProcessor customFieldProcessor, final int flags) {
+        return map(rootStructure, mappingClassInstance, customFieldProcessor, flags, null);
+    }
+
+    /**
+     * Map a structure to a class instance. Nested mapping class instances are
+     * taken from an object pool if mapping fields don't have them.
+     *
+     * @param rootStructure        a structure to be mapped, must not be null
+     * @param mappingClassInstance a class instance to be destination for map
+     *                             operations, must not be null
+     * @param customFieldProcessor a custom field processor to provide custom
+     *                             values, it can be null if there is not any mapping field desires the
+     *                             processor
+     * @param flags                special flags for mapping process
+     * @param pool                 an object pool for nested instances, it can be null
+     * @return the processed class instance, the same which was the argument for
+     * the method.
+     * @throws JBBPMapperException for any error
+     * @see #FLAG_IGNORE_MISSING_VALUES
+     * @see #FLAG_REUSE_ARRAYS
+     * @since 1.3.0
+     */
+    public static Object map(final JBBPFieldStruct rootStructure, final Object mappingClassInstance, final JBBPMapperCustomFieldProcessor customFieldProcessor, final int flags, final JBBPMapperObjectPool pool) {
+        return mapInstance(rootStructure, mappingClassInstance, customFieldProcessor, flags & ~FLAG_POOLED_INSTANCE, pool);
+    }
+
+    /**
+     * Map a structure to a class instance.
+     *
+     * @param rootStructure        a structure to be mapped, must not be null
+     * @param mappingClassInstance a class instance to be destination for map
+     *                             operations, must not be null
+     * @param customFieldProcessor a custom field processor, it can be null
+     * @param flags                flags for mapping process, including inside ones
+     * @param pool                 an object pool for nested instances, it can be null
+     * @return the processed class instance
+     * @throws JBBPMapperException for any error
+     */
+    private static Object mapInstance(final JBBPFieldStruct rootStructure, final Object mappingClassInstance, final JBBPMapperCustomFieldProcessor customFieldProcessor, final int flags, final JBBPMapperObjectPool pool) {
         JBBPUtils.assertNotNull(rootStructure, "The Root structure must not be null");
         JBBPUtils.assertNotNull(mappingClassInstance, "The Mapping class instance must not be null");
 
         final Class<?> mappingClass = mappingClassInstance.getClass();
 
-        final Bin defaultAnno = mappingClass.getAnnotation(Bin.class);
+        for (final MappedField mapped : getMappingPlan(mappingClass)) {
+            final Field mappingField = mapped.field;
+            final JBBPMappingFieldAccessor accessor = mapped.accessor;
+            final Bin mappedAnno = mapped.anno;
 
-        // make chain of ancestors till java.lang.Object
-        final List<Class<?>> listOfClassHierarchy = new ArrayList<Class<?>>();
-        Class<?> current = mappingClassInstance.getClass();
-        while (current != java.lang.Object.class) {
-            listOfClassHierarchy.add(current);
-            current = current.getSuperclass();
-        }
+            if (mapped.custom) {
+                JBBPUtils.assertNotNull(customFieldProcessor, "There is a custom mapping field, in the case you must provide a custom mapping field processor");
+                final Object value = customFieldProcessor.prepareObjectForMapping(rootStructure, mappedAnno, mappingField);
+                setFieldValue(mappingClassInstance, accessor, null, value);
+                continue;
+            }
 
-        for (final Class<?> processingClazz : listOfClassHierarchy) {
-            for (final Field mappingField : processingClazz.getDeclaredFields()) {
-                final int modifiers = mappingField.getModifiers();
-                if (Modifier.isTransient(modifiers) || Modifier.isStatic(modifiers)) {
-                    continue;
-                }
+            if (mapped.binType == null) {
+                throw new JBBPMapperException("Can't find compatible type for a mapping field", rootStructure, mappingClass, mappingField, null);
+            }
 
-                if (!mappingField.isAccessible()) {
-                    JBBPUtils.makeAccessible(mappingField);
-                }
+            final JBBPAbstractField binField;
 
-                final Bin fieldAnno = mappingField.getAnnotation(Bin.class);
-                final Bin mappedAnno;
-                if ((fieldAnno == null && defaultAnno == null) || mappingField.getName().indexOf('$') >= 0) {
+            if (mapped.path != null) {
+                binField = rootStructure.findFieldForCompiledPathAndType(mapped.path, mapped.binType.getFieldClass());
+            } else {
+                binField = mapped.name.length() == 0 ? rootStructure.findFieldForType(mapped.binType.getFieldClass()) : rootStructure.findFieldForNameAndType(mapped.name, mapped.binType.getFieldClass());
+            }
+
+            if (binField == null) {
+                if ((flags & FLAG_IGNORE_MISSING_VALUES) != 0) {
+                    if ((flags & FLAG_POOLED_INSTANCE) != 0) {
+                        resetFieldValue(mappingClassInstance, mapped);
+                    }
                     continue;
                 }
-                mappedAnno = fieldAnno == null ? defaultAnno : fieldAnno;
-
-                if (mappedAnno.custom()) {
-                    JBBPUtils.assertNotNull(customFieldProcessor, "There is a custom mapping field, in the case you must provide a custom mapping field processor");
-                    final Object value = customFieldProcessor.prepareObjectForMapping(rootStructure, mappedAnno, mappingField);
-                    setFieldValue(mappingClassInstance, mappingField, null, value);
-                } else {
-                    final BinType fieldType;
+                throw new JBBPMapperException("Can't find value to be mapped to a mapping field [" + mappingField + ']', null, mappingClass, mappingField, null);
+            }
 
-                    final JBBPBitNumber mappedBitNumber = mappedAnno.outBitNumber();
+            mapField(mappingClassInstance, mapped, binField, customFieldProcessor, flags, pool);
+        }
+        return mappingClassInstance;
+    }
 
-                    if (mappedAnno.type() == BinType.UNDEFINED) {
-                        BinType thetype = BinType.findCompatible(mappingField.getType());
-                        if (thetype == null) {
-                            throw new JBBPMapperException("Can't find compatible type for a mapping field", rootStructure, mappingClass, mappingField, null);
-                        } else if (mappedBitNumber.getBitNumber() < 8 && !(thetype == BinType.STRUCT || thetype == BinType.STRUCT_ARRAY)) {
-                            thetype = thetype.isArray() ? BinType.BIT_ARRAY : BinType.BIT;
-                        }
-                        fieldType = thetype;
-                    } else {
-                        fieldType = mappedAnno.type();
-                    }
-                    final boolean bitWideField = fieldType == BinType.BIT || fieldType == BinType.BIT_ARRAY;
+    /**
+     * Map a found binary field to a mapping field of a class instance.
+     *
+     * @param mappingClassInstance the mapping class instance, must not be null
+     * @param mapped               the mapping field plan, must not be null
+     * @param binField             the binary field to be mapped, must not be null
+     * @param customFieldProcessor a custom field processor, it can be null
+     * @param flags                special flags for mapping process
+     * @param pool                 an object pool for nested instances, it can be null
+     * @throws JBBPMapperException for any error
+     * @since 1.3.0
+     */
+    static void mapField(final Object mappingClassInstance, final MappedField mapped, final JBBPAbstractField binField, final JBBPMapperCustomFieldProcessor customFieldProcessor, final int flags, final JBBPMapperObjectPool pool) {
+        final Class<?> mappingClass = mappingClassInstance.getClass();
+        final Field mappingField = mapped.field;
+        final JBBPMappingFieldAccessor accessor = mapped.accessor;
+        final int nestedFlags = flags & (FLAG_REUSE_ARRAYS | FLAG_POOLED_INSTANCE);
+        final int madeFlags = pool == null ? nestedFlags : nestedFlags | FLAG_POOLED_INSTANCE;
 
-                    final String fieldName = mappedAnno.name().length() == 0 ? mappingField.getName() : mappedAnno.name();
-                    final String fieldPath = mappedAnno.path();
+        if (mapped.bitWide && mapped.bitNumber != JBBPBitNumber.BITS_8 && ((BitEntity) binField).getBitWidth() != mapped.bitNumber) {
+            throw new JBBPMapperException("Can't map value to a mapping field for different field bit width [" + mapped.bitNumber + "!=" + ((BitEntity) binField).getBitWidth().getBitNumber() + ']', null, mappingClass, mappingField, null);
+        }
 
-                    final JBBPAbstractField binField;
+        if (mapped.array) {
+            if (binField instanceof JBBPAbstractArrayField) {
+                if (binField instanceof JBBPFieldArrayStruct) {
+                    // structure
+                    final JBBPFieldArrayStruct structArray = (JBBPFieldArrayStruct) binField;
+                    final Class<?> componentType = mappingField.getType().getComponentType();
 
-                    if (fieldPath.length() == 0) {
-                        binField = fieldName.length() == 0 ? rootStructure.findFieldForType(fieldType.getFieldClass()) : rootStructure.findFieldForNameAndType(fieldName, fieldType.getFieldClass());
-                    } else {
-                        binField = rootStructure.findFieldForPathAndType(fieldPath, fieldType.getFieldClass());
-                    }
+                    Object valueArray = getFieldValue(mappingClassInstance, accessor);
 
-                    if (binField == null) {
-                        if ((flags & FLAG_IGNORE_MISSING_VALUES) != 0) {
-                            continue;
+                    if (valueArray == null) {
+                        valueArray = Array.newInstance(componentType, structArray.size());
+                    } else if (Array.getLength(valueArray) != structArray.size()) {
+                        if ((flags & FLAG_POOLED_INSTANCE) == 0) {
+                            throw new JBBPMapperException("Can't map an array field for different expected size [" + Array.getLength(valueArray) + "!=" + structArray.size() + ']', binField, mappingClass, mappingField, null);
                         }
-                        throw new JBBPMapperException("Can't find value to be mapped to a mapping field [" + mappingField + ']', null, mappingClass, mappingField, null);
+                        valueArray = resizeArray(valueArray, componentType, structArray.size());
                     }
 
-                    if (bitWideField && mappedBitNumber != JBBPBitNumber.BITS_8 && ((BitEntity) binField).getBitWidth() != mappedBitNumber) {
-                        throw new JBBPMapperException("Can't map value to a mapping field for different field bit width [" + mappedBitNumber + "!=" + ((BitEntity) binField).getBitWidth().getBitNumber() + ']', null, mappingClass, mappingField, null);
-                    }
-
-                    if (mappingField.getType().isArray()) {
-                        if (binField instanceof JBBPAbstractArrayField) {
-                            if (binField instanceof JBBPFieldArrayStruct) {
-                                // structure
-                                final JBBPFieldArrayStruct structArray = (JBBPFieldArrayStruct) binField;
-                                final Class<?> componentType = mappingField.getType().getComponentType();
-
-                                Object valueArray = getFieldValue(mappingClassInstance, mappingField);
-
-                                valueArray = valueArray == null ? Array.newInstance(componentType, structArray.size()) : valueArray;
-
-                                if (Array.getLength(valueArray) != structArray.size()) {
-                                    throw new JBBPMapperException("Can't map an array field for different expected size [" + Array.getLength(valueArray) + "!=" + structArray.size() + ']', binField, mappingClass, mappingField, null);
-                                }
-
-                                for (int i = 0; i < structArray.size(); i++) {
-                                    final Object curInstance = Array.get(valueArray, i);
-                                    if (curInstance == null) {
-                                        Array.set(valueArray, i, map(structArray.getElementAt(i), componentType, customFieldProcessor));
-                                    } else {
-                                        Array.set(valueArray, i, map(structArray.getElementAt(i), curInstance, customFieldProcessor));
-                                    }
-                                }
-                                setFieldValue(mappingClassInstance, mappingField, binField, valueArray);
-                            } else {
-                                // primitive
-                                mapArrayField(mappingClassInstance, mappingField, (JBBPAbstractArrayField<?>) binField, mappedAnno.bitOrder() == JBBPBitOrder.MSB0);
-                            }
+                    for (int i = 0; i < structArray.size(); i++) {
+                        final Object curInstance = Array.get(valueArray, i);
+                        if (curInstance == null) {
+                            Array.set(valueArray, i, mapInstance(structArray.getElementAt(i), makeInstance(structArray.getElementAt(i), componentType, pool), customFieldProcessor, madeFlags, pool));
                         } else {
-                            throw new JBBPMapperException("Can't map a non-array value to an array mapping field", binField, mappingClass, mappingField, null);
+                            Array.set(valueArray, i, mapInstance(structArray.getElementAt(i), curInstance, customFieldProcessor, nestedFlags, pool));
                         }
+                    }
+                    setFieldValue(mappingClassInstance, accessor, binField, valueArray);
+                } else {
+                    // primitive
+                    mapArrayField(mappingClassInstance, accessor, (JBBPAbstractArrayField<?>) binField, mapped.invertBitOrder, (flags & FLAG_REUSE_ARRAYS) != 0);
+                }
+            } else {
+                throw new JBBPMapperException("Can't map a non-array value to an array mapping field", binField, mappingClass, mappingField, null);
+            }
+        } else {
+            if (binField instanceof JBBPNumericField) {
+                mapNumericField(mappingClassInstance, accessor, (JBBPNumericField) binField, mapped.invertBitOrder);
+            } else if (binField instanceof JBBPFieldStruct) {
+                if (mappingField.getType().isPrimitive()) {
+                    throw new JBBPMapperException("Can't map a structure to a primitive mapping field", binField, mappingClass, mappingField, null);
+                } else {
+                    final Object curValue = getFieldValue(mappingClassInstance, accessor);
+                    if (curValue == null) {
+                        setFieldValue(mappingClassInstance, accessor, binField, mapInstance((JBBPFieldStruct) binField, makeInstance((JBBPFieldStruct) binField, mappingField.getType(), pool), customFieldProcessor, madeFlags, pool));
                     } else {
-                        if (binField instanceof JBBPNumericField) {
-                            mapNumericField(mappingClassInstance, mappingField, (JBBPNumericField) binField, mappedAnno.bitOrder() == JBBPBitOrder.MSB0);
-                        } else if (binField instanceof JBBPFieldStruct) {
-                            if (mappingField.getType().isPrimitive()) {
-                                throw new JBBPMapperException("Can't map a structure to a primitive mapping field", binField, mappingClass, mappingField, null);
-                            } else {
-                                final Object curValue = getFieldValue(mappingClassInstance, mappingField);
-                                if (curValue == null) {
-                                    setFieldValue(mappingClassInstance, mappingField, binField, map((JBBPFieldStruct) binField, mappingField.getType(), customFieldProcessor));
-                                } else {
-                                    setFieldValue(mappingClassInstance, mappingField, binField, map((JBBPFieldStruct) binField, curValue, customFieldProcessor));
-                                }
-                            }
-                        } else {
-                            boolean processed = false;
-                            if (mappingField.getType() == String.class && binField instanceof JBBPAbstractArrayField) {
-                                final String convertedValue = convertFieldValueToString((JBBPAbstractArrayField<?>) binField);
-                                if (convertedValue != null) {
-                                    setFieldValue(mappingClassInstance, mappingField, binField, convertedValue);
-                                    processed = true;
-                                }
-                            }
-                            if (!processed) {
-                                throw new JBBPMapperException("Can't map a field for its value incompatibility", binField, mappingClass, mappingField, null);
-                            }
-                        }
+                        setFieldValue(mappingClassInstance, accessor, binField, mapInstance((JBBPFieldStruct) binField, curValue, customFieldProcessor, nestedFlags, pool));
+                    }
+                }
+            } else {
+                boolean processed = false;
+                if (mappingField.getType() == String.class && binField instanceof JBBPAbstractArrayField) {
+                    final String convertedValue = convertFieldValueToString((JBBPAbstractArrayField<?>) binField);
+                    if (convertedValue != null) {
+                        setFieldValue(mappingClassInstance, accessor, binField, convertedValue);
+                        processed = true;
                     }
                 }
+                if (!processed) {
+                    throw new JBBPMapperException("Can't map a field for its value incompatibility", binField, mappingClass, mappingField, null);
+                }
             }
         }
-        return mappingClassInstance;
+    }
+
+    /**
+     * Get mapping plan of a class, the plan is made once for a class and cached.
+     *
+     * @param mappingClass a mapping class, must not be null
+     * @return mapped fields of the class and its ancestors, must not be null
+     */
+    static MappedField[] getMappingPlan(final Class<?> mappingClass) {
+        MappedField[] result = MAPPING_PLANS.get(mappingClass);
+        if (result == null) {
+            result = makeMappingPlan(mappingClass);
+            final MappedField[] alreadyMade = MAPPING_PLANS.putIfAbsent(mappingClass, result);
+            if (alreadyMade != null) {
+                result = alreadyMade;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mapping plans of classes are cached by the mapper, the method allows to
+     * reset the inside cache, for instance to release classes of a class loader
+     * which is not used anymore.
+     *
+     * @since 1.3.0
+     */
+    public static void resetInsideClassCache() {
+        MAPPING_PLANS.clear();
+    }
+
+    /**
+     * Make mapping plan for a class. Fields are placed in the order of their
+     * processing, from the class to its ancestors.
+     *
+     * @param mappingClass a mapping class, must not be null
+     * @return mapped fields of the class and its ancestors, must not be null
+     */
+    private static MappedField[] makeMappingPlan(final Class<?> mappingClass) {
+        final Bin defaultAnno = mappingClass.getAnnotation(Bin.class);
+
+        final List<MappedField> result = new ArrayList<MappedField>();
+        Class<?> current = mappingClass;
+        while (current != java.lang.Object.class) {
+            for (final Field mappingField : current.getDeclaredFields()) {
+                final int modifiers = mappingField.getModifiers();
+                if (Modifier.isTransient(modifiers) || Modifier.isStatic(modifiers)) {
+                    continue;
+                }
+
+                final Bin fieldAnno = mappingField.getAnnotation(Bin.class);
+                if ((fieldAnno == null && defaultAnno == null) || mappingField.getName().indexOf('$') >= 0) {
+                    continue;
+                }
+
+                if (!mappingField.isAccessible()) {
+                    JBBPUtils.makeAccessible(mappingField);
+                }
+
+                result.add(new MappedField(mappingField, fieldAnno == null ? defaultAnno : fieldAnno));
+            }
+            current = current.getSuperclass();
+        }
+        return result.toArray(new MappedField[result.size()]);
     }
 
     /**
@@ -442,36 +589,68 @@ public final class JBBPMapper {
      * fields!
      *
      * @param classInstance a class instance
-     * @param classField    a mapping class field which should be set by the value,
-     *                      must not be null
+     * @param accessor      accessor of a mapping class field which should be set
+     *                      by the value, must not be null
      * @param binField      a parsed bin field which value will be set, can be null
      * @param value         a value to be set to the class field
      */
-    private static void setFieldValue(final Object classInstance, final Field classField, final JBBPAbstractField binField, final Object value) {
+    static void setFieldValue(final Object classInstance, final JBBPMappingFieldAccessor accessor, final JBBPAbstractField binField, final Object value) {
         try {
-            classField.set(classInstance, value);
+            accessor.set(classInstance, value);
         } catch (IllegalArgumentException ex) {
-            throw new JBBPMapperException("Can't set value to a mapping field", binField, classInstance.getClass(), classField, ex);
-        } catch (IllegalAccessException ex) {
-            throw new JBBPMapperException("Can't get access to a mapping field", binField, classInstance.getClass(), classField, ex);
+            throw new JBBPMapperException("Can't set value to a mapping field", binField, classInstance.getClass(), accessor.getField(), ex);
+        } catch (IllegalStateException ex) {
+            throw new JBBPMapperException("Can't get access to a mapping field", binField, classInstance.getClass(), accessor.getField(), ex);
+        }
+    }
+
+    /**
+     * Reset a mapping field of a class instance to its default value, it is
+     * used for fields of pooled instances which don't get values in mapping.
+     *
+     * @param classInstance a class instance, must not be null
+     * @param mapped        the mapping field, must not be null
+     * @since 1.3.0
+     */
+    static void resetFieldValue(final Object classInstance, final MappedField mapped) {
+        if (mapped.field.getType().isPrimitive()) {
+            mapNumericValue(classInstance, mapped.accessor, null, false, 0L);
+        } else {
+            setFieldValue(classInstance, mapped.accessor, null, null);
         }
     }
 
+    /**
+     * Make new array for different number of elements, elements of the source
+     * array are kept in the new one as far as they fit.
+     *
+     * @param array         the source array, must not be null
+     * @param componentType the component type of the new array, must not be null
+     * @param length        the length of the new array
+     * @return the new array, must not be null
+     * @since 1.3.0
+     */
+    static Object resizeArray(final Object array, final Class<?> componentType, final int length) {
+        final Object result = Array.newInstance(componentType, length);
+        System.arraycopy(array, 0, result, 0, Math.min(Array.getLength(array), length));
+        return result;
+    }
+
     /**
      * Get a value of a field from a class instance.
      *
      * @param classInstance a class instance object
-     * @param classField    a class field which value must be returned, must not be
-     *                      null
+     * @param accessor      accessor of a class field which value must be returned,
+     *                      must not be null
      * @return the field value for the class instance
      */
-    private static Object getFieldValue(final Object classInstance, final Field classField) {
+    static Object getFieldValue(final Object classInstance, final JBBPMappingFieldAccessor accessor) {
         try {
-            return classField.get(classInstance);
+            return accessor.get(classInstance);
         } catch (IllegalArgumentException ex) {
-            throw new JBBPMapperException("Can't set get value from a mapping field", null, classInstance.getClass(), classField, ex);
-        } catch (IllegalAccessException ex) {
-            throw new JBBPMapperException("Can't get access to a mapping field", null, classInstance.getClass(), classField, ex);
+            throw new JBBPMapperException("Can't set get value from a mapping field", null, classInstance.getClass(), accessor.getField(), ex);
+        } catch (IllegalStateException ex) {
+            throw new JBBPMapperException("Can't get access to a mapping field", null, classInstance.getClass(), accessor.getField(), ex);
         }
     }
 
@@ -480,38 +659,57 @@ public final class JBBPMapper {
      * class.
      *
      * @param mappingClassInstance the mapping class instance, must not be null
-     * @param mappingField         a mapping field to set the value, must not be null
+     * @param accessor             accessor of a mapping field to set the value, must
+     *                             not be null
      * @param numericField         a parsed numeric field which value should be used, must
      *                             not be null
      * @param invertBitOrder       flag shows that the parsed numeric field value must
      *                             be reversed in its bit before setting
      */
-    private static void mapNumericField(final Object mappingClassInstance, final Field mappingField, final JBBPNumericField numericField, final boolean invertBitOrder) {
+    private static void mapNumericField(final Object mappingClassInstance, final JBBPMappingFieldAccessor accessor, final JBBPNumericField numericField, final boolean invertBitOrder) {
+        mapNumericValue(mappingClassInstance, accessor, (JBBPAbstractField) numericField, numericField.getAsBool(), invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsLong());
+    }
+
+    /**
+     * Set a numeric value to a primitive field in a mapping class.
+     *
+     * @param mappingClassInstance the mapping class instance, must not be null
+     * @param accessor             accessor of a mapping field to set the value, must
+     *                             not be null
+     * @param binField             the source field, it is used only for error messages
+     *                             and can be null
+     * @param boolValue            the value for boolean fields
+     * @param value                the value for other fields, it must be already bit
+     *                             reversed if it is needed
+     * @since 1.3.0
+     */
+    static void mapNumericValue(final Object mappingClassInstance, final JBBPMappingFieldAccessor accessor, final JBBPAbstractField binField, final boolean boolValue, final long value) {
+        final Field mappingField = accessor.getField();
         final Class<?> fieldClass = mappingField.getType();
         try {
             if (fieldClass == byte.class) {
-                mappingField.setByte(mappingClassInstance, (byte) (invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsInt()));
+                accessor.setByte(mappingClassInstance, (byte) value);
             } else if (fieldClass == boolean.class) {
-                mappingField.setBoolean(mappingClassInstance, numericField.getAsBool());
+                accessor.setBoolean(mappingClassInstance, boolValue);
             } else if (fieldClass == char.class) {
-                mappingField.setChar(mappingClassInstance, (char) (invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsInt()));
+                accessor.setChar(mappingClassInstance, (char) value);
             } else if (fieldClass == short.class) {
-                mappingField.setShort(mappingClassInstance, (short) (invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsInt()));
+                accessor.setShort(mappingClassInstance, (short) value);
             } else if (fieldClass == int.class) {
-                mappingField.setInt(mappingClassInstance, (int) (invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsInt()));
+                accessor.setInt(mappingClassInstance, (int) value);
             } else if (fieldClass == long.class) {
-                mappingField.setLong(mappingClassInstance, (invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsLong()));
+                accessor.setLong(mappingClassInstance, value);
             } else if (fieldClass == float.class) {
-                mappingField.setFloat(mappingClassInstance, Float.intBitsToFloat(invertBitOrder ? (int) numericField.getAsInvertedBitOrder() : numericField.getAsInt()));
+                accessor.setFloat(mappingClassInstance, Float.intBitsToFloat((int) value));
             } else if (fieldClass == double.class) {
-                mappingField.setDouble(mappingClassInstance, Double.longBitsToDouble(invertBitOrder ? numericField.getAsInvertedBitOrder() : numericField.getAsLong()));
+                accessor.setDouble(mappingClassInstance, Double.longBitsToDouble(value));
             } else {
-                throw new JBBPMapperException("Unsupported mapping class field type to be mapped for binary parsed data", (JBBPAbstractField) numericField, mappingClassInstance.getClass(), mappingField, null);
+                throw new JBBPMapperException("Unsupported mapping class field type to be mapped for binary parsed data", binField, mappingClassInstance.getClass(), mappingField, null);
             }
-        } catch (IllegalAccessException ex) {
-            throw new JBBPMapperException("Can't get access to a mapping field", (JBBPAbstractField) numericField, mappingClassInstance.getClass(), mappingField, ex);
+        } catch (IllegalStateException ex) {
+            throw new JBBPMapperException("Can't get access to a mapping field", binField, mappingClassInstance.getClass(), mappingField, ex);
         } catch (IllegalArgumentException ex) {
-            throw new JBBPMapperException("Can't set argument to a mapping field", (JBBPAbstractField) numericField, mappingClassInstance.getClass(), mappingField, ex);
+            throw new JBBPMapperException("Can't set argument to a mapping field", binField, mappingClassInstance.getClass(), mappingField, ex);
         }
     }
 
@@ -519,31 +717,59 @@ public final class JBBPMapper {
      * Map a parsed array to an array field in mapping class.
      *
      * @param mappingClassInstance a mapping class instance, must not be null
-     * @param mappingField         a field in the mapping class to be set, must not be
-     *                             null
+     * @param accessor             accessor of a field in the mapping class to be set,
+     *                             must not be null
      * @param arrayField           a binary parsed array field, must not be null
      * @param invertBitOrder       flag shows that values of an array must be bit
      *                             reversed before set
+     * @param reuseArray           flag shows that the array kept by the field should
+     *                             be filled if it is compatible
      */
-    private static void mapArrayField(final Object mappingClassInstance, final Field mappingField, final JBBPAbstractArrayField<?> arrayField, final boolean invertBitOrder) {
+    private static void mapArrayField(final Object mappingClassInstance, final JBBPMappingFieldAccessor accessor, final JBBPAbstractArrayField<?> arrayField, final boolean invertBitOrder, final boolean reuseArray) {
+        final Field mappingField = accessor.getField();
         try {
             if (arrayField instanceof JBBPFieldArrayUShort && mappingField.getType().getComponentType() == char.class) {
-                final short[] shortarray = (short[]) arrayField.getValueArrayAsObject(invertBitOrder);
-                final char[] chararray = new char[shortarray.length];
-                for (int i = 0; i < shortarray.length; i++) {
-                    chararray[i] = (char) shortarray[i];
+                final Object current = reuseArray ? accessor.get(mappingClassInstance) : null;
+                final char[] chararray = current != null && ((char[]) current).length == arrayField.size() ? (char[]) current : new char[arrayField.size()];
+                for (int i = 0; i < chararray.length; i++) {
+                    final int value = arrayField.getAsInt(i);
+                    chararray[i] = (char) (invertBitOrder ? JBBPFieldUShort.reverseBits((short) value) : value);
                 }
-                mappingField.set(mappingClassInstance, chararray);
-            } else {
-                mappingField.set(mappingClassInstance, arrayField.getValueArrayAsObject(invertBitOrder));
+                if (chararray != current) {
+                    accessor.set(mappingClassInstance, chararray);
+                }
+            } else if (!reuseArray || !arrayField.copyValuesTo(accessor.get(mappingClassInstance), invertBitOrder)) {
+                accessor.set(mappingClassInstance, arrayField.getValueArrayAsObject(invertBitOrder));
             }
-        } catch (IllegalAccessException ex) {
+        } catch (IllegalStateException ex) {
             throw new JBBPMapperException("Can't get access to a mapping field", arrayField, mappingClassInstance.getClass(), mappingField, ex);
         } catch (IllegalArgumentException ex) {
             throw new JBBPMapperException("Can't set argument to a mapping field", arrayField, mappingClassInstance.getClass(), mappingField, ex);
         }
     }
 
+    /**
+     * Take an instance of a class from an object pool or make new one if the
+     * pool is null or doesn't have free instances.
+     *
+     * @param <T>   a class which instance is needed
+     * @param root  the structure to be mapped, it is needed as info for exception
+     * @param klazz the class which instance is needed
+     * @param pool  an object pool, it can be null
+     * @return an instance of the class, must not be null
+     * @throws JBBPMapperException it will be thrown if it is impossible to make
+     *                             an instance
+     */
+    static <T> T makeInstance(final JBBPFieldStruct root, final Class<T> klazz, final JBBPMapperObjectPool pool) {
+        if (pool != null) {
+            final T result = pool.take(klazz);
+            if (result != null) {
+                return result;
+            }
+        }
+        return allocateMemoryForClass(root, klazz);
+    }
+
     /**
      * Makes an instance of a class without call of its constructor, just allocate
      * memory
@@ -555,11 +781,61 @@ public final class JBBPMapper {
      * @throws JBBPMapperException it will be thrown if it is impossible to make
      *                             an instance
      */
-    private static <T> T allocateMemoryForClass(final JBBPFieldStruct root, final Class<T> klazz) {
+    static <T> T allocateMemoryForClass(final JBBPFieldStruct root, final Class<T> klazz) {
         try {
             return CLASS_INSTANTIATOR.makeClassInstance(klazz);
         } catch (InstantiationException ex) {
             throw new JBBPMapperException("Can't make an instance of a class", root, klazz, null, ex);
         }
     }
+
+    /**
+     * Resolved mapping parameters of a class field, they don't depend on mapped
+     * data and are made once for a class.
+     */
+    static final class MappedField {
+        final Field field;
+        final JBBPMappingFieldAccessor accessor;
+        final Bin anno;
+        final boolean custom;
+        /**
+         * Type of the binary field, null if there is not any compatible type.
+         */
+        final BinType binType;
+        final JBBPBitNumber bitNumber;
+        final boolean bitWide;
+        final boolean invertBitOrder;
+        final boolean array;
+        /**
+         * Name of the binary field, empty if the field should be found by its type.
+         */
+        final String name;
+        /**
+         * Path of the binary field, null if the field should be found by its name.
+         */
+        final JBBPFieldPath path;
+
+        private MappedField(final Field field, final Bin anno) {
+            this.field = field;
+            this.accessor = ACCESSOR_PROVIDER.makeAccessor(field);
+            this.anno = anno;
+            this.custom = anno.custom();
+            this.bitNumber = anno.outBitNumber();
+
+            if (anno.type() == BinType.UNDEFINED) {
+                BinType type = BinType.findCompatible(field.getType());
+                if (type != null && this.bitNumber.getBitNumber() < 8 && !(type == BinType.STRUCT || type == BinType.STRUCT_ARRAY)) {
+                    type = type.isArray() ? BinType.BIT_ARRAY : BinType.BIT;
+                }
+                this.binType = type;
+            } else {
+                this.binType = anno.type();
+            }
+            this.bitWide = this.binType == BinType.BIT || this.binType == BinType.BIT_ARRAY;
+            this.invertBitOrder = anno.bitOrder() == JBBPBitOrder.MSB0;
+            this.array = field.getType().isArray();
+            this.name = anno.name().length() == 0 ? field.getName() : anno.name();
+            this.path = anno.path().length() == 0 ? null : JBBPFieldPath.compile(anno.path());
+        }
+    }
 }
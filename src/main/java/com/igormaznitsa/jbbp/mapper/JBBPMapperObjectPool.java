@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper;
+
+/**
+ * Pool of mapping class instances, the mapper takes instances from the pool
+ * instead of allocation of new ones. Taken instances are not cleared, the
+ * mapper just overwrites their mapped fields, resets fields skipped for
+ * missing values and replaces structure arrays which have different number of
+ * elements. Implementations must be thread-safe if they are shared between
+ * threads.
+ *
+ * @see JBBPMapper#map(com.igormaznitsa.jbbp.model.JBBPFieldStruct, Class, JBBPMapperCustomFieldProcessor, int, JBBPMapperObjectPool)
+ * @since 1.3.0
+ */
+public interface JBBPMapperObjectPool {
+
+    /**
+     * Take an instance of a class from the pool.
+     *
+     * @param <T>   type of the instance
+     * @param klazz the class of needed instance, must not be null
+     * @return an instance of exactly the class or null if there is no free instance
+     */
+    <T> T take(Class<T> klazz);
+
+    /**
+     * Return an instance into the pool so that it can be taken again.
+     *
+     * @param instance an instance which is not used anymore, must not be null
+     */
+    void release(Object instance);
+}
@@ -0,0 +1,888 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper;
+
+import com.igormaznitsa.jbbp.JBBPParseListener;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledInstruction;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.exceptions.JBBPFinderException;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.exceptions.JBBPMapperException;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.model.*;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precomputed binding between fields of a compiled block and fields of a
+ * mapping class. It allows to write parsed values directly into mapping class
+ * instances through {@link com.igormaznitsa.jbbp.JBBPParser#parse(java.io.InputStream, JBBPParseListener, com.igormaznitsa.jbbp.JBBPVarFieldProcessor, com.igormaznitsa.jbbp.JBBPExternalValueProvider)}
+ * without building of the field tree. Mapping fields are resolved in the same
+ * way as {@link JBBPMapper} does, but only once for a class, errors of mapping
+ * are detected during binding creation. Custom mapping fields are not
+ * supported. The Binding is immutable and thread-safe, but every made listener
+ * must be used only for one parsing.
+ *
+ * @see com.igormaznitsa.jbbp.JBBPParser#parseToObject(java.io.InputStream, Class)
+ * @since 1.3.0
+ */
+public final class JBBPMappingBinding {
+
+    private static final int KIND_VALUE = 0;
+    private static final int KIND_ARRAY = 1;
+    private static final int KIND_FIELD = 2;
+    private static final int KIND_STRUCT = 3;
+    private static final int KIND_STRUCT_ARRAY = 4;
+
+    /**
+     * The Compiled block.
+     */
+    private final JBBPCompiledBlock compiledBlock;
+    /**
+     * Mapping flags.
+     */
+    private final int flags;
+    /**
+     * Binding of the root mapping class.
+     */
+    private final ClassBinding root;
+
+    private JBBPMappingBinding(final JBBPCompiledBlock compiledBlock, final Class<?> mappingClass, final int flags) {
+        this.compiledBlock = compiledBlock;
+        this.flags = flags;
+        final JBBPCompiledInstruction[] instructions = compiledBlock.getInstructions();
+        this.root = this.bindClass(instructions, 0, instructions.length, "", mappingClass);
+    }
+
+    /**
+     * Make binding for a mapping class.
+     *
+     * @param compiledBlock a compiled block, must not be null
+     * @param mappingClass  a mapping class, must not be null
+     * @return the binding, must not be null
+     * @throws JBBPMapperException if a mapping field can't be bound
+     */
+    public static JBBPMappingBinding make(final JBBPCompiledBlock compiledBlock, final Class<?> mappingClass) {
+        return make(compiledBlock, mappingClass, 0);
+    }
+
+    /**
+     * Make binding for a mapping class.
+     *
+     * @param compiledBlock a compiled block, must not be null
+     * @param mappingClass  a mapping class, must not be null
+     * @param flags         mapping flags
+     * @return the binding, must not be null
+     * @throws JBBPMapperException if a mapping field can't be bound
+     * @see JBBPMapper#FLAG_IGNORE_MISSING_VALUES
+     */
+    public static JBBPMappingBinding make(final JBBPCompiledBlock compiledBlock, final Class<?> mappingClass, final int flags) {
+        JBBPUtils.assertNotNull(compiledBlock, "Compiled block must not be null");
+        JBBPUtils.assertNotNull(mappingClass, "Mapping class must not be null");
+        return new JBBPMappingBinding(compiledBlock, mappingClass, flags);
+    }
+
+    /**
+     * Get type of a field which would be made by an instruction.
+     *
+     * @param instruction an instruction, must not be null
+     * @return the field type, null if it is defined only during parsing
+     */
+    private static BinType findBinType(final JBBPCompiledInstruction instruction) {
+        final boolean array = instruction.isArray();
+        switch (instruction.getType()) {
+            case JBBPCompiler.CODE_BIT:
+                return array ? BinType.BIT_ARRAY : BinType.BIT;
+            case JBBPCompiler.CODE_BOOL:
+                return array ? BinType.BOOL_ARRAY : BinType.BOOL;
+            case JBBPCompiler.CODE_BYTE:
+                return array ? BinType.BYTE_ARRAY : BinType.BYTE;
+            case JBBPCompiler.CODE_UBYTE:
+                return array ? BinType.UBYTE_ARRAY : BinType.UBYTE;
+            case JBBPCompiler.CODE_SHORT:
+                return array ? BinType.SHORT_ARRAY : BinType.SHORT;
+            case JBBPCompiler.CODE_USHORT:
+                return array ? BinType.USHORT_ARRAY : BinType.USHORT;
+            case JBBPCompiler.CODE_INT:
+                return array ? BinType.INT_ARRAY : BinType.INT;
+            case JBBPCompiler.CODE_LONG:
+                return array ? BinType.LONG_ARRAY : BinType.LONG;
+            case JBBPCompiler.CODE_STRUCT_START:
+                return array ? BinType.STRUCT_ARRAY : BinType.STRUCT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check that a field made by an instruction can be mapped for a type.
+     *
+     * @param instruction an instruction, must not be null
+     * @param type        the type of mapping field, must not be null
+     * @return true if the type is compatible or can be checked only during parsing
+     */
+    private static boolean isCompatible(final JBBPCompiledInstruction instruction, final BinType type) {
+        final BinType instructionType = findBinType(instruction);
+        return instructionType == null || type.getFieldClass().isAssignableFrom(instructionType.getFieldClass());
+    }
+
+    /**
+     * Find an instruction of a direct child of a structure for its name.
+     *
+     * @param instructions the instruction table, must not be null
+     * @param start        the start of the structure body
+     * @param end          the end of the structure body
+     * @param name         a normalized field name, must not be null
+     * @return index of the found instruction or -1
+     */
+    private static int findChild(final JBBPCompiledInstruction[] instructions, final int start, final int end, final String name) {
+        int index = start;
+        while (index < end) {
+            final JBBPCompiledInstruction instruction = instructions[index];
+            final JBBPNamedFieldInfo info = instruction.getFieldInfo();
+            if (info != null && name.equals(info.getFieldName())) {
+                return index;
+            }
+            index = instruction.getType() == JBBPCompiler.CODE_STRUCT_START ? instruction.getPairedStructIndex() + 1 : index + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Find an instruction for a path in a structure.
+     *
+     * @param instructions the instruction table, must not be null
+     * @param start        the start of the structure body
+     * @param end          the end of the structure body
+     * @param structName   the structure name, empty for the root
+     * @param path         the path, must not be null
+     * @return index of the found instruction or -1
+     */
+    private static int findPath(final JBBPCompiledInstruction[] instructions, final int start, final int end, final String structName, final JBBPFieldPath path) {
+        final int firstIndex;
+        if (structName.length() == 0) {
+            firstIndex = 0;
+        } else if (path.getElement(0).equals(structName)) {
+            firstIndex = 1;
+        } else {
+            return -1;
+        }
+
+        int bodyStart = start;
+        int bodyEnd = end;
+        int found = -1;
+        for (int i = firstIndex; i < path.size(); i++) {
+            if (found >= 0) {
+                final JBBPCompiledInstruction instruction = instructions[found];
+                if (instruction.getType() != JBBPCompiler.CODE_STRUCT_START || instruction.isArray()) {
+                    throw new JBBPFinderException("Detected a field instead of a structure as one of nodes in the path '" + path.getPath() + '\'', path.getPath(), null);
+                }
+                bodyStart = found + 1;
+                bodyEnd = instruction.getPairedStructIndex();
+            }
+            found = findChild(instructions, bodyStart, bodyEnd, path.getElement(i));
+            if (found < 0) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get value with reversed bit order for a field type.
+     *
+     * @param type      the field type
+     * @param value     the value
+     * @param bitNumber the bit number for bit fields
+     * @return the value with reversed bit order
+     */
+    private static long reverseBits(final int type, final long value, final JBBPBitNumber bitNumber) {
+        switch (type) {
+            case JBBPCompiler.CODE_BIT:
+                return JBBPFieldBit.reverseBits((byte) value, bitNumber);
+            case JBBPCompiler.CODE_BOOL:
+                return JBBPFieldBoolean.reverseBits(value != 0L);
+            case JBBPCompiler.CODE_BYTE:
+                return JBBPFieldByte.reverseBits((byte) value);
+            case JBBPCompiler.CODE_UBYTE:
+                return JBBPFieldUByte.reverseBits((byte) value);
+            case JBBPCompiler.CODE_SHORT:
+                return JBBPFieldShort.reverseBits((short) value);
+            case JBBPCompiler.CODE_USHORT:
+                return JBBPFieldUShort.reverseBits((short) value);
+            case JBBPCompiler.CODE_INT:
+                return JBBPFieldInt.reverseBits((int) value);
+            case JBBPCompiler.CODE_LONG:
+                return JBBPFieldLong.reverseBits(value);
+            default:
+                throw new Error("Unexpected field type, contact developer! [" + type + ']');
+        }
+    }
+
+    /**
+     * Make binding of a mapping class to a structure.
+     *
+     * @param instructions the instruction table, must not be null
+     * @param start        the start of the structure body
+     * @param end          the end of the structure body
+     * @param structName   the structure name, empty for the root
+     * @param mappingClass the mapping class, must not be null
+     * @return the class binding, must not be null
+     */
+    private ClassBinding bindClass(final JBBPCompiledInstruction[] instructions, final int start, final int end, final String structName, final Class<?> mappingClass) {
+        final Target[] targets = new Target[this.compiledBlock.getNamedFields().length];
+        final List<JBBPMapper.MappedField> missing = new ArrayList<JBBPMapper.MappedField>();
+
+        for (final JBBPMapper.MappedField mapped : JBBPMapper.getMappingPlan(mappingClass)) {
+            if (mapped.custom) {
+                throw new JBBPMapperException("Custom mapping fields are not supported for direct parsing", null, mappingClass, mapped.field, null);
+            }
+            if (mapped.binType == null) {
+                throw new JBBPMapperException("Can't find compatible type for a mapping field", null, mappingClass, mapped.field, null);
+            }
+
+            final int found = mapped.path == null ? findChild(instructions, start, end, JBBPUtils.normalizeFieldNameOrPath(mapped.name)) : findPath(instructions, start, end, structName, mapped.path);
+            if (found < 0 || !isCompatible(instructions[found], mapped.binType)) {
+                if ((this.flags & JBBPMapper.FLAG_IGNORE_MISSING_VALUES) != 0) {
+                    missing.add(mapped);
+                    continue;
+                }
+                throw new JBBPMapperException("Can't find value to be mapped to a mapping field [" + mapped.field + ']', null, mappingClass, mapped.field, null);
+            }
+
+            final JBBPCompiledInstruction instruction = instructions[found];
+            final int index = this.compiledBlock.findNamedFieldIndexForOffset(instruction.getFieldInfo().getFieldOffsetInCompiledBlock());
+            targets[index] = this.makeTarget(instructions, found, mappingClass, mapped);
+        }
+
+        return new ClassBinding(mappingClass, targets, missing.toArray(new JBBPMapper.MappedField[missing.size()]));
+    }
+
+    /**
+     * Make target for a mapping field and its found instruction.
+     *
+     * @param instructions the instruction table, must not be null
+     * @param index        index of the found instruction
+     * @param mappingClass the mapping class, must not be null
+     * @param mapped       the mapping field, must not be null
+     * @return the target, must not be null
+     */
+    private Target makeTarget(final JBBPCompiledInstruction[] instructions, final int index, final Class<?> mappingClass, final JBBPMapper.MappedField mapped) {
+        final JBBPCompiledInstruction instruction = instructions[index];
+        final Class<?> fieldType = mapped.field.getType();
+        final int type = instruction.getType();
+
+        switch (type) {
+            case JBBPCompiler.CODE_VAR:
+            case JBBPCompiler.CODE_CUSTOMTYPE:
+                return new Target(mapped, KIND_FIELD, null, null);
+            case JBBPCompiler.CODE_STRUCT_START: {
+                final String name = instruction.getFieldInfo().getFieldName();
+                if (instruction.isArray()) {
+                    if (!mapped.array) {
+                        throw new JBBPMapperException("Can't map a field for its value incompatibility", null, mappingClass, mapped.field, null);
+                    }
+                    return new Target(mapped, KIND_STRUCT_ARRAY, null, this.bindClass(instructions, index + 1, instruction.getPairedStructIndex(), name, fieldType.getComponentType()));
+                } else {
+                    if (mapped.array) {
+                        throw new JBBPMapperException("Can't map a non-array value to an array mapping field", null, mappingClass, mapped.field, null);
+                    }
+                    if (fieldType.isPrimitive()) {
+                        throw new JBBPMapperException("Can't map a structure to a primitive mapping field", null, mappingClass, mapped.field, null);
+                    }
+                    return new Target(mapped, KIND_STRUCT, null, this.bindClass(instructions, index + 1, instruction.getPairedStructIndex(), name, fieldType));
+                }
+            }
+            default: {
+                final JBBPBitNumber bitNumber = instruction.getBitNumber();
+                if (type == JBBPCompiler.CODE_BIT && bitNumber == null && (mapped.invertBitOrder || (mapped.bitWide && mapped.bitNumber != JBBPBitNumber.BITS_8))) {
+                    throw new JBBPMapperException("Bit fields with calculated width can't be mapped with bit width check or bit order inversion in direct parsing", null, mappingClass, mapped.field, null);
+                }
+                if (mapped.bitWide && mapped.bitNumber != JBBPBitNumber.BITS_8 && bitNumber != mapped.bitNumber) {
+                    throw new JBBPMapperException("Can't map value to a mapping field for different field bit width [" + mapped.bitNumber + "!=" + bitNumber.getBitNumber() + ']', null, mappingClass, mapped.field, null);
+                }
+                if (instruction.isArray()) {
+                    if (!mapped.array && fieldType != String.class) {
+                        throw new JBBPMapperException("Can't map a field for its value incompatibility", null, mappingClass, mapped.field, null);
+                    }
+                    return new Target(mapped, KIND_ARRAY, bitNumber, null);
+                } else {
+                    if (mapped.array) {
+                        throw new JBBPMapperException("Can't map a non-array value to an array mapping field", null, mappingClass, mapped.field, null);
+                    }
+                    return new Target(mapped, KIND_VALUE, bitNumber, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the mapping class.
+     *
+     * @return the mapping class, must not be null
+     */
+    public Class<?> getMappingClass() {
+        return this.root.mappingClass;
+    }
+
+    /**
+     * Make an instance of the mapping class without constructor call.
+     *
+     * @return new instance of the mapping class, must not be null
+     * @throws JBBPMapperException if the instance can't be made
+     */
+    public Object makeInstance() {
+        return JBBPMapper.allocateMemoryForClass(null, this.root.mappingClass);
+    }
+
+    /**
+     * Make a listener which writes parsed values into a mapping class instance.
+     * The Listener must be used only for one parsing of the compiled block.
+     *
+     * @param instance a mapping class instance, must not be null
+     * @return the listener, must not be null
+     * @throws JBBPIllegalArgumentException if the instance is not an instance of the mapping class
+     */
+    public JBBPParseListener makeListener(final Object instance) {
+        return this.makeListener(instance, null);
+    }
+
+    /**
+     * Make a listener which writes parsed values into a mapping class instance,
+     * nested mapping class instances are taken from an object pool if mapping
+     * fields don't have them. The Listener must be used only for one parsing of
+     * the compiled block.
+     *
+     * @param instance a mapping class instance, must not be null
+     * @param pool     an object pool, it can be null
+     * @return the listener, must not be null
+     * @throws JBBPIllegalArgumentException if the instance is not an instance of the mapping class
+     */
+    public JBBPParseListener makeListener(final Object instance, final JBBPMapperObjectPool pool) {
+        JBBPUtils.assertNotNull(instance, "Instance must not be null");
+        if (!this.root.mappingClass.isInstance(instance)) {
+            throw new JBBPIllegalArgumentException("Instance must be " + this.root.mappingClass.getName() + " [" + instance.getClass().getName() + ']');
+        }
+        return new BindingListener(instance, pool);
+    }
+
+    /**
+     * Binding of a mapping class to a structure.
+     */
+    private static final class ClassBinding {
+        private final Class<?> mappingClass;
+        /**
+         * Targets for indexes of named fields, null for not mapped fields.
+         */
+        private final Target[] targets;
+        /**
+         * Mapping fields which don't have values, they are reset in pooled instances.
+         */
+        private final JBBPMapper.MappedField[] missing;
+
+        private ClassBinding(final Class<?> mappingClass, final Target[] targets, final JBBPMapper.MappedField[] missing) {
+            this.mappingClass = mappingClass;
+            this.targets = targets;
+            this.missing = missing;
+        }
+    }
+
+    /**
+     * Mapping field bound to a named field.
+     */
+    private static final class Target {
+        private final JBBPMapper.MappedField mapped;
+        private final int kind;
+        /**
+         * Bit number for bit fields with constant width, null otherwise.
+         */
+        private final JBBPBitNumber bitNumber;
+        /**
+         * Binding of structure fields, null for not structure targets.
+         */
+        private final ClassBinding child;
+
+        private Target(final JBBPMapper.MappedField mapped, final int kind, final JBBPBitNumber bitNumber, final ClassBinding child) {
+            this.mapped = mapped;
+            this.kind = kind;
+            this.bitNumber = bitNumber;
+            this.child = child;
+        }
+    }
+
+    /**
+     * Mapping class instance which is being filled.
+     */
+    private static final class Frame {
+        private final ClassBinding binding;
+        private final Object instance;
+        /**
+         * Target in the owner frame, null for the root.
+         */
+        private final Target target;
+        private final Frame owner;
+        private final int level;
+        /**
+         * Flag shows that the instance is taken from an object pool or kept by
+         * such instance, so that it can contain values of previous parsing.
+         */
+        private final boolean pooled;
+
+        private Frame(final ClassBinding binding, final Object instance, final Target target, final Frame owner, final int level, final boolean pooled) {
+            this.binding = binding;
+            this.instance = instance;
+            this.target = target;
+            this.owner = owner;
+            this.level = level;
+            this.pooled = pooled;
+        }
+    }
+
+    /**
+     * Collector of elements of a structure array.
+     */
+    private static final class StructArrayCollector {
+        private final Frame owner;
+        private final Target target;
+        /**
+         * Array kept by the mapping field before parsing, it can be null.
+         */
+        private final Object existing;
+        private final List<Object> elements;
+        private final int level;
+
+        private StructArrayCollector(final Frame owner, final Target target, final Object existing, final int length, final int level) {
+            this.owner = owner;
+            this.target = target;
+            this.existing = existing;
+            this.elements = new ArrayList<Object>(length < 0 ? 16 : length);
+            this.level = level;
+        }
+
+        private Object nextExistingElement() {
+            final int index = this.elements.size();
+            return this.existing != null && index < Array.getLength(this.existing) ? Array.get(this.existing, index) : null;
+        }
+
+        private Object makeArray() {
+            final int size = this.elements.size();
+            final Object result;
+            if (this.existing == null) {
+                result = Array.newInstance(this.target.child.mappingClass, size);
+            } else if (Array.getLength(this.existing) == size) {
+                result = this.existing;
+            } else if (this.owner.pooled) {
+                result = JBBPMapper.resizeArray(this.existing, this.target.child.mappingClass, size);
+            } else {
+                throw new JBBPMapperException("Can't map an array field for different expected size [" + Array.getLength(this.existing) + "!=" + size + ']', null, this.owner.instance.getClass(), this.target.mapped.field, null);
+            }
+            for (int i = 0; i < size; i++) {
+                Array.set(result, i, this.elements.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Collector of values of a primitive array, values are written directly
+     * into an array of the mapping field type.
+     */
+    private static final class ArrayCollector {
+        private final Frame owner;
+        private final Target target;
+        private final int type;
+        /**
+         * Flag shows that the mapping field is a string.
+         */
+        private final boolean string;
+        /**
+         * Flag shows that bit order of values must be reversed.
+         */
+        private final boolean invertBitOrder;
+        /**
+         * Flag shows that the array is kept by the mapping field and filled in place.
+         */
+        private final boolean reused;
+        private Object data;
+        private int size;
+
+        private ArrayCollector(final Frame owner, final Target target, final int type, final int length, final boolean reuseArrays) {
+            this.owner = owner;
+            this.target = target;
+            this.type = type;
+
+            final Class<?> fieldType = target.mapped.field.getType();
+            this.string = fieldType == String.class;
+            this.invertBitOrder = !this.string && target.mapped.invertBitOrder;
+
+            final Class<?> componentType;
+            switch (type) {
+                case JBBPCompiler.CODE_BOOL:
+                    componentType = boolean.class;
+                    break;
+                case JBBPCompiler.CODE_SHORT:
+                    componentType = short.class;
+                    break;
+                case JBBPCompiler.CODE_USHORT:
+                    componentType = !this.string && fieldType.getComponentType() == char.class ? char.class : short.class;
+                    break;
+                case JBBPCompiler.CODE_INT:
+                    componentType = int.class;
+                    break;
+                case JBBPCompiler.CODE_LONG:
+                    componentType = long.class;
+                    break;
+                default:
+                    componentType = byte.class;
+                    break;
+            }
+
+            Object current = null;
+            if (reuseArrays && !this.string && length >= 0) {
+                current = JBBPMapper.getFieldValue(owner.instance, target.mapped.accessor);
+                if (current != null && (current.getClass().getComponentType() != componentType || Array.getLength(current) != length)) {
+                    current = null;
+                }
+            }
+            this.reused = current != null;
+            this.data = this.reused ? current : Array.newInstance(componentType, length < 0 ? 64 : length);
+        }
+
+        private void reserve(final int length) {
+            final int capacity = Array.getLength(this.data);
+            if (this.size + length > capacity) {
+                final Object grown = Array.newInstance(this.data.getClass().getComponentType(), Math.max(capacity << 1, this.size + length));
+                System.arraycopy(this.data, 0, grown, 0, this.size);
+                this.data = grown;
+            }
+        }
+
+        private void addBytes(final byte[] buffer, final int length) {
+            this.reserve(length);
+            if (this.type == JBBPCompiler.CODE_BOOL) {
+                final boolean[] result = (boolean[]) this.data;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = buffer[i] != 0;
+                }
+            } else if (this.invertBitOrder) {
+                final byte[] result = (byte[]) this.data;
+                final JBBPBitNumber bitNumber = this.target.bitNumber == null ? JBBPBitNumber.BITS_8 : this.target.bitNumber;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = (byte) (this.type == JBBPCompiler.CODE_BIT ? JBBPFieldBit.reverseBits(buffer[i], bitNumber) : JBBPFieldByte.reverseBits(buffer[i]));
+                }
+            } else {
+                System.arraycopy(buffer, 0, this.data, this.size, length);
+            }
+            this.size += length;
+        }
+
+        private void addShorts(final short[] buffer, final int length) {
+            this.reserve(length);
+            if (this.data instanceof char[]) {
+                final char[] result = (char[]) this.data;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = (char) (this.invertBitOrder ? JBBPFieldUShort.reverseBits(buffer[i]) : buffer[i]);
+                }
+            } else if (this.invertBitOrder) {
+                final short[] result = (short[]) this.data;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = (short) (this.type == JBBPCompiler.CODE_SHORT ? JBBPFieldShort.reverseBits(buffer[i]) : JBBPFieldUShort.reverseBits(buffer[i]));
+                }
+            } else {
+                System.arraycopy(buffer, 0, this.data, this.size, length);
+            }
+            this.size += length;
+        }
+
+        private void addInts(final int[] buffer, final int length) {
+            this.reserve(length);
+            if (this.invertBitOrder) {
+                final int[] result = (int[]) this.data;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = (int) JBBPFieldInt.reverseBits(buffer[i]);
+                }
+            } else {
+                System.arraycopy(buffer, 0, this.data, this.size, length);
+            }
+            this.size += length;
+        }
+
+        private void addLongs(final long[] buffer, final int length) {
+            this.reserve(length);
+            if (this.invertBitOrder) {
+                final long[] result = (long[]) this.data;
+                for (int i = 0; i < length; i++) {
+                    result[this.size + i] = JBBPFieldLong.reverseBits(buffer[i]);
+                }
+            } else {
+                System.arraycopy(buffer, 0, this.data, this.size, length);
+            }
+            this.size += length;
+        }
+
+        private Object trimmed() {
+            if (Array.getLength(this.data) == this.size) {
+                return this.data;
+            }
+            final Object result = Array.newInstance(this.data.getClass().getComponentType(), this.size);
+            System.arraycopy(this.data, 0, result, 0, this.size);
+            return result;
+        }
+
+        private String makeString() {
+            final StringBuilder result = new StringBuilder(this.size);
+            if (this.data instanceof byte[]) {
+                final byte[] array = (byte[]) this.data;
+                for (int i = 0; i < this.size; i++) {
+                    result.append((char) (array[i] & 0xFF));
+                }
+            } else if (this.data instanceof short[]) {
+                final short[] array = (short[]) this.data;
+                for (int i = 0; i < this.size; i++) {
+                    result.append((char) array[i]);
+                }
+            } else {
+                throw new JBBPMapperException("Can't map a field for its value incompatibility", null, this.owner.instance.getClass(), this.target.mapped.field, null);
+            }
+            return result.toString();
+        }
+
+        private void map() {
+            if (this.string) {
+                JBBPMapper.setFieldValue(this.owner.instance, this.target.mapped.accessor, null, this.makeString());
+            } else if (!this.reused) {
+                JBBPMapper.setFieldValue(this.owner.instance, this.target.mapped.accessor, null, this.trimmed());
+            }
+        }
+    }
+
+    /**
+     * Listener writes parsed values into mapping class instances.
+     */
+    private final class BindingListener extends JBBPParseListener {
+        /**
+         * Stack of instances being filled, the root is the first one.
+         */
+        private final List<Frame> frames = new ArrayList<Frame>();
+        private final List<StructArrayCollector> structArrays = new ArrayList<StructArrayCollector>();
+        private final List<ArrayCollector> arrays = new ArrayList<ArrayCollector>();
+        /**
+         * Current nesting level of structures and structure arrays.
+         */
+        private int level;
+        /**
+         * Pool of mapping class instances, it can be null.
+         */
+        private final JBBPMapperObjectPool pool;
+
+        private BindingListener(final Object instance, final JBBPMapperObjectPool pool) {
+            this.pool = pool;
+            this.frames.add(new Frame(root, instance, null, null, 0, false));
+        }
+
+        private Frame makeFrame(final Frame owner, final Target target, final Object existing) {
+            final Object instance;
+            final boolean pooled;
+            if (existing == null) {
+                instance = JBBPMapper.makeInstance(null, target.child.mappingClass, this.pool);
+                pooled = this.pool != null;
+            } else {
+                instance = existing;
+                pooled = owner.pooled;
+            }
+            if (pooled) {
+                for (final JBBPMapper.MappedField mapped : target.child.missing) {
+                    JBBPMapper.resetFieldValue(instance, mapped);
+                }
+            }
+            return new Frame(target.child, instance, target, owner, this.level, pooled);
+        }
+
+        private int indexOf(final JBBPNamedFieldInfo nameInfo) {
+            return compiledBlock.findNamedFieldIndexForOffset(nameInfo.getFieldOffsetInCompiledBlock());
+        }
+
+        private StructArrayCollector findStructArray(final Frame owner, final Target target) {
+            for (int i = this.structArrays.size() - 1; i >= 0; i--) {
+                final StructArrayCollector collector = this.structArrays.get(i);
+                if (collector.owner == owner && collector.target == target) {
+                    return collector;
+                }
+            }
+            throw new Error("Can't find structure array collector, contact developer!");
+        }
+
+        @Override
+        public void onStructStart(final JBBPNamedFieldInfo nameInfo) {
+            this.level++;
+            if (nameInfo == null) {
+                return;
+            }
+            final int index = this.indexOf(nameInfo);
+            final int count = this.frames.size();
+            for (int i = 0; i < count; i++) {
+                final Frame frame = this.frames.get(i);
+                final Target target = frame.binding.targets[index];
+                if (target == null) {
+                    continue;
+                }
+                if (target.kind == KIND_STRUCT) {
+                    this.frames.add(this.makeFrame(frame, target, JBBPMapper.getFieldValue(frame.instance, target.mapped.accessor)));
+                } else if (target.kind == KIND_STRUCT_ARRAY) {
+                    this.frames.add(this.makeFrame(frame, target, this.findStructArray(frame, target).nextExistingElement()));
+                }
+            }
+        }
+
+        @Override
+        public void onStructEnd(final JBBPNamedFieldInfo nameInfo) {
+            while (this.frames.size() > 1) {
+                final Frame frame = this.frames.get(this.frames.size() - 1);
+                if (frame.level != this.level) {
+                    break;
+                }
+                this.frames.remove(this.frames.size() - 1);
+                if (frame.target.kind == KIND_STRUCT) {
+                    JBBPMapper.setFieldValue(frame.owner.instance, frame.target.mapped.accessor, null, frame.instance);
+                } else {
+                    this.findStructArray(frame.owner, frame.target).elements.add(frame.instance);
+                }
+            }
+            this.level--;
+        }
+
+        @Override
+        public void onStructArrayStart(final JBBPNamedFieldInfo nameInfo, final int length) {
+            this.level++;
+            if (nameInfo == null) {
+                return;
+            }
+            final int index = this.indexOf(nameInfo);
+            for (final Frame frame : this.frames) {
+                final Target target = frame.binding.targets[index];
+                if (target != null && target.kind == KIND_STRUCT_ARRAY) {
+                    final Object existing = JBBPMapper.getFieldValue(frame.instance, target.mapped.accessor);
+                    if (existing != null && length >= 0 && Array.getLength(existing) != length && !frame.pooled) {
+                        throw new JBBPMapperException("Can't map an array field for different expected size [" + Array.getLength(existing) + "!=" + length + ']', null, frame.instance.getClass(), target.mapped.field, null);
+                    }
+                    this.structArrays.add(new StructArrayCollector(frame, target, existing, length, this.level));
+                }
+            }
+        }
+
+        @Override
+        public void onStructArrayEnd(final JBBPNamedFieldInfo nameInfo) {
+            while (!this.structArrays.isEmpty()) {
+                final StructArrayCollector collector = this.structArrays.get(this.structArrays.size() - 1);
+                if (collector.level != this.level) {
+                    break;
+                }
+                this.structArrays.remove(this.structArrays.size() - 1);
+                JBBPMapper.setFieldValue(collector.owner.instance, collector.target.mapped.accessor, null, collector.makeArray());
+            }
+            this.level--;
+        }
+
+        @Override
+        public void onValue(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long value) {
+            if (nameInfo == null) {
+                return;
+            }
+            final int index = this.indexOf(nameInfo);
+            for (final Frame frame : this.frames) {
+                final Target target = frame.binding.targets[index];
+                if (target != null && target.kind == KIND_VALUE) {
+                    final long mappedValue = target.mapped.invertBitOrder ? reverseBits(fieldType, value, target.bitNumber) : value;
+                    JBBPMapper.mapNumericValue(frame.instance, target.mapped.accessor, null, value != 0L, mappedValue);
+                }
+            }
+        }
+
+        @Override
+        public void onArrayStart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int length) {
+            if (nameInfo == null) {
+                return;
+            }
+            final int index = this.indexOf(nameInfo);
+            for (final Frame frame : this.frames) {
+                final Target target = frame.binding.targets[index];
+                if (target != null && target.kind == KIND_ARRAY) {
+                    this.arrays.add(new ArrayCollector(frame, target, fieldType, length, (flags & JBBPMapper.FLAG_REUSE_ARRAYS) != 0));
+                }
+            }
+        }
+
+        @Override
+        public void onByteArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final byte[] buffer, final int length) {
+            for (final ArrayCollector collector : this.arrays) {
+                collector.addBytes(buffer, length);
+            }
+        }
+
+        @Override
+        public void onShortArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final short[] buffer, final int length) {
+            for (final ArrayCollector collector : this.arrays) {
+                collector.addShorts(buffer, length);
+            }
+        }
+
+        @Override
+        public void onIntArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int[] buffer, final int length) {
+            for (final ArrayCollector collector : this.arrays) {
+                collector.addInts(buffer, length);
+            }
+        }
+
+        @Override
+        public void onLongArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long[] buffer, final int length) {
+            for (final ArrayCollector collector : this.arrays) {
+                collector.addLongs(buffer, length);
+            }
+        }
+
+        @Override
+        public void onArrayEnd(final JBBPNamedFieldInfo nameInfo, final int fieldType) {
+            for (final ArrayCollector collector : this.arrays) {
+                collector.map();
+            }
+            this.arrays.clear();
+        }
+
+        @Override
+        public void onField(final JBBPAbstractField field) {
+            final JBBPNamedFieldInfo nameInfo = field.getNameInfo();
+            if (nameInfo == null) {
+                return;
+            }
+            final int index = this.indexOf(nameInfo);
+            for (final Frame frame : this.frames) {
+                final Target target = frame.binding.targets[index];
+                if (target != null && target.kind == KIND_FIELD) {
+                    if (target.mapped.binType.getFieldClass().isAssignableFrom(field.getClass())) {
+                        JBBPMapper.mapField(frame.instance, target.mapped, field, null, flags, this.pool);
+                    } else if ((flags & JBBPMapper.FLAG_IGNORE_MISSING_VALUES) == 0) {
+                        throw new JBBPMapperException("Can't find value to be mapped to a mapping field [" + target.mapped.field + ']', field, frame.instance.getClass(), target.mapped.field, null);
+                    }
+                }
+            }
+        }
+    }
+}
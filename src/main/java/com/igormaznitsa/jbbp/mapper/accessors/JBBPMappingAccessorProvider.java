@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import java.lang.reflect.Field;
+
+/**
+ * Interface describes a provider of field accessors for the mapper.
+ *
+ * @since 1.3.0
+ */
+public interface JBBPMappingAccessorProvider {
+    /**
+     * Make an accessor for a field.
+     *
+     * @param field a field to be accessed, must not be null and must be accessible
+     * @return an accessor for the field, must not be null
+     */
+    JBBPMappingFieldAccessor makeAccessor(Field field);
+}
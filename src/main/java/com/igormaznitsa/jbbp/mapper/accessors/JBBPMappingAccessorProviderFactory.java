@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import com.igormaznitsa.jbbp.utils.JBBPSystemProperty;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+/**
+ * The Factory produces a field accessor provider which is compatible with the
+ * current platform.
+ *
+ * @since 1.3.0
+ */
+@SuppressWarnings("LiteralClassName")
+public final class JBBPMappingAccessorProviderFactory {
+
+    /**
+     * The Factory INSTANCE.
+     */
+    private static final JBBPMappingAccessorProviderFactory INSTANCE = new JBBPMappingAccessorProviderFactory();
+
+    /**
+     * The Hidden constructor.
+     */
+    private JBBPMappingAccessorProviderFactory() {
+
+    }
+
+    /**
+     * Get the factory INSTANCE.
+     *
+     * @return the factory INSTANCE, must not be null
+     */
+    public static JBBPMappingAccessorProviderFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Make the default provider, it is the provider defined by the system
+     * property or the safe reflection based one.
+     *
+     * @return the accessor provider, must not be null
+     * @see JBBPSystemProperty#PROPERTY_ACCESSOR_PROVIDER_CLASS
+     */
+    public JBBPMappingAccessorProvider make() {
+        return this.make(JBBPMappingAccessorProviderType.AUTO);
+    }
+
+    /**
+     * Make a provider for defined type.
+     *
+     * @param type the type of needed provider, must not be null
+     * @return the accessor provider which is compatible with the current platform
+     */
+    public JBBPMappingAccessorProvider make(final JBBPMappingAccessorProviderType type) {
+        JBBPUtils.assertNotNull(type, "Type must not be null");
+
+        String className = "com.igormaznitsa.jbbp.mapper.accessors.JBBPSafeAccessorProvider";
+
+        switch (type) {
+            case AUTO: {
+                final String customClassName = JBBPSystemProperty.PROPERTY_ACCESSOR_PROVIDER_CLASS.getAsString(null);
+                if (customClassName != null) {
+                    className = customClassName;
+                }
+            }
+            break;
+            case SAFE: {
+                className = "com.igormaznitsa.jbbp.mapper.accessors.JBBPSafeAccessorProvider";
+            }
+            break;
+            case UNSAFE: {
+                className = "com.igormaznitsa.jbbp.mapper.accessors.JBBPUnsafeAccessorProvider";
+            }
+            break;
+            default:
+                throw new Error("Unexpected type, contact developer! [" + type + ']');
+        }
+
+        try {
+            final Class<?> klazz = Class.forName(className);
+            return JBBPMappingAccessorProvider.class.cast(klazz.newInstance());
+        } catch (ClassNotFoundException ex) {
+            throw new Error("Can't make accessor provider because can't find class '" + className + "', may be the class is obfuscated or wrong defined", ex);
+        } catch (IllegalAccessException ex) {
+            throw new Error("Can't make accessor provider from '" + className + "' for access exception", ex);
+        } catch (InstantiationException ex) {
+            throw new Error("Can't make accessor provider from '" + className + "' for inside exception", ex);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+/**
+ * Type of field accessor provider for mapping.
+ *
+ * @since 1.3.0
+ */
+public enum JBBPMappingAccessorProviderType {
+    /**
+     * Provider defined by the system property or the safe one if the property is not defined.
+     */
+    AUTO,
+    /**
+     * A Safe version which uses standard Java reflection.
+     */
+    SAFE,
+    /**
+     * A Version using sun.misc.Unsafe to write fields directly by their offsets,
+     * it is used only if selected explicitly.
+     */
+    UNSAFE
+}
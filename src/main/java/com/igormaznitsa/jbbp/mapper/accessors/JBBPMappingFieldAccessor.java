@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import java.lang.reflect.Field;
+
+/**
+ * Accessor to read and write value of a mapping class field, it is made once
+ * for a field and reused for all instances of the class. Typed setters can be
+ * called only for fields of the same primitive type.
+ *
+ * @see JBBPMappingAccessorProvider
+ * @since 1.3.0
+ */
+public interface JBBPMappingFieldAccessor {
+    /**
+     * Get the field processed by the accessor.
+     *
+     * @return the field, must not be null
+     */
+    Field getField();
+
+    /**
+     * Get the field value.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @return the value, primitive values are boxed
+     * @throws IllegalArgumentException if the instance is not compatible with the field
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    Object get(Object instance);
+
+    /**
+     * Set the field value.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value, boxed value for primitive fields
+     * @throws IllegalArgumentException if the instance or the value is not compatible with the field
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void set(Object instance, Object value);
+
+    /**
+     * Set value of a boolean field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not boolean
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setBoolean(Object instance, boolean value);
+
+    /**
+     * Set value of a byte field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not byte
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setByte(Object instance, byte value);
+
+    /**
+     * Set value of a char field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not char
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setChar(Object instance, char value);
+
+    /**
+     * Set value of a short field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not short
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setShort(Object instance, short value);
+
+    /**
+     * Set value of an int field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not int
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setInt(Object instance, int value);
+
+    /**
+     * Set value of a long field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not long
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setLong(Object instance, long value);
+
+    /**
+     * Set value of a float field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not float
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setFloat(Object instance, float value);
+
+    /**
+     * Set value of a double field.
+     *
+     * @param instance an instance of the field class, must not be null
+     * @param value    the value
+     * @throws IllegalArgumentException if the instance is not compatible or the field is not double
+     * @throws IllegalStateException    if the field can't be accessed
+     */
+    void setDouble(Object instance, double value);
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * The Provider makes accessors which use standard Java reflection, they work
+ * on all platforms and are used as the fallback.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPSafeAccessorProvider implements JBBPMappingAccessorProvider {
+
+    @Override
+    public JBBPMappingFieldAccessor makeAccessor(final Field field) {
+        JBBPUtils.assertNotNull(field, "Field must not be null");
+        return new ReflectionAccessor(field);
+    }
+
+    /**
+     * Accessor based on reflection.
+     */
+    private static final class ReflectionAccessor implements JBBPMappingFieldAccessor {
+        private final Field field;
+
+        private ReflectionAccessor(final Field field) {
+            this.field = field;
+        }
+
+        private static IllegalStateException makeAccessError(final Field field, final IllegalAccessException ex) {
+            final IllegalStateException result = new IllegalStateException("Can't get access to field " + field);
+            result.initCause(ex);
+            return result;
+        }
+
+        @Override
+        public Field getField() {
+            return this.field;
+        }
+
+        @Override
+        public Object get(final Object instance) {
+            try {
+                return this.field.get(instance);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void set(final Object instance, final Object value) {
+            try {
+                this.field.set(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setBoolean(final Object instance, final boolean value) {
+            try {
+                this.field.setBoolean(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setByte(final Object instance, final byte value) {
+            try {
+                this.field.setByte(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setChar(final Object instance, final char value) {
+            try {
+                this.field.setChar(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setShort(final Object instance, final short value) {
+            try {
+                this.field.setShort(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setInt(final Object instance, final int value) {
+            try {
+                this.field.setInt(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setLong(final Object instance, final long value) {
+            try {
+                this.field.setLong(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setFloat(final Object instance, final float value) {
+            try {
+                this.field.setFloat(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public void setDouble(final Object instance, final double value) {
+            try {
+                this.field.setDouble(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw makeAccessError(this.field, ex);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ReflectionAccessor[" + this.field + ']';
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * The Provider makes accessors which write fields through sun.misc.Unsafe
+ * directly by their offsets, without reflection access checks of fields. Types
+ * of instances and values are checked by accessors so that memory can't be
+ * corrupted. Static and volatile fields are processed through reflection.
+ * The Provider is not used by default, it must be selected explicitly.
+ *
+ * @see JBBPMappingAccessorProviderType#UNSAFE
+ * @since 1.3.0
+ */
+@SuppressWarnings("LiteralClassName")
+public final class JBBPUnsafeAccessorProvider implements JBBPMappingAccessorProvider {
+
+    /**
+     * The sun.misc.Unsafe object.
+     */
+    private static final Object SUN_MISC_UNSAFE;
+    /**
+     * The sun.misc.Unsafe.objectFieldOffset method.
+     */
+    private static final Method OBJECT_FIELD_OFFSET;
+    private static final Method GET_BOOLEAN;
+    private static final Method GET_BYTE;
+    private static final Method GET_CHAR;
+    private static final Method GET_SHORT;
+    private static final Method GET_INT;
+    private static final Method GET_LONG;
+    private static final Method GET_FLOAT;
+    private static final Method GET_DOUBLE;
+    private static final Method GET_OBJECT;
+    private static final Method PUT_BOOLEAN;
+    private static final Method PUT_BYTE;
+    private static final Method PUT_CHAR;
+    private static final Method PUT_SHORT;
+    private static final Method PUT_INT;
+    private static final Method PUT_LONG;
+    private static final Method PUT_FLOAT;
+    private static final Method PUT_DOUBLE;
+    private static final Method PUT_OBJECT;
+
+    static {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field singleoneInstanceField = unsafeClass.getDeclaredField("theUnsafe");
+            JBBPUtils.makeAccessible(singleoneInstanceField);
+            SUN_MISC_UNSAFE = singleoneInstanceField.get(null);
+            OBJECT_FIELD_OFFSET = unsafeClass.getMethod("objectFieldOffset", Field.class);
+            GET_BOOLEAN = unsafeClass.getMethod("getBoolean", Object.class, long.class);
+            GET_BYTE = unsafeClass.getMethod("getByte", Object.class, long.class);
+            GET_CHAR = unsafeClass.getMethod("getChar", Object.class, long.class);
+            GET_SHORT = unsafeClass.getMethod("getShort", Object.class, long.class);
+            GET_INT = unsafeClass.getMethod("getInt", Object.class, long.class);
+            GET_LONG = unsafeClass.getMethod("getLong", Object.class, long.class);
+            GET_FLOAT = unsafeClass.getMethod("getFloat", Object.class, long.class);
+            GET_DOUBLE = unsafeClass.getMethod("getDouble", Object.class, long.class);
+            GET_OBJECT = unsafeClass.getMethod("getObject", Object.class, long.class);
+            PUT_BOOLEAN = unsafeClass.getMethod("putBoolean", Object.class, long.class, boolean.class);
+            PUT_BYTE = unsafeClass.getMethod("putByte", Object.class, long.class, byte.class);
+            PUT_CHAR = unsafeClass.getMethod("putChar", Object.class, long.class, char.class);
+            PUT_SHORT = unsafeClass.getMethod("putShort", Object.class, long.class, short.class);
+            PUT_INT = unsafeClass.getMethod("putInt", Object.class, long.class, int.class);
+            PUT_LONG = unsafeClass.getMethod("putLong", Object.class, long.class, long.class);
+            PUT_FLOAT = unsafeClass.getMethod("putFloat", Object.class, long.class, float.class);
+            PUT_DOUBLE = unsafeClass.getMethod("putDouble", Object.class, long.class, double.class);
+            PUT_OBJECT = unsafeClass.getMethod("putObject", Object.class, long.class, Object.class);
+        } catch (ClassNotFoundException e) {
+            throw new Error("Can't find 'sun.misc.Unsafe' class", e);
+        } catch (IllegalAccessException e) {
+            throw new Error("Can't get sun.misc.Unsafe for illegal access", e);
+        } catch (IllegalArgumentException e) {
+            throw new Error("Can't get sun.misc.Unsafe for wrong argument", e);
+        } catch (NoSuchFieldException e) {
+            throw new Error("Can't get sun.misc.Unsafe because it doesn't exist", e);
+        } catch (SecurityException e) {
+            throw new Error("Can't get sun.misc.Unsafe for security exception", e);
+        } catch (NoSuchMethodException e) {
+            throw new Error("Can't find needed method in sun.misc.Unsafe", e);
+        }
+    }
+
+    /**
+     * Provider to make accessors for fields which can't be processed through offsets.
+     */
+    private final JBBPMappingAccessorProvider fallback = new JBBPSafeAccessorProvider();
+
+    /**
+     * Call a sun.misc.Unsafe method.
+     *
+     * @param method the method to be called, must not be null
+     * @param args   arguments of the call
+     * @return the result of the call
+     * @throws IllegalStateException if the method can't be called
+     */
+    private static Object callUnsafe(final Method method, final Object... args) {
+        try {
+            return method.invoke(SUN_MISC_UNSAFE, args);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Can't call sun.misc.Unsafe." + method.getName(), ex);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException("Error during sun.misc.Unsafe." + method.getName(), ex.getTargetException());
+        }
+    }
+
+    @Override
+    public JBBPMappingFieldAccessor makeAccessor(final Field field) {
+        JBBPUtils.assertNotNull(field, "Field must not be null");
+        final int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isVolatile(modifiers)) {
+            return this.fallback.makeAccessor(field);
+        }
+        final long offset = (Long) callUnsafe(OBJECT_FIELD_OFFSET, field);
+        return new OffsetAccessor(field, offset, this.fallback.makeAccessor(field));
+    }
+
+    /**
+     * Accessor writing fields by their offsets.
+     */
+    private static final class OffsetAccessor implements JBBPMappingFieldAccessor {
+        private final Field field;
+        private final Class<?> declaringClass;
+        private final Class<?> type;
+        private final Long offset;
+        /**
+         * Accessor to set boxed values which need widening conversion.
+         */
+        private final JBBPMappingFieldAccessor widening;
+
+        private OffsetAccessor(final Field field, final long offset, final JBBPMappingFieldAccessor widening) {
+            this.field = field;
+            this.widening = widening;
+            this.declaringClass = field.getDeclaringClass();
+            this.type = field.getType();
+            this.offset = offset;
+        }
+
+        private void assertInstance(final Object instance) {
+            if (!this.declaringClass.isInstance(instance)) {
+                throw new IllegalArgumentException("Wrong instance for field " + this.field + " [" + (instance == null ? null : instance.getClass()) + ']');
+            }
+        }
+
+        private void assertInstanceAndType(final Object instance, final Class<?> valueType) {
+            this.assertInstance(instance);
+            if (this.type != valueType) {
+                throw new IllegalArgumentException("Can't set " + valueType + " value to field " + this.field);
+            }
+        }
+
+        @Override
+        public Field getField() {
+            return this.field;
+        }
+
+        @Override
+        public Object get(final Object instance) {
+            this.assertInstance(instance);
+            final Method method;
+            if (this.type.isPrimitive()) {
+                if (this.type == boolean.class) {
+                    method = GET_BOOLEAN;
+                } else if (this.type == byte.class) {
+                    method = GET_BYTE;
+                } else if (this.type == char.class) {
+                    method = GET_CHAR;
+                } else if (this.type == short.class) {
+                    method = GET_SHORT;
+                } else if (this.type == int.class) {
+                    method = GET_INT;
+                } else if (this.type == long.class) {
+                    method = GET_LONG;
+                } else if (this.type == float.class) {
+                    method = GET_FLOAT;
+                } else {
+                    method = GET_DOUBLE;
+                }
+            } else {
+                method = GET_OBJECT;
+            }
+            return callUnsafe(method, instance, this.offset);
+        }
+
+        @Override
+        public void set(final Object instance, final Object value) {
+            this.assertInstance(instance);
+            if (this.type.isPrimitive()) {
+                final Method method;
+                if (this.type == boolean.class && value instanceof Boolean) {
+                    method = PUT_BOOLEAN;
+                } else if (this.type == byte.class && value instanceof Byte) {
+                    method = PUT_BYTE;
+                } else if (this.type == char.class && value instanceof Character) {
+                    method = PUT_CHAR;
+                } else if (this.type == short.class && value instanceof Short) {
+                    method = PUT_SHORT;
+                } else if (this.type == int.class && value instanceof Integer) {
+                    method = PUT_INT;
+                } else if (this.type == long.class && value instanceof Long) {
+                    method = PUT_LONG;
+                } else if (this.type == float.class && value instanceof Float) {
+                    method = PUT_FLOAT;
+                } else if (this.type == double.class && value instanceof Double) {
+                    method = PUT_DOUBLE;
+                } else {
+                    method = null;
+                }
+                if (method == null) {
+                    this.widening.set(instance, value);
+                } else {
+                    callUnsafe(method, instance, this.offset, value);
+                }
+            } else {
+                if (value != null && !this.type.isInstance(value)) {
+                    throw new IllegalArgumentException("Can't set value to field " + this.field + " [" + value.getClass() + ']');
+                }
+                callUnsafe(PUT_OBJECT, instance, this.offset, value);
+            }
+        }
+
+        @Override
+        public void setBoolean(final Object instance, final boolean value) {
+            this.assertInstanceAndType(instance, boolean.class);
+            callUnsafe(PUT_BOOLEAN, instance, this.offset, value);
+        }
+
+        @Override
+        public void setByte(final Object instance, final byte value) {
+            this.assertInstanceAndType(instance, byte.class);
+            callUnsafe(PUT_BYTE, instance, this.offset, value);
+        }
+
+        @Override
+        public void setChar(final Object instance, final char value) {
+            this.assertInstanceAndType(instance, char.class);
+            callUnsafe(PUT_CHAR, instance, this.offset, value);
+        }
+
+        @Override
+        public void setShort(final Object instance, final short value) {
+            this.assertInstanceAndType(instance, short.class);
+            callUnsafe(PUT_SHORT, instance, this.offset, value);
+        }
+
+        @Override
+        public void setInt(final Object instance, final int value) {
+            this.assertInstanceAndType(instance, int.class);
+            callUnsafe(PUT_INT, instance, this.offset, value);
+        }
+
+        @Override
+        public void setLong(final Object instance, final long value) {
+            this.assertInstanceAndType(instance, long.class);
+            callUnsafe(PUT_LONG, instance, this.offset, value);
+        }
+
+        @Override
+        public void setFloat(final Object instance, final float value) {
+            this.assertInstanceAndType(instance, float.class);
+            callUnsafe(PUT_FLOAT, instance, this.offset, value);
+        }
+
+        @Override
+        public void setDouble(final Object instance, final double value) {
+            this.assertInstanceAndType(instance, double.class);
+            callUnsafe(PUT_DOUBLE, instance, this.offset, value);
+        }
+
+        @Override
+        public String toString() {
+            return "OffsetAccessor[" + this.field + ']';
+        }
+    }
+}
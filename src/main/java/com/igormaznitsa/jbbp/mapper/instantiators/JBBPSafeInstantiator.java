@@ -18,6 +18,8 @@ package com.igormaznitsa.jbbp.mapper.instantiators;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Class creates instances of classes through call of their default
@@ -33,6 +35,14 @@ public final class JBBPSafeInstantiator implements JBBPClassInstantiator {
      */
     private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
 
+    /**
+     * Cache of resolved constructors and their stub arguments, the constructor
+     * search is made only once for every class.
+     *
+     * @since 1.3.0
+     */
+    private final ConcurrentMap<Class<?>, Creator> creators = new ConcurrentHashMap<Class<?>, Creator>();
+
     /**
      * Check that a class is an inner one.
      *
@@ -128,19 +138,37 @@ public final class JBBPSafeInstantiator implements JBBPClassInstantiator {
         return constructors[0];
     }
 
-    @Override
-    public <T> T makeClassInstance(final Class<T> klazz) throws InstantiationException {
-        try {
+    /**
+     * Find or make cached creator for a class.
+     *
+     * @param klazz a class to be instantiated, must not be null
+     * @return the creator for the class, must not be null
+     * @throws SecurityException if the constructor can't be made accessible
+     */
+    private Creator findCreator(final Class<?> klazz) {
+        Creator result = this.creators.get(klazz);
+        if (result == null) {
+            final Constructor<?> constructor;
             if (isInnerClass(klazz) || klazz.isLocalClass()) {
-                final Class<?> declaringClass = klazz.getEnclosingClass();
-                final Constructor<?> constructor = findConstructorForInnerClass(klazz, declaringClass);
-                constructor.setAccessible(true);
-                return klazz.cast(constructor.newInstance(makeStubForConstructor(constructor.getParameterTypes())));
+                constructor = findConstructorForInnerClass(klazz, klazz.getEnclosingClass());
             } else {
-                final Constructor<?> constructor = findConstructorForStaticClass(klazz);
-                constructor.setAccessible(true);
-                return klazz.cast(constructor.newInstance(makeStubForConstructor(constructor.getParameterTypes())));
+                constructor = findConstructorForStaticClass(klazz);
+            }
+            constructor.setAccessible(true);
+            result = new Creator(constructor, makeStubForConstructor(constructor.getParameterTypes()));
+            final Creator alreadyMade = this.creators.putIfAbsent(klazz, result);
+            if (alreadyMade != null) {
+                result = alreadyMade;
             }
+        }
+        return result;
+    }
+
+    @Override
+    public <T> T makeClassInstance(final Class<T> klazz) throws InstantiationException {
+        try {
+            final Creator creator = this.findCreator(klazz);
+            return klazz.cast(creator.constructor.newInstance(creator.arguments));
         } catch (SecurityException ex) {
             throw new InstantiationException("Can't get access to the default constructor for class '" + klazz.getName() + "\' [" + ex + ']');
         } catch (IllegalArgumentException ex) {
@@ -152,4 +180,18 @@ public final class JBBPSafeInstantiator implements JBBPClassInstantiator {
         }
     }
 
+    /**
+     * Resolved constructor of a class together with stub arguments for its call.
+     * Stub arguments are immutable so that they can be shared between calls.
+     */
+    private static final class Creator {
+        private final Constructor<?> constructor;
+        private final Object[] arguments;
+
+        private Creator(final Constructor<?> constructor, final Object[] arguments) {
+            this.constructor = constructor;
+            this.arguments = arguments;
+        }
+    }
+
 }
@@ -17,6 +17,7 @@ package com.igormaznitsa.jbbp.model;
 
 import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
 
+import java.lang.reflect.Array;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -85,6 +86,28 @@ public abstract class JBBPAbstractArrayField<T extends JBBPAbstractField> extend
      */
     public abstract Object getValueArrayAsObject(boolean reverseBits);
 
+    /**
+     * Copy values of the array into an existing array which has the same type
+     * and length as the array returned by {@link #getValueArrayAsObject(boolean)}.
+     * The Default implementation makes the value array and copies it.
+     *
+     * @param target      the target array, it can be null
+     * @param reverseBits reverse bit order in values
+     * @return true if values have been copied, false if the target is not compatible
+     * @since 1.3.0
+     */
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (target == null || !target.getClass().isArray() || Array.getLength(target) != this.size()) {
+            return false;
+        }
+        final Object values = this.getValueArrayAsObject(reverseBits);
+        if (values.getClass() != target.getClass()) {
+            return false;
+        }
+        System.arraycopy(values, 0, target, 0, this.size());
+        return true;
+    }
+
     /**
      * Generates an iterator to allow the array processing in loops.
      *
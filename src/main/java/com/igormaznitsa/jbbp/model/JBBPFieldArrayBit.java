@@ -113,6 +113,22 @@ public final class JBBPFieldArrayBit extends JBBPAbstractArrayField<JBBPFieldBit
         return result;
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof byte[]) || ((byte[]) target).length != this.array.length) {
+            return false;
+        }
+        final byte[] result = (byte[]) target;
+        if (reverseBits) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) JBBPFieldBit.reverseBits(this.array[i], this.bitNumber);
+            }
+        } else {
+            System.arraycopy(this.array, 0, result, 0, result.length);
+        }
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "bit:" + this.bitNumber.getBitNumber() + " [" + this.array.length + ']';
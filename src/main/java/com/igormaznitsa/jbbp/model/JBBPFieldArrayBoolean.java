@@ -83,6 +83,15 @@ public final class JBBPFieldArrayBoolean extends JBBPAbstractArrayField<JBBPFiel
         return this.array.clone();
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof boolean[]) || ((boolean[]) target).length != this.array.length) {
+            return false;
+        }
+        System.arraycopy(this.array, 0, target, 0, this.array.length);
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "bool " + '[' + this.array.length + ']';
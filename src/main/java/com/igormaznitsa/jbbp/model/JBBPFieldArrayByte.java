@@ -80,6 +80,22 @@ public final class JBBPFieldArrayByte extends AbstractFieldByteArray<JBBPFieldBy
         return result;
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof byte[]) || ((byte[]) target).length != this.array.length) {
+            return false;
+        }
+        final byte[] result = (byte[]) target;
+        if (reverseBits) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) JBBPFieldByte.reverseBits(this.array[i]);
+            }
+        } else {
+            System.arraycopy(this.array, 0, result, 0, result.length);
+        }
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "byte " + '[' + this.array.length + ']';
@@ -92,6 +92,22 @@ public final class JBBPFieldArrayInt extends JBBPAbstractArrayField<JBBPFieldInt
         return result;
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof int[]) || ((int[]) target).length != this.array.length) {
+            return false;
+        }
+        final int[] result = (int[]) target;
+        if (reverseBits) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) JBBPFieldInt.reverseBits(this.array[i]);
+            }
+        } else {
+            System.arraycopy(this.array, 0, result, 0, result.length);
+        }
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "int " + '[' + this.array.length + ']';
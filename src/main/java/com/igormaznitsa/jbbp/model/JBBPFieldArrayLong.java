@@ -92,6 +92,22 @@ public final class JBBPFieldArrayLong extends JBBPAbstractArrayField<JBBPFieldLo
         return result;
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof long[]) || ((long[]) target).length != this.array.length) {
+            return false;
+        }
+        final long[] result = (long[]) target;
+        if (reverseBits) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = JBBPFieldLong.reverseBits(this.array[i]);
+            }
+        } else {
+            System.arraycopy(this.array, 0, result, 0, result.length);
+        }
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "long " + '[' + this.array.length + ']';
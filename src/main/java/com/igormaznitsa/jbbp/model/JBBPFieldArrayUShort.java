@@ -92,6 +92,22 @@ public final class JBBPFieldArrayUShort extends JBBPAbstractArrayField<JBBPField
         return result;
     }
 
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!(target instanceof short[]) || ((short[]) target).length != this.array.length) {
+            return false;
+        }
+        final short[] result = (short[]) target;
+        if (reverseBits) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (short) JBBPFieldUShort.reverseBits(this.array[i]);
+            }
+        } else {
+            System.arraycopy(this.array, 0, result, 0, result.length);
+        }
+        return true;
+    }
+
     @Override
     public String getTypeAsString() {
         return "ushort " + '[' + this.array.length + ']';
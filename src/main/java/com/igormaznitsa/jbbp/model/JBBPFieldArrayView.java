@@ -0,0 +1,457 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+
+/**
+ * Array of primitive values which references a slice of a byte buffer
+ * instead of keeping its own copy of values, elements are decoded from the
+ * buffer by request in the same way as the parser reads them. Values can be
+ * copied into caller arrays through bulk read methods, the view never clones
+ * its data. The Buffer content must not be changed while the view is in use.
+ * The View is serialized as a usual array field with decoded values.
+ *
+ * @since 1.3.0
+ */
+public final class JBBPFieldArrayView extends JBBPAbstractArrayField<JBBPAbstractField> {
+    private static final long serialVersionUID = -2466180587239447381L;
+
+    /**
+     * Types of array elements.
+     */
+    public enum Type {
+        BOOL("bool", 1),
+        BYTE("byte", 1),
+        UBYTE("ubyte", 1),
+        SHORT("short", 2),
+        USHORT("ushort", 2),
+        INT("int", 4),
+        LONG("long", 8);
+
+        private final String text;
+        private final int size;
+
+        Type(final String text, final int size) {
+            this.text = text;
+            this.size = size;
+        }
+
+        /**
+         * Get size of an element.
+         *
+         * @return the size in bytes
+         */
+        public int getSize() {
+            return this.size;
+        }
+
+        /**
+         * Get the type name as it is used in scripts.
+         *
+         * @return the type name, must not be null
+         */
+        public String getText() {
+            return this.text;
+        }
+    }
+
+    /**
+     * The Source buffer, it is a duplicate of the buffer provided to the constructor.
+     */
+    private final transient ByteBuffer buffer;
+    /**
+     * Absolute index of the first byte of the slice in the buffer.
+     */
+    private final int offset;
+    /**
+     * Number of elements.
+     */
+    private final int length;
+    private final Type type;
+    private final JBBPByteOrder byteOrder;
+    private final boolean msb0;
+    /**
+     * Byte arrays in little endian are read by the parser as reversed arrays.
+     */
+    private final boolean reversedElements;
+
+    /**
+     * The Constructor.
+     *
+     * @param name      the field name info, it can be null
+     * @param buffer    the source buffer, must not be null, its position is not used
+     * @param offset    absolute index of the first byte of the array in the buffer
+     * @param length    number of elements in the array
+     * @param type      type of elements, must not be null
+     * @param byteOrder byte order of elements, must not be null
+     * @param bitOrder  bit order of the buffer data, must not be null
+     * @throws IndexOutOfBoundsException if the array is out of the buffer
+     */
+    public JBBPFieldArrayView(final JBBPNamedFieldInfo name, final ByteBuffer buffer, final int offset, final int length, final Type type, final JBBPByteOrder byteOrder, final JBBPBitOrder bitOrder) {
+        super(name);
+        JBBPUtils.assertNotNull(buffer, "Buffer must not be null");
+        JBBPUtils.assertNotNull(type, "Type must not be null");
+        JBBPUtils.assertNotNull(byteOrder, "Byte order must not be null");
+        JBBPUtils.assertNotNull(bitOrder, "Bit order must not be null");
+        if (offset < 0 || length < 0 || (long) offset + (long) length * type.getSize() > buffer.limit()) {
+            throw new IndexOutOfBoundsException("Array is out of buffer [" + offset + ',' + length + ']');
+        }
+        this.buffer = buffer.duplicate();
+        this.offset = offset;
+        this.length = length;
+        this.type = type;
+        this.byteOrder = byteOrder;
+        this.msb0 = bitOrder == JBBPBitOrder.MSB0;
+        this.reversedElements = byteOrder == JBBPByteOrder.LITTLE_ENDIAN && type.getSize() == 1;
+    }
+
+    /**
+     * Get type of elements.
+     *
+     * @return the element type, must not be null
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Get byte order of elements.
+     *
+     * @return the byte order, must not be null
+     */
+    public JBBPByteOrder getByteOrder() {
+        return this.byteOrder;
+    }
+
+    /**
+     * Get absolute index of the first array byte in the source buffer.
+     *
+     * @return the byte offset
+     */
+    public int getByteOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Get number of bytes occupied by the array in the source buffer.
+     *
+     * @return the byte length
+     */
+    public int getByteLength() {
+        return this.length * this.type.getSize();
+    }
+
+    /**
+     * Get read-only buffer which contains only the array bytes.
+     *
+     * @return the read-only slice of the source buffer, must not be null
+     */
+    public ByteBuffer getByteSlice() {
+        final ByteBuffer result = this.buffer.asReadOnlyBuffer();
+        result.limit(this.offset + this.getByteLength());
+        result.position(this.offset);
+        return result.slice();
+    }
+
+    @Override
+    public int size() {
+        return this.length;
+    }
+
+    @Override
+    public JBBPAbstractField getElementAt(final int index) {
+        final long value = this.getAsLong(index);
+        final JBBPAbstractField result;
+        switch (this.type) {
+            case BOOL:
+                result = new JBBPFieldBoolean(this.fieldNameInfo, value != 0L);
+                break;
+            case BYTE:
+                result = new JBBPFieldByte(this.fieldNameInfo, (byte) value);
+                break;
+            case UBYTE:
+                result = new JBBPFieldUByte(this.fieldNameInfo, (byte) value);
+                break;
+            case SHORT:
+                result = new JBBPFieldShort(this.fieldNameInfo, (short) value);
+                break;
+            case USHORT:
+                result = new JBBPFieldUShort(this.fieldNameInfo, (short) value);
+                break;
+            case INT:
+                result = new JBBPFieldInt(this.fieldNameInfo, (int) value);
+                break;
+            case LONG:
+                result = new JBBPFieldLong(this.fieldNameInfo, value);
+                break;
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+        result.payload = this.payload;
+        return result;
+    }
+
+    @Override
+    public int getAsInt(final int index) {
+        return (int) this.getAsLong(index);
+    }
+
+    @Override
+    public long getAsLong(final int index) {
+        if (index < 0 || index >= this.length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        final int position = this.offset + (this.reversedElements ? this.length - 1 - index : index) * this.type.getSize();
+        switch (this.type) {
+            case BOOL:
+                return this.readByte(position) == 0 ? 0L : 1L;
+            case BYTE:
+                return (byte) this.readByte(position);
+            case UBYTE:
+                return this.readByte(position);
+            case SHORT:
+                return (short) this.readValue(position, 2);
+            case USHORT:
+                return this.readValue(position, 2);
+            case INT:
+                return (int) this.readValue(position, 4);
+            case LONG:
+                return this.readValue(position, 8);
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+    }
+
+    @Override
+    public boolean getAsBool(final int index) {
+        return this.getAsLong(index) != 0L;
+    }
+
+    /**
+     * Copy values into a caller array, values are truncated to bytes.
+     *
+     * @param fromIndex    index of the first element to be copied
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @param count        number of elements to be copied
+     * @return the target array
+     * @throws IndexOutOfBoundsException if there are not such elements or the target doesn't have enough space
+     */
+    public byte[] readBytes(final int fromIndex, final byte[] target, final int targetOffset, final int count) {
+        this.assertRange(fromIndex, target == null ? -1 : target.length, targetOffset, count);
+        if (this.type.getSize() == 1 && this.type != Type.BOOL && !this.reversedElements && !this.msb0) {
+            final ByteBuffer source = this.buffer.duplicate();
+            source.position(this.offset + fromIndex);
+            source.get(target, targetOffset, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[targetOffset + i] = (byte) this.getAsLong(fromIndex + i);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Copy values into a caller array, values are truncated to shorts.
+     *
+     * @param fromIndex    index of the first element to be copied
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @param count        number of elements to be copied
+     * @return the target array
+     * @throws IndexOutOfBoundsException if there are not such elements or the target doesn't have enough space
+     */
+    public short[] readShorts(final int fromIndex, final short[] target, final int targetOffset, final int count) {
+        this.assertRange(fromIndex, target == null ? -1 : target.length, targetOffset, count);
+        for (int i = 0; i < count; i++) {
+            target[targetOffset + i] = (short) this.getAsLong(fromIndex + i);
+        }
+        return target;
+    }
+
+    /**
+     * Copy values into a caller array, values are truncated to integers.
+     *
+     * @param fromIndex    index of the first element to be copied
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @param count        number of elements to be copied
+     * @return the target array
+     * @throws IndexOutOfBoundsException if there are not such elements or the target doesn't have enough space
+     */
+    public int[] readInts(final int fromIndex, final int[] target, final int targetOffset, final int count) {
+        this.assertRange(fromIndex, target == null ? -1 : target.length, targetOffset, count);
+        for (int i = 0; i < count; i++) {
+            target[targetOffset + i] = (int) this.getAsLong(fromIndex + i);
+        }
+        return target;
+    }
+
+    /**
+     * Copy values into a caller array.
+     *
+     * @param fromIndex    index of the first element to be copied
+     * @param target       the target array, must not be null
+     * @param targetOffset start offset in the target array
+     * @param count        number of elements to be copied
+     * @return the target array
+     * @throws IndexOutOfBoundsException if there are not such elements or the target doesn't have enough space
+     */
+    public long[] readLongs(final int fromIndex, final long[] target, final int targetOffset, final int count) {
+        this.assertRange(fromIndex, target == null ? -1 : target.length, targetOffset, count);
+        for (int i = 0; i < count; i++) {
+            target[targetOffset + i] = this.getAsLong(fromIndex + i);
+        }
+        return target;
+    }
+
+    /**
+     * Make usual array field which contains copy of values.
+     *
+     * @return the array field with decoded values, must not be null
+     */
+    public JBBPAbstractArrayField<? extends JBBPAbstractField> toArrayField() {
+        final JBBPAbstractArrayField<? extends JBBPAbstractField> result;
+        switch (this.type) {
+            case BOOL: {
+                final boolean[] array = new boolean[this.length];
+                for (int i = 0; i < this.length; i++) {
+                    array[i] = this.getAsBool(i);
+                }
+                result = new JBBPFieldArrayBoolean(this.fieldNameInfo, array);
+            }
+            break;
+            case BYTE:
+                result = new JBBPFieldArrayByte(this.fieldNameInfo, this.readBytes(0, new byte[this.length], 0, this.length));
+                break;
+            case UBYTE:
+                result = new JBBPFieldArrayUByte(this.fieldNameInfo, this.readBytes(0, new byte[this.length], 0, this.length));
+                break;
+            case SHORT:
+                result = new JBBPFieldArrayShort(this.fieldNameInfo, this.readShorts(0, new short[this.length], 0, this.length));
+                break;
+            case USHORT:
+                result = new JBBPFieldArrayUShort(this.fieldNameInfo, this.readShorts(0, new short[this.length], 0, this.length));
+                break;
+            case INT:
+                result = new JBBPFieldArrayInt(this.fieldNameInfo, this.readInts(0, new int[this.length], 0, this.length));
+                break;
+            case LONG:
+                result = new JBBPFieldArrayLong(this.fieldNameInfo, this.readLongs(0, new long[this.length], 0, this.length));
+                break;
+            default:
+                throw new Error("Unexpected type, contact developer!");
+        }
+        result.payload = this.payload;
+        return result;
+    }
+
+    @Override
+    public Object getValueArrayAsObject(final boolean reverseBits) {
+        return this.toArrayField().getValueArrayAsObject(reverseBits);
+    }
+
+    @Override
+    public boolean copyValuesTo(final Object target, final boolean reverseBits) {
+        if (!reverseBits) {
+            switch (this.type) {
+                case BYTE:
+                case UBYTE: {
+                    if (target instanceof byte[] && ((byte[]) target).length == this.length) {
+                        this.readBytes(0, (byte[]) target, 0, this.length);
+                        return true;
+                    }
+                    return false;
+                }
+                case SHORT:
+                case USHORT: {
+                    if (target instanceof short[] && ((short[]) target).length == this.length) {
+                        this.readShorts(0, (short[]) target, 0, this.length);
+                        return true;
+                    }
+                    return false;
+                }
+                case INT: {
+                    if (target instanceof int[] && ((int[]) target).length == this.length) {
+                        this.readInts(0, (int[]) target, 0, this.length);
+                        return true;
+                    }
+                    return false;
+                }
+                case LONG: {
+                    if (target instanceof long[] && ((long[]) target).length == this.length) {
+                        this.readLongs(0, (long[]) target, 0, this.length);
+                        return true;
+                    }
+                    return false;
+                }
+                default:
+                    break;
+            }
+        }
+        return super.copyValuesTo(target, reverseBits);
+    }
+
+    @Override
+    public String getTypeAsString() {
+        return this.type.getText() + ' ' + '[' + this.length + ']';
+    }
+
+    /**
+     * The View is serialized as an usual array field.
+     *
+     * @return the array field with decoded values
+     * @throws ObjectStreamException it will not be thrown
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return this.toArrayField();
+    }
+
+    private void assertRange(final int fromIndex, final int targetLength, final int targetOffset, final int count) {
+        if (targetLength < 0) {
+            throw new NullPointerException("Target must not be null");
+        }
+        if (fromIndex < 0 || count < 0 || fromIndex + count > this.length || targetOffset < 0 || targetOffset + count > targetLength) {
+            throw new IndexOutOfBoundsException("Wrong range [" + fromIndex + ',' + count + "]->[" + targetOffset + ']');
+        }
+    }
+
+    private int readByte(final int position) {
+        final byte value = this.buffer.get(position);
+        return this.msb0 ? JBBPUtils.reverseBitsInByte(value) & 0xFF : value & 0xFF;
+    }
+
+    private long readValue(final int position, final int bytes) {
+        long result = 0L;
+        if (this.byteOrder == JBBPByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < bytes; i++) {
+                result = (result << 8) | this.readByte(position + i);
+            }
+        } else {
+            for (int i = bytes - 1; i >= 0; i--) {
+                result = (result << 8) | this.readByte(position + i);
+            }
+        }
+        return result;
+    }
+}
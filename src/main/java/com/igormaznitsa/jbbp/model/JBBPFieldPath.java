@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+/**
+ * Precompiled field path, it keeps normalized path elements so that the path
+ * can be used for many lookups without repeated normalization and splitting.
+ * The Object is immutable and thread-safe.
+ *
+ * @see JBBPFieldStruct#findFieldForCompiledPath(JBBPFieldPath)
+ * @since 1.3.0
+ */
+public final class JBBPFieldPath {
+
+    /**
+     * The Path as it was provided.
+     */
+    private final String path;
+    /**
+     * Normalized path elements.
+     */
+    private final String[] elements;
+
+    private JBBPFieldPath(final String path) {
+        this.path = path;
+        this.elements = JBBPUtils.splitString(JBBPUtils.normalizeFieldNameOrPath(path), '.');
+    }
+
+    /**
+     * Compile a field path.
+     *
+     * @param path a field path, must not be null
+     * @return the compiled path, must not be null
+     */
+    public static JBBPFieldPath compile(final String path) {
+        JBBPUtils.assertNotNull(path, "Path must not be null");
+        return new JBBPFieldPath(path);
+    }
+
+    /**
+     * Get the path as it was provided for compilation.
+     *
+     * @return the source path, must not be null
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Get number of path elements.
+     *
+     * @return number of elements
+     */
+    public int size() {
+        return this.elements.length;
+    }
+
+    /**
+     * Get a normalized path element.
+     *
+     * @param index the element index
+     * @return the normalized element, must not be null
+     */
+    public String getElement(final int index) {
+        return this.elements[index];
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj == this || (obj instanceof JBBPFieldPath && this.path.equals(((JBBPFieldPath) obj).path));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.path;
+    }
+}
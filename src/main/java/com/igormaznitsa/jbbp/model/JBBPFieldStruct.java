@@ -23,7 +23,11 @@ import com.igormaznitsa.jbbp.mapper.JBBPMapperCustomFieldProcessor;
 import com.igormaznitsa.jbbp.model.finder.JBBPFieldFinder;
 import com.igormaznitsa.jbbp.utils.JBBPUtils;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Describes a structure.
@@ -35,10 +39,22 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
     private static final long serialVersionUID = -5862961302858335702L;
 
     /**
-     * Structure fields.
+     * Structures which have more fields use the name index for lookups,
+     * smaller ones are just scanned.
+     */
+    private static final int INDEX_THRESHOLD = 8;
+
+    /**
+     * Structure fields, the array is never changed after construction, lazy
+     * field placeholders stay in it and their cached decoded fields are returned.
      */
     private final JBBPAbstractField[] fields;
 
+    /**
+     * Index of field names and paths, it is built by the first lookup.
+     */
+    private transient volatile FieldIndex index;
+
     /**
      * A Constructor.
      *
@@ -67,18 +83,61 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
      * @return the field array of the structure.
      */
     public JBBPAbstractField[] getArray() {
-        return this.fields.clone();
+        final JBBPAbstractField[] result = new JBBPAbstractField[this.fields.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.field(i);
+        }
+        return result;
+    }
+
+    /**
+     * Get a structure field for its index, the decoded field is returned for
+     * a lazy field placeholder.
+     *
+     * @param index the field index
+     * @return the field, must not be null
+     */
+    private JBBPAbstractField field(final int index) {
+        final JBBPAbstractField result = this.fields[index];
+        return result instanceof JBBPLazyField ? ((JBBPLazyField) result).getDecoded() : result;
+    }
+
+    /**
+     * Get index of field names and paths, it is made by the first call.
+     *
+     * @return the index or null if the structure is too small to be indexed
+     */
+    private FieldIndex index() {
+        if (this.fields.length <= INDEX_THRESHOLD) {
+            return null;
+        }
+        FieldIndex result = this.index;
+        if (result == null) {
+            result = new FieldIndex(this.fields);
+            this.index = result;
+        }
+        return result;
     }
 
     @Override
     public JBBPAbstractField findFieldForPath(final String fieldPath) {
-        final String[] parsedName = JBBPUtils.splitString(JBBPUtils.normalizeFieldNameOrPath(fieldPath), '.');
+        return this.findFieldForCompiledPath(JBBPFieldPath.compile(fieldPath));
+    }
 
+    /**
+     * Find a field for a precompiled path.
+     *
+     * @param fieldPath a compiled field path, must not be null
+     * @return found field or null
+     * @throws JBBPFinderException if a not structure field is met inside the path
+     * @since 1.3.0
+     */
+    public JBBPAbstractField findFieldForCompiledPath(final JBBPFieldPath fieldPath) {
         JBBPAbstractField found = this;
         final int firstIndex;
         if ("".equals(this.getFieldName())) {
             firstIndex = 0;
-        } else if (parsedName[0].equals(this.getNameInfo().getFieldName())) {
+        } else if (fieldPath.getElement(0).equals(this.getNameInfo().getFieldName())) {
             firstIndex = 1;
             found = this;
         } else {
@@ -86,26 +145,53 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
             found = null;
         }
 
-        for (int i = firstIndex; found != null && i < parsedName.length; i++) {
+        for (int i = firstIndex; found != null && i < fieldPath.size(); i++) {
             if (found instanceof JBBPFieldStruct) {
-                found = ((JBBPFieldStruct) found).findFieldForName(parsedName[i]);
+                found = ((JBBPFieldStruct) found).findFieldForName(fieldPath.getElement(i));
             } else {
-                throw new JBBPFinderException("Detected a field instead of a structure as one of nodes in the path '" + fieldPath + '\'', fieldPath, null);
+                throw new JBBPFinderException("Detected a field instead of a structure as one of nodes in the path '" + fieldPath.getPath() + '\'', fieldPath.getPath(), null);
             }
         }
 
         return found;
     }
 
+    /**
+     * Find a field for a precompiled path and type.
+     *
+     * @param <T>       the field type
+     * @param fieldPath a compiled field path, must not be null
+     * @param fieldType the class of the field type, must not be null
+     * @return found field or null if there is not a field with such path and type
+     * @throws JBBPFinderException if a not structure field is met inside the path
+     * @since 1.3.0
+     */
+    public <T extends JBBPAbstractField> T findFieldForCompiledPathAndType(final JBBPFieldPath fieldPath, final Class<T> fieldType) {
+        final JBBPAbstractField field = this.findFieldForCompiledPath(fieldPath);
+
+        T result = null;
+
+        if (field != null && fieldType.isAssignableFrom(field.getClass())) {
+            result = fieldType.cast(field);
+        }
+        return result;
+    }
+
     @Override
     public JBBPAbstractField findFieldForName(final String name) {
+        final FieldIndex fieldIndex = this.index();
+        if (fieldIndex != null) {
+            final int[] indexes = fieldIndex.findName(name);
+            return indexes == null ? null : this.field(indexes[0]);
+        }
+
         final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(name);
 
         JBBPAbstractField result = null;
 
-        for (final JBBPAbstractField f : this.fields) {
-            if (normalizedName.equals(f.getFieldName())) {
-                result = f;
+        for (int i = 0; i < this.fields.length; i++) {
+            if (normalizedName.equals(this.fields[i].getFieldName())) {
+                result = this.field(i);
                 break;
             }
         }
@@ -118,7 +204,8 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
 
         int counter = 0;
 
-        for (final JBBPAbstractField f : this.fields) {
+        for (int i = 0; i < this.fields.length; i++) {
+            final JBBPAbstractField f = this.field(i);
             if (fieldType.isAssignableFrom(f.getClass())) {
                 if (result == null) {
                     result = fieldType.cast(f);
@@ -136,7 +223,8 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
     public <T extends JBBPAbstractField> T findFirstFieldForType(final Class<T> fieldType) {
         T result = null;
 
-        for (final JBBPAbstractField f : this.fields) {
+        for (int i = 0; i < this.fields.length; i++) {
+            final JBBPAbstractField f = this.field(i);
             if (fieldType.isAssignableFrom(f.getClass())) {
                 result = fieldType.cast(f);
                 break;
@@ -150,7 +238,7 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
         T result = null;
 
         for (int i = this.fields.length - 1; i >= 0; i--) {
-            final JBBPAbstractField f = this.fields[i];
+            final JBBPAbstractField f = this.field(i);
             if (fieldType.isAssignableFrom(f.getClass())) {
                 result = fieldType.cast(f);
                 break;
@@ -161,14 +249,31 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
 
     @Override
     public <T extends JBBPAbstractField> T findFieldForNameAndType(final String fieldName, final Class<T> fieldType) {
+        final FieldIndex fieldIndex = this.index();
+        if (fieldIndex != null) {
+            final int[] indexes = fieldIndex.findName(fieldName);
+            if (indexes != null) {
+                for (final int i : indexes) {
+                    final JBBPAbstractField f = this.field(i);
+                    if (fieldType.isAssignableFrom(f.getClass())) {
+                        return fieldType.cast(f);
+                    }
+                }
+            }
+            return null;
+        }
+
         final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(fieldName);
 
         T result = null;
 
-        for (final JBBPAbstractField f : this.fields) {
-            if (fieldType.isAssignableFrom(f.getClass()) && normalizedName.equals(f.getFieldName())) {
-                result = fieldType.cast(f);
-                break;
+        for (int i = 0; i < this.fields.length; i++) {
+            if (normalizedName.equals(this.fields[i].getFieldName())) {
+                final JBBPAbstractField f = this.field(i);
+                if (fieldType.isAssignableFrom(f.getClass())) {
+                    result = fieldType.cast(f);
+                    break;
+                }
             }
         }
         return result;
@@ -176,6 +281,11 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
 
     @Override
     public boolean nameExists(final String fieldName) {
+        final FieldIndex fieldIndex = this.index();
+        if (fieldIndex != null) {
+            return fieldIndex.findName(fieldName) != null;
+        }
+
         final String normalizedName = JBBPUtils.normalizeFieldNameOrPath(fieldName);
 
         boolean result = false;
@@ -191,6 +301,11 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
 
     @Override
     public boolean pathExists(final String fieldPath) {
+        final FieldIndex fieldIndex = this.index();
+        if (fieldIndex != null) {
+            return fieldIndex.containsPath(fieldPath);
+        }
+
         final String normalizedPath = JBBPUtils.normalizeFieldNameOrPath(fieldPath);
 
         boolean result = false;
@@ -397,4 +512,63 @@ public final class JBBPFieldStruct extends JBBPAbstractField implements JBBPFiel
     public String getTypeAsString() {
         return "{}";
     }
+
+    /**
+     * Immutable index of names and paths of structure fields.
+     */
+    private static final class FieldIndex {
+        /**
+         * Indexes of fields for their names, in the field order.
+         */
+        private final Map<String, int[]> names;
+        /**
+         * Paths of fields.
+         */
+        private final Set<String> paths;
+
+        private FieldIndex(final JBBPAbstractField[] fields) {
+            this.names = new HashMap<String, int[]>(fields.length * 2);
+            this.paths = new HashSet<String>(fields.length * 2);
+            for (int i = 0; i < fields.length; i++) {
+                final String name = fields[i].getFieldName();
+                if (name != null) {
+                    final int[] found = this.names.get(name);
+                    if (found == null) {
+                        this.names.put(name, new int[]{i});
+                    } else {
+                        final int[] extended = new int[found.length + 1];
+                        System.arraycopy(found, 0, extended, 0, found.length);
+                        extended[found.length] = i;
+                        this.names.put(name, extended);
+                    }
+                }
+                final String path = fields[i].getFieldPath();
+                if (path != null) {
+                    this.paths.add(path);
+                }
+            }
+        }
+
+        /**
+         * Find indexes of fields for a name, the name is normalized only if it
+         * is not found as is because the index contains normalized names.
+         *
+         * @param name a field name, must not be null
+         * @return indexes of fields in their order or null if not found
+         */
+        private int[] findName(final String name) {
+            final int[] result = this.names.get(name);
+            return result == null ? this.names.get(JBBPUtils.normalizeFieldNameOrPath(name)) : result;
+        }
+
+        /**
+         * Check that there is a field with a path.
+         *
+         * @param path a field path, must not be null
+         * @return true if there is such field, false otherwise
+         */
+        private boolean containsPath(final String path) {
+            return this.paths.contains(path) || this.paths.contains(JBBPUtils.normalizeFieldNameOrPath(path));
+        }
+    }
 }
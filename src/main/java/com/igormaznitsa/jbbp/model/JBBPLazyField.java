@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.utils.JBBPUtils;
+
+import java.io.ObjectStreamException;
+
+/**
+ * Placeholder of a field in a structure, the field is decoded only by the
+ * first request. Structures return decoded fields instead of placeholders
+ * so that placeholders are not visible through the structure API. The
+ * Decoded field is cached, decoding is thread-safe.
+ *
+ * @see JBBPFieldStruct
+ * @since 1.3.0
+ */
+public abstract class JBBPLazyField extends JBBPAbstractField {
+
+    private static final long serialVersionUID = 3184734592718237592L;
+
+    /**
+     * The Decoded field, null if it has not been decoded yet.
+     */
+    private transient volatile JBBPAbstractField decoded;
+
+    /**
+     * The Constructor.
+     *
+     * @param name the field name info, it can be null
+     */
+    protected JBBPLazyField(final JBBPNamedFieldInfo name) {
+        super(name);
+    }
+
+    /**
+     * Decode the field.
+     *
+     * @return the decoded field, it must not be null and must have the same name info
+     */
+    protected abstract JBBPAbstractField decode();
+
+    /**
+     * Get the decoded field, it will be decoded during the first call.
+     *
+     * @return the decoded field, must not be null
+     */
+    public final JBBPAbstractField getDecoded() {
+        JBBPAbstractField result = this.decoded;
+        if (result == null) {
+            synchronized (this) {
+                result = this.decoded;
+                if (result == null) {
+                    result = this.decode();
+                    JBBPUtils.assertNotNull(result, "Decoded field must not be null");
+                    this.decoded = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check that the field has been decoded.
+     *
+     * @return true if the field has been decoded, false otherwise
+     */
+    public boolean isDecoded() {
+        return this.decoded != null;
+    }
+
+    @Override
+    public String getTypeAsString() {
+        return this.getDecoded().getTypeAsString();
+    }
+
+    /**
+     * The Decoded field is serialized instead of the placeholder.
+     *
+     * @return the decoded field
+     * @throws ObjectStreamException it will not be thrown
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return this.getDecoded();
+    }
+}
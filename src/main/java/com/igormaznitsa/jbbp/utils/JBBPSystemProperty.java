@@ -30,7 +30,28 @@ public enum JBBPSystemProperty {
     /**
      * The Property allows to define the initial size for array buffer to read whole stream.
      */
-    PROPERTY_INPUT_INITIAL_ARRAY_BUFFER_SIZE("jbbp.input.initial.array.buffer");
+    PROPERTY_INPUT_INITIAL_ARRAY_BUFFER_SIZE("jbbp.input.initial.array.buffer"),
+
+    /**
+     * The Property allows to define the size of a memory mapped file window in bytes.
+     *
+     * @since 1.3.0
+     */
+    PROPERTY_INPUT_MAPPED_WINDOW_SIZE("jbbp.input.mapped.window.size"),
+
+    /**
+     * The Property allows to define max number of compiled blocks kept in the shared compiled block cache, zero disables the cache.
+     *
+     * @since 1.3.0
+     */
+    PROPERTY_COMPILED_BLOCK_CACHE_SIZE("jbbp.compiler.cache.size"),
+
+    /**
+     * The Property allows to define which class will work as a field accessor provider for the JBBP mapper.
+     *
+     * @since 1.3.0
+     */
+    PROPERTY_ACCESSOR_PROVIDER_CLASS("jbbp.mapper.accessor");
 
     /**
      * The name of the property.
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.conversion.ParserToByteCodeConverter;
+import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPCompiledParserTest {
+
+    private static void describe(final StringBuilder buffer, final JBBPAbstractField field) {
+        buffer.append(field.getClass().getSimpleName()).append('(').append(field.getFieldPath()).append(')');
+        if (field instanceof JBBPFieldStruct) {
+            buffer.append('{');
+            for (final JBBPAbstractField f : ((JBBPFieldStruct) field).getArray()) {
+                describe(buffer, f);
+                buffer.append(';');
+            }
+            buffer.append('}');
+        } else if (field instanceof JBBPFieldArrayStruct) {
+            buffer.append('[');
+            for (final JBBPFieldStruct s : (JBBPFieldArrayStruct) field) {
+                describe(buffer, s);
+            }
+            buffer.append(']');
+        } else if (field instanceof JBBPAbstractArrayField) {
+            final JBBPAbstractArrayField<?> array = (JBBPAbstractArrayField<?>) field;
+            buffer.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                buffer.append(array.getAsLong(i)).append(',');
+            }
+            buffer.append(']');
+        } else if (field instanceof JBBPNumericField) {
+            buffer.append('=').append(((JBBPNumericField) field).getAsLong());
+        }
+    }
+
+    private static String describe(final JBBPFieldStruct root) {
+        final StringBuilder result = new StringBuilder();
+        describe(result, root);
+        return result.toString();
+    }
+
+    private static void assertSameResult(final String script, final int flags, final boolean generated, final byte[] data) throws Exception {
+        final JBBPParser parser = JBBPParser.prepare(script, JBBPBitOrder.LSB0, flags);
+        final JBBPCompiledParser compiled = parser.compileToClass();
+        assertEquals(generated, compiled.isGenerated());
+        assertEquals(describe(parser.parse(data)), describe(compiled.parse(data)));
+        assertEquals(describe(parser.parse(new ByteArrayInputStream(data))), describe(compiled.parse(new ByteArrayInputStream(data))));
+    }
+
+    @Test
+    public void testSameResultAsInterpreter() throws Exception {
+        final byte[] data = new byte[512];
+        new Random(777L).nextBytes(data);
+        data[0] = 3;
+        data[1] = 2;
+
+        assertSameResult("ubyte a; ubyte b; bit:3 c; bit:(b) [a] d; align; byte e; <ushort f; short [2] g; bool h; bool [a] i;", 0, true, data);
+        assertSameResult("ubyte a; ubyte b; <int [a] c; long [b*2] d; s [a] { ubyte x; in [x & 3] { <short y; } } skip:(b); reset$$; ubyte [$$+1] z; int [_] rest;", 0, true, data);
+        assertSameResult("ubyte a; ubyte b; structs [_] { ushort k; ubyte [2] v; }", 0, true, Arrays.copyOf(data, 402));
+        assertSameResult("ubyte a; empty [a-3] { int never; } one { ubyte x; } skip:4; align:8; <long [2] t;", 0, true, data);
+        assertSameResult("ubyte a; ubyte b; byte [(~a & 7) + (-b + 10) % 3 + (a >> 1) + (b << 1 >>> 1) / 2 ^ 1 | 0] c; byte [2*3] d; bit:(a) e; long l; <ushort u; bool [_] rest;", 0, true, data);
+        assertSameResult("byte a; ubyte b; short c; ushort d; int e; long f; bit:4 g; s { bool h; ubyte i; } byte [(a & 1) + (b & 1) + (c & 1) + (d & 1) + (e & 1) + (f & 1) + g + s.h + s.i] j;", 0, true, data);
+    }
+
+    @Test
+    public void testSameResultAsInterpreter_ConstantLengthStructArrays() throws Exception {
+        final byte[] data = new byte[64];
+        new Random(333L).nextBytes(data);
+        data[0] = 3;
+        data[4] = 5;
+
+        assertSameResult("i [2] { int v; }", 0, true, data);
+        assertSameResult("i [2] { }", 0, true, data);
+        assertSameResult("o [2] { ubyte k; byte [k & 7] w; }", 0, true, data);
+        assertSameResult("ubyte a; s [3] { bit:4 b; in [2] { ubyte c; byte [c & 3] d; } } <short [2] e;", 0, true, data);
+    }
+
+    @Test
+    public void testIsSupported() throws Exception {
+        assertTrue(ParserToByteCodeConverter.isSupported(0, JBBPParser.prepare("ubyte a; s [a] { byte [a] b; }").getCompiledBlock()));
+        assertFalse(ParserToByteCodeConverter.isSupported(JBBPParser.FLAG_SKIP_REMAINING_FIELDS_IF_EOF, JBBPParser.prepare("ubyte a;").getCompiledBlock()));
+        assertFalse(ParserToByteCodeConverter.isSupported(0, JBBPParser.prepare("var a;").getCompiledBlock()));
+        assertFalse(ParserToByteCodeConverter.isSupported(0, JBBPParser.prepare("byte [$ext] a;").getCompiledBlock()));
+
+        final StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            big.append("int f").append(i).append(';');
+        }
+        assertFalse(ParserToByteCodeConverter.isSupported(0, JBBPParser.prepare(big.toString()).getCompiledBlock()));
+    }
+
+    @Test
+    public void testSameResultAsInterpreter_RandomData() throws Exception {
+        final Random rnd = new Random(12345L);
+        for (int i = 0; i < 100; i++) {
+            final byte[] data = new byte[64 + rnd.nextInt(256)];
+            rnd.nextBytes(data);
+            assertSameResult("ubyte a; ubyte b; bit:3 c; bit:(b%7+1) d; s [a & 3] { <ushort x; bit:2 [x & 3] y; } z [_] { byte k; }", 0, true, data);
+        }
+    }
+
+    @Test
+    public void testInterpreterFallback() throws Exception {
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+        assertSameResult("int a; int b; s [10] { long c; }", JBBPParser.FLAG_SKIP_REMAINING_FIELDS_IF_EOF, false, data);
+    }
+
+    @Test
+    public void testCompiledParserIsCached() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("byte a;");
+        assertSame(parser.compileToClass(), parser.compileToClass());
+        assertSame(parser, parser.compileToClass().getParser());
+    }
+
+    @Test
+    public void testVarAndExternalValues() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; byte [len+$ext] data; var:3 v; var [2] vv;");
+        final JBBPVarFieldProcessor varProcessor = new JBBPVarFieldProcessor() {
+            @Override
+            public JBBPAbstractArrayField<? extends JBBPAbstractField> readVarArray(final JBBPBitInputStream inStream, final int arraySize, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                return new JBBPFieldArrayByte(fieldName, inStream.readByteArray(arraySize));
+            }
+
+            @Override
+            public JBBPAbstractField readVarField(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                assertEquals(3, extraValue);
+                return new JBBPFieldInt(fieldName, numericFieldMap.findFieldForNameAndType("len", JBBPFieldUByte.class).getAsInt() * extraValue);
+            }
+        };
+        final JBBPExternalValueProvider provider = new JBBPExternalValueProvider() {
+            @Override
+            public int provideArraySize(final String fieldName, final JBBPNamedNumericFieldMap numericFieldMap, final com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock compiledBlock) {
+                return 1;
+            }
+        };
+
+        final JBBPCompiledParser compiled = parser.compileToClass();
+        assertFalse(compiled.isGenerated());
+
+        final JBBPFieldStruct root = compiled.parse(new ByteArrayInputStream(new byte[]{2, 1, 2, 3, 4, 5}), varProcessor, provider);
+        assertArrayEquals(new byte[]{1, 2, 3}, root.findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray());
+        assertEquals(6, root.findFieldForNameAndType("v", JBBPFieldInt.class).getAsInt());
+        assertArrayEquals(new byte[]{4, 5}, root.findFieldForNameAndType("vv", JBBPFieldArrayByte.class).getArray());
+    }
+
+    @Test
+    public void testErrorForEofInNamedField() throws Exception {
+        final JBBPCompiledParser parser = JBBPParser.prepare("int a; int b;").compileToClass();
+        assertTrue(parser.isGenerated());
+        try {
+            parser.parse(new byte[]{1, 2, 3, 4, 5});
+            fail("Must throw JBBPParsingException");
+        } catch (JBBPParsingException ex) {
+            assertTrue(ex.getMessage().contains("'b'"));
+            assertTrue(ex.getCause() instanceof EOFException);
+        }
+    }
+
+    @Test
+    public void testErrorForEofInAnonymousFieldOfNamedStruct() throws Exception {
+        final JBBPCompiledParser parser = JBBPParser.prepare("byte a; s { in { int; } }").compileToClass();
+        assertTrue(parser.isGenerated());
+        try {
+            parser.parse(new byte[]{1, 2, 3});
+            fail("Must throw JBBPParsingException");
+        } catch (JBBPParsingException ex) {
+            assertEquals("Can't parse field 's.in' for IOException", ex.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testErrorForEofInSkip() throws Exception {
+        JBBPParser.prepare("byte a; skip:4;").compileToClass().parse(new byte[]{1, 2, 3});
+    }
+
+    @Test(expected = JBBPParsingException.class)
+    public void testErrorForNegativeArrayLength() throws Exception {
+        JBBPParser.prepare("byte len; byte [len] data;").compileToClass().parse(new byte[]{-1});
+    }
+}
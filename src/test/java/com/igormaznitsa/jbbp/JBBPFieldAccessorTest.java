@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractArrayField;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import com.igormaznitsa.jbbp.model.JBBPNumericField;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPFieldAccessorTest {
+
+    private static void assertSameAsParser(final String script, final JBBPBitOrder bitOrder, final String... paths) throws Exception {
+        final JBBPParser parser = JBBPParser.prepare(script, bitOrder);
+        final Random rnd = new Random(script.hashCode());
+        for (int iteration = 0; iteration < 20; iteration++) {
+            final byte[] data = new byte[256];
+            rnd.nextBytes(data);
+            final JBBPFieldStruct parsed = parser.parse(data);
+
+            final byte[] shifted = new byte[data.length + 7];
+            System.arraycopy(data, 0, shifted, 7, data.length);
+
+            for (final String path : paths) {
+                final JBBPFieldAccessor accessor = parser.makeFieldAccessor(path);
+                final JBBPAbstractField field = parsed.findFieldForPath(path);
+                if (field instanceof JBBPAbstractArrayField) {
+                    final JBBPAbstractArrayField<?> array = (JBBPAbstractArrayField<?>) field;
+                    assertTrue(accessor.isArray());
+                    assertEquals(array.size(), accessor.size());
+                    final long[] values = new long[array.size() + 1];
+                    assertEquals(array.size(), accessor.readAll(ByteBuffer.wrap(shifted), 7, values, 1));
+                    for (int i = 0; i < array.size(); i++) {
+                        assertEquals(path + '[' + i + ']', array.getAsLong(i), accessor.getElementAsLong(data, 0, i));
+                        assertEquals(path + '[' + i + ']', array.getAsLong(i), values[i + 1]);
+                    }
+                } else {
+                    assertFalse(accessor.isArray());
+                    final long expected = ((JBBPNumericField) field).getAsLong();
+                    assertEquals(path, expected, accessor.getAsLong(data, 0));
+                    assertEquals(path, expected, accessor.getAsLong(shifted, 7));
+                    assertEquals(path, expected, accessor.getAsLong(ByteBuffer.wrap(shifted), 7));
+                    assertEquals(path, (int) expected, accessor.getAsInt(data, 0));
+                    assertEquals(path, expected != 0L, accessor.getAsBool(data, 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitives() throws Exception {
+        final String script = "byte a; ubyte b; short c; <ushort d; int e; <int f; long g; <long h; bool i; header { <int id; long time; }";
+        assertSameAsParser(script, JBBPBitOrder.LSB0, "a", "b", "c", "d", "e", "f", "g", "h", "i", "header.id", "header.time");
+        assertSameAsParser(script, JBBPBitOrder.MSB0, "a", "b", "c", "d", "e", "f", "g", "h", "i", "header.id", "header.time");
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        final String script = "byte [3] a; <ubyte [4] b; <short [2] c; ushort [2] d; <int [2*2] e; long [2] f; bool [3] g; bit:3 [5] h;";
+        assertSameAsParser(script, JBBPBitOrder.LSB0, "a", "b", "c", "d", "e", "f", "g", "h");
+        assertSameAsParser(script, JBBPBitOrder.MSB0, "a", "b", "c", "d", "e", "f", "g", "h");
+    }
+
+    @Test
+    public void testBitFieldsAndNotAlignedValues() throws Exception {
+        final String script = "bit:3 a; bit:7 b; int c; <short d; bit:1 e; long f; align; ubyte g; bit:5 [3] h; <int [2] i;";
+        assertSameAsParser(script, JBBPBitOrder.LSB0, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+        assertSameAsParser(script, JBBPBitOrder.MSB0, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    }
+
+    @Test
+    public void testProperties() throws Exception {
+        final JBBPFieldAccessor accessor = JBBPParser.prepare("int a; s { <int [3] b; }").makeFieldAccessor("s.b");
+        assertEquals("s.b", accessor.getFieldInfo().getFieldPath());
+        assertEquals(32L, accessor.getBitOffset());
+        assertEquals(3, accessor.size());
+        assertEquals(JBBPByteOrder.LITTLE_ENDIAN, accessor.getByteOrder());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testErrorForWrongIndex() throws Exception {
+        JBBPParser.prepare("int [2] a;").makeFieldAccessor("a").getElementAsLong(new byte[8], 0, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testErrorForShortData() throws Exception {
+        JBBPParser.prepare("byte a; int b;").makeFieldAccessor("b").getAsInt(new byte[4], 0);
+    }
+
+    @Test
+    public void testErrorForNotSupportedFields() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; int a; s { int b; } arr [2] { int c; } byte [len] d; int e; int [_] f;");
+        assertEquals(8L, parser.makeFieldAccessor("a").getBitOffset());
+        for (final String path : new String[]{"unknown", "s", "arr", "arr.c", "d", "e", "f"}) {
+            try {
+                parser.makeFieldAccessor(path);
+                fail("Must throw JBBPIllegalArgumentException for " + path);
+            } catch (JBBPIllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testBufferOrderDoesNotAffectValuesAndIsNotChanged() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("short a; <int b; long c; <long d; <ushort e;");
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, (byte) 0xFE};
+        final JBBPFieldStruct parsed = parser.parse(data);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 3);
+        direct.position(3);
+        direct.put(data);
+        for (final ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(data), ByteBuffer.wrap(data).asReadOnlyBuffer(), direct}) {
+            for (final ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                buffer.order(order);
+                final int offset = buffer.isDirect() ? 3 : 0;
+                for (final String path : new String[]{"a", "b", "c", "d", "e"}) {
+                    assertEquals(path, ((JBBPNumericField) parsed.findFieldForName(path)).getAsLong(), parser.makeFieldAccessor(path).getAsLong(buffer, offset));
+                }
+                assertSame(order, buffer.order());
+            }
+        }
+    }
+}
@@ -16,9 +16,13 @@
 package com.igormaznitsa.jbbp;
 
 import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
 import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
 import com.igormaznitsa.jbbp.exceptions.JBBPEvalException;
 import com.igormaznitsa.jbbp.exceptions.JBBPTooManyFieldsFoundException;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldBit;
 import com.igormaznitsa.jbbp.model.JBBPFieldByte;
 import com.igormaznitsa.jbbp.model.JBBPFieldInt;
 import com.igormaznitsa.jbbp.model.JBBPFieldLong;
@@ -329,4 +333,124 @@ public class JBBPNamedNumericFieldMapTest {
         }
     }
 
+    @Test
+    public void testSlots_PutGetRemove() throws Exception {
+        final JBBPCompiledBlock block = JBBPParser.prepare("byte a; int b; s { long c; }").getCompiledBlock();
+        final JBBPNamedFieldInfo[] names = block.getNamedFields();
+        final JBBPNamedFieldInfo infoA = block.findFieldForPath("a");
+        final JBBPNamedFieldInfo infoC = block.findFieldForPath("s.c");
+
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap(null, block);
+        assertTrue(map.hasSlotsFor(block));
+        assertFalse(new JBBPNamedNumericFieldMap().hasSlotsFor(block));
+        assertTrue(map.isEmpty());
+
+        final JBBPNumericField fieldC = new JBBPFieldLong(infoC, 0x123456789L);
+        final JBBPNumericField fieldA = new JBBPFieldByte(infoA, (byte) -3);
+        map.putField(fieldC);
+        map.putField(fieldA);
+        assertEquals(2, map.size());
+        assertSame(fieldA, map.get(infoA));
+        assertSame(fieldA, map.get(new JBBPNamedFieldInfo(infoA.getFieldPath(), infoA.getFieldName(), infoA.getFieldOffsetInCompiledBlock())));
+        assertSame(fieldC, map.findForFieldOffset(infoC.getFieldOffsetInCompiledBlock()));
+        assertNull(map.get(block.findFieldForPath("b")));
+
+        int indexC = -1;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == infoC) {
+                indexC = i;
+            }
+        }
+        assertEquals(0x23456789, map.getIntValue(block, indexC));
+
+        // search order is the compiled order
+        assertSame(fieldA, map.findFirstFieldForType(JBBPAbstractField.class));
+
+        final JBBPNumericField fieldA2 = new JBBPFieldByte(infoA, (byte) 5);
+        map.putField(fieldA2);
+        assertEquals(2, map.size());
+        assertSame(fieldA2, map.findFieldForPathAndType("a", JBBPFieldByte.class));
+
+        assertSame(fieldA2, map.remove(infoA));
+        assertNull(map.remove(infoA));
+        assertEquals(1, map.size());
+        assertNull(map.findFieldForName("a"));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(infoC));
+    }
+
+    @Test
+    public void testSlots_FieldsOutOfBlock() throws Exception {
+        final JBBPCompiledBlock block = JBBPParser.prepare("byte a;").getCompiledBlock();
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap(null, block);
+
+        final JBBPNamedFieldInfo foreignInfo = new JBBPNamedFieldInfo("b", "b", 0);
+        final JBBPNumericField foreign = new JBBPFieldInt(foreignInfo, 77);
+        final JBBPNumericField fieldA = new JBBPFieldByte(block.getNamedFields()[0], (byte) 1);
+        map.putField(foreign);
+        map.putField(fieldA);
+
+        assertEquals(2, map.size());
+        assertSame(foreign, map.get(foreignInfo));
+        assertSame(fieldA, map.findFirstFieldForType(JBBPAbstractField.class));
+        assertSame(foreign, map.findFieldForNameAndType("b", JBBPFieldInt.class));
+        assertTrue(map.nameExists("b"));
+        assertTrue(map.pathExists("a"));
+        assertSame(foreign, map.remove(foreignInfo));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testSlots_SearchOverSlotsAndOtherFields() throws Exception {
+        final JBBPCompiledBlock block = JBBPParser.prepare("byte a; int b; byte c;").getCompiledBlock();
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap(null, block);
+
+        final JBBPNumericField fieldA = new JBBPFieldByte(block.findFieldForPath("a"), (byte) 1);
+        final JBBPNumericField fieldB = new JBBPFieldInt(block.findFieldForPath("b"), 2);
+        final JBBPNumericField foreign = new JBBPFieldByte(new JBBPNamedFieldInfo("d", "d", 0), (byte) 3);
+        map.putField(foreign);
+        map.putField(fieldB);
+        map.putField(fieldA);
+
+        assertSame(fieldA, map.findFirstFieldForType(JBBPFieldByte.class));
+        assertSame(foreign, map.findLastFieldForType(JBBPFieldByte.class));
+        assertSame(fieldB, map.findFieldForType(JBBPFieldInt.class));
+        assertNull(map.findFieldForType(JBBPFieldLong.class));
+        try {
+            map.findFieldForType(JBBPFieldByte.class);
+            fail("Must throw JBBPTooManyFieldsFoundException");
+        } catch (JBBPTooManyFieldsFoundException ex) {
+            assertEquals(2, ex.getNumberOfFoundInstances());
+        }
+
+        assertNull(map.findFieldForNameAndType("b", JBBPFieldByte.class));
+        assertSame(fieldB, map.findFieldForName("b"));
+        assertSame(foreign, map.findFieldForPath("d"));
+        assertFalse(map.nameExists("c"));
+        assertFalse(map.pathExists("e"));
+    }
+
+    @Test
+    public void testSlots_PutBitValue() throws Exception {
+        final JBBPCompiledBlock block = JBBPParser.prepare("bit:3 a; int b;").getCompiledBlock();
+        final JBBPNamedFieldInfo infoA = block.findFieldForPath("a");
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap(null, block);
+
+        map.putValue(infoA, JBBPCompiler.CODE_BIT, 5L, JBBPBitNumber.BITS_3);
+        map.putValue(block.findFieldForPath("b"), JBBPCompiler.CODE_INT, 7L, null);
+        assertEquals(2, map.size());
+        assertEquals(5, map.getIntValue(block, 0));
+
+        final JBBPFieldBit fieldA = map.findFieldForNameAndType("a", JBBPFieldBit.class);
+        assertSame(infoA, fieldA.getNameInfo());
+        assertEquals(5, fieldA.getAsInt());
+        assertEquals(JBBPBitNumber.BITS_3, fieldA.getBitWidth());
+        assertSame(fieldA, map.get(infoA));
+
+        final JBBPNamedFieldInfo foreignInfo = new JBBPNamedFieldInfo("c", "c", 100);
+        map.putValue(foreignInfo, JBBPCompiler.CODE_BIT, 1L, JBBPBitNumber.BITS_1);
+        assertEquals(JBBPBitNumber.BITS_1, ((JBBPFieldBit) map.get(foreignInfo)).getBitWidth());
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPParseListenerTest {
+
+    private static String nameOf(final JBBPNamedFieldInfo info) {
+        return info == null ? "?" : info.getFieldPath();
+    }
+
+    private static void describe(final StringBuilder buffer, final JBBPAbstractField field) {
+        if (field instanceof JBBPFieldStruct) {
+            buffer.append('{').append(nameOf(field.getNameInfo())).append(' ');
+            for (final JBBPAbstractField f : ((JBBPFieldStruct) field).getArray()) {
+                describe(buffer, f);
+            }
+            buffer.append('}');
+        } else if (field instanceof JBBPFieldArrayStruct) {
+            buffer.append('[').append(nameOf(field.getNameInfo())).append(' ');
+            for (final JBBPFieldStruct s : (JBBPFieldArrayStruct) field) {
+                describe(buffer, s);
+            }
+            buffer.append(']');
+        } else if (field instanceof JBBPAbstractArrayField) {
+            final JBBPAbstractArrayField<?> array = (JBBPAbstractArrayField<?>) field;
+            buffer.append('<').append(nameOf(field.getNameInfo())).append(' ');
+            for (int i = 0; i < array.size(); i++) {
+                buffer.append(array.getAsLong(i)).append(',');
+            }
+            buffer.append('>');
+        } else {
+            buffer.append(nameOf(field.getNameInfo())).append('=').append(((JBBPNumericField) field).getAsLong()).append(' ');
+        }
+    }
+
+    private static String describeTree(final JBBPFieldStruct root) {
+        final StringBuilder result = new StringBuilder();
+        for (final JBBPAbstractField f : root.getArray()) {
+            describe(result, f);
+        }
+        return result.toString();
+    }
+
+    private static final class DescribingListener extends JBBPParseListener {
+        final StringBuilder buffer = new StringBuilder();
+
+        private long unsigned(final int type, final long value) {
+            switch (type) {
+                case JBBPCompiler.CODE_UBYTE:
+                    return value & 0xFFL;
+                case JBBPCompiler.CODE_USHORT:
+                    return value & 0xFFFFL;
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public void onStructStart(final JBBPNamedFieldInfo nameInfo) {
+            buffer.append('{').append(nameOf(nameInfo)).append(' ');
+        }
+
+        @Override
+        public void onStructEnd(final JBBPNamedFieldInfo nameInfo) {
+            buffer.append('}');
+        }
+
+        @Override
+        public void onStructArrayStart(final JBBPNamedFieldInfo nameInfo, final int length) {
+            buffer.append('[').append(nameOf(nameInfo)).append(' ');
+        }
+
+        @Override
+        public void onStructArrayEnd(final JBBPNamedFieldInfo nameInfo) {
+            buffer.append(']');
+        }
+
+        @Override
+        public void onValue(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long value) {
+            buffer.append(nameOf(nameInfo)).append('=').append(value).append(' ');
+        }
+
+        @Override
+        public void onArrayStart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int length) {
+            buffer.append('<').append(nameOf(nameInfo)).append(' ');
+        }
+
+        @Override
+        public void onByteArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final byte[] data, final int length) {
+            for (int i = 0; i < length; i++) {
+                buffer.append(unsigned(fieldType, data[i])).append(',');
+            }
+        }
+
+        @Override
+        public void onShortArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final short[] data, final int length) {
+            for (int i = 0; i < length; i++) {
+                buffer.append(unsigned(fieldType, data[i])).append(',');
+            }
+        }
+
+        @Override
+        public void onIntArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final int[] data, final int length) {
+            for (int i = 0; i < length; i++) {
+                buffer.append(data[i]).append(',');
+            }
+        }
+
+        @Override
+        public void onLongArrayPart(final JBBPNamedFieldInfo nameInfo, final int fieldType, final long[] data, final int length) {
+            for (int i = 0; i < length; i++) {
+                buffer.append(data[i]).append(',');
+            }
+        }
+
+        @Override
+        public void onArrayEnd(final JBBPNamedFieldInfo nameInfo, final int fieldType) {
+            buffer.append('>');
+        }
+
+        @Override
+        public void onField(final JBBPAbstractField field) {
+            describe(buffer, field);
+        }
+    }
+
+    private static void assertSameAsTree(final String script, final int flags, final byte[] data) throws Exception {
+        final JBBPParser parser = JBBPParser.prepare(script, JBBPBitOrder.LSB0, flags);
+        final DescribingListener listener = new DescribingListener();
+        final long read = parser.parse(data, listener);
+        assertEquals(describeTree(parser.parse(data)), listener.buffer.toString());
+        assertEquals(parser.getFinalStreamByteCounter(), read);
+    }
+
+    @Test
+    public void testSameDataAsTree() throws Exception {
+        final byte[] data = new byte[2048];
+        new Random(12345L).nextBytes(data);
+        data[0] = 3;
+        data[1] = 2;
+
+        assertSameAsTree("ubyte a; ubyte b; bit:3 c; bit:(b) [a] d; align; byte e; <ushort f; short [2] g; bool h; bool [a] i;", 0, data);
+        assertSameAsTree("ubyte a; ubyte b; <int [a] c; long [b*2] d; s [a] { ubyte x; in [x & 3] { <short y; } } skip:(b); reset$$; ubyte [$$+1] z; int [_] rest;", 0, data);
+        assertSameAsTree("ubyte a; ubyte b; structs [_] { ushort k; ubyte [2] v; }", 0, Arrays.copyOf(data, 402));
+        assertSameAsTree("ubyte a; empty [a-3] { int never; } one { ubyte x; } skip:4; align:8; <long [2] t; ubyte [1000] big; <byte [3] rev; ushort [300] shorts; bit:4 [_] tail;", 0, data);
+        assertSameAsTree("int a; int b; s [10] { long c; }", JBBPParser.FLAG_SKIP_REMAINING_FIELDS_IF_EOF, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    }
+
+    @Test
+    public void testVarFieldsAndValuesForExpressions() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; var:3 v; byte [len+v] data;");
+        final JBBPVarFieldProcessor varProcessor = new JBBPVarFieldProcessor() {
+            @Override
+            public JBBPAbstractArrayField<? extends JBBPAbstractField> readVarArray(final JBBPBitInputStream inStream, final int arraySize, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                throw new Error("Unexpected");
+            }
+
+            @Override
+            public JBBPAbstractField readVarField(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                // the field object is made on demand from the primitive value
+                return new JBBPFieldInt(fieldName, numericFieldMap.findFieldForNameAndType("len", JBBPFieldUByte.class).getAsInt() - extraValue);
+            }
+        };
+
+        final DescribingListener listener = new DescribingListener();
+        assertEquals(6L, parser.parse(new ByteArrayInputStream(new byte[]{4, 1, 2, 3, 4, 5, 6}), listener, varProcessor, null));
+        assertEquals("len=4 v=1 <data 1,2,3,4,5,>", listener.buffer.toString());
+    }
+
+    @Test(expected = JBBPParsingException.class)
+    public void testErrorForEofInArray() throws Exception {
+        JBBPParser.prepare("int [3] a;").parse(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, new JBBPParseListener() {
+        });
+    }
+}
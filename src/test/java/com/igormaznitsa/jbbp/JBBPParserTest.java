@@ -17,6 +17,7 @@ package com.igormaznitsa.jbbp;
 
 import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
 import com.igormaznitsa.jbbp.exceptions.JBBPCompilationException;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
 import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
 import com.igormaznitsa.jbbp.exceptions.JBBPTooManyFieldsFoundException;
 import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
@@ -27,7 +28,15 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -1690,4 +1699,299 @@ public class JBBPParserTest {
         assertEquals(0x01020304, ((JBBPFieldInt) result.findFieldForName("a")).getAsInt());
     }
 
+    @Test
+    public void testParse_ByteBuffer_HeapAndDirect() throws Exception {
+        final byte[] data = new byte[]{0, 0, 1, 2, 3, 4, 5, 6, 7, 8};
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.flip();
+
+        final JBBPParser parser = JBBPParser.prepare("skip:2; ubyte len; byte [len] data; bit:4 lo; bit:4 hi;");
+        for (final ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(data), direct}) {
+            final JBBPFieldStruct parsed = parser.parse(buffer);
+            assertEquals(1, parsed.findFieldForNameAndType("len", JBBPFieldUByte.class).getAsInt());
+            assertArrayEquals(new byte[]{2}, parsed.findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray());
+            assertEquals(3, parsed.findFieldForNameAndType("lo", JBBPFieldBit.class).getAsInt());
+            assertEquals(0, parsed.findFieldForNameAndType("hi", JBBPFieldBit.class).getAsInt());
+            assertEquals(5L, parser.getFinalStreamByteCounter());
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void testParse_ByteBuffer_FromPosition() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, 1, 2, 3, 4});
+        buffer.position(2);
+        final JBBPFieldStruct parsed = JBBPParser.prepare("int a;").parse(buffer);
+        assertEquals(0x01020304, parsed.findFieldForNameAndType("a", JBBPFieldInt.class).getAsInt());
+        assertEquals(2, buffer.position());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testParse_ByteBuffer_EOF() throws Exception {
+        JBBPParser.prepare("int;").parse(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testParse_MappedFile() throws Exception {
+        final File file = File.createTempFile("jbbpparser", ".bin");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[]{3, 1, 2, 3, 0x11, 0x22, 0x33, 0x44});
+            } finally {
+                out.close();
+            }
+
+            final JBBPParser parser = JBBPParser.prepare("ubyte len; byte [len] data; <int value;");
+            final JBBPFieldStruct parsed = parser.parse(file);
+            assertArrayEquals(new byte[]{1, 2, 3}, parsed.findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray());
+            assertEquals(0x44332211, parsed.findFieldForNameAndType("value", JBBPFieldInt.class).getAsInt());
+            assertEquals(8L, parser.getFinalStreamByteCounter());
+
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                randomAccessFile.getChannel().position(4L);
+                final JBBPFieldStruct fromChannel = JBBPParser.prepare("int value;").parse(randomAccessFile.getChannel());
+                assertEquals(0x11223344, fromChannel.findFieldForNameAndType("value", JBBPFieldInt.class).getAsInt());
+                assertEquals(4L, randomAccessFile.getChannel().position());
+            } finally {
+                randomAccessFile.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testParseWithResult() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; byte [len] data;");
+        final JBBPParseResult result = parser.parseWithResult(new byte[]{2, 10, 20, 30});
+        assertArrayEquals(new byte[]{10, 20}, result.getRoot().findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray());
+        assertEquals(0L, result.getStartStreamByteCounter());
+        assertEquals(3L, result.getFinalStreamByteCounter());
+        assertEquals(3L, result.getReadBytes());
+        assertEquals(2, result.getNamedNumericFieldMap().findFieldForType(JBBPFieldUByte.class).getAsInt());
+        assertEquals(0L, parser.getFinalStreamByteCounter());
+
+        final JBBPParseResult noMap = JBBPParser.prepare("int;").parseWithResult(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+        assertNull(noMap.getNamedNumericFieldMap());
+        assertEquals(4L, noMap.getReadBytes());
+    }
+
+    @Test
+    public void testParseWithResult_SharedParserInThreads() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; int [len] data;");
+        final int threads = 8;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int len = t + 1;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final byte[] data = new byte[1 + len * 4];
+                        data[0] = (byte) len;
+                        for (int i = 0; i < 500; i++) {
+                            final JBBPParseResult result = parser.parseWithResult(data);
+                            if (result.getFinalStreamByteCounter() != data.length || result.getRoot().findFieldForType(JBBPFieldArrayInt.class).size() != len) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(0, errors.get());
+    }
+
+    private static void assertSameStructArrays(final JBBPFieldArrayStruct expected, final JBBPFieldArrayStruct actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final JBBPAbstractField[] expectedFields = expected.getElementAt(i).getArray();
+            final JBBPAbstractField[] actualFields = actual.getElementAt(i).getArray();
+            assertEquals(expectedFields.length, actualFields.length);
+            for (int f = 0; f < expectedFields.length; f++) {
+                assertEquals(expectedFields[f].getFieldPath(), actualFields[f].getFieldPath());
+                if (expectedFields[f] instanceof JBBPNumericField) {
+                    assertEquals(((JBBPNumericField) expectedFields[f]).getAsLong(), ((JBBPNumericField) actualFields[f]).getAsLong());
+                } else if (expectedFields[f] instanceof JBBPAbstractArrayField) {
+                    final JBBPAbstractArrayField<?> expectedArray = (JBBPAbstractArrayField<?>) expectedFields[f];
+                    final JBBPAbstractArrayField<?> actualArray = (JBBPAbstractArrayField<?>) actualFields[f];
+                    assertEquals(expectedArray.size(), actualArray.size());
+                    for (int a = 0; a < expectedArray.size(); a++) {
+                        assertEquals(expectedArray.getAsLong(a), actualArray.getAsLong(a));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParseInParallel_FixedSizeStructArrays() throws Exception {
+        final byte[] data = new byte[4 + 1000 * 16 + 2 + 3000 * 7];
+        new java.util.Random(1234L).nextBytes(data);
+
+        final JBBPParser parser = JBBPParser.prepare("int head; items [1000] { <int a; s { short y; skip:2; } long b; } short middle; rest [_] { ubyte x; short y; ubyte [4] z; }");
+        final java.util.concurrent.ThreadPoolExecutor executor = new java.util.concurrent.ThreadPoolExecutor(4, 4, 1L, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<Runnable>());
+        try {
+            final JBBPFieldStruct sequential = parser.parse(data);
+            final JBBPFieldStruct parallel = parser.parse(data, executor);
+
+            assertEquals(sequential.findFieldForNameAndType("head", JBBPFieldInt.class).getAsInt(), parallel.findFieldForNameAndType("head", JBBPFieldInt.class).getAsInt());
+            assertEquals(sequential.findFieldForNameAndType("middle", JBBPFieldShort.class).getAsInt(), parallel.findFieldForNameAndType("middle", JBBPFieldShort.class).getAsInt());
+            assertSameStructArrays(sequential.findFieldForNameAndType("items", JBBPFieldArrayStruct.class), parallel.findFieldForNameAndType("items", JBBPFieldArrayStruct.class));
+            assertSameStructArrays(sequential.findFieldForNameAndType("rest", JBBPFieldArrayStruct.class), parallel.findFieldForNameAndType("rest", JBBPFieldArrayStruct.class));
+            assertEquals(3000, parallel.findFieldForNameAndType("rest", JBBPFieldArrayStruct.class).size());
+            assertEquals(sequential.findFieldForNameAndType("items", JBBPFieldArrayStruct.class).getElementAt(999).findFieldForNameAndType("s", JBBPFieldStruct.class).findFieldForType(JBBPFieldShort.class).getAsInt(),
+                    parallel.findFieldForNameAndType("items", JBBPFieldArrayStruct.class).getElementAt(999).findFieldForNameAndType("s", JBBPFieldStruct.class).findFieldForType(JBBPFieldShort.class).getAsInt());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10L, java.util.concurrent.TimeUnit.SECONDS));
+        }
+        assertTrue(executor.getCompletedTaskCount() > 2L);
+    }
+
+    @Test
+    public void testParseInParallel_BitFieldsAndConstantExpressions() throws Exception {
+        final byte[] data = new byte[2000 * 7];
+        new java.util.Random(5678L).nextBytes(data);
+
+        final JBBPParser parser = JBBPParser.prepare("items [2000] { bit:3 a; bit:5 b; byte [2*3] c; }");
+        final java.util.concurrent.ThreadPoolExecutor executor = new java.util.concurrent.ThreadPoolExecutor(4, 4, 1L, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<Runnable>());
+        try {
+            assertSameStructArrays(parser.parse(data).findFieldForType(JBBPFieldArrayStruct.class), parser.parse(data, executor).findFieldForType(JBBPFieldArrayStruct.class));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10L, java.util.concurrent.TimeUnit.SECONDS));
+        }
+        assertTrue(executor.getCompletedTaskCount() > 2L);
+    }
+
+    @Test
+    public void testParseInParallel_NotByteAlignedAndVariableStructuresParsedSequentially() throws Exception {
+        final byte[] data = new byte[1 + 1000 * 2];
+        new java.util.Random(4321L).nextBytes(data);
+        data[0] = 0;
+
+        final java.util.concurrent.ThreadPoolExecutor executor = new java.util.concurrent.ThreadPoolExecutor(2, 2, 1L, java.util.concurrent.TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<Runnable>());
+        try {
+            final JBBPParser bitParser = JBBPParser.prepare("bit:4 a; items [999] { short v; } bit:4 b;");
+            assertSameStructArrays(bitParser.parse(data).findFieldForType(JBBPFieldArrayStruct.class), bitParser.parse(data, executor).findFieldForType(JBBPFieldArrayStruct.class));
+
+            final JBBPParser varParser = JBBPParser.prepare("ubyte len; items [1000] { byte [len] a; short v; }");
+            assertSameStructArrays(varParser.parse(data).findFieldForType(JBBPFieldArrayStruct.class), varParser.parse(data, executor).findFieldForType(JBBPFieldArrayStruct.class));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10L, java.util.concurrent.TimeUnit.SECONDS));
+        }
+        assertEquals(0L, executor.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testParseInParallel_ErrorForNotEnoughData() throws Exception {
+        final java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(2);
+        try {
+            JBBPParser.prepare("items [1000] { int a; }").parse(new byte[3999], executor);
+            fail("Must throw JBBPParsingException");
+        } catch (JBBPParsingException ex) {
+            assertTrue(ex.getCause() instanceof EOFException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseProjection_OnlyRequestedFieldsInResult() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; int [len] data; s { short a; long b; } ubyte tail; bit:3 bits; align; int [_] rest;");
+        final byte[] data = new byte[]{2, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28};
+        final JBBPFieldStruct full = parser.parse(data);
+
+        final JBBPFieldStruct tail = parser.parseProjection(data, Collections.singleton("tail"));
+        assertEquals(1, tail.getArray().length);
+        assertEquals(full.findFieldForNameAndType("tail", JBBPFieldUByte.class).getAsInt(), tail.findFieldForNameAndType("tail", JBBPFieldUByte.class).getAsInt());
+
+        final JBBPFieldStruct inner = parser.parseProjection(data, Collections.singleton("S.B"));
+        assertEquals(1, inner.getArray().length);
+        assertEquals(1, inner.findFieldForNameAndType("s", JBBPFieldStruct.class).getArray().length);
+        assertEquals(full.findFieldForPathAndType("s.b", JBBPFieldLong.class).getAsLong(), inner.findFieldForPathAndType("s.b", JBBPFieldLong.class).getAsLong());
+
+        final JBBPFieldStruct struct = parser.parseProjection(data, Arrays.asList("s", "rest", "s.a"));
+        assertEquals(2, struct.getArray().length);
+        assertEquals(2, struct.findFieldForNameAndType("s", JBBPFieldStruct.class).getArray().length);
+        assertEquals(full.findFieldForPathAndType("s.a", JBBPFieldShort.class).getAsInt(), struct.findFieldForPathAndType("s.a", JBBPFieldShort.class).getAsInt());
+        assertArrayEquals(full.findFieldForNameAndType("rest", JBBPFieldArrayInt.class).getArray(), struct.findFieldForNameAndType("rest", JBBPFieldArrayInt.class).getArray());
+
+        assertEquals(0, parser.parseProjection(data, Collections.<String>emptyList()).getArray().length);
+    }
+
+    @Test
+    public void testParseProjection_FieldsUsedByExpressionsAreRead() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte skipped; header { ubyte len; ubyte pad; } s [header.len] { ubyte x; byte [x] v; } int [2] ints; ubyte last;");
+        final byte[] data = new byte[]{9, 2, 0, 1, 10, 2, 20, 21, 0, 0, 0, 1, 0, 0, 0, 2, 33};
+
+        final JBBPParseResult result = parser.parseProjectionWithResult(new ByteArrayInputStream(data), Collections.singleton("last"), null, null);
+        assertEquals(1, result.getRoot().getArray().length);
+        assertEquals(33, result.getRoot().findFieldForNameAndType("last", JBBPFieldUByte.class).getAsInt());
+        assertEquals(2, result.getNamedNumericFieldMap().findFieldForPathAndType("header.len", JBBPFieldUByte.class).getAsInt());
+        assertEquals(data.length, result.getReadBytes());
+
+        final JBBPFieldStruct values = parser.parseProjection(new ByteArrayInputStream(data), Collections.singleton("s.v"));
+        final JBBPFieldArrayStruct array = values.findFieldForNameAndType("s", JBBPFieldArrayStruct.class);
+        assertEquals(2, array.size());
+        assertEquals(1, array.getElementAt(0).getArray().length);
+        assertArrayEquals(new byte[]{10}, array.getElementAt(0).findFieldForNameAndType("v", JBBPFieldArrayByte.class).getArray());
+        assertArrayEquals(new byte[]{20, 21}, array.getElementAt(1).findFieldForNameAndType("v", JBBPFieldArrayByte.class).getArray());
+    }
+
+    @Test
+    public void testParseProjection_SkipOfNotByteAlignedFields() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("bit:4 a; ubyte b; int c; bit:4 d; ubyte e;");
+        final byte[] data = new byte[]{0x21, 0x43, 0x65, (byte) 0x87, (byte) 0xA9, (byte) 0xCB, (byte) 0xED};
+        final JBBPFieldStruct full = parser.parse(data);
+        final JBBPFieldStruct projected = parser.parseProjection(data, Arrays.asList("b", "e"));
+        assertEquals(2, projected.getArray().length);
+        assertEquals(full.findFieldForNameAndType("b", JBBPFieldUByte.class).getAsInt(), projected.findFieldForNameAndType("b", JBBPFieldUByte.class).getAsInt());
+        assertEquals(full.findFieldForNameAndType("e", JBBPFieldUByte.class).getAsInt(), projected.findFieldForNameAndType("e", JBBPFieldUByte.class).getAsInt());
+    }
+
+    @Test
+    public void testParseProjection_EofInSkippedField() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte a; int [4] skipped; ubyte b;");
+        try {
+            parser.parseProjection(new byte[]{1, 2, 3, 4}, Collections.singleton("a"));
+            fail("Must throw JBBPParsingException");
+        } catch (JBBPParsingException ex) {
+            assertTrue(ex.getMessage().contains("'skipped'"));
+        }
+
+        final JBBPFieldStruct parsed = JBBPParser.prepare("ubyte a; int skipped; ubyte b;", JBBPParser.FLAG_SKIP_REMAINING_FIELDS_IF_EOF).parseProjection(new byte[]{1}, Arrays.asList("a", "b"));
+        assertEquals(1, parsed.getArray().length);
+        assertEquals(1, parsed.findFieldForNameAndType("a", JBBPFieldUByte.class).getAsInt());
+    }
+
+    @Test
+    public void testFixedStructSize_ConstantExpressions() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("s [2] { byte [2*3] a; skip:(1+1); short [4/2] c; } v [1] { ubyte len; byte [len] d; } ubyte tail;");
+        assertEquals(12, parser.getFixedStructSize(0));
+        assertEquals(-1, parser.getFixedStructSize(5));
+
+        final byte[] data = new byte[27];
+        data[24] = 1;
+        data[26] = 77;
+        final JBBPFieldStruct projected = parser.parseProjection(data, Collections.singleton("tail"));
+        assertEquals(1, projected.getArray().length);
+        assertEquals(77, projected.findFieldForNameAndType("tail", JBBPFieldUByte.class).getAsInt());
+    }
+
+    @Test(expected = JBBPIllegalArgumentException.class)
+    public void testParseProjection_ErrorForUnknownPath() throws Exception {
+        JBBPParser.prepare("ubyte a;").parseProjection(new byte[]{1}, Collections.singleton("b"));
+    }
 }
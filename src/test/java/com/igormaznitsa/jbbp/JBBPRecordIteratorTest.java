@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp;
+
+import com.igormaznitsa.jbbp.exceptions.JBBPIOException;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.exceptions.JBBPParsingException;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldUByte;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class JBBPRecordIteratorTest {
+
+    @Test
+    public void testIterateRecords() throws Exception {
+        final byte[] data = new byte[]{2, 0, 0, 0, 1, 10, 11, 0, 0, 0, 2, 20, 21, 0, 0, 0, 3, 30, 31};
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; record [_] { int id; byte [len] data; }");
+        final JBBPRecordIterator iterator = parser.iterateRecords(new ByteArrayInputStream(data));
+
+        assertEquals(2, iterator.getHeader().findFieldForNameAndType("len", JBBPFieldUByte.class).getAsInt());
+        assertEquals(-1L, iterator.getLastRecordOffset());
+
+        final JBBPFieldArrayStruct expected = parser.parse(data).findFieldForType(JBBPFieldArrayStruct.class);
+
+        int index = 0;
+        while (iterator.hasNext()) {
+            final JBBPFieldStruct record = iterator.next();
+            assertEquals(1L + index * 6, iterator.getLastRecordOffset());
+            assertEquals("record", record.getNameInfo().getFieldPath());
+            assertEquals(expected.getElementAt(index).findFieldForNameAndType("id", JBBPFieldInt.class).getAsInt(), record.findFieldForNameAndType("id", JBBPFieldInt.class).getAsInt());
+            assertArrayEquals(expected.getElementAt(index).findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray(), record.findFieldForNameAndType("data", JBBPFieldArrayByte.class).getArray());
+            index++;
+        }
+        assertEquals(3, index);
+        assertEquals(3L, iterator.getRecordCounter());
+        assertEquals(data.length, iterator.getStreamCounter());
+
+        try {
+            iterator.next();
+            fail("Must throw NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIterateRecords_ReadsByRequest() throws Exception {
+        final int[] readBytes = new int[1];
+        final InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                readBytes[0]++;
+                return readBytes[0] & 0xFF;
+            }
+        };
+        final JBBPRecordIterator iterator = JBBPParser.prepare("record [_] { ubyte a; ubyte b; }").iterateRecords(endless);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(iterator.hasNext());
+            iterator.next();
+        }
+        assertEquals(1000L, iterator.getRecordCounter());
+        assertTrue(readBytes[0] <= 2002);
+    }
+
+    @Test(expected = JBBPIllegalArgumentException.class)
+    public void testIterateRecords_ErrorForScriptWithoutRecords() throws Exception {
+        JBBPParser.prepare("ubyte a; s [2] { int b; }").iterateRecords(new ByteArrayInputStream(new byte[10]));
+    }
+
+    @Test(expected = JBBPParsingException.class)
+    public void testIterateRecords_ErrorForIncompleteRecord() throws Exception {
+        final JBBPRecordIterator iterator = JBBPParser.prepare("record [_] { int a; }").iterateRecords(new ByteArrayInputStream(new byte[6]));
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(expected = JBBPIOException.class)
+    public void testIterateRecords_ErrorForIncompleteRecordWithAnonymousField() throws Exception {
+        final JBBPRecordIterator iterator = JBBPParser.prepare("record [_] { int; }").iterateRecords(new ByteArrayInputStream(new byte[6]));
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemove_NotSupported() throws Exception {
+        JBBPParser.prepare("record [_] { int a; }").iterateRecords(new ByteArrayInputStream(new byte[4])).remove();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler;
+
+import com.igormaznitsa.jbbp.JBBPCustomFieldTypeProcessor;
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+public class JBBPCompiledBlockCacheTest {
+
+    private static JBBPCustomFieldTypeProcessor makeProcessor(final String... types) {
+        return new JBBPCustomFieldTypeProcessor() {
+            @Override
+            public String[] getCustomFieldTypes() {
+                return types;
+            }
+
+            @Override
+            public boolean isAllowed(final JBBPFieldTypeParameterContainer fieldType, final String fieldName, final int extraData, final boolean isArray) {
+                return true;
+            }
+
+            @Override
+            public JBBPAbstractField readCustomFieldType(final JBBPBitInputStream in, final JBBPBitOrder bitOrder, final int parserFlags, final JBBPFieldTypeParameterContainer customTypeFieldInfo, final JBBPNamedFieldInfo fieldName, final int extraData, final boolean readWholeStream, final int arrayLength) throws IOException {
+                return new JBBPFieldInt(fieldName, in.readInt(customTypeFieldInfo.getByteOrder()));
+            }
+        };
+    }
+
+    @Test
+    public void testCompile_HitsAndMisses() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(10);
+        final JBBPCompiledBlock first = cache.compile("int a;", null);
+        assertSame(first, cache.compile("int a;", null));
+        assertNotSame(first, cache.compile("int b;", null));
+        assertEquals(1L, cache.getHits());
+        assertEquals(2L, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getHits());
+        assertNotSame(first, cache.compile("int a;", null));
+    }
+
+    @Test
+    public void testCompile_KeyContainsCustomProcessor() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(10);
+        final JBBPCustomFieldTypeProcessor processor = makeProcessor("some");
+        final JBBPCompiledBlock withProcessor = cache.compile("some a;", processor);
+        assertSame(withProcessor, cache.compile("some a;", processor));
+        assertNotSame(withProcessor, cache.compile("some a;", makeProcessor("some")));
+        assertEquals(1, withProcessor.getCustomTypeFields().length);
+    }
+
+    @Test
+    public void testCompile_CustomTypesComparedAsSet() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(10);
+        final String[] types = new String[]{"some", "other"};
+        final JBBPCustomFieldTypeProcessor processor = makeProcessor(types);
+        final JBBPCompiledBlock first = cache.compile("some a;", processor);
+
+        types[0] = "other";
+        types[1] = "some";
+        assertSame(first, cache.compile("some a;", processor));
+
+        types[0] = "third";
+        assertNotSame(first, cache.compile("some a;", processor));
+        assertEquals(1L, cache.getHits());
+        assertEquals(2L, cache.getMisses());
+    }
+
+    @Test
+    public void testCompile_BlockRemovedAfterProcessorCollected() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(10);
+        cache.compile("int a;", null);
+        JBBPCustomFieldTypeProcessor processor = makeProcessor("some");
+        cache.compile("some a;", processor);
+        assertEquals(2, cache.size());
+
+        final WeakReference<JBBPCustomFieldTypeProcessor> ref = new WeakReference<JBBPCustomFieldTypeProcessor>(processor);
+        processor = null;
+        for (int i = 0; i < 100 && (ref.get() != null || cache.size() != 1); i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertNull(ref.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCompile_LeastRecentlyUsedRemoved() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(2);
+        final JBBPCompiledBlock a = cache.compile("int a;", null);
+        final JBBPCompiledBlock b = cache.compile("int b;", null);
+        assertSame(a, cache.compile("int a;", null));
+        cache.compile("int c;", null);
+        assertEquals(2, cache.size());
+        assertSame(a, cache.compile("int a;", null));
+        assertNotSame(b, cache.compile("int b;", null));
+    }
+
+    @Test
+    public void testCompile_DisabledCache() throws Exception {
+        final JBBPCompiledBlockCache cache = new JBBPCompiledBlockCache(0);
+        assertNotSame(cache.compile("int a;", null), cache.compile("int a;", null));
+        assertEquals(0, cache.size());
+        assertEquals(2L, cache.getMisses());
+    }
+
+    @Test
+    public void testParsersShareCompiledBlock() throws Exception {
+        final JBBPParser first = JBBPParser.prepare("int cachedField; byte [cachedField] data;");
+        final JBBPParser second = JBBPParser.prepare("int cachedField; byte [cachedField] data;", JBBPBitOrder.MSB0);
+        assertSame(first.getCompiledBlock(), second.getCompiledBlock());
+    }
+
+    @Test(expected = JBBPIllegalArgumentException.class)
+    public void testConstructor_ErrorForNegativeSize() {
+        new JBBPCompiledBlockCache(-1);
+    }
+}
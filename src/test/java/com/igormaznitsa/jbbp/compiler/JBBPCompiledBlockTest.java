@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler;
+
+import com.igormaznitsa.jbbp.JBBPCustomFieldTypeProcessor;
+import com.igormaznitsa.jbbp.JBBPExternalValueProvider;
+import com.igormaznitsa.jbbp.JBBPNamedNumericFieldMap;
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.tokenizer.JBBPFieldTypeParameterContainer;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldUByte;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JBBPCompiledBlockTest {
+
+    private static JBBPCompiledBlock exportAndImport(final JBBPCompiledBlock block) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        block.writeTo(buffer);
+        return JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+
+    @Test
+    public void testExportImport_ExpressionsAndStructures() throws Exception {
+        final String script = "ubyte len; items [len*2-2] { ubyte a; bit:(a) b; } int [_] tail;";
+        final JBBPCompiledBlock original = JBBPCompiler.compile(script);
+        final JBBPCompiledBlock loaded = exportAndImport(original);
+
+        assertEquals(original.getSource(), loaded.getSource());
+        assertArrayEquals(original.getCompiledData(), loaded.getCompiledData());
+        assertEquals(original.getNamedFields().length, loaded.getNamedFields().length);
+        assertEquals(original.getArraySizeEvaluators().length, loaded.getArraySizeEvaluators().length);
+        assertEquals(original.hasVarFields(), loaded.hasVarFields());
+
+        final byte[] data = new byte[]{2, 8, 1, 8, 2, 0, 0, 0, 1, 0, 0, 0, 2};
+        final JBBPFieldStruct parsedOriginal = JBBPParser.prepare(script).parse(data);
+        final JBBPFieldStruct parsedLoaded = JBBPParser.prepare(loaded).parse(data);
+
+        assertEquals(parsedOriginal.findFieldForType(JBBPFieldArrayStruct.class).size(), parsedLoaded.findFieldForType(JBBPFieldArrayStruct.class).size());
+        assertEquals(8, parsedLoaded.findFieldForType(JBBPFieldArrayStruct.class).getElementAt(1).findFieldForType(JBBPFieldUByte.class).getAsInt());
+        assertEquals(2, parsedLoaded.findFieldForNameAndType("tail", JBBPFieldArrayInt.class).size());
+    }
+
+    @Test
+    public void testExportImport_CustomTypes() throws Exception {
+        final JBBPCustomFieldTypeProcessor processor = new JBBPCustomFieldTypeProcessor() {
+            @Override
+            public String[] getCustomFieldTypes() {
+                return new String[]{"int24"};
+            }
+
+            @Override
+            public boolean isAllowed(final JBBPFieldTypeParameterContainer fieldType, final String fieldName, final int extraData, final boolean isArray) {
+                return !isArray;
+            }
+
+            @Override
+            public JBBPAbstractField readCustomFieldType(final JBBPBitInputStream in, final JBBPBitOrder bitOrder, final int parserFlags, final JBBPFieldTypeParameterContainer customTypeFieldInfo, final JBBPNamedFieldInfo fieldName, final int extraData, final boolean readWholeStream, final int arrayLength) throws IOException {
+                return new JBBPFieldInt(fieldName, (in.readByte() << 16) | (in.readByte() << 8) | in.readByte());
+            }
+        };
+
+        final JBBPCompiledBlock loaded = exportAndImport(JBBPCompiler.compile("<int24 value;", processor));
+        assertEquals(1, loaded.getCustomTypeFields().length);
+        assertEquals("int24", loaded.getCustomTypeFields()[0].getTypeName());
+
+        final JBBPFieldStruct parsed = JBBPParser.prepare(loaded, JBBPBitOrder.LSB0, processor, 0).parse(new byte[]{1, 2, 3});
+        assertEquals(0x010203, parsed.findFieldForType(JBBPFieldInt.class).getAsInt());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPrepare_ErrorForCustomTypesWithoutProcessor() throws Exception {
+        final JBBPCustomFieldTypeProcessor processor = new JBBPCustomFieldTypeProcessor() {
+            @Override
+            public String[] getCustomFieldTypes() {
+                return new String[]{"some"};
+            }
+
+            @Override
+            public boolean isAllowed(final JBBPFieldTypeParameterContainer fieldType, final String fieldName, final int extraData, final boolean isArray) {
+                return true;
+            }
+
+            @Override
+            public JBBPAbstractField readCustomFieldType(final JBBPBitInputStream in, final JBBPBitOrder bitOrder, final int parserFlags, final JBBPFieldTypeParameterContainer customTypeFieldInfo, final JBBPNamedFieldInfo fieldName, final int extraData, final boolean readWholeStream, final int arrayLength) throws IOException {
+                return null;
+            }
+        };
+        JBBPParser.prepare(exportAndImport(JBBPCompiler.compile("some a;", processor)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testImport_ErrorForWrongMagic() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0x12345678);
+        out.writeInt(JBBPCompiledBlock.EXPORT_FORMAT_VERSION);
+        out.flush();
+        JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testImport_ErrorForWrongVersion() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(JBBPCompiledBlock.EXPORT_MAGIC);
+        out.writeInt(JBBPCompiledBlock.EXPORT_FORMAT_VERSION + 1);
+        out.flush();
+        JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+
+    @Test
+    public void testImport_ErrorForFirstFormatVersion() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(JBBPCompiledBlock.EXPORT_MAGIC);
+        out.writeInt(1);
+        out.flush();
+        try {
+            JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+            fail("Must throw IOException");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("version"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testImport_ErrorForTruncatedData() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        JBBPCompiler.compile("ubyte len; byte [len] data;").writeTo(buffer);
+        final byte[] data = buffer.toByteArray();
+        JBBPCompiledBlock.readFrom(new ByteArrayInputStream(data, 0, data.length - 3));
+    }
+
+    @Test(expected = IOException.class)
+    public void testImport_ErrorForPayloadLongerThanStream() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(JBBPCompiledBlock.EXPORT_MAGIC);
+        out.writeInt(JBBPCompiledBlock.EXPORT_FORMAT_VERSION);
+        out.writeInt(Integer.MAX_VALUE);
+        out.writeInt(0);
+        out.flush();
+        JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+
+    @Test
+    public void testImport_ErrorForLengthsOutOfPayload() throws Exception {
+        final int[][] payloads = new int[][]{
+                {Integer.MAX_VALUE - 8},
+                {-2},
+                {0, Integer.MAX_VALUE - 8},
+                {0, 0, 0x00FFFFFF},
+                {-1, 0, 0, 0}
+        };
+        for (final int[] values : payloads) {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            final DataOutputStream payloadOut = new DataOutputStream(payload);
+            for (final int v : values) {
+                payloadOut.writeInt(v);
+            }
+            payloadOut.flush();
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(JBBPCompiledBlock.EXPORT_MAGIC);
+            out.writeInt(JBBPCompiledBlock.EXPORT_FORMAT_VERSION);
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+            out.flush();
+            try {
+                JBBPCompiledBlock.readFrom(new ByteArrayInputStream(buffer.toByteArray()));
+                fail("Must throw IOException");
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testImport_ErrorForExtraDataInPayload() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        JBBPCompiler.compile("ubyte a;").writeTo(buffer);
+        final byte[] data = Arrays.copyOf(buffer.toByteArray(), buffer.size() + 1);
+        final int payloadLength = buffer.size() - 12 + 1;
+        data[8] = (byte) (payloadLength >>> 24);
+        data[9] = (byte) (payloadLength >>> 16);
+        data[10] = (byte) (payloadLength >>> 8);
+        data[11] = (byte) payloadLength;
+        JBBPCompiledBlock.readFrom(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testExportImport_SpecializedEvaluators() throws Exception {
+        final String script = "ubyte a; byte [5] b; byte [a] c; byte [a*2] d; byte [1<<a] e; byte [$ext] f; byte [a*2+$ext-1] g;";
+        final JBBPCompiledBlock original = JBBPCompiler.compile(script);
+        final JBBPCompiledBlock loaded = exportAndImport(original);
+
+        assertEquals(original.getArraySizeEvaluators().length, loaded.getArraySizeEvaluators().length);
+        for (int i = 0; i < original.getArraySizeEvaluators().length; i++) {
+            assertSame(original.getArraySizeEvaluators()[i].getClass(), loaded.getArraySizeEvaluators()[i].getClass());
+            assertEquals(original.getArraySizeEvaluators()[i].toString(), loaded.getArraySizeEvaluators()[i].toString());
+        }
+
+        final JBBPExternalValueProvider provider = new JBBPExternalValueProvider() {
+            @Override
+            public int provideArraySize(final String fieldName, final JBBPNamedNumericFieldMap numericFieldMap, final JBBPCompiledBlock compiledBlock) {
+                return 1;
+            }
+        };
+        final byte[] data = new byte[32];
+        data[0] = 2;
+        final JBBPFieldStruct parsed = JBBPParser.prepare(loaded).parse(new ByteArrayInputStream(data), null, provider);
+        assertEquals(2, parsed.findFieldForNameAndType("c", JBBPFieldArrayByte.class).size());
+        assertEquals(4, parsed.findFieldForNameAndType("d", JBBPFieldArrayByte.class).size());
+        assertEquals(4, parsed.findFieldForNameAndType("e", JBBPFieldArrayByte.class).size());
+        assertEquals(1, parsed.findFieldForNameAndType("f", JBBPFieldArrayByte.class).size());
+        assertEquals(4, parsed.findFieldForNameAndType("g", JBBPFieldArrayByte.class).size());
+    }
+}
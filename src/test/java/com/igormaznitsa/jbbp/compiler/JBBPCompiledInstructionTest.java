@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler;
+
+import com.igormaznitsa.jbbp.exceptions.JBBPCompilationException;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JBBPCompiledInstructionTest {
+
+    @Test
+    public void testDecode_PrimitivesAndArrays() throws Exception {
+        final JBBPCompiledBlock block = JBBPCompiler.compile("byte a; <int [3] b; bit:3 c; ubyte [a*2] d; long [_] e;");
+        final JBBPCompiledInstruction[] instructions = block.getInstructions();
+        assertNotSame("Table must be copied", instructions, block.getInstructions());
+        assertArrayEquals(instructions, block.getInstructions());
+        final JBBPCompiledInstruction[] changed = block.getInstructions();
+        changed[0] = null;
+        assertSame(instructions[0], block.getInstructions()[0]);
+        assertEquals(5, instructions.length);
+
+        assertEquals(JBBPCompiler.CODE_BYTE, instructions[0].getType());
+        assertEquals("a", instructions[0].getFieldInfo().getFieldName());
+        assertFalse(instructions[0].isArray());
+        assertEquals(-1, instructions[0].getArraySize());
+
+        assertEquals(JBBPCompiler.CODE_INT, instructions[1].getType());
+        assertEquals(JBBPByteOrder.LITTLE_ENDIAN, instructions[1].getByteOrder());
+        assertTrue(instructions[1].isArray());
+        assertEquals(3, instructions[1].getArraySize());
+        assertNull(instructions[1].getArraySizeEvaluator());
+
+        assertEquals(JBBPCompiler.CODE_BIT, instructions[2].getType());
+        assertEquals(3, instructions[2].getExtraValue());
+        assertEquals(JBBPBitNumber.BITS_3, instructions[2].getBitNumber());
+
+        assertEquals(JBBPCompiler.CODE_UBYTE, instructions[3].getType());
+        assertTrue(instructions[3].isArray());
+        assertNotNull(instructions[3].getArraySizeEvaluator());
+        assertSame(block.getArraySizeEvaluators()[0], instructions[3].getArraySizeEvaluator());
+
+        assertEquals(JBBPCompiler.CODE_LONG, instructions[4].getType());
+        assertTrue(instructions[4].isWholeStreamArray());
+        assertEquals(JBBPByteOrder.BIG_ENDIAN, instructions[4].getByteOrder());
+    }
+
+    @Test
+    public void testDecode_StructurePairsAndExpressions() throws Exception {
+        final JBBPCompiledBlock block = JBBPCompiler.compile("ubyte n; s [n] { bit:(n) b; in { skip:2; } } align:4; reset$$;");
+        final JBBPCompiledInstruction[] instructions = block.getInstructions();
+        assertEquals(9, instructions.length);
+
+        assertEquals(JBBPCompiler.CODE_STRUCT_START, instructions[1].getType());
+        assertEquals(6, instructions[1].getPairedStructIndex());
+        assertEquals(JBBPCompiler.CODE_STRUCT_END, instructions[6].getType());
+        assertEquals(1, instructions[6].getPairedStructIndex());
+        assertEquals(instructions[1].getOffset(), instructions[6].getExtraValue());
+
+        assertNotNull(instructions[2].getExtraValueEvaluator());
+        assertNull(instructions[2].getBitNumber());
+
+        assertEquals(5, instructions[3].getPairedStructIndex());
+        assertEquals(JBBPCompiler.CODE_SKIP, instructions[4].getType());
+        assertEquals(2, instructions[4].getExtraValue());
+
+        assertEquals(JBBPCompiler.CODE_ALIGN, instructions[7].getType());
+        assertEquals(4, instructions[7].getExtraValue());
+        assertEquals(JBBPCompiler.CODE_RESET_COUNTER, instructions[8].getType());
+        assertEquals(-1, instructions[8].getPairedStructIndex());
+    }
+
+    @Test(expected = JBBPCompilationException.class)
+    public void testDecode_ErrorForWrongData() throws Exception {
+        JBBPCompiledBlock.prepare().setSource("none").setCompiledData(new byte[]{0}).build().getInstructions();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.conversion;
+
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledInstruction;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiler;
+import com.igormaznitsa.jbbp.compiler.conversion.CompiledBlockLayoutAnalyzer.FieldLayout;
+import com.igormaznitsa.jbbp.model.JBBPFieldByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldLong;
+import com.igormaznitsa.jbbp.model.JBBPFieldShort;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.igormaznitsa.jbbp.compiler.conversion.CompiledBlockLayoutAnalyzer.UNKNOWN;
+import static org.junit.Assert.*;
+
+public class CompiledBlockLayoutAnalyzerTest {
+
+    private static CompiledBlockLayoutAnalyzer analyze(final String script) throws Exception {
+        return CompiledBlockLayoutAnalyzer.analyze(JBBPCompiler.compile(script));
+    }
+
+    private static void assertField(final CompiledBlockLayoutAnalyzer analyzer, final String path, final long bitOffset, final long bitSize) {
+        final FieldLayout field = analyzer.findFieldForPath(path);
+        assertNotNull(path, field);
+        assertEquals(path + " offset", bitOffset, field.getBitOffset());
+        assertEquals(path + " size", bitSize, field.getBitSize());
+    }
+
+    @Test
+    public void testFixedPrimitives() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("byte a; <short b; int c; long d; bool e; ubyte [3] f; ushort g;");
+        assertTrue(analyzer.isFixedSize());
+        assertEquals(21L, analyzer.getByteSize());
+        assertEquals(21L * 8L, analyzer.getFixedPrefixBitSize());
+        assertField(analyzer, "a", 0L, 8L);
+        assertField(analyzer, "b", 8L, 16L);
+        assertField(analyzer, "c", 24L, 32L);
+        assertField(analyzer, "d", 56L, 64L);
+        assertField(analyzer, "e", 120L, 8L);
+        assertField(analyzer, "f", 128L, 24L);
+        assertEquals(8L, analyzer.findFieldForPath("f").getElementBitSize());
+        assertEquals(19L, analyzer.findFieldForPath("g").getByteOffset());
+        assertEquals(1, analyzer.findFieldForPath("g").getByteAlignment());
+        assertEquals(8, analyzer.findFieldForPath("f").getByteAlignment());
+        assertEquals(7, analyzer.getFields().size());
+        assertEquals("a", analyzer.getFields().get(0).getFieldInfo().getFieldPath());
+    }
+
+    @Test
+    public void testBitFieldsAndSkip() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("bit:3 a; bit:2 [2] b; skip:2; byte c; bit:2 d;");
+        assertEquals(3L + 4L + 16L + 8L + 2L, analyzer.getBitSize());
+        assertEquals(UNKNOWN, analyzer.getByteSize());
+        assertField(analyzer, "b", 3L, 4L);
+        assertField(analyzer, "c", 23L, 8L);
+        assertEquals(UNKNOWN, analyzer.findFieldForPath("c").getByteOffset());
+        assertEquals(0, analyzer.findFieldForPath("c").getByteAlignment());
+    }
+
+    @Test
+    public void testStructureElementSizes() throws Exception {
+        final JBBPCompiledBlock block = JBBPCompiler.compile("ubyte n; a [2] { bit:4 x; bit:4 y; int [2*3] z; } b [n] { byte c; } c [2] { byte d; align:4; } d { skip:3; e [_] { ubyte f; } }");
+        final CompiledBlockLayoutAnalyzer analyzer = CompiledBlockLayoutAnalyzer.analyze(block);
+
+        final List<Long> sizes = new ArrayList<Long>();
+        for (final JBBPCompiledInstruction instruction : block.getInstructions()) {
+            if (instruction.getType() == JBBPCompiler.CODE_STRUCT_START) {
+                sizes.add(analyzer.getStructureElementBitSize(instruction.getOffset()));
+            }
+        }
+        assertEquals(Arrays.asList(8L + 6L * 32L, 8L, UNKNOWN, UNKNOWN, 8L), sizes);
+        assertEquals(UNKNOWN, analyzer.getStructureElementBitSize(0));
+    }
+
+    @Test
+    public void testAlignAndResetCounter() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("bit:3 a; align; byte b; align:4; int c; reset$$; byte d; align:2; short e;");
+        assertField(analyzer, "b", 8L, 8L);
+        assertField(analyzer, "c", 32L, 32L);
+        assertField(analyzer, "d", 64L, 8L);
+        assertField(analyzer, "e", 80L, 16L);
+        assertEquals(12L, analyzer.getByteSize());
+    }
+
+    @Test
+    public void testStructures() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("int a; s [3] { short x; in { byte [2] y; } } t [2*2] { byte z; } int b;");
+        assertField(analyzer, "s", 32L, 3L * 32L);
+        assertEquals(32L, analyzer.findFieldForPath("s").getElementBitSize());
+        assertField(analyzer, "s.x", 32L, 16L);
+        assertField(analyzer, "s.in", 48L, 16L);
+        assertField(analyzer, "s.in.y", 48L, 16L);
+        assertField(analyzer, "t", 128L, 32L);
+        assertField(analyzer, "b", 160L, 32L);
+        assertEquals(24L, analyzer.getByteSize());
+    }
+
+    @Test
+    public void testConstantExpressions() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("byte [2*3] a; skip:(1+1); bit:(1+2) b; align; short [4/2] c;");
+        assertTrue(analyzer.isFixedSize());
+        assertField(analyzer, "a", 0L, 48L);
+        assertField(analyzer, "b", 64L, 3L);
+        assertField(analyzer, "c", 72L, 32L);
+        assertEquals(13L, analyzer.getByteSize());
+    }
+
+    @Test
+    public void testVariableFromHere() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("ubyte len; int a; byte [len] data; s { int x; long y; } int [_] rest;");
+        assertFalse(analyzer.isFixedSize());
+        assertEquals(UNKNOWN, analyzer.getBitSize());
+        assertEquals(40L, analyzer.getFixedPrefixBitSize());
+        assertField(analyzer, "a", 8L, 32L);
+        assertField(analyzer, "data", 40L, UNKNOWN);
+        assertField(analyzer, "s", UNKNOWN, 96L);
+        assertField(analyzer, "s.y", UNKNOWN, 64L);
+        assertField(analyzer, "rest", UNKNOWN, UNKNOWN);
+        assertEquals(32L, analyzer.findFieldForPath("rest").getElementBitSize());
+    }
+
+    @Test
+    public void testAlignInsideStructureArray() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("byte a; s [2] { byte b; align:4; int c; } byte d; one [1] { byte e; align:2; } byte f;");
+        assertField(analyzer, "s.b", 8L, 8L);
+        assertField(analyzer, "s.c", 32L, 32L);
+        assertField(analyzer, "s", 8L, UNKNOWN);
+        assertField(analyzer, "d", UNKNOWN, 8L);
+
+        final CompiledBlockLayoutAnalyzer single = analyze("byte a; one [1] { byte e; align:4; } byte f;");
+        assertField(single, "one", 8L, 24L);
+        assertField(single, "f", 32L, 8L);
+    }
+
+    @Test
+    public void testVarAndWholeStreamStructure() throws Exception {
+        final CompiledBlockLayoutAnalyzer analyzer = analyze("var v; byte b; s [_] { int a; }");
+        assertField(analyzer, "v", 0L, UNKNOWN);
+        assertField(analyzer, "b", UNKNOWN, 8L);
+        assertField(analyzer, "s", UNKNOWN, UNKNOWN);
+        assertEquals(32L, analyzer.findFieldForPath("s").getElementBitSize());
+        assertEquals(0L, analyzer.getFixedPrefixBitSize());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testConstructor_ErrorForNull() {
+        new CompiledBlockLayoutAnalyzer(null);
+    }
+
+    @Test
+    public void testOffsetsAgreeWithParser() throws Exception {
+        final String script = "bit:3 a; align; byte b; align:4; int c; reset$$; byte d; align:2; short e; s [2] { byte [3] f; } long g;";
+        final CompiledBlockLayoutAnalyzer analyzer = analyze(script);
+        final byte[] data = new byte[(int) analyzer.getByteSize()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final JBBPFieldStruct parsed = JBBPParser.prepare(script).parse(data);
+        assertEquals(data[(int) analyzer.findFieldForPath("d").getByteOffset()], parsed.findFieldForNameAndType("d", JBBPFieldByte.class).getAsInt());
+        assertEquals(((data[(int) analyzer.findFieldForPath("e").getByteOffset()] & 0xFF) << 8) | (data[(int) analyzer.findFieldForPath("e").getByteOffset() + 1] & 0xFF), parsed.findFieldForNameAndType("e", JBBPFieldShort.class).getAsInt());
+        assertEquals(data[data.length - 1], (byte) parsed.findFieldForNameAndType("g", JBBPFieldLong.class).getAsLong());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.compiler.varlen;
+
+import com.igormaznitsa.jbbp.JBBPExternalValueProvider;
+import com.igormaznitsa.jbbp.JBBPNamedNumericFieldMap;
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.JBBPCompiledBlock;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.compiler.conversion.ExpressionEvaluatorVisitor;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JBBPEvaluatorFactoryTest {
+
+    private static final byte[] COMPILED = new byte[]{0};
+
+    private static List<JBBPNamedFieldInfo> makeFieldList() {
+        final List<JBBPNamedFieldInfo> list = new ArrayList<JBBPNamedFieldInfo>();
+        list.add(new JBBPNamedFieldInfo("a", "a", 0));
+        return list;
+    }
+
+    private static JBBPIntegerValueEvaluator make(final String expression) {
+        return JBBPEvaluatorFactory.getInstance().make(expression, makeFieldList(), COMPILED);
+    }
+
+    private static void assertSameValues(final String expression, final Class<? extends JBBPIntegerValueEvaluator> expectedClass) {
+        final List<JBBPNamedFieldInfo> list = makeFieldList();
+        final JBBPCompiledBlock block = JBBPCompiledBlock.prepare().setCompiledData(COMPILED).setSource("none").setNamedFieldData(list).build();
+
+        final JBBPIntegerValueEvaluator specialized = JBBPEvaluatorFactory.getInstance().make(expression, list, COMPILED);
+        assertEquals(expression, expectedClass, specialized.getClass());
+        final JBBPExpressionEvaluator universal = new JBBPExpressionEvaluator(expression, list, COMPILED);
+
+        for (int value = -20; value <= 20; value++) {
+            final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap(new JBBPExternalValueProvider() {
+                @Override
+                public int provideArraySize(final String fieldName, final JBBPNamedNumericFieldMap numericFieldMap, final JBBPCompiledBlock compiledBlock) {
+                    assertEquals("ext", fieldName);
+                    return 33;
+                }
+            });
+            map.putField(new JBBPFieldInt(list.get(0), value));
+            assertEquals(expression + " for " + value, universal.eval(null, 0, block, map), specialized.eval(null, 0, block, map));
+        }
+    }
+
+    @Test
+    public void testMake_Specialized() {
+        assertSameValues("a", JBBPOnlyFieldEvaluator.class);
+        assertSameValues("$ext", JBBPOnlyFieldEvaluator.class);
+        assertSameValues("(a)", JBBPOnlyFieldEvaluator.class);
+        assertSameValues("12", JBBPConstantEvaluator.class);
+        assertSameValues("(5*4)+(3<<2)-~7", JBBPConstantEvaluator.class);
+        assertSameValues("-(1+2)", JBBPConstantEvaluator.class);
+        assertSameValues("(5*4)+a", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a+1", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a-(2*3)", JBBPFieldConstantEvaluator.class);
+        assertSameValues("10-a", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a*4", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a<<2", JBBPFieldConstantEvaluator.class);
+        assertSameValues("1<<(a&7)", JBBPExpressionEvaluator.class);
+        assertSameValues("a>>1", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a>>>1", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a&15", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a|1", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a^3", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a%7", JBBPFieldConstantEvaluator.class);
+        assertSameValues("100/(a*a+1)", JBBPExpressionEvaluator.class);
+        assertSameValues("$ext*2", JBBPFieldConstantEvaluator.class);
+        assertSameValues("a*2+$ext", JBBPExpressionEvaluator.class);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testMake_DivisionByZeroIsNotFolded() {
+        final JBBPIntegerValueEvaluator evaluator = make("10/0");
+        assertTrue(evaluator instanceof JBBPExpressionEvaluator);
+        evaluator.eval(null, 0, null, null);
+    }
+
+    @Test
+    public void testVisitItems_FieldConstant() {
+        final List<JBBPNamedFieldInfo> list = makeFieldList();
+        final JBBPCompiledBlock block = JBBPCompiledBlock.prepare().setCompiledData(COMPILED).setSource("none").setNamedFieldData(list).build();
+        final StringBuilder buffer = new StringBuilder();
+        make("3-a").visitItems(block, 0, new ExpressionEvaluatorVisitor() {
+            @Override
+            public ExpressionEvaluatorVisitor visitStart() {
+                buffer.append('[');
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitSpecial(final Special specialField) {
+                buffer.append(specialField).append(' ');
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitField(final JBBPNamedFieldInfo nullableNameFieldInfo, final String nullableExternalFieldName) {
+                buffer.append(nullableNameFieldInfo == null ? nullableExternalFieldName : nullableNameFieldInfo.getFieldName()).append(' ');
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitOperator(final Operator operator) {
+                buffer.append(operator.getText()).append(' ');
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitConstant(final int value) {
+                buffer.append(value).append(' ');
+                return this;
+            }
+
+            @Override
+            public ExpressionEvaluatorVisitor visitEnd() {
+                buffer.append(']');
+                return this;
+            }
+        });
+        assertEquals("[3 a - ]", buffer.toString());
+    }
+
+    @Test
+    public void testParse_SpecializedArraySizes() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte a; byte [a*2] b; byte [(2*2)-3] c; byte [a-1] d;");
+        assertTrue(parser.getCompiledBlock().getArraySizeEvaluators()[0] instanceof JBBPFieldConstantEvaluator);
+        assertTrue(parser.getCompiledBlock().getArraySizeEvaluators()[1] instanceof JBBPConstantEvaluator);
+        final byte[] data = new byte[]{2, 1, 2, 3, 4, 5, 6};
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, parser.parse(data).findFieldForNameAndType("b", JBBPFieldArrayByte.class).getArray());
+        assertArrayEquals(new byte[]{5}, parser.parse(data).findFieldForNameAndType("c", JBBPFieldArrayByte.class).getArray());
+        assertArrayEquals(new byte[]{6}, parser.parse(data).findFieldForNameAndType("d", JBBPFieldArrayByte.class).getArray());
+    }
+}
@@ -28,6 +28,9 @@ import com.igormaznitsa.jbbp.utils.JBBPUtils;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -526,4 +529,53 @@ public class JBBPExpressionEvaluatorTest {
         assertEquals(123 * (value - 45 / 3) * 3, expr.eval(inStream, 0, compiledBlock, map));
     }
 
+    @Test
+    public void testExpression_RepeatedEvaluationWithReusedStack() {
+        final List<JBBPNamedFieldInfo> list = new ArrayList<JBBPNamedFieldInfo>();
+        final JBBPNamedFieldInfo field = new JBBPNamedFieldInfo("a", "a", 0);
+        list.add(field);
+
+        final byte[] compiled = new byte[]{0};
+        final JBBPCompiledBlock compiledBlock = JBBPCompiledBlock.prepare().setCompiledData(compiled).setSource("none").setNamedFieldData(list).build();
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap();
+
+        final JBBPExpressionEvaluator expr = new JBBPExpressionEvaluator("(a+1)*(a-1)+(a<<2)", list, compiled);
+        for (int i = 0; i < 100; i++) {
+            map.putField(new JBBPFieldInt(field, i));
+            assertEquals((i + 1) * (i - 1) + (i << 2), expr.eval(null, 0, compiledBlock, map));
+        }
+
+        final JBBPEvaluationContext context = map;
+        final int[] stack = context.takeEvaluationStack(expr.getMaxStackDepth());
+        assertTrue(stack.length >= expr.getMaxStackDepth());
+        assertNotSame("Nested evaluation gets own buffer", stack, context.takeEvaluationStack(1));
+        context.releaseEvaluationStack(stack);
+        assertSame(stack, context.takeEvaluationStack(1));
+        context.releaseEvaluationStack(stack);
+        final JBBPEvaluationContext otherContext = new JBBPNamedNumericFieldMap();
+        assertNotSame("Other map has own buffer", stack, otherContext.takeEvaluationStack(1));
+    }
+
+    @Test
+    public void testExpression_WorksAfterDeserialization() throws Exception {
+        final List<JBBPNamedFieldInfo> list = new ArrayList<JBBPNamedFieldInfo>();
+        final JBBPNamedFieldInfo field = new JBBPNamedFieldInfo("a", "a", 0);
+        list.add(field);
+
+        final byte[] compiled = new byte[]{0};
+        final JBBPCompiledBlock compiledBlock = JBBPCompiledBlock.prepare().setCompiledData(compiled).setSource("none").setNamedFieldData(list).build();
+        final JBBPNamedNumericFieldMap map = new JBBPNamedNumericFieldMap();
+        map.putField(new JBBPFieldInt(field, 7));
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(new JBBPExpressionEvaluator("a*3-$$", list, compiled));
+        out.close();
+
+        final JBBPExpressionEvaluator restored = (JBBPExpressionEvaluator) new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray())).readObject();
+        final JBBPBitInputStream in = new JBBPBitInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        in.read();
+        in.read();
+        assertEquals(19, restored.eval(in, 0, compiledBlock, map));
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPByteBufferBitInputStreamTest {
+
+    private static ByteBuffer makeDirect(final byte[] data) {
+        final ByteBuffer result = ByteBuffer.allocateDirect(data.length);
+        result.put(data);
+        result.flip();
+        return result;
+    }
+
+    @Test
+    public void testReadFromPositionTillLimit_BufferPositionNotChanged() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6});
+        buffer.position(1);
+        buffer.limit(4);
+
+        final JBBPByteBufferBitInputStream in = new JBBPByteBufferBitInputStream(buffer);
+        assertEquals(3, in.available());
+        assertEquals(2, in.read());
+        assertEquals(3, in.read());
+        assertEquals(4, in.read());
+        assertEquals(-1, in.read());
+        assertEquals(3L, in.getCounter());
+        assertEquals(4, in.getBufferPosition());
+
+        assertEquals(1, buffer.position());
+        assertEquals(4, buffer.limit());
+    }
+
+    @Test
+    public void testReadBits_SameAsStream_LSB0_MSB0() throws Exception {
+        final byte[] data = new byte[1024];
+        new Random(1234L).nextBytes(data);
+
+        for (final JBBPBitOrder order : JBBPBitOrder.values()) {
+            final JBBPBitInputStream etalon = new JBBPBitInputStream(new ByteArrayInputStream(data), order);
+            final JBBPBitInputStream heap = new JBBPByteBufferBitInputStream(ByteBuffer.wrap(data), order);
+            final JBBPBitInputStream direct = new JBBPByteBufferBitInputStream(makeDirect(data), order);
+
+            final Random rnd = new Random(5678L);
+            while (etalon.hasAvailableData()) {
+                final JBBPBitNumber bits = JBBPBitNumber.decode(rnd.nextInt(8) + 1);
+                final int expected = etalon.readBits(bits);
+                assertEquals(expected, heap.readBits(bits));
+                assertEquals(expected, direct.readBits(bits));
+                assertEquals(etalon.getCounter(), heap.getCounter());
+                assertEquals(etalon.getCounter(), direct.getCounter());
+            }
+            assertFalse(heap.hasAvailableData());
+            assertFalse(direct.hasAvailableData());
+        }
+    }
+
+    @Test
+    public void testReadArrays_HeapAndDirect() throws Exception {
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+        for (final ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(data), makeDirect(data)}) {
+            final JBBPByteBufferBitInputStream in = new JBBPByteBufferBitInputStream(buffer);
+            assertEquals(0x0102, in.readUnsignedShort(JBBPByteOrder.BIG_ENDIAN));
+            assertArrayEquals(new byte[]{3, 4, 5}, in.readByteArray(3));
+            assertArrayEquals(new int[]{0x09080706}, in.readIntArray(1, JBBPByteOrder.LITTLE_ENDIAN));
+            assertArrayEquals(new byte[]{10, 11, 12, 13, 14, 15, 16}, in.readByteArray(-1));
+            assertEquals(16L, in.getCounter());
+        }
+    }
+
+    @Test
+    public void testSkipAlignAndResetCounter() throws Exception {
+        final JBBPByteBufferBitInputStream in = new JBBPByteBufferBitInputStream(ByteBuffer.wrap(new byte[]{(byte) 0xFF, 2, 3, 4, 5, 6, 7, 8}));
+        assertEquals(0xF, in.readBits(JBBPBitNumber.BITS_4));
+        in.align(2);
+        assertEquals(2L, in.getCounter());
+        assertEquals(3, in.read());
+        assertEquals(2L, in.skip(2));
+        assertEquals(6, in.read());
+        in.resetCounter();
+        assertEquals(0L, in.getCounter());
+        assertEquals(2L, in.skip(10));
+        assertEquals(2L, in.getCounter());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testMarkReset() throws Exception {
+        final JBBPByteBufferBitInputStream in = new JBBPByteBufferBitInputStream(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        assertTrue(in.markSupported());
+        assertEquals(1, in.read());
+        in.mark(100);
+        assertEquals(2, in.read());
+        assertEquals(3, in.read());
+        in.reset();
+        assertEquals(1L, in.getCounter());
+        assertEquals(2, in.read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadInt_EOF() throws Exception {
+        new JBBPByteBufferBitInputStream(ByteBuffer.wrap(new byte[]{1, 2, 3})).readInt(JBBPByteOrder.BIG_ENDIAN);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testConstructor_NPEForNull() {
+        new JBBPByteBufferBitInputStream(null);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.io;
+
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPMappedFileBitInputStreamTest {
+
+    private File file;
+    private byte[] data;
+    private RandomAccessFile randomAccessFile;
+
+    @Before
+    public void before() throws Exception {
+        this.data = new byte[1000];
+        new Random(9876L).nextBytes(this.data);
+        this.file = File.createTempFile("jbbp", ".bin");
+        final FileOutputStream out = new FileOutputStream(this.file);
+        try {
+            out.write(this.data);
+        } finally {
+            out.close();
+        }
+        this.randomAccessFile = new RandomAccessFile(this.file, "r");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.randomAccessFile.close();
+        this.file.delete();
+    }
+
+    @Test
+    public void testReadBits_SameAsStream_SmallWindows() throws Exception {
+        for (final JBBPBitOrder order : JBBPBitOrder.values()) {
+            final JBBPBitInputStream etalon = new JBBPBitInputStream(new ByteArrayInputStream(this.data), order);
+            final JBBPBitInputStream mapped = new JBBPMappedFileBitInputStream(this.randomAccessFile.getChannel(), 0L, order, 7);
+
+            final Random rnd = new Random(1234L);
+            while (etalon.hasAvailableData()) {
+                final JBBPBitNumber bits = JBBPBitNumber.decode(rnd.nextInt(8) + 1);
+                assertEquals(etalon.readBits(bits), mapped.readBits(bits));
+                assertEquals(etalon.getCounter(), mapped.getCounter());
+            }
+            assertFalse(mapped.hasAvailableData());
+        }
+    }
+
+    @Test
+    public void testReadArraysAcrossWindows() throws Exception {
+        final JBBPMappedFileBitInputStream in = new JBBPMappedFileBitInputStream(this.randomAccessFile.getChannel(), 10L, JBBPBitOrder.LSB0, 16);
+        final byte[] read = in.readByteArray(100);
+        for (int i = 0; i < read.length; i++) {
+            assertEquals(this.data[i + 10], read[i]);
+        }
+        assertEquals(110L, in.getChannelPosition());
+        assertEquals(890, in.readByteArray(-1).length);
+        assertEquals(-1, in.read());
+        assertEquals(0L, this.randomAccessFile.getChannel().position());
+    }
+
+    @Test
+    public void testSkipMarkReset() throws Exception {
+        final JBBPMappedFileBitInputStream in = new JBBPMappedFileBitInputStream(this.randomAccessFile.getChannel(), 0L, JBBPBitOrder.LSB0, 32);
+        assertEquals(500L, in.skip(500));
+        assertEquals(500L, in.getCounter());
+        in.mark(1);
+        assertEquals(this.data[500] & 0xFF, in.read());
+        assertEquals(this.data[501] & 0xFF, in.read());
+        in.reset();
+        assertEquals(500L, in.getChannelPosition());
+        assertEquals(this.data[500] & 0xFF, in.read());
+        assertEquals(499L, in.skip(10000));
+        assertEquals(0, in.available());
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = JBBPIllegalArgumentException.class)
+    public void testConstructor_ErrorForZeroWindow() throws Exception {
+        new JBBPMappedFileBitInputStream(this.randomAccessFile.getChannel(), 0L, JBBPBitOrder.LSB0, 0);
+    }
+}
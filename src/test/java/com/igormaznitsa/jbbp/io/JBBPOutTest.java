@@ -27,6 +27,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.igormaznitsa.jbbp.io.JBBPOut.BeginBin;
 import static org.junit.Assert.*;
@@ -1234,5 +1236,57 @@ public class JBBPOutTest {
         }
     }
 
+    @Test
+    public void testBin_ConcurrentWriting() throws Exception {
+        class Part {
+            @Bin(outOrder = 1)
+            short a;
+            @Bin(outOrder = 2, type = BinType.BIT, outBitNumber = JBBPBitNumber.BITS_4, bitOrder = JBBPBitOrder.MSB0)
+            byte b;
+        }
+        @Bin
+        class Record {
+            @Bin(outOrder = 2)
+            int value;
+            @Bin(outOrder = 1)
+            Part part;
+            @Bin(outOrder = 3)
+            Part[] parts;
+        }
 
+        final Record record = new Record();
+        record.value = 0x01020304;
+        record.part = new Part();
+        record.part.a = 0x0506;
+        record.part.b = 1;
+        record.parts = new Part[]{record.part, record.part};
+
+        final byte[] expected = new byte[]{5, 6, 24, 32, 48, 64, 80, 96, -128, 5, 6, 8};
+        JBBPOut.BeginBin().resetInsideClassCache();
+        assertArrayEquals(expected, JBBPOut.BeginBin().Bin(record).End().toByteArray());
+
+        final Thread[] threads = new Thread[8];
+        final AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            if (!Arrays.equals(expected, JBBPOut.BeginBin().Bin(record).End().toByteArray())) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, errors.get());
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JBBPConcurrentObjectPoolTest {
+
+    @Test
+    public void testTakeAndRelease() {
+        final JBBPConcurrentObjectPool pool = new JBBPConcurrentObjectPool();
+        assertNull(pool.take(StringBuilder.class));
+
+        final StringBuilder first = new StringBuilder();
+        final StringBuilder second = new StringBuilder();
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, pool.size(StringBuilder.class));
+        assertEquals(0, pool.size(Object.class));
+        assertNull(pool.take(Object.class));
+
+        assertSame(first, pool.take(StringBuilder.class));
+        assertSame(second, pool.take(StringBuilder.class));
+        assertNull(pool.take(StringBuilder.class));
+        assertEquals(0, pool.size(StringBuilder.class));
+    }
+
+    @Test
+    public void testMaxInstancesPerClass() {
+        final JBBPConcurrentObjectPool pool = new JBBPConcurrentObjectPool(2);
+        for (int i = 0; i < 5; i++) {
+            pool.release(new StringBuilder());
+        }
+        assertEquals(2, pool.size(StringBuilder.class));
+        pool.clear();
+        assertEquals(0, pool.size(StringBuilder.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorForNegativeMaxInstances() {
+        new JBBPConcurrentObjectPool(-1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testErrorForNullRelease() {
+        new JBBPConcurrentObjectPool().release(null);
+    }
+}
@@ -37,6 +37,7 @@ import java.security.PrivilegedAction;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -857,4 +858,193 @@ public class JBBPMapperTest {
         static int ignored = 111;
         int a;
     }
+
+    public static class PlanParent {
+        @Bin(outOrder = 1)
+        int a;
+    }
+
+    public static class PlanChild extends PlanParent {
+        @Bin(outOrder = 2)
+        byte b;
+        @Bin(path = "s.c")
+        short c;
+        transient int skipped;
+    }
+
+    @Test
+    public void testMap_PlanIsReusedForManyInstances() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int a; byte b; s { short c; }");
+        for (int i = 0; i < 100; i++) {
+            final PlanChild mapped = parser.parse(new byte[]{0, 0, 0, (byte) i, (byte) (i + 1), 0, (byte) (i + 2)}).mapTo(PlanChild.class);
+            assertEquals(i, mapped.a);
+            assertEquals(i + 1, mapped.b);
+            assertEquals(i + 2, mapped.c);
+            assertEquals(0, mapped.skipped);
+        }
+    }
+
+    @Test
+    public void testMap_ConcurrentMapping() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int a; byte b; s { short c; }");
+        final Thread[] threads = new Thread[8];
+        final AtomicInteger errors = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            final int base = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            final PlanChild mapped = parser.parse(new byte[]{0, 0, 0, (byte) base, 1, 0, 2}).mapTo(PlanChild.class);
+                            if (mapped.a != base || mapped.b != 1 || mapped.c != 2) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (final Thread t : threads) {
+            t.start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    public static class ReusedArrays {
+        @Bin
+        int[] ints;
+        @Bin(type = BinType.UBYTE_ARRAY)
+        byte[] bytes;
+        @Bin
+        char[] chars;
+        @Bin
+        ReusedNested nested;
+    }
+
+    public static class ReusedNested {
+        @Bin
+        short[] shorts;
+    }
+
+    @Test
+    public void testMap_ReuseArrays() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int [2] ints; ubyte [2] bytes; ushort [1] chars; nested { short [2] shorts; }");
+        final ReusedArrays instance = new ReusedArrays();
+        final int[] ints = new int[2];
+        final byte[] bytes = new byte[3];
+        final char[] chars = new char[1];
+        final short[] shorts = new short[2];
+        instance.ints = ints;
+        instance.bytes = bytes;
+        instance.chars = chars;
+        instance.nested = new ReusedNested();
+        instance.nested.shorts = shorts;
+
+        final JBBPFieldStruct parsed = parser.parse(new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 3, 4, 0, 65, 0, 5, 0, 6});
+        JBBPMapper.map(parsed, instance, null, JBBPMapper.FLAG_REUSE_ARRAYS);
+
+        assertSame(ints, instance.ints);
+        assertArrayEquals(new int[]{1, 2}, ints);
+        assertNotSame("Different length", bytes, instance.bytes);
+        assertArrayEquals(new byte[]{3, 4}, instance.bytes);
+        assertSame(chars, instance.chars);
+        assertArrayEquals(new char[]{'A'}, chars);
+        assertSame(shorts, instance.nested.shorts);
+        assertArrayEquals(new short[]{5, 6}, shorts);
+
+        JBBPMapper.map(parsed, instance, null, 0);
+        assertNotSame("Without flag arrays are replaced", ints, instance.ints);
+        assertArrayEquals(new int[]{1, 2}, instance.ints);
+    }
+
+    @Test
+    public void testMap_ObjectPool() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int [2] ints; ubyte [2] bytes; ushort [1] chars; nested { short [2] shorts; }");
+        final JBBPFieldStruct parsed = parser.parse(new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 3, 4, 0, 65, 0, 5, 0, 6});
+        final JBBPConcurrentObjectPool pool = new JBBPConcurrentObjectPool();
+
+        final ReusedArrays first = JBBPMapper.map(parsed, ReusedArrays.class, null, JBBPMapper.FLAG_REUSE_ARRAYS, pool);
+        final ReusedNested firstNested = first.nested;
+        pool.release(first);
+
+        final ReusedArrays second = JBBPMapper.map(parsed, ReusedArrays.class, null, JBBPMapper.FLAG_REUSE_ARRAYS, pool);
+        assertSame(first, second);
+        assertSame(firstNested, second.nested);
+        assertArrayEquals(new short[]{5, 6}, second.nested.shorts);
+        assertEquals(0, pool.size(ReusedArrays.class));
+        assertEquals(0, pool.size(ReusedNested.class));
+
+        final ReusedArrays third = JBBPMapper.map(parsed, ReusedArrays.class, null, 0, pool);
+        assertNotSame(second, third);
+        assertArrayEquals(new int[]{1, 2}, third.ints);
+    }
+
+    public static class PooledRecords {
+        @Bin(type = BinType.UBYTE)
+        int len;
+        @Bin
+        PooledRecord[] records;
+        @Bin
+        int extra;
+    }
+
+    public static class PooledRecord {
+        @Bin
+        byte a;
+    }
+
+    @Test
+    public void testMap_ObjectPool_DifferentStructArrayLength() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte len; records [len] { byte a; } int extra;");
+        final JBBPConcurrentObjectPool pool = new JBBPConcurrentObjectPool();
+
+        final PooledRecords first = JBBPMapper.map(parser.parse(new byte[]{2, 1, 2, 0, 0, 0, 7}), PooledRecords.class, null, 0, pool);
+        assertEquals(2, first.records.length);
+        assertEquals(7, first.extra);
+        final PooledRecord firstRecord = first.records[0];
+        pool.release(first);
+
+        final PooledRecords second = JBBPMapper.map(parser.parse(new byte[]{3, 4, 5, 6, 0, 0, 0, 8}), PooledRecords.class, null, 0, pool);
+        assertSame(first, second);
+        assertEquals(3, second.records.length);
+        assertSame(firstRecord, second.records[0]);
+        assertEquals(4, second.records[0].a);
+        assertEquals(5, second.records[1].a);
+        assertEquals(6, second.records[2].a);
+        assertEquals(8, second.extra);
+        pool.release(second);
+
+        final PooledRecords third = JBBPMapper.map(JBBPParser.prepare("ubyte len; records [len] { byte a; }").parse(new byte[]{1, 9}), PooledRecords.class, null, JBBPMapper.FLAG_IGNORE_MISSING_VALUES, pool);
+        assertSame(first, third);
+        assertEquals(1, third.records.length);
+        assertEquals(9, third.records[0].a);
+        assertEquals("Missing value must be reset in pooled instance", 0, third.extra);
+    }
+
+    @Test(expected = JBBPMapperException.class)
+    public void testMap_ErrorForDifferentStructArrayLengthInNotPooledInstance() throws Exception {
+        final PooledRecords instance = new PooledRecords();
+        instance.records = new PooledRecord[]{new PooledRecord()};
+        JBBPMapper.map(JBBPParser.prepare("ubyte len; records [len] { byte a; } int extra;").parse(new byte[]{2, 1, 2, 0, 0, 0, 7}), instance, null, 0, new JBBPConcurrentObjectPool());
+    }
+
+    @Test
+    public void testResetInsideClassCache() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int [2] ints; ubyte [2] bytes; ushort [1] chars; nested { short [2] shorts; }");
+        final byte[] data = new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 3, 4, 0, 5, 0, 6, 0, 7};
+
+        JBBPMapper.map(parser.parse(data), ReusedArrays.class);
+        final Object plan = JBBPMapper.getMappingPlan(ReusedArrays.class);
+        assertSame(plan, JBBPMapper.getMappingPlan(ReusedArrays.class));
+
+        JBBPMapper.resetInsideClassCache();
+        assertNotSame(plan, JBBPMapper.getMappingPlan(ReusedArrays.class));
+        assertArrayEquals(new int[]{1, 2}, JBBPMapper.map(parser.parse(data), ReusedArrays.class).ints);
+    }
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper;
+
+import com.igormaznitsa.jbbp.JBBPNamedNumericFieldMap;
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.JBBPVarFieldProcessor;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.exceptions.JBBPIllegalArgumentException;
+import com.igormaznitsa.jbbp.exceptions.JBBPMapperException;
+import com.igormaznitsa.jbbp.io.JBBPBitInputStream;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import com.igormaznitsa.jbbp.model.JBBPAbstractArrayField;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPMappingBindingTest {
+
+    private static final String SCRIPT = "bit:3 bits; bool flag; byte b; ubyte ub; short s; ushort us; int i; long l; <int li; int fl; long dl; ubyte len; ubyte [len % 8] data; byte [2] bytes; bool [3] bools; bit:4 [2] nibbles; <short [2] shorts; ushort [2] chars; int [2] ints; long [1] longs; ubyte [3] text; header { ubyte id; inner { short v; } } items [2] { byte x; int [2] y; } ubyte [_] rest;";
+
+    private static byte[] makeData(final int seed) {
+        final byte[] result = new byte[200];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    private static void assertRecords(final Record expected, final Record actual) {
+        assertEquals(expected.bits, actual.bits);
+        assertEquals(expected.flag, actual.flag);
+        assertEquals(expected.b, actual.b);
+        assertEquals(expected.ub, actual.ub);
+        assertEquals(expected.s, actual.s);
+        assertEquals(expected.us, actual.us);
+        assertEquals(expected.i, actual.i);
+        assertEquals(expected.l, actual.l);
+        assertEquals(expected.li, actual.li);
+        assertEquals(expected.fl, actual.fl, 0.0f);
+        assertEquals(expected.dl, actual.dl, 0.0d);
+        assertArrayEquals(expected.data, actual.data);
+        assertArrayEquals(expected.bytes, actual.bytes);
+        assertTrue(java.util.Arrays.equals(expected.bools, actual.bools));
+        assertArrayEquals(expected.nibbles, actual.nibbles);
+        assertArrayEquals(expected.shorts, actual.shorts);
+        assertArrayEquals(expected.chars, actual.chars);
+        assertArrayEquals(expected.ints, actual.ints);
+        assertArrayEquals(expected.longs, actual.longs);
+        assertEquals(expected.text, actual.text);
+        assertEquals(expected.header.id, actual.header.id);
+        assertEquals(expected.header.inner.v, actual.header.inner.v);
+        assertEquals(expected.innerValue, actual.innerValue);
+        assertEquals(expected.items.length, actual.items.length);
+        for (int i = 0; i < expected.items.length; i++) {
+            assertEquals(expected.items[i].x, actual.items[i].x);
+            assertArrayEquals(expected.items[i].y, actual.items[i].y);
+        }
+        assertArrayEquals(expected.rest, actual.rest);
+    }
+
+    @Test
+    public void testParseToObject_SameAsMapper() throws Exception {
+        for (final JBBPBitOrder order : JBBPBitOrder.values()) {
+            final JBBPParser parser = JBBPParser.prepare(SCRIPT, order);
+            for (int i = 0; i < 10; i++) {
+                final byte[] data = makeData(i);
+                assertRecords(parser.parse(data).mapTo(Record.class), parser.parseToObject(data, Record.class));
+                assertRecords(parser.parse(data).mapTo(Record.class), parser.parseToObject(new ByteArrayInputStream(data), Record.class));
+            }
+        }
+    }
+
+    @Test
+    public void testParseToObject_InvertedBitOrder() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("bit:3 a; byte b; short c; ubyte [2] d; bit:5 [2] e;");
+        final byte[] data = new byte[]{(byte) 0xA5, 0x12, 0x34, 0x56, 0x78, (byte) 0x9A, (byte) 0xBC};
+        final Inverted expected = parser.parse(data).mapTo(Inverted.class);
+        final Inverted actual = parser.parseToObject(data, Inverted.class);
+        assertEquals(expected.a, actual.a);
+        assertEquals(expected.b, actual.b);
+        assertEquals(expected.c, actual.c);
+        assertArrayEquals(expected.d, actual.d);
+        assertArrayEquals(expected.e, actual.e);
+    }
+
+    @Test
+    public void testParseToObject_ReuseInstance() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("int a; s { byte b; } arr [2] { byte c; }");
+        final Reused instance = new Reused();
+        final Reused.S s = new Reused.S();
+        final Reused.Arr[] arr = new Reused.Arr[]{new Reused.Arr(), null};
+        final Reused.Arr first = arr[0];
+        instance.s = s;
+        instance.arr = arr;
+
+        assertSame(instance, parser.parseToObject(new ByteArrayInputStream(new byte[]{0, 0, 0, 1, 2, 3, 4}), Reused.class, instance, null, null));
+        assertEquals(1, instance.a);
+        assertSame(s, instance.s);
+        assertEquals(2, s.b);
+        assertSame(arr, instance.arr);
+        assertSame(first, instance.arr[0]);
+        assertEquals(3, instance.arr[0].c);
+        assertEquals(4, instance.arr[1].c);
+    }
+
+    @Test
+    public void testParseToObject_ReuseArrays() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("ubyte [2] a; ushort [2] c; int [2] i; byte [_] rest;");
+        final JBBPMappingBinding binding = JBBPMappingBinding.make(parser.getCompiledBlock(), ReusedArrays.class, JBBPMapper.FLAG_REUSE_ARRAYS);
+        final ReusedArrays instance = new ReusedArrays();
+        final byte[] a = new byte[2];
+        final char[] c = new char[2];
+        final int[] i = new int[3];
+        final byte[] rest = new byte[2];
+        instance.a = a;
+        instance.c = c;
+        instance.i = i;
+        instance.rest = rest;
+
+        final byte[] data = new byte[]{1, 2, 0, 3, 0, 4, 0, 0, 0, 5, 0, 0, 0, 6, 7, 8};
+        parser.parse(data, binding.makeListener(instance));
+        assertSame(a, instance.a);
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x40}, a);
+        assertSame(c, instance.c);
+        assertArrayEquals(new char[]{(char) 0xC000, (char) 0x2000}, c);
+        assertNotSame(i, instance.i);
+        assertArrayEquals(new int[]{5, 6}, instance.i);
+        assertNotSame(rest, instance.rest);
+        assertArrayEquals(new byte[]{7, 8}, instance.rest);
+
+        final ReusedArrays expected = parser.parse(data).mapTo(ReusedArrays.class);
+        assertArrayEquals(expected.a, instance.a);
+        assertArrayEquals(expected.c, instance.c);
+    }
+
+    @Test
+    public void testMakeListener_PooledInstanceWithDifferentStructArrayLength() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("holder { ubyte len; items [len] { byte c; } }");
+        final JBBPMappingBinding binding = JBBPMappingBinding.make(parser.getCompiledBlock(), PooledRoot.class, JBBPMapper.FLAG_IGNORE_MISSING_VALUES);
+        final JBBPConcurrentObjectPool pool = new JBBPConcurrentObjectPool();
+        final PooledRoot.Holder holder = new PooledRoot.Holder();
+        final PooledRoot.Item item = new PooledRoot.Item();
+        holder.items = new PooledRoot.Item[]{item};
+        holder.extra = 42;
+        pool.release(holder);
+
+        final PooledRoot root = new PooledRoot();
+        parser.parse(new byte[]{2, 3, 4}, binding.makeListener(root, pool));
+        assertSame(holder, root.holder);
+        assertEquals(2, holder.items.length);
+        assertSame(item, holder.items[0]);
+        assertEquals(3, holder.items[0].c);
+        assertEquals(4, holder.items[1].c);
+        assertEquals("Missing value must be reset in pooled instance", 0, holder.extra);
+    }
+
+    @Test
+    public void testParseToObject_WholeStreamStructArray() throws Exception {
+        final StreamRecords records = JBBPParser.prepare("byte count; records [_] { byte a; }").parseToObject(new byte[]{1, 2, 3, 4}, StreamRecords.class);
+        assertEquals(1, records.count);
+        assertEquals(3, records.records.length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 2, records.records[i].a);
+        }
+    }
+
+    @Test
+    public void testParseToObject_VarField() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("byte a; var:2 v;");
+        final WithVar result = parser.parseToObject(new ByteArrayInputStream(new byte[]{1, 0, 0, 0, 7}), WithVar.class, null, new JBBPVarFieldProcessor() {
+            @Override
+            public JBBPAbstractArrayField<? extends JBBPAbstractField> readVarArray(final JBBPBitInputStream inStream, final int arraySize, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                fail("Must not be called");
+                return null;
+            }
+
+            @Override
+            public JBBPAbstractField readVarField(final JBBPBitInputStream inStream, final JBBPNamedFieldInfo fieldName, final int extraValue, final JBBPByteOrder byteOrder, final JBBPNamedNumericFieldMap numericFieldMap) throws IOException {
+                return new JBBPFieldInt(fieldName, inStream.readInt(byteOrder) * extraValue);
+            }
+        }, null);
+        assertEquals(1, result.a);
+        assertEquals(14, result.v);
+    }
+
+    @Test
+    public void testParseToObject_DeepPath() throws Exception {
+        final DeepPath result = JBBPParser.prepare("a { b { int c; } }").parseToObject(new byte[]{1, 2, 3, 4}, DeepPath.class);
+        assertEquals(0x01020304, result.value);
+    }
+
+    @Test
+    public void testMake_ErrorForMissingField() throws Exception {
+        try {
+            JBBPMappingBinding.make(JBBPParser.prepare("byte b;").getCompiledBlock(), Missing.class);
+            fail("Must throw JBBPMapperException");
+        } catch (JBBPMapperException ex) {
+            assertEquals("a", ex.getMappingClassField().getName());
+        }
+    }
+
+    @Test
+    public void testMake_IgnoreMissingField() throws Exception {
+        final JBBPParser parser = JBBPParser.prepare("byte b;");
+        final JBBPMappingBinding binding = JBBPMappingBinding.make(parser.getCompiledBlock(), Missing.class, JBBPMapper.FLAG_IGNORE_MISSING_VALUES);
+        assertSame(Missing.class, binding.getMappingClass());
+        final Missing instance = (Missing) binding.makeInstance();
+        instance.a = 42;
+        parser.parse(new byte[]{1}, binding.makeListener(instance));
+        assertEquals(42, instance.a);
+    }
+
+    @Test(expected = JBBPMapperException.class)
+    public void testMake_ErrorForDifferentBitWidth() throws Exception {
+        JBBPMappingBinding.make(JBBPParser.prepare("bit:3 a;").getCompiledBlock(), BitWidth.class);
+    }
+
+    @Test(expected = JBBPMapperException.class)
+    public void testMake_ErrorForStructToPrimitive() throws Exception {
+        JBBPMappingBinding.make(JBBPParser.prepare("a { byte b; }").getCompiledBlock(), StructToPrimitive.class);
+    }
+
+    @Test(expected = JBBPMapperException.class)
+    public void testMake_ErrorForCustomField() throws Exception {
+        JBBPMappingBinding.make(JBBPParser.prepare("byte a;").getCompiledBlock(), Custom.class);
+    }
+
+    @Test(expected = JBBPIllegalArgumentException.class)
+    public void testMakeListener_ErrorForWrongInstance() throws Exception {
+        JBBPMappingBinding.make(JBBPParser.prepare("byte a;").getCompiledBlock(), Missing.class, JBBPMapper.FLAG_IGNORE_MISSING_VALUES).makeListener("hello");
+    }
+
+    @Test(expected = JBBPMapperException.class)
+    public void testParseToObject_ErrorForDifferentArraySize() throws Exception {
+        final Reused instance = new Reused();
+        instance.arr = new Reused.Arr[3];
+        JBBPParser.prepare("int a; s { byte b; } arr [2] { byte c; }").parseToObject(new ByteArrayInputStream(new byte[7]), Reused.class, instance, null, null);
+    }
+
+    static class Record {
+        @Bin(type = BinType.BIT, outBitNumber = JBBPBitNumber.BITS_3)
+        byte bits;
+        @Bin
+        boolean flag;
+        @Bin
+        byte b;
+        @Bin(type = BinType.UBYTE)
+        int ub;
+        @Bin
+        short s;
+        @Bin(type = BinType.USHORT)
+        char us;
+        @Bin
+        int i;
+        @Bin
+        long l;
+        @Bin
+        int li;
+        @Bin
+        float fl;
+        @Bin
+        double dl;
+        @Bin(type = BinType.UBYTE_ARRAY)
+        byte[] data;
+        @Bin
+        byte[] bytes;
+        @Bin
+        boolean[] bools;
+        @Bin(type = BinType.BIT_ARRAY, outBitNumber = JBBPBitNumber.BITS_4)
+        byte[] nibbles;
+        @Bin
+        short[] shorts;
+        @Bin
+        char[] chars;
+        @Bin
+        int[] ints;
+        @Bin
+        long[] longs;
+        @Bin(type = BinType.UBYTE_ARRAY)
+        String text;
+        @Bin
+        Header header;
+        @Bin(path = "header.inner.v", type = BinType.SHORT)
+        short innerValue;
+        @Bin
+        Item[] items;
+        @Bin(type = BinType.UBYTE_ARRAY)
+        byte[] rest;
+        int notMapped;
+    }
+
+    static class Header {
+        @Bin(type = BinType.UBYTE)
+        int id;
+        @Bin
+        Inner inner;
+    }
+
+    static class Inner {
+        @Bin
+        short v;
+    }
+
+    static class Item {
+        @Bin
+        byte x;
+        @Bin
+        int[] y;
+    }
+
+    static class Inverted {
+        @Bin(type = BinType.BIT, outBitNumber = JBBPBitNumber.BITS_3, bitOrder = JBBPBitOrder.MSB0)
+        byte a;
+        @Bin(bitOrder = JBBPBitOrder.MSB0)
+        byte b;
+        @Bin(bitOrder = JBBPBitOrder.MSB0)
+        short c;
+        @Bin(type = BinType.UBYTE_ARRAY, bitOrder = JBBPBitOrder.MSB0)
+        byte[] d;
+        @Bin(type = BinType.BIT_ARRAY, outBitNumber = JBBPBitNumber.BITS_5, bitOrder = JBBPBitOrder.MSB0)
+        byte[] e;
+    }
+
+    static class Reused {
+        @Bin
+        int a;
+        @Bin
+        S s;
+        @Bin
+        Arr[] arr;
+
+        static class S {
+            @Bin
+            byte b;
+        }
+
+        static class Arr {
+            @Bin
+            byte c;
+        }
+    }
+
+    static class ReusedArrays {
+        @Bin(type = BinType.UBYTE_ARRAY, bitOrder = JBBPBitOrder.MSB0)
+        byte[] a;
+        @Bin(bitOrder = JBBPBitOrder.MSB0)
+        char[] c;
+        @Bin
+        int[] i;
+        @Bin
+        byte[] rest;
+    }
+
+    static class PooledRoot {
+        @Bin
+        Holder holder;
+
+        static class Holder {
+            @Bin(type = BinType.UBYTE)
+            int len;
+            @Bin
+            Item[] items;
+            @Bin
+            int extra;
+        }
+
+        static class Item {
+            @Bin
+            byte c;
+        }
+    }
+
+    static class StreamRecords {
+        @Bin
+        byte count;
+        @Bin
+        Rec[] records;
+
+        static class Rec {
+            @Bin
+            byte a;
+        }
+    }
+
+    static class WithVar {
+        @Bin
+        byte a;
+        @Bin(type = BinType.INT)
+        int v;
+    }
+
+    static class DeepPath {
+        @Bin(path = "a.b.c", type = BinType.INT)
+        int value;
+    }
+
+    static class Missing {
+        @Bin
+        int a;
+    }
+
+    static class BitWidth {
+        @Bin(type = BinType.BIT, outBitNumber = JBBPBitNumber.BITS_5)
+        byte a;
+    }
+
+    static class StructToPrimitive {
+        @Bin(type = BinType.STRUCT)
+        int a;
+    }
+
+    static class Custom {
+        @Bin(custom = true)
+        int a;
+    }
+}
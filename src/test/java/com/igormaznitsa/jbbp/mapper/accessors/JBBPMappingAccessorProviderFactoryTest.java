@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import com.igormaznitsa.jbbp.utils.JBBPSystemProperty;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+
+public class JBBPMappingAccessorProviderFactoryTest {
+
+    @After
+    public void afterTest() {
+        System.clearProperty(JBBPSystemProperty.PROPERTY_ACCESSOR_PROVIDER_CLASS.getPropertyName());
+    }
+
+    @Test
+    public void testMake_Default() {
+        assertEquals(JBBPSafeAccessorProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make().getClass());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testMake_WithArgument_NPEForNull() {
+        JBBPMappingAccessorProviderFactory.getInstance().make(null);
+    }
+
+    @Test
+    public void testMake_WithArgument() {
+        assertEquals(JBBPSafeAccessorProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make(JBBPMappingAccessorProviderType.SAFE).getClass());
+        assertEquals(JBBPUnsafeAccessorProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make(JBBPMappingAccessorProviderType.UNSAFE).getClass());
+        assertEquals(JBBPSafeAccessorProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make(JBBPMappingAccessorProviderType.AUTO).getClass());
+    }
+
+    @Test
+    public void testMake_UnsafeThroughProperty() {
+        System.setProperty(JBBPSystemProperty.PROPERTY_ACCESSOR_PROVIDER_CLASS.getPropertyName(), JBBPUnsafeAccessorProvider.class.getName());
+        assertEquals(JBBPUnsafeAccessorProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make().getClass());
+    }
+
+    @Test
+    public void testMake_CustomClass() {
+        System.setProperty(JBBPSystemProperty.PROPERTY_ACCESSOR_PROVIDER_CLASS.getPropertyName(), FakeProvider.class.getName());
+        assertEquals(FakeProvider.class, JBBPMappingAccessorProviderFactory.getInstance().make(JBBPMappingAccessorProviderType.AUTO).getClass());
+    }
+
+    public static class FakeProvider implements JBBPMappingAccessorProvider {
+        @Override
+        public JBBPMappingFieldAccessor makeAccessor(final Field field) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.mapper.accessors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class JBBPMappingAccessorProviderTest {
+
+    private final JBBPMappingAccessorProvider provider;
+
+    public JBBPMappingAccessorProviderTest(final JBBPMappingAccessorProvider provider) {
+        this.provider = provider;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<JBBPMappingAccessorProvider[]> getParameters() {
+        return Arrays.asList(new JBBPMappingAccessorProvider[]{new JBBPUnsafeAccessorProvider()}, new JBBPMappingAccessorProvider[]{new JBBPSafeAccessorProvider()});
+    }
+
+    private JBBPMappingFieldAccessor make(final Class<?> klazz, final String name) throws Exception {
+        final java.lang.reflect.Field field = klazz.getDeclaredField(name);
+        field.setAccessible(true);
+        final JBBPMappingFieldAccessor result = this.provider.makeAccessor(field);
+        assertSame(field, result.getField());
+        return result;
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testMakeAccessor_NPEForNull() {
+        this.provider.makeAccessor(null);
+    }
+
+    @Test
+    public void testPrimitiveSetters() throws Exception {
+        final Fields instance = new Fields();
+
+        make(Fields.class, "z").setBoolean(instance, true);
+        make(Fields.class, "b").setByte(instance, (byte) -3);
+        make(Fields.class, "c").setChar(instance, 'x');
+        make(Fields.class, "s").setShort(instance, (short) 12345);
+        make(Fields.class, "i").setInt(instance, 0x12345678);
+        make(Fields.class, "l").setLong(instance, 0x1234567890ABCDEFL);
+        make(Fields.class, "f").setFloat(instance, 1.5f);
+        make(Fields.class, "d").setDouble(instance, -2.25d);
+
+        assertTrue(instance.z);
+        assertEquals(-3, instance.b);
+        assertEquals('x', instance.c);
+        assertEquals(12345, instance.s);
+        assertEquals(0x12345678, instance.i);
+        assertEquals(0x1234567890ABCDEFL, instance.l);
+        assertEquals(1.5f, instance.f, 0.0f);
+        assertEquals(-2.25d, instance.d, 0.0d);
+
+        assertEquals(Boolean.TRUE, make(Fields.class, "z").get(instance));
+        assertEquals((byte) -3, make(Fields.class, "b").get(instance));
+        assertEquals('x', make(Fields.class, "c").get(instance));
+        assertEquals((short) 12345, make(Fields.class, "s").get(instance));
+        assertEquals(0x12345678, make(Fields.class, "i").get(instance));
+        assertEquals(0x1234567890ABCDEFL, make(Fields.class, "l").get(instance));
+        assertEquals(1.5f, make(Fields.class, "f").get(instance));
+        assertEquals(-2.25d, make(Fields.class, "d").get(instance));
+    }
+
+    @Test
+    public void testObjectSetter() throws Exception {
+        final Fields instance = new Fields();
+        final JBBPMappingFieldAccessor array = make(Fields.class, "array");
+        final int[] value = new int[]{1, 2, 3};
+        array.set(instance, value);
+        assertSame(value, instance.array);
+        assertSame(value, array.get(instance));
+        array.set(instance, null);
+        assertNull(instance.array);
+
+        make(Fields.class, "i").set(instance, 42);
+        assertEquals(42, instance.i);
+        make(Fields.class, "l").set(instance, 42);
+        assertEquals(42L, instance.l);
+    }
+
+    @Test
+    public void testFinalAndVolatileFields() throws Exception {
+        final Fields instance = new Fields();
+        make(Fields.class, "fin").setInt(instance, 77);
+        assertEquals(77, make(Fields.class, "fin").get(instance));
+        make(Fields.class, "vol").setLong(instance, 88L);
+        assertEquals(88L, instance.vol);
+    }
+
+    @Test
+    public void testAncestorField() throws Exception {
+        final Child instance = new Child();
+        make(Fields.class, "i").setInt(instance, 11);
+        assertEquals(11, instance.i);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongInstance() throws Exception {
+        make(Fields.class, "i").setInt(new Object(), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongObjectValue() throws Exception {
+        make(Fields.class, "array").set(new Fields(), "hello");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullForPrimitive() throws Exception {
+        make(Fields.class, "i").set(new Fields(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongPrimitiveType() throws Exception {
+        make(Fields.class, "b").setLong(new Fields(), 1L);
+    }
+
+    private static class Fields {
+        private final int fin = 0;
+        boolean z;
+        byte b;
+        char c;
+        short s;
+        int i;
+        long l;
+        float f;
+        double d;
+        int[] array;
+        volatile long vol;
+    }
+
+    private static class Child extends Fields {
+    }
+}
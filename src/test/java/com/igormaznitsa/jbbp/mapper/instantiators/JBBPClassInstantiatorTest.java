@@ -25,7 +25,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 
 @RunWith(Parameterized.class)
 public class JBBPClassInstantiatorTest {
@@ -45,6 +47,18 @@ public class JBBPClassInstantiatorTest {
         }
     }
 
+    @Test
+    public void testRepeatedInstantiationMakesNewInstances() throws Exception {
+        final StaticTwoConstructors first = instantiator.makeClassInstance(StaticTwoConstructors.class);
+        final StaticTwoConstructors second = instantiator.makeClassInstance(StaticTwoConstructors.class);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        first.i = 111;
+        assertEquals(0, instantiator.makeClassInstance(StaticTwoConstructors.class).i);
+        assertNotSame(instantiator.makeClassInstance(NonStaticInnerOne.class), instantiator.makeClassInstance(NonStaticInnerOne.class));
+    }
+
     @Test
     public void testStaticClass() throws Exception {
         assertNotNull(instantiator.makeClassInstance(Static.class));
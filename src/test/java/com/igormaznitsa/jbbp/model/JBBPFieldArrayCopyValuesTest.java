@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitNumber;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class JBBPFieldArrayCopyValuesTest {
+
+    private final JBBPAbstractArrayField<?> test;
+
+    public JBBPFieldArrayCopyValuesTest(final JBBPAbstractArrayField<?> test) {
+        this.test = test;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        final JBBPNamedFieldInfo name = new JBBPNamedFieldInfo("test.field", "field", 999);
+        final List<Object[]> result = new ArrayList<Object[]>();
+        result.add(new Object[]{new JBBPFieldArrayBit(name, new byte[]{1, 2, 3, 4, 5, 6, 7}, JBBPBitNumber.BITS_4)});
+        result.add(new Object[]{new JBBPFieldArrayBoolean(name, new boolean[]{true, false, true, true})});
+        result.add(new Object[]{new JBBPFieldArrayByte(name, new byte[]{-1, 0, 1, (byte) 0x96, 0x7F})});
+        result.add(new Object[]{new JBBPFieldArrayUByte(name, new byte[]{-1, 0, 1, (byte) 0x96, 0x7F})});
+        result.add(new Object[]{new JBBPFieldArrayShort(name, new short[]{(short) -27834, 23423, 0, -2, 3})});
+        result.add(new Object[]{new JBBPFieldArrayUShort(name, new short[]{(short) -27834, 23423, 0, -2, 3})});
+        result.add(new Object[]{new JBBPFieldArrayInt(name, new int[]{-278348, 234237, 0, -2, 3})});
+        result.add(new Object[]{new JBBPFieldArrayLong(name, new long[]{-2783480981L, 2342372L, 0L, -2L, 3L})});
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+        for (final JBBPFieldArrayView.Type type : JBBPFieldArrayView.Type.values()) {
+            result.add(new Object[]{new JBBPFieldArrayView(null, ByteBuffer.wrap(data), 0, data.length / type.getSize(), type, JBBPByteOrder.LITTLE_ENDIAN, JBBPBitOrder.LSB0)});
+        }
+        return result;
+    }
+
+    @Test
+    public void testCopyValuesTo() {
+        for (final boolean reverse : new boolean[]{false, true}) {
+            final Object expected = this.test.getValueArrayAsObject(reverse);
+            final Object target = Array.newInstance(expected.getClass().getComponentType(), this.test.size());
+            assertTrue(this.test.copyValuesTo(target, reverse));
+            for (int i = 0; i < this.test.size(); i++) {
+                assertEquals(Array.get(expected, i), Array.get(target, i));
+            }
+        }
+    }
+
+    @Test
+    public void testCopyValuesTo_IncompatibleTarget() {
+        assertFalse(this.test.copyValuesTo(null, false));
+        assertFalse(this.test.copyValuesTo(new Object[this.test.size()], false));
+        assertFalse(this.test.copyValuesTo(Array.newInstance(this.test.getValueArrayAsObject(false).getClass().getComponentType(), this.test.size() + 1), false));
+    }
+}
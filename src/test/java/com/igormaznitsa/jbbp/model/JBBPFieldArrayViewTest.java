@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import com.igormaznitsa.jbbp.io.JBBPByteOrder;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JBBPFieldArrayViewTest {
+
+    private static final String SCRIPT = "bool [3] a; byte [3] b; ubyte [3] c; <byte [3] d; short [2] e; <ushort [2] f; int [2] g; <int [2] h; long [1] i; <long [1] j; s [2] { int [1] k; } bit:3 [2] bits; ubyte [_] rest;";
+
+    private static void assertSameArrays(final JBBPAbstractArrayField<?> expected, final JBBPAbstractArrayField<?> actual) {
+        assertEquals(expected.getFieldPath(), actual.getFieldPath());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getAsLong(i), actual.getAsLong(i));
+            assertEquals(expected.getAsInt(i), actual.getAsInt(i));
+            assertEquals(expected.getAsBool(i), actual.getAsBool(i));
+            assertEquals(expected.getElementAt(i).getClass(), actual.getElementAt(i).getClass());
+        }
+        assertEquals(expected.getTypeAsString(), actual.getTypeAsString());
+    }
+
+    private static void assertSameStructs(final JBBPFieldStruct expected, final JBBPFieldStruct actual) {
+        assertEquals(expected.getArray().length, actual.getArray().length);
+        for (int i = 0; i < expected.getArray().length; i++) {
+            final JBBPAbstractField e = expected.getArray()[i];
+            final JBBPAbstractField a = actual.getArray()[i];
+            if (e instanceof JBBPFieldArrayStruct) {
+                for (int j = 0; j < ((JBBPFieldArrayStruct) e).size(); j++) {
+                    assertSameStructs(((JBBPFieldArrayStruct) e).getElementAt(j), ((JBBPFieldArrayStruct) a).getElementAt(j));
+                }
+            } else if (e instanceof JBBPFieldArrayBit) {
+                assertSame(JBBPFieldArrayBit.class, a.getClass());
+                assertSameArrays((JBBPAbstractArrayField<?>) e, (JBBPAbstractArrayField<?>) a);
+            } else if (e.getFieldPath().equals("rest")) {
+                assertSame("Not aligned array must be read", JBBPFieldArrayUByte.class, a.getClass());
+                assertSameArrays((JBBPAbstractArrayField<?>) e, (JBBPAbstractArrayField<?>) a);
+            } else {
+                assertSame(JBBPFieldArrayView.class, a.getClass());
+                assertSameArrays((JBBPAbstractArrayField<?>) e, (JBBPAbstractArrayField<?>) a);
+                assertEquals(e.getClass(), ((JBBPFieldArrayView) a).toArrayField().getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testParseWithArrayViews_SameValuesAsParse() throws Exception {
+        final byte[] data = new byte[80];
+        new Random(1234L).nextBytes(data);
+
+        for (final JBBPBitOrder order : JBBPBitOrder.values()) {
+            final JBBPParser parser = JBBPParser.prepare(SCRIPT, order);
+            assertSameStructs(parser.parse(data), parser.parseWithArrayViews(data));
+        }
+    }
+
+    @Test
+    public void testParseWithArrayViews_BufferIsNotCopied() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8});
+        buffer.position(1);
+        final JBBPFieldArrayView view = JBBPParser.prepare("int [_] data;").parseWithArrayViews(buffer).findFieldForType(JBBPFieldArrayView.class);
+        assertEquals(1, buffer.position());
+        assertEquals(1, view.getByteOffset());
+        assertEquals(8, view.getByteLength());
+        assertEquals(0x01020304, view.getAsInt(0));
+
+        buffer.put(1, (byte) 0x7F);
+        assertEquals(0x7F020304, view.getAsInt(0));
+
+        final ByteBuffer slice = view.getByteSlice();
+        assertTrue(slice.isReadOnly());
+        assertEquals(8, slice.remaining());
+        assertEquals(0x7F, slice.get(0));
+    }
+
+    @Test
+    public void testBulkRead() throws Exception {
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+
+        final JBBPFieldArrayView bytes = new JBBPFieldArrayView(new JBBPNamedFieldInfo("a", "a", 0), ByteBuffer.wrap(data), 2, 6, JBBPFieldArrayView.Type.BYTE, JBBPByteOrder.BIG_ENDIAN, JBBPBitOrder.LSB0);
+        assertArrayEquals(new byte[]{0, 4, 5, 6, 0}, bytes.readBytes(1, new byte[5], 1, 3));
+        assertArrayEquals(new long[]{3, 4, 5, 6, 7, 8}, bytes.readLongs(0, new long[6], 0, 6));
+
+        final JBBPFieldArrayView reversedBytes = new JBBPFieldArrayView(null, ByteBuffer.wrap(data), 0, 4, JBBPFieldArrayView.Type.UBYTE, JBBPByteOrder.LITTLE_ENDIAN, JBBPBitOrder.LSB0);
+        assertArrayEquals(new byte[]{4, 3, 2, 1}, reversedBytes.readBytes(0, new byte[4], 0, 4));
+
+        final JBBPFieldArrayView shorts = new JBBPFieldArrayView(null, ByteBuffer.wrap(data), 0, 4, JBBPFieldArrayView.Type.USHORT, JBBPByteOrder.LITTLE_ENDIAN, JBBPBitOrder.LSB0);
+        assertArrayEquals(new short[]{0x0201, 0x0403, 0x0605, 0x0807}, shorts.readShorts(0, new short[4], 0, 4));
+        assertArrayEquals(new int[]{0x0403, 0x0605}, shorts.readInts(1, new int[2], 0, 2));
+
+        final JBBPFieldArrayView longs = new JBBPFieldArrayView(null, ByteBuffer.wrap(data), 0, 1, JBBPFieldArrayView.Type.LONG, JBBPByteOrder.BIG_ENDIAN, JBBPBitOrder.MSB0);
+        assertArrayEquals(new long[]{0x8040C020A060E010L}, longs.readLongs(0, new long[1], 0, 1));
+    }
+
+    @Test
+    public void testErrorForWrongRanges() throws Exception {
+        final JBBPFieldArrayView view = new JBBPFieldArrayView(null, ByteBuffer.wrap(new byte[8]), 0, 2, JBBPFieldArrayView.Type.INT, JBBPByteOrder.BIG_ENDIAN, JBBPBitOrder.LSB0);
+        try {
+            view.readInts(1, new int[2], 0, 2);
+            fail("Must throw IOOBE");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            view.readInts(0, new int[2], 1, 2);
+            fail("Must throw IOOBE");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            view.getAsInt(2);
+            fail("Must throw IOOBE");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            new JBBPFieldArrayView(null, ByteBuffer.wrap(new byte[8]), 1, 2, JBBPFieldArrayView.Type.INT, JBBPByteOrder.BIG_ENDIAN, JBBPBitOrder.LSB0);
+            fail("Must throw IOOBE");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
+    @Test
+    public void testGetValueArrayAsObject() throws Exception {
+        final JBBPFieldArrayView view = new JBBPFieldArrayView(null, ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 0, 2, JBBPFieldArrayView.Type.SHORT, JBBPByteOrder.BIG_ENDIAN, JBBPBitOrder.LSB0);
+        assertArrayEquals(new short[]{0x0102, 0x0304}, (short[]) view.getValueArrayAsObject(false));
+        assertArrayEquals(new short[]{(short) 0x4080, (short) 0x20C0}, (short[]) view.getValueArrayAsObject(true));
+    }
+
+    @Test
+    public void testSerializedAsArrayField() throws Exception {
+        final JBBPFieldStruct parsed = JBBPParser.prepare("int [2] data;").parseWithArrayViews(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(parsed);
+        out.close();
+
+        final JBBPFieldStruct restored = (JBBPFieldStruct) new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray())).readObject();
+        assertArrayEquals(new int[]{0x01020304, 0x05060708}, restored.findFieldForNameAndType("data", JBBPFieldArrayInt.class).getArray());
+    }
+}
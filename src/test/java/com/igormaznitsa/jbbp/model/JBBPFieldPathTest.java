@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JBBPFieldPathTest {
+
+    @Test(expected = NullPointerException.class)
+    public void testCompile_ErrorForNull() {
+        JBBPFieldPath.compile(null);
+    }
+
+    @Test
+    public void testCompile() {
+        final JBBPFieldPath path = JBBPFieldPath.compile(" Some.Field ");
+        assertEquals(" Some.Field ", path.getPath());
+        assertEquals(" Some.Field ", path.toString());
+        assertEquals(2, path.size());
+        assertEquals("some", path.getElement(0));
+        assertEquals("field", path.getElement(1));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        assertEquals(JBBPFieldPath.compile("a.b"), JBBPFieldPath.compile("a.b"));
+        assertEquals(JBBPFieldPath.compile("a.b").hashCode(), JBBPFieldPath.compile("a.b").hashCode());
+        assertNotEquals(JBBPFieldPath.compile("a.b"), JBBPFieldPath.compile("a.c"));
+    }
+}
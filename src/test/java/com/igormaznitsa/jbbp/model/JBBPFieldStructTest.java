@@ -227,4 +227,56 @@ public class JBBPFieldStructTest {
         byte c;
     }
 
+    private static JBBPFieldStruct makeBigStruct() {
+        final JBBPAbstractField[] fields = new JBBPAbstractField[20];
+        for (int i = 0; i < fields.length - 2; i++) {
+            fields[i] = new JBBPFieldInt(new JBBPNamedFieldInfo("big.f" + i, "f" + i, i), i);
+        }
+        fields[18] = new JBBPFieldByte(new JBBPNamedFieldInfo("big.dup", "dup", 18), (byte) 1);
+        fields[19] = new JBBPFieldInt(new JBBPNamedFieldInfo("big.dup", "dup", 19), 2);
+        return new JBBPFieldStruct(new JBBPNamedFieldInfo("big", "big", -1), fields);
+    }
+
+    @Test
+    public void testIndexedLookups() {
+        final JBBPFieldStruct struct = makeBigStruct();
+
+        assertEquals(5, ((JBBPFieldInt) struct.findFieldForName("f5")).getAsInt());
+        assertEquals(17, ((JBBPFieldInt) struct.findFieldForName("  F17 ")).getAsInt());
+        assertNull(struct.findFieldForName("unknown"));
+
+        assertEquals(1, struct.findFieldForNameAndType("dup", JBBPFieldByte.class).getAsInt());
+        assertEquals(2, struct.findFieldForNameAndType("DUP", JBBPFieldInt.class).getAsInt());
+        assertNull(struct.findFieldForNameAndType("dup", JBBPFieldLong.class));
+        assertNull(struct.findFieldForNameAndType("unknown", JBBPFieldInt.class));
+
+        assertTrue(struct.nameExists("f0"));
+        assertTrue(struct.nameExists("F0"));
+        assertFalse(struct.nameExists("f100"));
+
+        assertTrue(struct.pathExists("big.f3"));
+        assertTrue(struct.pathExists("BIG.F3"));
+        assertFalse(struct.pathExists("f3"));
+
+        assertEquals(9, struct.findFieldForPathAndType("big.f9", JBBPFieldInt.class).getAsInt());
+        assertNull(struct.findFieldForPathAndType("f9", JBBPFieldInt.class));
+    }
+
+    @Test
+    public void testFindFieldForCompiledPath() throws Exception {
+        final JBBPFieldStruct parsed = JBBPParser.prepare("byte a; s { inner { int b; } }").parse(new byte[]{1, 0, 0, 0, 2});
+        final JBBPFieldPath path = JBBPFieldPath.compile("S.Inner.B");
+
+        assertEquals(2, ((JBBPFieldInt) parsed.findFieldForCompiledPath(path)).getAsInt());
+        assertEquals(2, parsed.findFieldForCompiledPathAndType(path, JBBPFieldInt.class).getAsInt());
+        assertNull(parsed.findFieldForCompiledPathAndType(path, JBBPFieldByte.class));
+        assertNull(parsed.findFieldForCompiledPath(JBBPFieldPath.compile("s.unknown")));
+
+        try {
+            parsed.findFieldForCompiledPath(JBBPFieldPath.compile("a.b"));
+            fail("Must throw JBBPFinderException");
+        } catch (JBBPFinderException ex) {
+            assertEquals("a.b", ex.getNameOrPath());
+        }
+    }
 }
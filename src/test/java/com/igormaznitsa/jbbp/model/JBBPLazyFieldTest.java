@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Igor Maznitsa.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.igormaznitsa.jbbp.model;
+
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.compiler.JBBPNamedFieldInfo;
+import com.igormaznitsa.jbbp.io.JBBPBitOrder;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class JBBPLazyFieldTest {
+
+    private static void describe(final StringBuilder buffer, final JBBPAbstractField field) {
+        buffer.append(field.getClass().getSimpleName()).append('(').append(field.getFieldPath()).append(')');
+        if (field instanceof JBBPFieldStruct) {
+            buffer.append('{');
+            for (final JBBPAbstractField f : ((JBBPFieldStruct) field).getArray()) {
+                describe(buffer, f);
+                buffer.append(';');
+            }
+            buffer.append('}');
+        } else if (field instanceof JBBPFieldArrayStruct) {
+            buffer.append('[');
+            for (final JBBPFieldStruct s : (JBBPFieldArrayStruct) field) {
+                describe(buffer, s);
+            }
+            buffer.append(']');
+        } else if (field instanceof JBBPAbstractArrayField) {
+            final JBBPAbstractArrayField<?> array = (JBBPAbstractArrayField<?>) field;
+            buffer.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                buffer.append(array.getAsLong(i)).append(',');
+            }
+            buffer.append(']');
+        } else if (field instanceof JBBPNumericField) {
+            buffer.append('=').append(((JBBPNumericField) field).getAsLong());
+        }
+    }
+
+    private static String describe(final JBBPFieldStruct root) {
+        final StringBuilder result = new StringBuilder();
+        describe(result, root);
+        return result.toString();
+    }
+
+    @Test
+    public void testLazyParsingGivesSameResult() throws Exception {
+        final byte[] data = new byte[4096];
+        new Random(345L).nextBytes(data);
+
+        // values are selected to be the same for both bit orders
+        final String[] scripts = new String[]{
+                "ubyte len; header { <int id; long time; } byte [len] payload; <short [len*2] values; items [3] { ubyte a; <ushort [2] b; } bool [2] flags; bit:3 [3] bits; align; int [_] rest;",
+                "ubyte len; s [len] { ubyte x; byte [x & 7] y; } long [2] tail; records [_] { byte a; int b; }",
+                "bit:3 a; ubyte [4] notAligned; align; <long [_] rest;"
+        };
+        final int[] lengths = new int[]{1024, 1 + 24 * 3 + 16 + 500 * 5, 5 + 8 * 128};
+        for (int s = 0; s < scripts.length; s++) {
+            final String script = scripts[s];
+            for (final JBBPBitOrder order : JBBPBitOrder.values()) {
+                final JBBPParser parser = JBBPParser.prepare(script, order);
+                final byte[] part = new byte[lengths[s]];
+                System.arraycopy(data, 0, part, 0, part.length);
+                part[0] = 0x18;
+                if (script.contains("records")) {
+                    for (int i = 0; i < 24; i++) {
+                        part[1 + i * 3] = 0x42;
+                    }
+                }
+                assertEquals(script, describe(parser.parse(part)), describe(parser.parseLazy(part)));
+                assertEquals(script, describe(parser.parse(part)), describe(parser.parseLazy(ByteBuffer.wrap(part))));
+            }
+        }
+    }
+
+    @Test
+    public void testArrayDataIsNotCopiedBeforeAccess() throws Exception {
+        final byte[] data = new byte[]{3, 1, 2, 3, 0, 0, 0, 5};
+        final JBBPFieldStruct root = JBBPParser.prepare("ubyte len; byte [len] payload; int crc;").parseLazy(data);
+        assertEquals(5, root.findFieldForNameAndType("crc", JBBPFieldInt.class).getAsInt());
+
+        data[1] = 100;
+        assertArrayEquals(new byte[]{100, 2, 3}, root.findFieldForNameAndType("payload", JBBPFieldArrayByte.class).getArray());
+        data[2] = 100;
+        assertArrayEquals(new byte[]{100, 2, 3}, root.findFieldForNameAndType("payload", JBBPFieldArrayByte.class).getArray());
+    }
+
+    @Test
+    public void testPlaceholdersAreNotVisible() throws Exception {
+        final JBBPFieldStruct root = JBBPParser.prepare("int [2] a; s [2] { short b; } byte c;").parseLazy(new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 0, 3, 0, 4, 5});
+        for (final JBBPAbstractField f : root.getArray()) {
+            assertFalse(f instanceof JBBPLazyField);
+        }
+        assertEquals(2, root.findFieldForType(JBBPFieldArrayInt.class).getAsInt(1));
+        assertEquals(4, root.findFieldForPathAndType("s", JBBPFieldArrayStruct.class).getElementAt(1).findFieldForType(JBBPFieldShort.class).getAsInt());
+        assertNotNull(root.findFirstFieldForType(JBBPFieldArrayStruct.class));
+        assertNotNull(root.findLastFieldForType(JBBPFieldArrayInt.class));
+        assertTrue(root.pathExists("a"));
+    }
+
+    @Test
+    public void testSerializationOfLazyStructure() throws Exception {
+        final JBBPFieldStruct root = JBBPParser.prepare("byte [4] a; s [2] { short b; }").parseLazy(new byte[]{1, 2, 3, 4, 0, 5, 0, 6});
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(root);
+        out.close();
+
+        final JBBPFieldStruct restored = (JBBPFieldStruct) new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray())).readObject();
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, restored.findFieldForNameAndType("a", JBBPFieldArrayByte.class).getArray());
+        assertEquals(6, restored.findFieldForNameAndType("s", JBBPFieldArrayStruct.class).getElementAt(1).findFieldForType(JBBPFieldShort.class).getAsInt());
+    }
+
+    @Test
+    public void testDecodedOnlyOnce() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final JBBPNamedFieldInfo name = new JBBPNamedFieldInfo("a", "a", 0);
+        final JBBPLazyField lazy = new JBBPLazyField(name) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected JBBPAbstractField decode() {
+                counter.incrementAndGet();
+                return new JBBPFieldInt(name, 123);
+            }
+        };
+        final JBBPFieldStruct struct = new JBBPFieldStruct(new JBBPNamedFieldInfo("s", "s", 0), new JBBPAbstractField[]{lazy});
+        assertFalse(lazy.isDecoded());
+        assertTrue(struct.nameExists("a"));
+        assertEquals(0, counter.get());
+        assertEquals(123, struct.findFieldForNameAndType("a", JBBPFieldInt.class).getAsInt());
+        assertEquals(123, ((JBBPFieldInt) lazy.getDecoded()).getAsInt());
+        assertTrue(lazy.isDecoded());
+        assertEquals("int", lazy.getTypeAsString());
+        assertEquals(1, counter.get());
+    }
+
+    @Test
+    public void testStructDoesNotChangeItsFieldArray() throws Exception {
+        final JBBPNamedFieldInfo name = new JBBPNamedFieldInfo("a", "a", 0);
+        final JBBPLazyField lazy = new JBBPLazyField(name) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected JBBPAbstractField decode() {
+                return new JBBPFieldInt(name, 321);
+            }
+        };
+        final JBBPAbstractField[] fields = new JBBPAbstractField[]{lazy};
+        final JBBPFieldStruct struct = new JBBPFieldStruct(new JBBPNamedFieldInfo("s", "s", 0), fields);
+        final JBBPAbstractField first = struct.findFieldForName("a");
+        assertSame(lazy.getDecoded(), first);
+        assertSame(first, struct.getArray()[0]);
+        assertSame(lazy, fields[0]);
+    }
+}